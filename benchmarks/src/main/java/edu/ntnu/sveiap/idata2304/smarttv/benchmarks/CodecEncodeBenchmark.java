@@ -0,0 +1,116 @@
+package edu.ntnu.sveiap.idata2304.smarttv.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Codec;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.EncodedLine;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.EncodedReplies;
+
+/**
+ * Every {@link Codec} reply encoder, plus the {@link EncodedReplies} lookups that replace
+ * them on the server's hot path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CodecEncodeBenchmark {
+
+  // Non-final so the JIT cannot fold the encoders' arguments
+  private int channel = 7;
+  private int channels = 10;
+  private boolean on = true;
+  private final EncodedReplies replies = Codec.encodedReplies(10);
+
+  @Benchmark
+  public String ok() {
+    return Codec.ok();
+  }
+
+  @Benchmark
+  public String okStatus() {
+    return Codec.okStatus(on);
+  }
+
+  @Benchmark
+  public String okChannels() {
+    return Codec.okChannels(channels);
+  }
+
+  @Benchmark
+  public String okChannel() {
+    return Codec.okChannel(channel);
+  }
+
+  @Benchmark
+  public String okPong() {
+    return Codec.okPong();
+  }
+
+  @Benchmark
+  public String errBadCommand() {
+    return Codec.errBadCommand();
+  }
+
+  @Benchmark
+  public String errLineTooLong() {
+    return Codec.errLineTooLong();
+  }
+
+  @Benchmark
+  public String errTvOff() {
+    return Codec.errTvOff();
+  }
+
+  @Benchmark
+  public String errOutOfRange() {
+    return Codec.errOutOfRange();
+  }
+
+  @Benchmark
+  public String errInvalidState() {
+    return Codec.errInvalidState();
+  }
+
+  @Benchmark
+  public String errServerError() {
+    return Codec.errServerError();
+  }
+
+  @Benchmark
+  public String evtChannel() {
+    return Codec.evtChannel(channel);
+  }
+
+  @Benchmark
+  public String evtPowerOn() {
+    return Codec.evtPowerOn();
+  }
+
+  @Benchmark
+  public String evtPowerOff() {
+    return Codec.evtPowerOff();
+  }
+
+  @Benchmark
+  public EncodedLine encodedOkChannel() {
+    return replies.okChannel(channel);
+  }
+
+  @Benchmark
+  public EncodedLine encodedEvtChannel() {
+    return replies.evtChannel(channel);
+  }
+}
@@ -0,0 +1,78 @@
+package edu.ntnu.sveiap.idata2304.smarttv.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Codec;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Limits;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.ParsedRequest;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Request;
+
+/**
+ * Request parsing: the String parser used by the blocking transport against the byte
+ * parser used by the NIO transport, for a valid line, an invalid line and a valid line
+ * of the maximum length.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CodecParseBenchmark {
+
+  @Param({"valid", "invalid", "maxLength"})
+  public String kind;
+
+  private String line;
+  private byte[] bytes;
+  private ByteBuffer buffer;
+  private final ParsedRequest parsed = new ParsedRequest();
+
+  @Setup
+  public void setup() {
+    line = switch (kind) {
+      case "valid" -> "SET 5";
+      case "invalid" -> "SET five";
+      // Whitespace between the tokens makes the line as long as the protocol allows
+      case "maxLength" -> "SET" + " ".repeat(Limits.MAX_LINE_LENGTH - 4) + "5";
+      default -> throw new IllegalArgumentException("Unknown kind: " + kind);
+    };
+    bytes = line.getBytes(StandardCharsets.US_ASCII);
+    buffer = ByteBuffer.allocateDirect(bytes.length);
+    buffer.put(bytes).flip();
+  }
+
+  @Benchmark
+  public Request parseString() {
+    try {
+      return Codec.parseRequest(line);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  @Benchmark
+  public int parseBytes() {
+    return Codec.parseRequest(bytes, 0, bytes.length, parsed);
+  }
+
+  @Benchmark
+  public int parseByteBuffer() {
+    buffer.rewind();
+    return Codec.parseRequest(buffer, parsed);
+  }
+}
@@ -0,0 +1,93 @@
+package edu.ntnu.sveiap.idata2304.smarttv.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.Fleet;
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.SmartTv;
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.TvControl;
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.TvFleet;
+import edu.ntnu.sveiap.idata2304.smarttv.server.shard.ShardedFleet;
+
+/**
+ * Many TVs accessed from 4 and 16 threads, each operation on a random TV, comparing one
+ * locked {@link SmartTv} per TV, the CAS-based {@link TvFleet} and the single-writer
+ * {@link ShardedFleet}. Each operation is a GET or, with probability
+ * {@code 100 - readPercent}, a SET to a random channel.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FleetBenchmark {
+
+  private static final int TVS = 100_000;
+  private static final int CHANNELS = 10;
+
+  @Param({"locked", "atomic", "sharded"})
+  public String state;
+
+  @Param({"90", "50"})
+  public int readPercent;
+
+  private TvControl[] tvs;
+  private ShardedFleet sharded;
+
+  @Setup
+  public void setup() {
+    tvs = new TvControl[TVS];
+    Fleet fleet = switch (state) {
+      case "locked" -> null;
+      case "atomic" -> new TvFleet(TVS, CHANNELS);
+      case "sharded" -> sharded = new ShardedFleet(TVS, CHANNELS,
+          Runtime.getRuntime().availableProcessors());
+      default -> throw new IllegalArgumentException("Unknown state: " + state);
+    };
+    for (int i = 0; i < TVS; i++) {
+      tvs[i] = fleet == null ? new SmartTv(CHANNELS) : fleet.tv(i);
+      tvs[i].turnOn();
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    if (sharded != null) sharded.close();
+  }
+
+  private int operation() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    TvControl tv = tvs[random.nextInt(TVS)];
+    if (random.nextInt(100) < readPercent) {
+      return tv.getChannel();
+    }
+    return tv.setChannel(1 + random.nextInt(CHANNELS));
+  }
+
+  @Benchmark
+  @Threads(4)
+  public int threads04() {
+    return operation();
+  }
+
+  @Benchmark
+  @Threads(16)
+  public int threads16() {
+    return operation();
+  }
+}
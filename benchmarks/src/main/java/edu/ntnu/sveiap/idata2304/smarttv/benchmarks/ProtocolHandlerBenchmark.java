@@ -0,0 +1,80 @@
+package edu.ntnu.sveiap.idata2304.smarttv.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.SmartTv;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.EncodedLine;
+import edu.ntnu.sveiap.idata2304.smarttv.server.adapter.ProtocolHandler;
+import edu.ntnu.sveiap.idata2304.smarttv.server.adapter.Session;
+
+/**
+ * One command through {@link ProtocolHandler}: parse, execute on a {@link SmartTv} that is
+ * on, and encode the reply. {@code handleLine} is the String API; {@code handleBytes} is
+ * what the NIO transport calls.
+ *
+ * <p>Commands that change state are repeated on the same TV, so ON and OFF measure the
+ * no-op case after the first call. UP and DOWN alternate with the opposite command so the
+ * channel stays in range; their numbers are the mean of the pair.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProtocolHandlerBenchmark {
+
+  @Param({"STATUS", "ON", "OFF", "CHANNELS", "GET", "SET 5", "UP", "DOWN", "PING",
+      "SUB", "UNSUB", "BOGUS"})
+  public String command;
+
+  private ProtocolHandler handler;
+  private Session session;
+  private String[] lines;
+  private byte[][] bytes;
+  private int next;
+
+  @Setup
+  public void setup() {
+    handler = new ProtocolHandler(new SmartTv(10));
+    session = handler.openSession();
+    handler.handleLine("ON");
+    handler.handleLine("SET 5");
+    lines = switch (command) {
+      case "UP" -> new String[] {"UP", "DOWN"};
+      case "DOWN" -> new String[] {"DOWN", "UP"};
+      default -> new String[] {command};
+    };
+    bytes = new byte[lines.length][];
+    for (int i = 0; i < lines.length; i++) {
+      bytes[i] = lines[i].getBytes(StandardCharsets.US_ASCII);
+    }
+  }
+
+  @Benchmark
+  public String handleLine() {
+    String line = lines[next];
+    next = (next + 1) % lines.length;
+    return handler.handleLine(line);
+  }
+
+  @Benchmark
+  public EncodedLine handleBytes() {
+    byte[] line = bytes[next];
+    next = (next + 1) % bytes.length;
+    return handler.handle(session, line, 0, line.length);
+  }
+}
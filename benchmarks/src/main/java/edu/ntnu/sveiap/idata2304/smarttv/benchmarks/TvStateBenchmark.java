@@ -0,0 +1,87 @@
+package edu.ntnu.sveiap.idata2304.smarttv.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.AtomicSmartTv;
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.SmartTv;
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.TvControl;
+
+/**
+ * Contended access to one shared TV from 1, 4, 16 and 64 threads, comparing the locked
+ * {@link SmartTv} with {@link AtomicSmartTv}. Each operation is a GET or, with probability
+ * {@code 100 - readPercent}, a SET to a random channel.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TvStateBenchmark {
+
+  private static final int CHANNELS = 10;
+
+  @Param({"locked", "atomic"})
+  public String state;
+
+  @Param({"90", "50"})
+  public int readPercent;
+
+  private TvControl tv;
+
+  @Setup
+  public void setup() {
+    tv = switch (state) {
+      case "locked" -> new SmartTv(CHANNELS);
+      case "atomic" -> new AtomicSmartTv(CHANNELS);
+      default -> throw new IllegalArgumentException("Unknown state: " + state);
+    };
+    tv.turnOn();
+  }
+
+  private int operation() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    if (random.nextInt(100) < readPercent) {
+      return tv.getChannel();
+    }
+    return tv.setChannel(1 + random.nextInt(CHANNELS));
+  }
+
+  @Benchmark
+  @Threads(1)
+  public int threads01() {
+    return operation();
+  }
+
+  @Benchmark
+  @Threads(4)
+  public int threads04() {
+    return operation();
+  }
+
+  @Benchmark
+  @Threads(16)
+  public int threads16() {
+    return operation();
+  }
+
+  @Benchmark
+  @Threads(64)
+  public int threads64() {
+    return operation();
+  }
+}
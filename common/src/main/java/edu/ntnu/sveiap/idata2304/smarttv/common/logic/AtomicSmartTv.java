@@ -0,0 +1,213 @@
+package edu.ntnu.sveiap.idata2304.smarttv.common.logic;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free Smart TV logic.
+ * Power state and current channel are packed into one {@link AtomicLong}:
+ * bit 32 is the power bit, the low 32 bits hold the channel and the bits above the power
+ * bit hold the {@link ChangeSequence} number of the last change.
+ * Reads are a single volatile load and never block; changes are compare-and-set
+ * loops that return the channel they produced, so no other client's change can
+ * slip in between an update and the value reported for it.
+ *
+ * <p>Behaves exactly like {@link SmartTv}, including exception types and messages.
+ * Listeners are notified after the compare-and-set succeeds, through the sequenced
+ * callbacks of {@link TvListener}; when several clients change the TV at the same moment,
+ * their notifications may arrive in either order, and the sequence number tells which
+ * change came last.
+ */
+public final class AtomicSmartTv implements TvControl {
+  private static final long ON_BIT = 1L << 32;
+  private static final long CHANNEL_MASK = 0xFFFF_FFFFL;
+  private static final long STATE_MASK = ON_BIT | CHANNEL_MASK;
+  private static final int SEQUENCE_SHIFT = 33;
+
+  private final int channels;
+  private final AtomicLong state = new AtomicLong(1); // off, channel 1
+  private final TvSnapshot.Table snapshots;
+  private final List<TvListener> listeners = new CopyOnWriteArrayList<>();
+
+  /**
+   * Constructor for AtomicSmartTv.
+   * The TV starts off, on channel 1.
+   *
+   * @param channels The maximum number of channels available on the TV.
+   * @throws IllegalArgumentException if channels is less than 1.
+   */
+  public AtomicSmartTv(int channels) {
+    if (channels < 1) throw new IllegalArgumentException("There must be at least one channel.");
+    this.channels = channels;
+    this.snapshots = new TvSnapshot.Table(channels);
+  }
+
+  private static boolean on(long word) {
+    return (word & ON_BIT) != 0;
+  }
+
+  private static int channel(long word) {
+    return (int) (word & CHANNEL_MASK);
+  }
+
+  private static int sequence(long word) {
+    return (int) (word >>> SEQUENCE_SHIFT);
+  }
+
+  /**
+   * Returns the given power and channel bits numbered as the change after word.
+   */
+  private static long advance(long word, long state) {
+    return state | (long) ChangeSequence.next(sequence(word)) << SEQUENCE_SHIFT;
+  }
+
+  /**
+   * Reads the state and fails with TV_OFF if the TV is off.
+   */
+  private long readOn() {
+    long word = state.get();
+    if (!on(word)) {
+      throw new IllegalStateException("TV_OFF");
+    }
+    return word;
+  }
+
+  @Override
+  public void turnOn() {
+    long word;
+    long next;
+    do {
+      word = state.get();
+      if (on(word)) return;
+      next = advance(word, (word & STATE_MASK) | ON_BIT);
+    } while (!state.compareAndSet(word, next));
+    for (TvListener l : listeners) l.powerChanged(true, sequence(next));
+  }
+
+  @Override
+  public void turnOff() {
+    long word;
+    long next;
+    do {
+      word = state.get();
+      if (!on(word)) return;
+      next = advance(word, word & CHANNEL_MASK);
+    } while (!state.compareAndSet(word, next));
+    for (TvListener l : listeners) l.powerChanged(false, sequence(next));
+  }
+
+  @Override
+  public boolean isOn() {
+    return on(state.get());
+  }
+
+  @Override
+  public int getNumberOfChannels() {
+    readOn();
+    return channels;
+  }
+
+  @Override
+  public int getChannelRange() {
+    return channels;
+  }
+
+  @Override
+  public int getChannel() {
+    return channel(readOn());
+  }
+
+  @Override
+  public int getLastChannel() {
+    return channel(state.get());
+  }
+
+  @Override
+  public TvSnapshot snapshot() {
+    long word = state.get();
+    return snapshots.get(on(word), channel(word));
+  }
+
+  @Override
+  public int setChannel(int n) {
+    long word;
+    long next;
+    do {
+      word = readOn();
+      if (n < 1 || n > channels) {
+        throw new IllegalArgumentException("Channel out of range: " + n);
+      }
+      next = advance(word, ON_BIT | n);
+    } while (!state.compareAndSet(word, next));
+    fireChannelChanged(n, sequence(next));
+    return n;
+  }
+
+  @Override
+  public int channelUp() {
+    long word;
+    long next;
+    int ch;
+    do {
+      word = readOn();
+      ch = channel(word);
+      if (ch >= channels) {
+        throw new IllegalStateException("INVALID_STATE");
+      }
+      next = advance(word, (word & STATE_MASK) + 1);
+    } while (!state.compareAndSet(word, next));
+    fireChannelChanged(ch + 1, sequence(next));
+    return ch + 1;
+  }
+
+  @Override
+  public int channelDown() {
+    long word;
+    long next;
+    int ch;
+    do {
+      word = readOn();
+      ch = channel(word);
+      if (ch <= 1) {
+        throw new IllegalStateException("INVALID_STATE");
+      }
+      next = advance(word, (word & STATE_MASK) - 1);
+    } while (!state.compareAndSet(word, next));
+    fireChannelChanged(ch - 1, sequence(next));
+    return ch - 1;
+  }
+
+  @Override
+  public boolean compareAndSet(TvSnapshot expected, boolean on, int channel) {
+    if (channel < 1 || channel > channels) {
+      throw new IllegalArgumentException("Channel out of range: " + channel);
+    }
+    long expectedState = (expected.isOn() ? ON_BIT : 0) | expected.channel();
+    long newState = (on ? ON_BIT : 0) | channel;
+    long word;
+    long next;
+    do {
+      word = state.get();
+      // Compare power and channel only: the sequence bits change with every write
+      if ((word & STATE_MASK) != expectedState) return false;
+      if (newState == expectedState) return true;
+      next = advance(word, newState);
+    } while (!state.compareAndSet(word, next));
+    int sequence = sequence(next);
+    if (on != expected.isOn()) {
+      for (TvListener l : listeners) l.powerChanged(on, sequence);
+    }
+    if (on && channel != expected.channel()) fireChannelChanged(channel, sequence);
+    return true;
+  }
+
+  @Override
+  public void addListener(TvListener listener) {
+    listeners.add(listener);
+  }
+
+  private void fireChannelChanged(int channel, int sequence) {
+    for (TvListener l : listeners) l.channelChanged(channel, sequence);
+  }
+}
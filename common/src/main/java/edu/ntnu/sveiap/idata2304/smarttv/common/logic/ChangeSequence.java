@@ -0,0 +1,46 @@
+package edu.ntnu.sveiap.idata2304.smarttv.common.logic;
+
+/**
+ * Numbers the changes of one TV, so listeners can put events back in order.
+ * Lock-free TVs keep the number in the same word as power and channel, so the
+ * compare-and-set that applies a change also takes the next number; the event for the
+ * change carries it. Events still reach listeners in whatever order the writing threads
+ * get there, but an event whose number is before one already seen is stale.
+ *
+ * <p>Numbers wrap at {@link #MODULUS}. Comparing by distance stays correct as long as
+ * fewer than half that many changes to the same TV are in flight at once.
+ */
+public final class ChangeSequence {
+  /** Bits a sequence number takes in a state word. */
+  public static final int BITS = 15;
+
+  /** Sequence numbers are in {@code [0, MODULUS)}. */
+  public static final int MODULUS = 1 << BITS;
+
+  private static final int MASK = MODULUS - 1;
+
+  private ChangeSequence() {
+  }
+
+  /**
+   * Returns the number that follows another.
+   *
+   * @param sequence A sequence number.
+   * @return The next number, wrapping to 0.
+   */
+  public static int next(int sequence) {
+    return (sequence + 1) & MASK;
+  }
+
+  /**
+   * Returns whether one change was made before another.
+   *
+   * @param sequence The number of the change in question.
+   * @param other The number to compare with.
+   * @return true if sequence comes strictly before other.
+   */
+  public static boolean isBefore(int sequence, int other) {
+    int distance = (other - sequence) & MASK;
+    return distance != 0 && distance < MODULUS / 2;
+  }
+}
@@ -0,0 +1,50 @@
+package edu.ntnu.sveiap.idata2304.smarttv.common.logic;
+
+/**
+ * Many TVs with the same channel count, addressed by index in {@code [0, size)}.
+ * Implementations decide how state is stored and who may write it; callers only see
+ * {@link TvControl} views, which must behave like {@link AtomicSmartTv}.
+ */
+public interface Fleet {
+
+  /**
+   * Returns the number of TVs in the fleet.
+   *
+   * @return The fleet size.
+   */
+  int size();
+
+  /**
+   * Returns the channel count shared by all TVs.
+   *
+   * @return The number of channels.
+   */
+  int getChannelRange();
+
+  /**
+   * Returns a view that controls one TV.
+   *
+   * @param id Index of the TV.
+   * @return The TV.
+   * @throws IllegalArgumentException if id is not in {@code [0, size)}.
+   */
+  TvControl tv(int id);
+
+  /**
+   * Registers a listener for changes to any TV of the fleet.
+   *
+   * @param listener The listener to add.
+   */
+  void addListener(FleetListener listener);
+
+  /**
+   * Wraps a single TV as a fleet of one, with index 0.
+   *
+   * @param tv The TV.
+   * @return A fleet holding only that TV.
+   * @throws IllegalArgumentException if tv is null.
+   */
+  static Fleet of(TvControl tv) {
+    return new SingleTvFleet(tv);
+  }
+}
@@ -0,0 +1,18 @@
+package edu.ntnu.sveiap.idata2304.smarttv.common.logic;
+
+/**
+ * Receives the ids of changed TVs from a {@link Fleet}.
+ * One listener covers the whole fleet, so watching a million TVs costs no per-TV objects.
+ * Like {@link TvListener}, callbacks run on the thread that made the change and must
+ * return quickly without blocking.
+ */
+@FunctionalInterface
+public interface FleetListener {
+
+  /**
+   * Called after the power state or channel of a TV changed.
+   *
+   * @param id Index of the TV.
+   */
+  void tvChanged(int id);
+}
@@ -0,0 +1,44 @@
+package edu.ntnu.sveiap.idata2304.smarttv.common.logic;
+
+/**
+ * A fleet holding one TV with index 0; see {@link Fleet#of(TvControl)}.
+ */
+final class SingleTvFleet implements Fleet {
+  private final TvControl tv;
+
+  SingleTvFleet(TvControl tv) {
+    if (tv == null) throw new IllegalArgumentException("tv cannot be null");
+    this.tv = tv;
+  }
+
+  @Override
+  public int size() {
+    return 1;
+  }
+
+  @Override
+  public int getChannelRange() {
+    return tv.getChannelRange();
+  }
+
+  @Override
+  public TvControl tv(int id) {
+    if (id != 0) throw new IllegalArgumentException("Unknown TV: " + id);
+    return tv;
+  }
+
+  @Override
+  public void addListener(FleetListener listener) {
+    tv.addListener(new TvListener() {
+      @Override
+      public void powerChanged(boolean on) {
+        listener.tvChanged(0);
+      }
+
+      @Override
+      public void channelChanged(int channel) {
+        listener.tvChanged(0);
+      }
+    });
+  }
+}
@@ -1,14 +1,27 @@
 package edu.ntnu.sveiap.idata2304.smarttv.common.logic;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 import edu.ntnu.sveiap.idata2304.smarttv.common.entity.TvState;
 
 /**
  * Logic for Smart TV operations.
  * This class will handle the main functionalities of the Smart TV,
  * such as turning on/off, changing channels, etc.
+ * All changes synchronize on the instance; see {@link AtomicSmartTv}
+ * for a lock-free alternative. Listeners are notified while the lock is held,
+ * so they see changes in the order they happened.
+ *
+ * <p>Every change publishes an immutable {@link TvSnapshot} before notifying listeners.
+ * Reads use the latest snapshot, a single volatile load, so they never wait for the lock
+ * and a client that reacts to an event always reads the state the event reported.
  */
-public class SmartTv {
+public class SmartTv implements TvControl {
   private final TvState tvState;
+  private final List<TvListener> listeners = new CopyOnWriteArrayList<>();
+  private final TvSnapshot.Table snapshots;
+  private volatile TvSnapshot snapshot;
 
   /**
    * Constructor for SmartTv.
@@ -18,20 +31,37 @@ public class SmartTv {
    */
   public SmartTv(int channels) {
     this.tvState = new TvState(channels);
+    this.snapshots = new TvSnapshot.Table(channels);
+    publish();
+  }
+
+  /**
+   * Publishes the current state to readers; called with the lock held after every change.
+   */
+  private void publish() {
+    snapshot = snapshots.get(tvState.isOn(), tvState.getCurrentChannel());
   }
 
   /**
    * Turns the TV on.
    */
+  @Override
   public synchronized void turnOn() {
+    if (tvState.isOn()) return;
     tvState.setOn(true);
+    publish();
+    for (TvListener l : listeners) l.powerChanged(true);
   }
 
   /**
    * Turns the TV off.
    */
+  @Override
   public synchronized void turnOff() {
+    if (!tvState.isOn()) return;
     tvState.setOn(false);
+    publish();
+    for (TvListener l : listeners) l.powerChanged(false);
   }
 
   /**
@@ -39,8 +69,9 @@ public class SmartTv {
    * 
    * @return true if the TV is on, false otherwise.
    */
-  public synchronized boolean isOn() {
-    return tvState.isOn();
+  @Override
+  public boolean isOn() {
+    return snapshot.isOn();
   }
 
   /**
@@ -48,8 +79,20 @@ public class SmartTv {
    * 
    * returns the number of channels.
    */
-  public synchronized int getNumberOfChannels() {
-    ensureOn();
+  @Override
+  public int getNumberOfChannels() {
+    return readOn().channels();
+  }
+
+  /**
+   * Gets the number of channels regardless of power state.
+   * Used to size lookup tables at startup; the protocol's CHANNELS command
+   * uses {@link #getNumberOfChannels()} instead.
+   *
+   * @return the number of channels.
+   */
+  @Override
+  public int getChannelRange() {
     return tvState.getChannelRange();
   }
 
@@ -58,19 +101,96 @@ public class SmartTv {
    * 
    * @return the current channel.
    */
-  public synchronized int getChannel() {
-    ensureOn();
-    return tvState.getCurrentChannel();
+  @Override
+  public int getChannel() {
+    return readOn().channel();
+  }
+
+  /**
+   * Gets the current or last channel regardless of power state.
+   *
+   * @return the current or last channel.
+   */
+  @Override
+  public int getLastChannel() {
+    return snapshot.channel();
+  }
+
+  /**
+   * Returns the state published by the last change.
+   *
+   * @return The current snapshot.
+   */
+  @Override
+  public TvSnapshot snapshot() {
+    return snapshot;
   }
 
   /**
    * Sets the current channel of the tv.
    * 
    * @param n The channel number to set.
+   * @return the channel after the change.
    */
-  public synchronized void setChannel(int n) {
+  @Override
+  public synchronized int setChannel(int n) {
     ensureOn();
     tvState.setCurrentChannel(n);
+    publish();
+    fireChannelChanged(n);
+    return n;
+  }
+
+  /**
+   * Sets power and channel under the lock if the TV is still in the expected state.
+   *
+   * @param expected The state the change was computed from.
+   * @param on The new power state.
+   * @param channel The new current or last channel.
+   * @return true if the state was set.
+   */
+  @Override
+  public synchronized boolean compareAndSet(TvSnapshot expected, boolean on, int channel) {
+    if (channel < 1 || channel > tvState.getChannelRange()) {
+      throw new IllegalArgumentException("Channel out of range: " + channel);
+    }
+    TvSnapshot current = snapshot;
+    if (current.isOn() != expected.isOn() || current.channel() != expected.channel()) {
+      return false;
+    }
+    tvState.setOn(on);
+    tvState.setCurrentChannel(channel);
+    publish();
+    if (on != current.isOn()) {
+      for (TvListener l : listeners) l.powerChanged(on);
+    }
+    if (on && channel != current.channel()) fireChannelChanged(channel);
+    return true;
+  }
+
+  /**
+   * Registers a listener for state changes.
+   *
+   * @param listener The listener to add.
+   */
+  @Override
+  public void addListener(TvListener listener) {
+    listeners.add(listener);
+  }
+
+  private void fireChannelChanged(int channel) {
+    for (TvListener l : listeners) l.channelChanged(channel);
+  }
+
+  /**
+   * Reads the latest snapshot and fails with TV_OFF if the TV is off.
+   */
+  private TvSnapshot readOn() {
+    TvSnapshot s = snapshot;
+    if (!s.isOn()) {
+      throw new IllegalStateException("TV_OFF");
+    }
+    return s;
   }
 
   /**
@@ -84,9 +204,11 @@ public class SmartTv {
 
   /**
    * Increases the current channel by 1.
+   * @return the channel after the change.
    * @throws IllegalArgumentException if the channel is already at the maximum.
    */
-  public synchronized void channelUp() {
+  @Override
+  public synchronized int channelUp() {
     ensureOn();
     int ch = tvState.getCurrentChannel();
     int max = tvState.getChannelRange();
@@ -94,19 +216,27 @@ public class SmartTv {
       throw new IllegalStateException("INVALID_STATE");
     }
     tvState.setCurrentChannel(ch + 1);
+    publish();
+    fireChannelChanged(ch + 1);
+    return ch + 1;
   }
 
   /**
    * Decreases the current channel by 1.
+   * @return the channel after the change.
    * @throws IllegalArgumentException if the channel is already at the minimum.
    */
-  public synchronized void channelDown() {
+  @Override
+  public synchronized int channelDown() {
     ensureOn();
     int ch = tvState.getCurrentChannel();
     if (ch <= 1) {
       throw new IllegalStateException("INVALID_STATE");
     }
     tvState.setCurrentChannel(ch - 1);
+    publish();
+    fireChannelChanged(ch - 1);
+    return ch - 1;
   }
 
 
@@ -0,0 +1,119 @@
+package edu.ntnu.sveiap.idata2304.smarttv.common.logic;
+
+/**
+ * Operations the server can perform on a TV.
+ * Implementations must be safe to call from many connections at once.
+ * Channel-changing operations return the resulting channel, so callers never need
+ * a second read that another client could race with.
+ */
+public interface TvControl {
+
+  /**
+   * Turns the TV on.
+   */
+  void turnOn();
+
+  /**
+   * Turns the TV off.
+   */
+  void turnOff();
+
+  /**
+   * Checks if the TV is on.
+   *
+   * @return true if the TV is on, false otherwise.
+   */
+  boolean isOn();
+
+  /**
+   * Gets the number of channels.
+   *
+   * @return the number of channels.
+   * @throws IllegalStateException with message "TV_OFF" if the TV is off.
+   */
+  int getNumberOfChannels();
+
+  /**
+   * Gets the number of channels regardless of power state.
+   *
+   * @return the number of channels.
+   */
+  int getChannelRange();
+
+  /**
+   * Gets the current channel.
+   *
+   * @return the current channel.
+   * @throws IllegalStateException with message "TV_OFF" if the TV is off.
+   */
+  int getChannel();
+
+  /**
+   * Gets the current channel, or the channel the TV returns to when turned on, regardless
+   * of power state. Used to save the state; the protocol's GET command uses
+   * {@link #getChannel()} instead.
+   *
+   * @return the current or last channel.
+   */
+  int getLastChannel();
+
+  /**
+   * Sets the current channel.
+   *
+   * @param n The channel number to set.
+   * @return the channel after the change.
+   * @throws IllegalStateException with message "TV_OFF" if the TV is off.
+   * @throws IllegalArgumentException if n is outside [1..channels].
+   */
+  int setChannel(int n);
+
+  /**
+   * Increases the current channel by 1.
+   *
+   * @return the channel after the change.
+   * @throws IllegalStateException "TV_OFF" if off, "INVALID_STATE" if already at the maximum.
+   */
+  int channelUp();
+
+  /**
+   * Decreases the current channel by 1.
+   *
+   * @return the channel after the change.
+   * @throws IllegalStateException "TV_OFF" if off, "INVALID_STATE" if already at the minimum.
+   */
+  int channelDown();
+
+  /**
+   * Returns power, channel and channel count as one consistent value, without taking a
+   * lock or failing while the TV is off. Read-only protocol commands are answered from it.
+   *
+   * <p>The default reads the values one by one and allocates; the implementations in this
+   * project override it with a single volatile read of an interned {@link TvSnapshot}.
+   *
+   * @return The current state.
+   */
+  default TvSnapshot snapshot() {
+    return TvSnapshot.of(isOn(), getLastChannel(), getChannelRange());
+  }
+
+  /**
+   * Sets power and channel in one step if the TV is still in the expected state, so a
+   * change computed from a {@link #snapshot()} never overwrites one another client made in
+   * between. Listeners hear the net change: the new power state if it differs, then the
+   * new channel if the TV is on and the channel differs.
+   *
+   * @param expected The state the change was computed from.
+   * @param on The new power state.
+   * @param channel The new current channel, or the last one if the TV is to be off.
+   * @return true if the state was set, false if it no longer matched expected.
+   * @throws IllegalArgumentException if channel is outside [1..channels].
+   */
+  boolean compareAndSet(TvSnapshot expected, boolean on, int channel);
+
+  /**
+   * Registers a listener for state changes.
+   *
+   * @param listener The listener to add.
+   */
+  void addListener(TvListener listener);
+}
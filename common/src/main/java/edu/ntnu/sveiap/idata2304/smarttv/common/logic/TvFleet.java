@@ -0,0 +1,350 @@
+package edu.ntnu.sveiap.idata2304.smarttv.common.logic;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Many Smart TVs with the same channel count, stored as arrays instead of one object per TV.
+ * The state of TV {@code id} is the little-endian int at byte {@code 4 * id} of a direct
+ * {@link ByteBuffer}: bit 31 is the power bit, the low 16 bits hold the channel minus one and
+ * the bits in between hold the {@link ChangeSequence} number of the last change, so a zeroed
+ * slot is a TV that is off on channel 1. A million TVs take 4 MB of state plus one
+ * listener slot each. The buffer may be a memory-mapped file, which makes the state itself
+ * persistent (see {@link #TvFleet(ByteBuffer, int)}).
+ *
+ * <p>TVs are addressed by index in {@code [0, size)}; {@link #tv(int)} returns a
+ * {@link TvControl} view that behaves exactly like {@link AtomicSmartTv}, including
+ * exception types and messages. Views are cheap and hold no state of their own.
+ *
+ * <p>Listeners are kept per TV in a copy-on-write array, so firing an event does not
+ * allocate and TVs without listeners cost a single null slot. {@link FleetListener}s see
+ * changes to every TV. Listeners are notified after the compare-and-set succeeds, through
+ * the sequenced callbacks of {@link TvListener}, so concurrent changes to one TV may arrive
+ * in either order but can be put back in order by their numbers.
+ */
+public final class TvFleet implements Fleet {
+  /** Bytes of state per TV. */
+  public static final int STATE_BYTES = Integer.BYTES;
+
+  /** Most channels a TV of a fleet can have. */
+  public static final int MAX_CHANNELS = 1 << 16;
+
+  private static final VarHandle STATE =
+      MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+  private static final int ON_BIT = 1 << 31;
+  private static final int CHANNEL_MASK = MAX_CHANNELS - 1;
+  private static final int STATE_MASK = ON_BIT | CHANNEL_MASK;
+  private static final int SEQUENCE_SHIFT = 16;
+  private static final TvListener[] NO_LISTENERS = new TvListener[0];
+  private static final FleetListener[] NO_FLEET_LISTENERS = new FleetListener[0];
+
+  private final int channels;
+  private final TvSnapshot.Table snapshots;
+  private final ByteBuffer states;
+  private final int size;
+  private final AtomicReferenceArray<TvListener[]> listeners;
+  private volatile FleetListener[] fleetListeners = NO_FLEET_LISTENERS;
+
+  /**
+   * Creates a fleet. Every TV starts off, on channel 1.
+   *
+   * @param size Number of TVs.
+   * @param channels The maximum number of channels available on each TV.
+   * @throws IllegalArgumentException if size or channels is less than 1, or channels is
+   *     more than {@link #MAX_CHANNELS}.
+   */
+  public TvFleet(int size, int channels) {
+    this(ByteBuffer.allocateDirect(checkSize(size) * STATE_BYTES), channels);
+  }
+
+  /**
+   * Creates a fleet over existing state, one {@link #STATE_BYTES} slot per TV from the
+   * buffer's position to its limit. The buffer is used as is, not copied: the TVs start in
+   * whatever state it holds and every change is written straight into it.
+   *
+   * @param states A direct buffer, e.g. a region of a memory-mapped file.
+   * @param channels The maximum number of channels available on each TV.
+   * @throws IllegalArgumentException if the buffer is not direct or holds no whole slot,
+   *     or channels is less than 1 or more than {@link #MAX_CHANNELS}.
+   */
+  public TvFleet(ByteBuffer states, int channels) {
+    if (!states.isDirect()) throw new IllegalArgumentException("states must be a direct buffer");
+    if (channels < 1) throw new IllegalArgumentException("There must be at least one channel.");
+    if (channels > MAX_CHANNELS) {
+      throw new IllegalArgumentException("At most " + MAX_CHANNELS + " channels per TV.");
+    }
+    this.states = states.slice();
+    this.size = checkSize(this.states.capacity() / STATE_BYTES);
+    this.channels = channels;
+    this.snapshots = new TvSnapshot.Table(channels);
+    this.listeners = new AtomicReferenceArray<>(size);
+  }
+
+  private static int checkSize(int size) {
+    if (size < 1) throw new IllegalArgumentException("There must be at least one TV.");
+    return size;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public int getChannelRange() {
+    return channels;
+  }
+
+  @Override
+  public TvControl tv(int id) {
+    if (id < 0 || id >= size()) throw new IllegalArgumentException("Unknown TV: " + id);
+    return new Tv(id);
+  }
+
+  @Override
+  public synchronized void addListener(FleetListener listener) {
+    FleetListener[] next = Arrays.copyOf(fleetListeners, fleetListeners.length + 1);
+    next[fleetListeners.length] = listener;
+    fleetListeners = next;
+  }
+
+  private int get(int id) {
+    return (int) STATE.getVolatile(states, id * STATE_BYTES);
+  }
+
+  private boolean compareAndSet(int id, int expected, int word) {
+    return STATE.compareAndSet(states, id * STATE_BYTES, expected, word);
+  }
+
+  private static boolean on(int word) {
+    return (word & ON_BIT) != 0;
+  }
+
+  private static int channel(int word) {
+    return (word & CHANNEL_MASK) + 1;
+  }
+
+  private static int sequence(int word) {
+    return (word & ~ON_BIT) >>> SEQUENCE_SHIFT;
+  }
+
+  /**
+   * Returns the given power and channel bits numbered as the change after word.
+   */
+  private static int advance(int word, int state) {
+    return state | ChangeSequence.next(sequence(word)) << SEQUENCE_SHIFT;
+  }
+
+  /**
+   * Reads the state of a TV and fails with TV_OFF if it is off.
+   */
+  private int readOn(int id) {
+    int word = get(id);
+    if (!on(word)) {
+      throw new IllegalStateException("TV_OFF");
+    }
+    return word;
+  }
+
+  private void turnOn(int id) {
+    int word;
+    int next;
+    do {
+      word = get(id);
+      if (on(word)) return;
+      next = advance(word, (word & STATE_MASK) | ON_BIT);
+    } while (!compareAndSet(id, word, next));
+    firePowerChanged(id, true, sequence(next));
+  }
+
+  private void turnOff(int id) {
+    int word;
+    int next;
+    do {
+      word = get(id);
+      if (!on(word)) return;
+      next = advance(word, word & CHANNEL_MASK);
+    } while (!compareAndSet(id, word, next));
+    firePowerChanged(id, false, sequence(next));
+  }
+
+  private int setChannel(int id, int n) {
+    int word;
+    int next;
+    do {
+      word = readOn(id);
+      if (n < 1 || n > channels) {
+        throw new IllegalArgumentException("Channel out of range: " + n);
+      }
+      next = advance(word, ON_BIT | (n - 1));
+    } while (!compareAndSet(id, word, next));
+    fireChannelChanged(id, n, sequence(next));
+    return n;
+  }
+
+  private int channelUp(int id) {
+    int word;
+    int next;
+    int ch;
+    do {
+      word = readOn(id);
+      ch = channel(word);
+      if (ch >= channels) {
+        throw new IllegalStateException("INVALID_STATE");
+      }
+      next = advance(word, (word & STATE_MASK) + 1);
+    } while (!compareAndSet(id, word, next));
+    fireChannelChanged(id, ch + 1, sequence(next));
+    return ch + 1;
+  }
+
+  private int channelDown(int id) {
+    int word;
+    int next;
+    int ch;
+    do {
+      word = readOn(id);
+      ch = channel(word);
+      if (ch <= 1) {
+        throw new IllegalStateException("INVALID_STATE");
+      }
+      next = advance(word, (word & STATE_MASK) - 1);
+    } while (!compareAndSet(id, word, next));
+    fireChannelChanged(id, ch - 1, sequence(next));
+    return ch - 1;
+  }
+
+  private boolean compareAndSet(int id, TvSnapshot expected, boolean on, int channel) {
+    if (channel < 1 || channel > channels) {
+      throw new IllegalArgumentException("Channel out of range: " + channel);
+    }
+    int expectedState = (expected.isOn() ? ON_BIT : 0) | (expected.channel() - 1);
+    int newState = (on ? ON_BIT : 0) | (channel - 1);
+    int word;
+    int next;
+    do {
+      word = get(id);
+      // Compare power and channel only: the sequence bits change with every write
+      if ((word & STATE_MASK) != expectedState) return false;
+      if (newState == expectedState) return true;
+      next = advance(word, newState);
+    } while (!compareAndSet(id, word, next));
+    int sequence = sequence(next);
+    if (on != expected.isOn()) {
+      for (TvListener l : listenersOf(id)) l.powerChanged(on, sequence);
+    }
+    if (on && channel != expected.channel()) {
+      for (TvListener l : listenersOf(id)) l.channelChanged(channel, sequence);
+    }
+    for (FleetListener l : fleetListeners) l.tvChanged(id);
+    return true;
+  }
+
+  private void addListener(int id, TvListener listener) {
+    TvListener[] current;
+    TvListener[] next;
+    do {
+      current = listeners.get(id);
+      TvListener[] base = current == null ? NO_LISTENERS : current;
+      next = Arrays.copyOf(base, base.length + 1);
+      next[base.length] = listener;
+    } while (!listeners.compareAndSet(id, current, next));
+  }
+
+  private TvListener[] listenersOf(int id) {
+    TvListener[] l = listeners.get(id);
+    return l == null ? NO_LISTENERS : l;
+  }
+
+  private void firePowerChanged(int id, boolean on, int sequence) {
+    for (TvListener l : listenersOf(id)) l.powerChanged(on, sequence);
+    for (FleetListener l : fleetListeners) l.tvChanged(id);
+  }
+
+  private void fireChannelChanged(int id, int channel, int sequence) {
+    for (TvListener l : listenersOf(id)) l.channelChanged(channel, sequence);
+    for (FleetListener l : fleetListeners) l.tvChanged(id);
+  }
+
+  /**
+   * One TV of the fleet. Holds only the index; all state lives in the fleet's arrays.
+   */
+  private final class Tv implements TvControl {
+    private final int id;
+
+    Tv(int id) {
+      this.id = id;
+    }
+
+    @Override
+    public void turnOn() {
+      TvFleet.this.turnOn(id);
+    }
+
+    @Override
+    public void turnOff() {
+      TvFleet.this.turnOff(id);
+    }
+
+    @Override
+    public boolean isOn() {
+      return on(get(id));
+    }
+
+    @Override
+    public int getNumberOfChannels() {
+      readOn(id);
+      return channels;
+    }
+
+    @Override
+    public int getChannelRange() {
+      return channels;
+    }
+
+    @Override
+    public int getChannel() {
+      return channel(readOn(id));
+    }
+
+    @Override
+    public int getLastChannel() {
+      return channel(get(id));
+    }
+
+    @Override
+    public TvSnapshot snapshot() {
+      int word = get(id);
+      return snapshots.get(on(word), channel(word));
+    }
+
+    @Override
+    public int setChannel(int n) {
+      return TvFleet.this.setChannel(id, n);
+    }
+
+    @Override
+    public int channelUp() {
+      return TvFleet.this.channelUp(id);
+    }
+
+    @Override
+    public int channelDown() {
+      return TvFleet.this.channelDown(id);
+    }
+
+    @Override
+    public boolean compareAndSet(TvSnapshot expected, boolean on, int channel) {
+      return TvFleet.this.compareAndSet(id, expected, on, channel);
+    }
+
+    @Override
+    public void addListener(TvListener listener) {
+      TvFleet.this.addListener(id, listener);
+    }
+  }
+}
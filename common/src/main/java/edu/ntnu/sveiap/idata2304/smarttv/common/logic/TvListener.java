@@ -0,0 +1,49 @@
+package edu.ntnu.sveiap.idata2304.smarttv.common.logic;
+
+/**
+ * Receives state changes from a {@link TvControl}.
+ * Callbacks run on the thread that made the change and must return quickly
+ * without blocking; hand the work off instead of doing I/O here.
+ *
+ * <p>Lock-free TVs call the sequenced variants, which carry the {@link ChangeSequence}
+ * number of the change. Concurrent changes may reach a listener in a different order than
+ * they were applied; a listener that keeps only the latest state drops events older than
+ * the last one it took. The defaults ignore the number.
+ */
+public interface TvListener {
+
+  /**
+   * Called after the TV was turned on or off. Not called for ON while on or OFF while off.
+   *
+   * @param on The new power state.
+   */
+  void powerChanged(boolean on);
+
+  /**
+   * Called after SET, UP or DOWN succeeded.
+   *
+   * @param channel The current channel after the change.
+   */
+  void channelChanged(int channel);
+
+  /**
+   * Called instead of {@link #powerChanged(boolean)} by TVs that number their changes.
+   *
+   * @param on The new power state.
+   * @param sequence The number of the change.
+   */
+  default void powerChanged(boolean on, int sequence) {
+    powerChanged(on);
+  }
+
+  /**
+   * Called instead of {@link #channelChanged(int)} by TVs that number their changes.
+   * A change that turns the TV on and sets the channel fires both events with one number.
+   *
+   * @param channel The current channel after the change.
+   * @param sequence The number of the change.
+   */
+  default void channelChanged(int channel, int sequence) {
+    channelChanged(channel);
+  }
+}
@@ -0,0 +1,104 @@
+package edu.ntnu.sveiap.idata2304.smarttv.common.logic;
+
+/**
+ * An immutable copy of a TV's power state, channel and channel count, taken in one step
+ * so the values always belong together.
+ *
+ * <p>A TV has only {@code 2 * channels} states, so snapshots are interned in a
+ * {@link Table} built once per channel count: publishing or reading one never allocates,
+ * and two snapshots of the same state are the same object.
+ */
+public final class TvSnapshot {
+  private final boolean on;
+  private final int channel;
+  private final int channels;
+
+  private TvSnapshot(boolean on, int channel, int channels) {
+    this.on = on;
+    this.channel = channel;
+    this.channels = channels;
+  }
+
+  /**
+   * Creates a snapshot that is not interned. Prefer {@link Table#get(boolean, int)}.
+   *
+   * @param on Whether the TV is on.
+   * @param channel The current channel, or the last one while off.
+   * @param channels The number of channels.
+   * @return The snapshot.
+   */
+  public static TvSnapshot of(boolean on, int channel, int channels) {
+    return new TvSnapshot(on, channel, channels);
+  }
+
+  /**
+   * Returns whether the TV is on.
+   *
+   * @return true if on.
+   */
+  public boolean isOn() {
+    return on;
+  }
+
+  /**
+   * Returns the current channel, or the channel the TV returns to when turned on.
+   *
+   * @return The channel.
+   */
+  public int channel() {
+    return channel;
+  }
+
+  /**
+   * Returns the number of channels.
+   *
+   * @return The channel count.
+   */
+  public int channels() {
+    return channels;
+  }
+
+  @Override
+  public String toString() {
+    return "TvSnapshot[" + (on ? "ON" : "OFF") + ", channel=" + channel + "/" + channels + "]";
+  }
+
+  /**
+   * Every snapshot of a TV with a given channel count, built up front.
+   */
+  public static final class Table {
+    private final int channels;
+    private final TvSnapshot[] off;
+    private final TvSnapshot[] on;
+
+    /**
+     * Builds the table.
+     *
+     * @param channels The number of channels.
+     * @throws IllegalArgumentException if channels is less than 1.
+     */
+    public Table(int channels) {
+      if (channels < 1) throw new IllegalArgumentException("There must be at least one channel.");
+      this.channels = channels;
+      this.off = new TvSnapshot[channels + 1];
+      this.on = new TvSnapshot[channels + 1];
+      for (int ch = 1; ch <= channels; ch++) {
+        off[ch] = new TvSnapshot(false, ch, channels);
+        on[ch] = new TvSnapshot(true, ch, channels);
+      }
+    }
+
+    /**
+     * Returns the snapshot of a state. Channels outside {@code [1..channels]} (only found in
+     * corrupt saved state) get a new snapshot instead of failing.
+     *
+     * @param isOn Whether the TV is on.
+     * @param channel The current or last channel.
+     * @return The shared snapshot.
+     */
+    public TvSnapshot get(boolean isOn, int channel) {
+      if (channel < 1 || channel > channels) return new TvSnapshot(isOn, channel, channels);
+      return isOn ? on[channel] : off[channel];
+    }
+  }
+}
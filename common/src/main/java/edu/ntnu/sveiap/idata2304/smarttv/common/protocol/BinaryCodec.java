@@ -0,0 +1,380 @@
+package edu.ntnu.sveiap.idata2304.smarttv.common.protocol;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Codec for the compact binary framing of the Smart TV protocol.
+ * A client selects it by sending {@link #HANDSHAKE} as its first line; the server answers
+ * {@code OK PROTO=BIN} in text and both sides use binary frames from then on.
+ *
+ * <p>A request is a one-byte opcode, followed by the argument as a varint for the commands
+ * that take one (SET, USE). A reply or event is a one-byte status, followed by a varint
+ * value for the statuses that carry one. Varints are unsigned LEB128 of the 32-bit value,
+ * so negative arguments take five bytes.
+ *
+ * <p>Status ranges: {@code 0x00-0x3F} OK, {@code 0x40-0x7F} ERR, {@code 0x80-0xFF} EVT.
+ * Every frame maps to exactly one text line; {@link #readReply(InputStream)} returns that
+ * line, so callers see the same replies whichever framing is used.
+ */
+public final class BinaryCodec {
+
+  // Prevent instantiation
+  private BinaryCodec() {
+  }
+
+  /** The line that switches a connection to binary framing. */
+  public static final String HANDSHAKE = "PROTO BIN";
+
+  /** Returned by {@link #readRequest} when the stream ends between frames. */
+  public static final int END_OF_STREAM = -1;
+
+  /**
+   * Opcode of a request the client could not encode. It has no argument, so the server
+   * can answer BAD_COMMAND and read on.
+   */
+  public static final int OP_INVALID = 0x00;
+
+  // Reply statuses
+  public static final int OK = 0x00;
+  public static final int OK_ON = 0x01;
+  public static final int OK_OFF = 0x02;
+  public static final int OK_CHANNELS = 0x03;
+  public static final int OK_CHANNEL = 0x04;
+  public static final int OK_TV = 0x05;
+  public static final int OK_PONG = 0x06;
+  public static final int OK_STATS = 0x07;
+  public static final int ERR_BAD_COMMAND = 0x40;
+  public static final int ERR_LINE_TOO_LONG = 0x41;
+  public static final int ERR_TV_OFF = 0x42;
+  public static final int ERR_OUT_OF_RANGE = 0x43;
+  public static final int ERR_INVALID_STATE = 0x44;
+  public static final int ERR_SERVER_ERROR = 0x45;
+  public static final int ERR_RATE_LIMITED = 0x46;
+  public static final int EVT_POWER_ON = 0x80;
+  public static final int EVT_POWER_OFF = 0x81;
+  public static final int EVT_CHANNEL = 0x82;
+
+  private static final int ERR_BASE = 0x40;
+  private static final int MAX_VARINT_BYTES = 5;
+
+  // Wire opcodes, fixed so reordering Command does not change the protocol
+  private static final Command[] BY_OPCODE = {
+    null, Command.ON, Command.OFF, Command.STATUS, Command.CHANNELS, Command.GET, Command.SET,
+    Command.UP, Command.DOWN, Command.SUB, Command.UNSUB, Command.PING, Command.STATS, Command.USE,
+    Command.MULTI, Command.EXEC
+  };
+  private static final int[] OPCODES = new int[Command.values().length];
+
+  static {
+    for (int op = 1; op < BY_OPCODE.length; op++) {
+      OPCODES[BY_OPCODE[op].ordinal()] = op;
+    }
+  }
+
+  /**
+   * Checks whether a text line is the binary handshake. Case and surrounding whitespace
+   * are ignored, as for commands.
+   *
+   * @param line The line, without CRLF.
+   * @return true for {@code PROTO BIN}.
+   */
+  public static boolean isHandshake(String line) {
+    if (line == null) return false;
+    String[] parts = line.trim().split("\\s+");
+    return parts.length == 2 && parts[0].equalsIgnoreCase("PROTO") && parts[1].equalsIgnoreCase("BIN");
+  }
+
+  /**
+   * Returns the wire opcode of a command.
+   *
+   * @param cmd The command.
+   * @return The opcode, from 1.
+   */
+  public static int opcode(Command cmd) {
+    return OPCODES[cmd.ordinal()];
+  }
+
+  /**
+   * Writes a request frame. The argument is only written for commands that take one.
+   *
+   * @param out Where to write; not flushed.
+   * @param cmd The command.
+   * @param arg The argument; ignored unless {@link Command#takesArgument()}.
+   * @throws IOException if writing fails.
+   */
+  public static void writeRequest(OutputStream out, Command cmd, int arg) throws IOException {
+    out.write(opcode(cmd));
+    if (cmd.takesArgument()) writeVarint(out, arg);
+  }
+
+  /**
+   * Reads one request frame.
+   * An unknown opcode or an argument longer than 32 bits is consumed whole, so the next
+   * frame can still be read after the error is answered.
+   *
+   * @param in Where to read from.
+   * @param out Receives the command and argument when reading succeeds.
+   * @return {@link Codec#PARSE_OK}, {@link Codec#PARSE_UNKNOWN_CMD},
+   *     {@link Codec#PARSE_ARG_NOT_INT} or {@link #END_OF_STREAM}.
+   * @throws EOFException if the stream ends inside a frame.
+   * @throws IOException if reading fails.
+   */
+  public static int readRequest(InputStream in, ParsedRequest out) throws IOException {
+    int op = in.read();
+    if (op < 0) return END_OF_STREAM;
+    Command cmd = op < BY_OPCODE.length ? BY_OPCODE[op] : null;
+    if (cmd == null) return Codec.PARSE_UNKNOWN_CMD;
+    if (!cmd.takesArgument()) {
+      out.set(cmd, 0, false);
+      return Codec.PARSE_OK;
+    }
+    int value = 0;
+    boolean tooLong = false;
+    int b;
+    int i = 0;
+    do {
+      b = in.read();
+      if (b < 0) throw new EOFException("Stream ended inside a frame");
+      if (i < MAX_VARINT_BYTES - 1) {
+        value |= (b & 0x7F) << (7 * i);
+      } else if (i == MAX_VARINT_BYTES - 1 && (b & 0x70) == 0) {
+        value |= (b & 0x0F) << 28;
+      } else {
+        tooLong = true;
+      }
+      i++;
+    } while ((b & 0x80) != 0);
+    if (tooLong) return Codec.PARSE_ARG_NOT_INT;
+    out.set(cmd, value, true);
+    return Codec.PARSE_OK;
+  }
+
+  /**
+   * Reads one reply or event frame and returns it as the equivalent text line.
+   *
+   * @param in Where to read from.
+   * @return The line without CRLF, e.g. {@code OK CH=7}, or null if the stream ends
+   *     between frames.
+   * @throws EOFException if the stream ends inside a frame.
+   * @throws IOException if reading fails or the status is unknown.
+   */
+  public static String readReply(InputStream in) throws IOException {
+    int status = in.read();
+    if (status < 0) return null;
+    String line = switch (status) {
+      case OK -> Codec.ok();
+      case OK_ON -> Codec.okStatus(true);
+      case OK_OFF -> Codec.okStatus(false);
+      case OK_CHANNELS -> Codec.okChannels(readVarint(in));
+      case OK_CHANNEL -> Codec.okChannel(readVarint(in));
+      case OK_TV -> Codec.okTv(readVarint(in));
+      case OK_PONG -> Codec.okPong();
+      case OK_STATS -> "OK " + readText(in);
+      case ERR_BAD_COMMAND -> Codec.errBadCommand();
+      case ERR_LINE_TOO_LONG -> Codec.errLineTooLong();
+      case ERR_TV_OFF -> Codec.errTvOff();
+      case ERR_OUT_OF_RANGE -> Codec.errOutOfRange();
+      case ERR_INVALID_STATE -> Codec.errInvalidState();
+      case ERR_SERVER_ERROR -> Codec.errServerError();
+      case ERR_RATE_LIMITED -> Codec.errRateLimited();
+      case EVT_POWER_ON -> Codec.evtPowerOn();
+      case EVT_POWER_OFF -> Codec.evtPowerOff();
+      case EVT_CHANNEL -> Codec.evtChannel(readVarint(in));
+      default -> throw new IOException("Unknown reply status 0x" + Integer.toHexString(status));
+    };
+    return line.endsWith("\r\n") ? line.substring(0, line.length() - 2) : line;
+  }
+
+  /**
+   * Checks whether the first byte of a binary reply is an OK status.
+   *
+   * @param status The status byte.
+   * @return true for {@code 0x00-0x3F}.
+   */
+  public static boolean isOk(byte status) {
+    return (status & 0xFF) < ERR_BASE;
+  }
+
+  // Replies, encoded per call; the server takes them from a binary EncodedReplies table
+
+  /** @return the binary form of {@link Codec#ok()}. */
+  public static byte[] ok() {
+    return new byte[] {OK};
+  }
+
+  /**
+   * Encodes a status reply.
+   *
+   * @param on The current power state of the TV.
+   * @return The encoded reply.
+   */
+  public static byte[] okStatus(boolean on) {
+    return new byte[] {(byte) (on ? OK_ON : OK_OFF)};
+  }
+
+  /**
+   * Encodes a channels reply.
+   *
+   * @param c The number of channels available on the TV.
+   * @return The encoded reply.
+   */
+  public static byte[] okChannels(int c) {
+    return frame(OK_CHANNELS, c);
+  }
+
+  /**
+   * Encodes a channel reply.
+   *
+   * @param ch The current channel of the TV.
+   * @return The encoded reply.
+   */
+  public static byte[] okChannel(int ch) {
+    return frame(OK_CHANNEL, ch);
+  }
+
+  /**
+   * Encodes a USE reply.
+   *
+   * @param id The TV the session now controls.
+   * @return The encoded reply.
+   */
+  public static byte[] okTv(int id) {
+    return frame(OK_TV, id);
+  }
+
+  /** @return the binary form of {@link Codec#okPong()}. */
+  public static byte[] okPong() {
+    return new byte[] {OK_PONG};
+  }
+
+  /**
+   * Encodes a server statistics reply: the status, a varint length and the same
+   * {@code UP=.. CONN=..} text as {@link Codec#okStats}.
+   *
+   * @param uptimeSeconds Seconds since the server started.
+   * @param connections Currently open connections.
+   * @param requestsPerSecond Recent request rate.
+   * @param p50Micros Median request handling time in microseconds.
+   * @param p99Micros 99th percentile request handling time in microseconds.
+   * @param commandCounts Requests per command, in the order they should be listed.
+   * @return The encoded reply.
+   */
+  public static byte[] okStats(long uptimeSeconds, long connections, long requestsPerSecond,
+      long p50Micros, long p99Micros, Map<Command, Long> commandCounts) {
+    String line = Codec.okStats(uptimeSeconds, connections, requestsPerSecond, p50Micros,
+        p99Micros, commandCounts);
+    byte[] text = line.substring("OK ".length(), line.length() - 2).getBytes(StandardCharsets.US_ASCII);
+    byte[] head = frame(OK_STATS, text.length);
+    byte[] reply = new byte[head.length + text.length];
+    System.arraycopy(head, 0, reply, 0, head.length);
+    System.arraycopy(text, 0, reply, head.length, text.length);
+    return reply;
+  }
+
+  /** @return the binary form of {@link Codec#errBadCommand()}. */
+  public static byte[] errBadCommand() {
+    return new byte[] {ERR_BAD_COMMAND};
+  }
+
+  /** @return the binary form of {@link Codec#errLineTooLong()}. */
+  public static byte[] errLineTooLong() {
+    return new byte[] {ERR_LINE_TOO_LONG};
+  }
+
+  /** @return the binary form of {@link Codec#errTvOff()}. */
+  public static byte[] errTvOff() {
+    return new byte[] {ERR_TV_OFF};
+  }
+
+  /** @return the binary form of {@link Codec#errOutOfRange()}. */
+  public static byte[] errOutOfRange() {
+    return new byte[] {ERR_OUT_OF_RANGE};
+  }
+
+  /** @return the binary form of {@link Codec#errInvalidState()}. */
+  public static byte[] errInvalidState() {
+    return new byte[] {ERR_INVALID_STATE};
+  }
+
+  /** @return the binary form of {@link Codec#errServerError()}. */
+  public static byte[] errServerError() {
+    return new byte[] {ERR_SERVER_ERROR};
+  }
+
+  /** @return the binary form of {@link Codec#errRateLimited()}. */
+  public static byte[] errRateLimited() {
+    return new byte[] {ERR_RATE_LIMITED};
+  }
+
+  /**
+   * Encodes a channel change event.
+   *
+   * @param ch The new channel of the TV.
+   * @return The encoded event.
+   */
+  public static byte[] evtChannel(int ch) {
+    return frame(EVT_CHANNEL, ch);
+  }
+
+  /** @return the binary form of {@link Codec#evtPowerOn()}. */
+  public static byte[] evtPowerOn() {
+    return new byte[] {(byte) EVT_POWER_ON};
+  }
+
+  /** @return the binary form of {@link Codec#evtPowerOff()}. */
+  public static byte[] evtPowerOff() {
+    return new byte[] {(byte) EVT_POWER_OFF};
+  }
+
+  private static byte[] frame(int status, int value) {
+    byte[] out = new byte[1 + varintLength(value)];
+    out[0] = (byte) status;
+    int i = 1;
+    int v = value;
+    while ((v & ~0x7F) != 0) {
+      out[i++] = (byte) ((v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    out[i] = (byte) v;
+    return out;
+  }
+
+  private static int varintLength(int value) {
+    int n = 1;
+    for (int v = value >>> 7; v != 0; v >>>= 7) n++;
+    return n;
+  }
+
+  private static void writeVarint(OutputStream out, int value) throws IOException {
+    int v = value;
+    while ((v & ~0x7F) != 0) {
+      out.write((v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    out.write(v);
+  }
+
+  private static int readVarint(InputStream in) throws IOException {
+    int value = 0;
+    for (int i = 0; i < MAX_VARINT_BYTES; i++) {
+      int b = in.read();
+      if (b < 0) throw new EOFException("Stream ended inside a frame");
+      value |= (b & 0x7F) << (7 * i);
+      if ((b & 0x80) == 0) return value;
+    }
+    throw new IOException("Varint longer than 32 bits");
+  }
+
+  private static String readText(InputStream in) throws IOException {
+    int length = readVarint(in);
+    if (length < 0) throw new IOException("Negative text length");
+    byte[] text = in.readNBytes(length);
+    if (text.length < length) throw new EOFException("Stream ended inside a frame");
+    return new String(text, StandardCharsets.US_ASCII);
+  }
+}
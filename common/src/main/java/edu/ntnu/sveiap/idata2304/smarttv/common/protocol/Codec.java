@@ -1,6 +1,9 @@
 package edu.ntnu.sveiap.idata2304.smarttv.common.protocol;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Locale;
+import java.util.Map;
 
 /**
  * Codec for encoding and decoding requests and responses in the Smart TV protocol.
@@ -13,6 +16,29 @@ public final class Codec {
 
   private static final String CRLF = "\r\n";
 
+  // Result codes of the byte-level parser
+  public static final int PARSE_OK = 0;
+  public static final int PARSE_EMPTY_LINE = 1;
+  public static final int PARSE_LINE_TOO_LONG = 2;
+  public static final int PARSE_UNKNOWN_CMD = 3;
+  public static final int PARSE_ARG_COUNT = 4;
+  public static final int PARSE_ARG_NOT_INT = 5;
+  public static final int PARSE_EXTRA_ARGS = 6;
+
+  private static final String[] PARSE_REASONS = {
+    "OK", "EMPTY_LINE", "LINE_TOO_LONG", "UNKNOWN_CMD", "ARG_COUNT", "ARG_NOT_INT", "EXTRA_ARGS"
+  };
+
+  // Command names as upper-case ASCII, indexed by ordinal
+  private static final Command[] COMMANDS = Command.values();
+  private static final byte[][] COMMAND_TOKENS = new byte[COMMANDS.length][];
+
+  static {
+    for (Command c : COMMANDS) {
+      COMMAND_TOKENS[c.ordinal()] = c.name().getBytes(StandardCharsets.US_ASCII);
+    }
+  }
+
   /**
    * Parses a line of text into a Request object.
    * The line should contain a command and optionally an argument.
@@ -40,24 +66,182 @@ public final class Codec {
 
     Integer arg = null;
 
-    switch (cmd) {
-      case SET -> {
-        if (parts.length != 2) throw new IllegalArgumentException("ARG_COUNT");
-        try {
-          arg = Integer.parseInt(parts[1]);
-        } catch (NumberFormatException nfe) {
-          throw new IllegalArgumentException("ARG_NOT_INT");
-        }
-      }
-      default -> {
-        // All current non-SET commands forbid extra args.
-        if (parts.length != 1) throw new IllegalArgumentException("EXTRA_ARGS");
+    if (cmd.takesArgument()) {
+      if (parts.length != 2) throw new IllegalArgumentException("ARG_COUNT");
+      try {
+        arg = Integer.parseInt(parts[1]);
+      } catch (NumberFormatException nfe) {
+        throw new IllegalArgumentException("ARG_NOT_INT");
       }
+    } else if (parts.length != 1) {
+      // Commands without an argument forbid extra args.
+      throw new IllegalArgumentException("EXTRA_ARGS");
     }
 
     return new Request(cmd, arg);
   }
 
+  /**
+   * Parses a line held in a byte array without allocating.
+   * Accepts the same input as {@link #parseRequest(String)}, but reports problems
+   * through a result code instead of an exception.
+   *
+   * @param buf The bytes holding the line (without CRLF).
+   * @param off Offset of the first byte of the line.
+   * @param len Number of bytes in the line.
+   * @param out Receives the command and argument when parsing succeeds.
+   * @return {@link #PARSE_OK} or one of the {@code PARSE_*} error codes.
+   */
+  public static int parseRequest(byte[] buf, int off, int len, ParsedRequest out) {
+    return parse(buf, null, off, off + len, out);
+  }
+
+  /**
+   * Parses the bytes between position and limit of a buffer without allocating.
+   * The buffer's position and limit are not changed.
+   *
+   * @param buf The buffer holding the line (without CRLF).
+   * @param out Receives the command and argument when parsing succeeds.
+   * @return {@link #PARSE_OK} or one of the {@code PARSE_*} error codes.
+   */
+  public static int parseRequest(ByteBuffer buf, ParsedRequest out) {
+    if (buf.hasArray()) {
+      return parse(buf.array(), null, buf.arrayOffset() + buf.position(),
+          buf.arrayOffset() + buf.limit(), out);
+    }
+    return parse(null, buf, buf.position(), buf.limit(), out);
+  }
+
+  /**
+   * Returns the reason token for a parse result code, matching the messages
+   * thrown by {@link #parseRequest(String)}.
+   *
+   * @param code A {@code PARSE_*} result code.
+   * @return The reason token, e.g. "UNKNOWN_CMD".
+   */
+  public static String parseErrorReason(int code) {
+    return PARSE_REASONS[code];
+  }
+
+  /**
+   * Parser shared by the array and buffer variants. Exactly one of array and buffer is
+   * non-null; bytes are read from [start, end).
+   */
+  private static int parse(byte[] array, ByteBuffer buffer, int start, int end, ParsedRequest out) {
+    // Trim, like String.trim()
+    while (start < end && isTrimmed(at(array, buffer, start))) start++;
+    while (end > start && isTrimmed(at(array, buffer, end - 1))) end--;
+    if (start == end) return PARSE_EMPTY_LINE;
+    if (end - start > Limits.MAX_LINE_LENGTH) return PARSE_LINE_TOO_LONG;
+
+    int tokenEnd = start;
+    while (tokenEnd < end && !isSeparator(at(array, buffer, tokenEnd))) tokenEnd++;
+    Command cmd = matchCommand(array, buffer, start, tokenEnd);
+    if (cmd == null) return PARSE_UNKNOWN_CMD;
+
+    // Count the remaining tokens and remember where the first one is
+    int args = 0;
+    int argStart = 0;
+    int argEnd = 0;
+    int p = tokenEnd;
+    while (p < end) {
+      while (p < end && isSeparator(at(array, buffer, p))) p++;
+      if (p == end) break;
+      int t = p;
+      while (p < end && !isSeparator(at(array, buffer, p))) p++;
+      if (args == 0) {
+        argStart = t;
+        argEnd = p;
+      }
+      args++;
+    }
+
+    if (cmd.takesArgument()) {
+      if (args != 1) return PARSE_ARG_COUNT;
+      return parseIntArg(array, buffer, argStart, argEnd, cmd, out);
+    }
+    // Commands without an argument forbid extra args.
+    if (args != 0) return PARSE_EXTRA_ARGS;
+    out.set(cmd, 0, false);
+    return PARSE_OK;
+  }
+
+  /**
+   * Parses a base-10 int in place, accepting the same input as Integer.parseInt
+   * for ASCII digits (optional sign, overflow rejected).
+   */
+  private static int parseIntArg(byte[] array, ByteBuffer buffer, int start, int end,
+      Command cmd, ParsedRequest out) {
+    boolean negative = false;
+    int i = start;
+    byte first = at(array, buffer, i);
+    if (first == '-' || first == '+') {
+      negative = first == '-';
+      i++;
+    }
+    if (i == end) return PARSE_ARG_NOT_INT;
+
+    // Accumulate negatively so Integer.MIN_VALUE fits
+    int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+    int multMin = limit / 10;
+    int result = 0;
+    for (; i < end; i++) {
+      int digit = at(array, buffer, i) - '0';
+      if (digit < 0 || digit > 9) return PARSE_ARG_NOT_INT;
+      if (result < multMin) return PARSE_ARG_NOT_INT;
+      result *= 10;
+      if (result < limit + digit) return PARSE_ARG_NOT_INT;
+      result -= digit;
+    }
+    out.set(cmd, negative ? result : -result, true);
+    return PARSE_OK;
+  }
+
+  /**
+   * Finds the command whose name equals [start, end) ignoring ASCII case.
+   */
+  private static Command matchCommand(byte[] array, ByteBuffer buffer, int start, int end) {
+    int len = end - start;
+    for (int c = 0; c < COMMAND_TOKENS.length; c++) {
+      byte[] token = COMMAND_TOKENS[c];
+      if (token.length != len) continue;
+      int i = 0;
+      while (i < len && toUpperAscii(at(array, buffer, start + i)) == token[i]) i++;
+      if (i == len) return COMMANDS[c];
+    }
+    return null;
+  }
+
+  private static byte at(byte[] array, ByteBuffer buffer, int i) {
+    return array != null ? array[i] : buffer.get(i);
+  }
+
+  private static byte toUpperAscii(byte b) {
+    return b >= 'a' && b <= 'z' ? (byte) (b - ('a' - 'A')) : b;
+  }
+
+  /** Characters removed by String.trim(). */
+  private static boolean isTrimmed(byte b) {
+    return b >= 0 && b <= ' ';
+  }
+
+  /** Characters matched by the regex \s used to split tokens. */
+  private static boolean isSeparator(byte b) {
+    return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
+  }
+
+  /**
+   * Builds the pre-encoded reply table for a TV with the given channel count.
+   * Build it once at startup and share it; lookups do not allocate.
+   *
+   * @param channels The number of channels on the TV.
+   * @return A table with every reply and event line encoded as bytes.
+   * @throws IllegalArgumentException if channels is less than 1.
+   */
+  public static EncodedReplies encodedReplies(int channels) {
+    return new EncodedReplies(channels);
+  }
+
   // OK Responses
 
   /**
@@ -99,6 +283,27 @@ public final class Codec {
     return "OK CH=" + ch + CRLF;
   }
 
+  /**
+   * Encodes a successful USE response.
+   * 
+   * @param id The TV the session now controls.
+   * @return The encoded response string.
+   */
+  public static String okTv(int id) {
+    return "OK TV=" + id + CRLF;
+  }
+
+  /**
+   * Encodes the reply to a framing handshake such as {@link BinaryCodec#HANDSHAKE}.
+   * It is always sent as text; the new framing applies to what follows.
+   *
+   * @param name The framing now in use, e.g. "BIN".
+   * @return The encoded response string.
+   */
+  public static String okProto(String name) {
+    return "OK PROTO=" + name + CRLF;
+  }
+
   /**
    * Encodes a successful pong response.
    * 
@@ -108,6 +313,35 @@ public final class Codec {
     return "OK PONG" + CRLF;
   }
 
+  /**
+   * Encodes a server statistics response on one line:
+   * {@code OK UP=<s> CONN=<n> RPS=<n> P50=<us> P99=<us> CMDS=<CMD>:<n>,...}.
+   * 
+   * @param uptimeSeconds Seconds since the server started.
+   * @param connections Currently open connections.
+   * @param requestsPerSecond Recent request rate.
+   * @param p50Micros Median request handling time in microseconds.
+   * @param p99Micros 99th percentile request handling time in microseconds.
+   * @param commandCounts Requests per command, in the order they should be listed.
+   * @return The encoded response string.
+   */
+  public static String okStats(long uptimeSeconds, long connections, long requestsPerSecond,
+      long p50Micros, long p99Micros, Map<Command, Long> commandCounts) {
+    StringBuilder sb = new StringBuilder("OK UP=").append(uptimeSeconds)
+        .append(" CONN=").append(connections)
+        .append(" RPS=").append(requestsPerSecond)
+        .append(" P50=").append(p50Micros)
+        .append(" P99=").append(p99Micros)
+        .append(" CMDS=");
+    boolean first = true;
+    for (Map.Entry<Command, Long> e : commandCounts.entrySet()) {
+      if (!first) sb.append(',');
+      sb.append(e.getKey().name()).append(':').append(e.getValue());
+      first = false;
+    }
+    return sb.append(CRLF).toString();
+  }
+
   // Error Responses
 
   /**
@@ -164,6 +398,16 @@ public final class Codec {
     return "ERR 500 SERVER_ERROR" + CRLF;
   }
 
+  /**
+   * Encodes a rate limited error response, sent instead of running a command when the
+   * client or the server as a whole is over its request rate.
+   *
+   * @return The encoded error response string.
+   */
+  public static String errRateLimited() {
+    return "ERR 429 RATE_LIMITED" + CRLF;
+  }
+
   // EVT Responses
 
   /**
@@ -173,7 +417,7 @@ public final class Codec {
    * @return The encoded event response string.
    */
   public static String evtChannel(int ch) {
-    return "EVT CHANNEL" + ch + CRLF;
+    return "EVT CHANNEL " + ch + CRLF;
   }
 
   /**
@@ -14,7 +14,21 @@ public enum Command {
   DOWN,
   SUB,
   UNSUB,
-  PING;
+  PING,
+  STATS,
+  USE,
+  MULTI,
+  EXEC;
+
+  /**
+   * Checks whether the command takes one integer argument (SET, USE).
+   * All other commands take none.
+   *
+   * @return true if exactly one integer argument is required.
+   */
+  public boolean takesArgument() {
+    return this == SET || this == USE;
+  }
 
   /**
    * Converts a string token to its corresponding Command enum value.
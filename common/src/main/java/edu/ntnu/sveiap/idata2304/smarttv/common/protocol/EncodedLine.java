@@ -0,0 +1,178 @@
+package edu.ntnu.sveiap.idata2304.smarttv.common.protocol;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * One encoded reply or event line, in either framing.
+ * The bytes are private and never handed out, only written or copied somewhere else, so the
+ * lines of an {@link EncodedReplies} table can be shared by every connection without any
+ * of them being able to change what the others send.
+ */
+public final class EncodedLine {
+  /** A line with no bytes, for input that gets no reply. */
+  public static final EncodedLine EMPTY = new EncodedLine(new byte[0]);
+
+  private final byte[] bytes;
+
+  /**
+   * Wraps bytes nobody else holds a reference to.
+   */
+  EncodedLine(byte[] bytes) {
+    this.bytes = bytes;
+  }
+
+  /**
+   * Returns a line holding a copy of the given bytes.
+   *
+   * @param bytes The encoded line.
+   * @return The line.
+   */
+  public static EncodedLine of(byte[] bytes) {
+    return new EncodedLine(bytes.clone());
+  }
+
+  /**
+   * Returns the number of bytes in the line.
+   *
+   * @return The length.
+   */
+  public int length() {
+    return bytes.length;
+  }
+
+  /**
+   * Returns one byte of the line.
+   *
+   * @param index The position, from 0.
+   * @return The byte.
+   * @throws ArrayIndexOutOfBoundsException if index is not in {@code [0, length())}.
+   */
+  public byte byteAt(int index) {
+    return bytes[index];
+  }
+
+  /**
+   * Writes the line to a stream.
+   *
+   * @param out The stream.
+   * @throws IOException if the stream fails.
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    out.write(bytes);
+  }
+
+  /**
+   * Puts the line into a buffer at its position, and advances the position.
+   *
+   * @param dst The buffer.
+   * @throws java.nio.BufferOverflowException if the buffer has less room than the line.
+   */
+  public void writeTo(ByteBuffer dst) {
+    dst.put(bytes);
+  }
+
+  /**
+   * Puts the line into a buffer at an absolute index, leaving its position alone.
+   *
+   * @param dst The buffer.
+   * @param index Where the first byte goes.
+   * @throws IndexOutOfBoundsException if the line does not fit below the buffer's limit.
+   */
+  public void writeTo(ByteBuffer dst, int index) {
+    dst.put(index, bytes);
+  }
+
+  /**
+   * Copies the line into an array.
+   *
+   * @param dst The array.
+   * @param offset Where the first byte goes.
+   * @throws IndexOutOfBoundsException if the line does not fit.
+   */
+  public void copyTo(byte[] dst, int offset) {
+    System.arraycopy(bytes, 0, dst, offset, bytes.length);
+  }
+
+  /**
+   * Returns a new read-only buffer over the line, for writing it without a copy.
+   *
+   * @return A buffer from the first to the last byte of the line.
+   */
+  public ByteBuffer asReadOnlyBuffer() {
+    return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+  }
+
+  /**
+   * Returns a copy of the bytes.
+   *
+   * @return A new array.
+   */
+  public byte[] toByteArray() {
+    return bytes.clone();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof EncodedLine other && Arrays.equals(bytes, other.bytes);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(bytes);
+  }
+
+  /**
+   * Joins lines into one line of a known length. The bytes are copied once, into the array
+   * the built line keeps, so joining costs one allocation besides the builder.
+   */
+  public static final class Builder {
+    private byte[] bytes;
+    private int length;
+
+    /**
+     * Creates a builder for a line of exactly the given length.
+     *
+     * @param capacity The length of the line to build.
+     * @throws IllegalArgumentException if capacity is negative.
+     */
+    public Builder(int capacity) {
+      if (capacity < 0) throw new IllegalArgumentException("capacity cannot be negative");
+      this.bytes = new byte[capacity];
+    }
+
+    /**
+     * Appends a line.
+     *
+     * @param line The line.
+     * @return This builder.
+     * @throws IllegalStateException if the line was already built.
+     * @throws IndexOutOfBoundsException if the line does not fit in the remaining capacity.
+     */
+    public Builder append(EncodedLine line) {
+      if (bytes == null) throw new IllegalStateException("already built");
+      line.copyTo(bytes, length);
+      length += line.length();
+      return this;
+    }
+
+    /**
+     * Returns the line. The builder cannot be used afterwards.
+     *
+     * @return The joined line.
+     * @throws IllegalStateException if the capacity is not filled or the line was already
+     *     built.
+     */
+    public EncodedLine build() {
+      if (bytes == null) throw new IllegalStateException("already built");
+      if (length != bytes.length) {
+        throw new IllegalStateException("built " + length + " of " + bytes.length + " bytes");
+      }
+      EncodedLine line = new EncodedLine(bytes);
+      bytes = null;
+      return line;
+    }
+  }
+}
@@ -0,0 +1,239 @@
+package edu.ntnu.sveiap.idata2304.smarttv.common.protocol;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Pre-encoded reply and event lines for one TV.
+ * Every line the server can send is encoded to bytes once, when the table is built from
+ * the TV's channel count, so writing a reply needs neither string building nor
+ * transcoding. Create instances with {@link Codec#encodedReplies(int)}.
+ *
+ * <p>Each table encodes one {@link Framing}; {@link #in(Framing)} returns the table with the
+ * same lines in the other framing, built together with this one.
+ *
+ * <p>The returned lines are immutable and shared by all callers.
+ * Channel values outside {@code [1..channels]} are encoded on demand.
+ */
+public final class EncodedReplies {
+  private final Framing framing;
+  private final EncodedReplies other;
+  private final int channels;
+  private final EncodedLine ok;
+  private final EncodedLine okOn;
+  private final EncodedLine okOff;
+  private final EncodedLine okPong;
+  private final EncodedLine errBadCommand;
+  private final EncodedLine errLineTooLong;
+  private final EncodedLine errTvOff;
+  private final EncodedLine errOutOfRange;
+  private final EncodedLine errInvalidState;
+  private final EncodedLine errServerError;
+  private final EncodedLine errRateLimited;
+  private final EncodedLine evtPowerOn;
+  private final EncodedLine evtPowerOff;
+  private final EncodedLine okChannels;
+  private final EncodedLine[] okChannel;
+  private final EncodedLine[] evtChannel;
+
+  EncodedReplies(int channels) {
+    this(Framing.TEXT, channels, null);
+  }
+
+  /**
+   * Builds the table for one framing, and its sibling in the other framing unless given.
+   */
+  private EncodedReplies(Framing framing, int channels, EncodedReplies other) {
+    if (channels < 1) throw new IllegalArgumentException("There must be at least one channel.");
+    this.framing = framing;
+    this.channels = channels;
+    this.ok = pick(Codec.ok(), BinaryCodec.ok());
+    this.okOn = pick(Codec.okStatus(true), BinaryCodec.okStatus(true));
+    this.okOff = pick(Codec.okStatus(false), BinaryCodec.okStatus(false));
+    this.okPong = pick(Codec.okPong(), BinaryCodec.okPong());
+    this.errBadCommand = pick(Codec.errBadCommand(), BinaryCodec.errBadCommand());
+    this.errLineTooLong = pick(Codec.errLineTooLong(), BinaryCodec.errLineTooLong());
+    this.errTvOff = pick(Codec.errTvOff(), BinaryCodec.errTvOff());
+    this.errOutOfRange = pick(Codec.errOutOfRange(), BinaryCodec.errOutOfRange());
+    this.errInvalidState = pick(Codec.errInvalidState(), BinaryCodec.errInvalidState());
+    this.errServerError = pick(Codec.errServerError(), BinaryCodec.errServerError());
+    this.errRateLimited = pick(Codec.errRateLimited(), BinaryCodec.errRateLimited());
+    this.evtPowerOn = pick(Codec.evtPowerOn(), BinaryCodec.evtPowerOn());
+    this.evtPowerOff = pick(Codec.evtPowerOff(), BinaryCodec.evtPowerOff());
+    this.okChannels = pick(Codec.okChannels(channels), BinaryCodec.okChannels(channels));
+    this.okChannel = new EncodedLine[channels + 1];
+    this.evtChannel = new EncodedLine[channels + 1];
+    for (int ch = Limits.MIN_CHANNEL; ch <= channels; ch++) {
+      okChannel[ch] = encodeOkChannel(ch);
+      evtChannel[ch] = encodeEvtChannel(ch);
+    }
+    this.other = other != null ? other
+        : new EncodedReplies(framing == Framing.TEXT ? Framing.BINARY : Framing.TEXT, channels, this);
+  }
+
+  private EncodedLine pick(String text, byte[] binary) {
+    byte[] bytes = framing == Framing.TEXT ? text.getBytes(StandardCharsets.US_ASCII) : binary;
+    return new EncodedLine(bytes);
+  }
+
+  private EncodedLine encodeOkChannel(int ch) {
+    return pick(Codec.okChannel(ch), BinaryCodec.okChannel(ch));
+  }
+
+  private EncodedLine encodeEvtChannel(int ch) {
+    return pick(Codec.evtChannel(ch), BinaryCodec.evtChannel(ch));
+  }
+
+  private boolean inTable(int ch) {
+    return ch >= Limits.MIN_CHANNEL && ch <= channels;
+  }
+
+  /**
+   * Returns the framing the lines of this table are encoded in.
+   *
+   * @return The framing.
+   */
+  public Framing framing() {
+    return framing;
+  }
+
+  /**
+   * Returns the table with the same lines in the given framing.
+   *
+   * @param framing The framing wanted.
+   * @return This table, or its sibling in the other framing.
+   */
+  public EncodedReplies in(Framing framing) {
+    return framing == this.framing ? this : other;
+  }
+
+  /**
+   * Returns the channel count this table was built for.
+   *
+   * @return The number of channels.
+   */
+  public int channels() {
+    return channels;
+  }
+
+  /** @return the bytes of {@link Codec#ok()}. */
+  public EncodedLine ok() {
+    return ok;
+  }
+
+  /**
+   * Returns the bytes of {@link Codec#okStatus(boolean)}.
+   *
+   * @param on The current power state of the TV.
+   * @return The encoded reply.
+   */
+  public EncodedLine okStatus(boolean on) {
+    return on ? okOn : okOff;
+  }
+
+  /** @return the bytes of {@link Codec#okChannels(int)} for this table's channel count. */
+  public EncodedLine okChannels() {
+    return okChannels;
+  }
+
+  /**
+   * Returns the bytes of {@link Codec#okChannel(int)}.
+   *
+   * @param ch The current channel of the TV.
+   * @return The encoded reply.
+   */
+  public EncodedLine okChannel(int ch) {
+    return inTable(ch) ? okChannel[ch] : encodeOkChannel(ch);
+  }
+
+  /** @return the bytes of {@link Codec#okPong()}. */
+  public EncodedLine okPong() {
+    return okPong;
+  }
+
+  /**
+   * Returns the bytes of {@link Codec#okTv(int)}, encoded per call since the table would
+   * need a line per TV.
+   *
+   * @param id The TV the session now controls.
+   * @return The encoded reply.
+   */
+  public EncodedLine okTv(int id) {
+    return pick(Codec.okTv(id), BinaryCodec.okTv(id));
+  }
+
+  /**
+   * Returns the bytes of {@link Codec#okStats}, encoded per call.
+   *
+   * @param uptimeSeconds Seconds since the server started.
+   * @param connections Currently open connections.
+   * @param requestsPerSecond Recent request rate.
+   * @param p50Micros Median request handling time in microseconds.
+   * @param p99Micros 99th percentile request handling time in microseconds.
+   * @param commandCounts Requests per command, in the order they should be listed.
+   * @return The encoded reply.
+   */
+  public EncodedLine okStats(long uptimeSeconds, long connections, long requestsPerSecond,
+      long p50Micros, long p99Micros, Map<Command, Long> commandCounts) {
+    return new EncodedLine(framing == Framing.TEXT
+        ? Codec.okStats(uptimeSeconds, connections, requestsPerSecond, p50Micros, p99Micros,
+            commandCounts).getBytes(StandardCharsets.US_ASCII)
+        : BinaryCodec.okStats(uptimeSeconds, connections, requestsPerSecond, p50Micros,
+            p99Micros, commandCounts));
+  }
+
+  /** @return the bytes of {@link Codec#errBadCommand()}. */
+  public EncodedLine errBadCommand() {
+    return errBadCommand;
+  }
+
+  /** @return the bytes of {@link Codec#errLineTooLong()}. */
+  public EncodedLine errLineTooLong() {
+    return errLineTooLong;
+  }
+
+  /** @return the bytes of {@link Codec#errTvOff()}. */
+  public EncodedLine errTvOff() {
+    return errTvOff;
+  }
+
+  /** @return the bytes of {@link Codec#errOutOfRange()}. */
+  public EncodedLine errOutOfRange() {
+    return errOutOfRange;
+  }
+
+  /** @return the bytes of {@link Codec#errInvalidState()}. */
+  public EncodedLine errInvalidState() {
+    return errInvalidState;
+  }
+
+  /** @return the bytes of {@link Codec#errServerError()}. */
+  public EncodedLine errServerError() {
+    return errServerError;
+  }
+
+  /** @return the bytes of {@link Codec#errRateLimited()}. */
+  public EncodedLine errRateLimited() {
+    return errRateLimited;
+  }
+
+  /**
+   * Returns the bytes of {@link Codec#evtChannel(int)}.
+   *
+   * @param ch The new channel of the TV.
+   * @return The encoded event.
+   */
+  public EncodedLine evtChannel(int ch) {
+    return inTable(ch) ? evtChannel[ch] : encodeEvtChannel(ch);
+  }
+
+  /** @return the bytes of {@link Codec#evtPowerOn()}. */
+  public EncodedLine evtPowerOn() {
+    return evtPowerOn;
+  }
+
+  /** @return the bytes of {@link Codec#evtPowerOff()}. */
+  public EncodedLine evtPowerOff() {
+    return evtPowerOff;
+  }
+}
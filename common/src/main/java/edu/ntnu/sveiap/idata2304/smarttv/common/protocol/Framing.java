@@ -0,0 +1,13 @@
+package edu.ntnu.sveiap.idata2304.smarttv.common.protocol;
+
+/**
+ * How messages are framed on a connection.
+ * Every connection starts in {@link #TEXT}; a client switches to {@link #BINARY} by sending
+ * {@link BinaryCodec#HANDSHAKE} as its first line.
+ */
+public enum Framing {
+  /** CRLF-terminated text lines, encoded by {@link Codec}. */
+  TEXT,
+  /** Opcode and status bytes with varint values, encoded by {@link BinaryCodec}. */
+  BINARY
+}
@@ -13,5 +13,8 @@ public final class Limits {
 
   // Minimum channel number
   public static final int MIN_CHANNEL = 1;
+
+  // Maximum number of commands queued between MULTI and EXEC
+  public static final int MAX_BATCH_COMMANDS = 64;
   
 }
@@ -0,0 +1,55 @@
+package edu.ntnu.sveiap.idata2304.smarttv.common.protocol;
+
+/**
+ * Mutable holder filled by the byte-level {@link Codec} parser.
+ * A caller keeps one instance per connection and reuses it for every line,
+ * so parsing does not allocate.
+ */
+public final class ParsedRequest {
+  private Command command;
+  private int arg;
+  private boolean hasArg;
+
+  /**
+   * Returns the parsed command, or null if nothing has been parsed successfully yet.
+   *
+   * @return The command of the last successfully parsed line.
+   */
+  public Command command() {
+    return command;
+  }
+
+  /**
+   * Returns whether the last parsed line carried an integer argument.
+   *
+   * @return true if {@link #arg()} is valid.
+   */
+  public boolean hasArg() {
+    return hasArg;
+  }
+
+  /**
+   * Returns the integer argument of the last parsed line.
+   * Only meaningful when {@link #hasArg()} is true.
+   *
+   * @return The argument value.
+   */
+  public int arg() {
+    return arg;
+  }
+
+  /**
+   * Converts the parsed values into an immutable {@link Request}.
+   *
+   * @return A new Request with the same command and argument.
+   */
+  public Request toRequest() {
+    return new Request(command, hasArg ? arg : null);
+  }
+
+  void set(Command command, int arg, boolean hasArg) {
+    this.command = command;
+    this.arg = arg;
+    this.hasArg = hasArg;
+  }
+}
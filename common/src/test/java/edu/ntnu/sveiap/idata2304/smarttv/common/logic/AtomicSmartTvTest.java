@@ -0,0 +1,141 @@
+package edu.ntnu.sveiap.idata2304.smarttv.common.logic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for AtomicSmartTv.
+ */
+class AtomicSmartTvTest {
+
+  /**
+   * Same rules as SmartTv: off by default, guarded while off, remembers the channel.
+   */
+  @Test
+  void behavesLikeSmartTv() {
+    AtomicSmartTv tv = new AtomicSmartTv(5);
+    assertFalse(tv.isOn());
+    IllegalStateException off = assertThrows(IllegalStateException.class, tv::getChannel);
+    assertEquals("TV_OFF", off.getMessage());
+    assertThrows(IllegalStateException.class, () -> tv.setChannel(1));
+    assertThrows(IllegalStateException.class, tv::getNumberOfChannels);
+
+    tv.turnOn();
+    tv.turnOn();
+    assertTrue(tv.isOn());
+    assertEquals(5, tv.getNumberOfChannels());
+    assertEquals(1, tv.getChannel());
+    assertEquals(3, tv.setChannel(3));
+    tv.turnOff();
+    tv.turnOn();
+    assertEquals(3, tv.getChannel()); // Should remember the last channel
+    assertThrows(IllegalArgumentException.class, () -> tv.setChannel(0));
+    assertThrows(IllegalArgumentException.class, () -> tv.setChannel(6));
+  }
+
+  /**
+   * Up/down return the new channel and do not wrap.
+   */
+  @Test
+  void upDownNoWrap() {
+    AtomicSmartTv tv = new AtomicSmartTv(3);
+    assertThrows(IllegalStateException.class, tv::channelUp);
+
+    tv.turnOn();
+    IllegalStateException min = assertThrows(IllegalStateException.class, tv::channelDown);
+    assertEquals("INVALID_STATE", min.getMessage());
+    assertEquals(2, tv.channelUp());
+    assertEquals(3, tv.channelUp());
+    assertThrows(IllegalStateException.class, tv::channelUp);
+    assertEquals(2, tv.channelDown());
+  }
+
+  /**
+   * Concurrent UP calls from many threads never overshoot and each channel
+   * step is reported to exactly one caller.
+   */
+  @Test
+  void concurrentUpsAreAtomic() throws Exception {
+    int channels = 10_000;
+    AtomicSmartTv tv = new AtomicSmartTv(channels);
+    tv.turnOn();
+    AtomicInteger successes = new AtomicInteger();
+    boolean[] seen = new boolean[channels + 1];
+
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread(() -> {
+        while (true) {
+          int ch;
+          try {
+            ch = tv.channelUp();
+          } catch (IllegalStateException atMax) {
+            return;
+          }
+          synchronized (seen) {
+            assertFalse(seen[ch]);
+            seen[ch] = true;
+          }
+          successes.incrementAndGet();
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread t : threads) t.join();
+
+    assertEquals(channels - 1, successes.get());
+    assertEquals(channels, tv.getChannel());
+  }
+
+  /**
+   * Concurrent changes are numbered one by one, each event carries the number of its own
+   * change, and the highest number belongs to the final state.
+   */
+  @Test
+  void eventsCarryTheirChangeNumber() throws Exception {
+    AtomicSmartTv tv = new AtomicSmartTv(8);
+    tv.turnOn(); // change 1
+    int changes = 8 * 1_000;
+    AtomicIntegerArray channelByNumber = new AtomicIntegerArray(changes + 2);
+    AtomicInteger duplicates = new AtomicInteger();
+    tv.addListener(new TvListener() {
+      @Override
+      public void powerChanged(boolean on) {
+      }
+
+      @Override
+      public void channelChanged(int channel) {
+      }
+
+      @Override
+      public void channelChanged(int channel, int sequence) {
+        if (!channelByNumber.compareAndSet(sequence, 0, channel)) duplicates.incrementAndGet();
+      }
+    });
+
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i++) {
+      int channel = i + 1;
+      threads[i] = new Thread(() -> {
+        for (int n = 0; n < changes / threads.length; n++) {
+          tv.setChannel(channel);
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread t : threads) t.join();
+
+    assertEquals(0, duplicates.get());
+    for (int number = 2; number <= changes + 1; number++) {
+      assertTrue(channelByNumber.get(number) != 0, "no event for change " + number);
+    }
+    assertEquals(tv.getChannel(), channelByNumber.get(changes + 1));
+  }
+}
@@ -2,7 +2,9 @@ package edu.ntnu.sveiap.idata2304.smarttv.common.logic;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.Test;
 
@@ -92,4 +94,76 @@ class SmartTvTest {
     IllegalStateException ex2 = assertThrows(IllegalStateException.class, tv::getNumberOfChannels);
     assertEquals("TV_OFF", ex2.getMessage());
   }
+
+  /**
+   * The snapshot follows every change, is shared between equal states and is already
+   * published when listeners are told about the change.
+   */
+  @Test
+  void snapshotIsPublishedBeforeListenersRun() {
+    SmartTv tv = new SmartTv(4);
+    TvSnapshot off = tv.snapshot();
+    assertFalse(off.isOn());
+    assertEquals(1, off.channel());
+    assertEquals(4, off.channels());
+
+    TvSnapshot[] seen = new TvSnapshot[1];
+    tv.addListener(new TvListener() {
+      @Override
+      public void powerChanged(boolean on) {
+        seen[0] = tv.snapshot();
+      }
+
+      @Override
+      public void channelChanged(int channel) {
+        seen[0] = tv.snapshot();
+      }
+    });
+    tv.turnOn();
+    assertTrue(seen[0].isOn());
+    tv.setChannel(3);
+    assertEquals(3, seen[0].channel());
+    assertSame(seen[0], tv.snapshot());
+
+    tv.turnOff();
+    assertFalse(tv.snapshot().isOn());
+    assertEquals(3, tv.snapshot().channel());
+    tv.turnOn();
+    tv.setChannel(1);
+    tv.turnOff();
+    assertSame(off, tv.snapshot());
+  }
+
+  /**
+   * compareAndSet only applies a change computed from the current state, and listeners
+   * hear the net change.
+   */
+  @Test
+  void compareAndSetAppliesOnlyOverExpectedState() {
+    SmartTv tv = new SmartTv(10);
+    StringBuilder heard = new StringBuilder();
+    tv.addListener(new TvListener() {
+      @Override
+      public void powerChanged(boolean on) {
+        heard.append(on ? "ON " : "OFF ");
+      }
+
+      @Override
+      public void channelChanged(int channel) {
+        heard.append(channel).append(' ');
+      }
+    });
+
+    TvSnapshot off = tv.snapshot();
+    assertTrue(tv.compareAndSet(off, true, 7));
+    assertEquals("ON 7 ", heard.toString());
+    assertFalse(tv.compareAndSet(off, true, 2));
+    assertEquals(7, tv.getChannel());
+
+    heard.setLength(0);
+    assertTrue(tv.compareAndSet(tv.snapshot(), true, 7));
+    assertEquals("", heard.toString());
+    assertThrows(IllegalArgumentException.class,
+        () -> tv.compareAndSet(tv.snapshot(), true, 11));
+  }
 }
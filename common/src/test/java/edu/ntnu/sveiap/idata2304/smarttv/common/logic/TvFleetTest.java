@@ -0,0 +1,160 @@
+package edu.ntnu.sveiap.idata2304.smarttv.common.logic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for TvFleet.
+ */
+class TvFleetTest {
+
+  /**
+   * Every TV of the fleet follows the same rules as SmartTv.
+   */
+  @Test
+  void tvBehavesLikeSmartTv() {
+    TvControl tv = new TvFleet(3, 5).tv(2);
+    assertFalse(tv.isOn());
+    IllegalStateException off = assertThrows(IllegalStateException.class, tv::getChannel);
+    assertEquals("TV_OFF", off.getMessage());
+
+    tv.turnOn();
+    assertEquals(1, tv.getChannel());
+    assertEquals(5, tv.getNumberOfChannels());
+    assertEquals(5, tv.setChannel(5));
+    IllegalStateException max = assertThrows(IllegalStateException.class, tv::channelUp);
+    assertEquals("INVALID_STATE", max.getMessage());
+    assertEquals(4, tv.channelDown());
+    tv.turnOff();
+    tv.turnOn();
+    assertEquals(4, tv.getChannel()); // Should remember the last channel
+    assertThrows(IllegalArgumentException.class, () -> tv.setChannel(0));
+    assertThrows(IllegalArgumentException.class, () -> tv.setChannel(6));
+  }
+
+  /**
+   * TVs do not share state or listeners, and views of the same TV do. Fleet listeners
+   * see every TV.
+   */
+  @Test
+  void tvsAreIndependent() {
+    TvFleet fleet = new TvFleet(1_000_000, 10);
+    List<String> seen = new ArrayList<>();
+    fleet.tv(999_999).addListener(new TvListener() {
+      @Override
+      public void powerChanged(boolean on) {
+        seen.add("power " + on);
+      }
+
+      @Override
+      public void channelChanged(int channel) {
+        seen.add("channel " + channel);
+      }
+    });
+
+    List<Integer> changed = new ArrayList<>();
+    fleet.addListener(changed::add);
+
+    fleet.tv(0).turnOn();
+    fleet.tv(0).setChannel(7);
+    fleet.tv(999_999).turnOn();
+    fleet.tv(999_999).channelUp();
+
+    assertEquals(7, fleet.tv(0).getChannel());
+    assertEquals(2, fleet.tv(999_999).getChannel());
+    assertFalse(fleet.tv(500_000).isOn());
+    assertEquals(List.of("power true", "channel 2"), seen);
+    assertEquals(List.of(0, 0, 999_999, 999_999), changed);
+  }
+
+  /**
+   * Ids outside the fleet are rejected, and so are channel counts the state word cannot hold.
+   */
+  @Test
+  void rejectsUnknownIds() {
+    TvFleet fleet = new TvFleet(4, 10);
+    assertThrows(IllegalArgumentException.class, () -> fleet.tv(4));
+    assertThrows(IllegalArgumentException.class, () -> fleet.tv(-1));
+    assertThrows(IllegalArgumentException.class, () -> new TvFleet(0, 10));
+    assertThrows(IllegalArgumentException.class,
+        () -> new TvFleet(1, TvFleet.MAX_CHANNELS + 1));
+    assertTrue(fleet.tv(3) != null);
+  }
+
+  /**
+   * Snapshots of fleet TVs come from one table per fleet, so equal states share one object.
+   */
+  @Test
+  void snapshotsAreSharedAcrossTheFleet() {
+    TvFleet fleet = new TvFleet(2, 5);
+    fleet.tv(0).turnOn();
+    fleet.tv(0).setChannel(4);
+    fleet.tv(1).turnOn();
+    fleet.tv(1).setChannel(4);
+
+    TvSnapshot snapshot = fleet.tv(0).snapshot();
+    assertTrue(snapshot.isOn());
+    assertEquals(4, snapshot.channel());
+    assertEquals(5, snapshot.channels());
+    assertSame(snapshot, fleet.tv(1).snapshot());
+
+    fleet.tv(1).turnOff();
+    assertFalse(fleet.tv(1).snapshot().isOn());
+    assertEquals(4, fleet.tv(1).snapshot().channel());
+  }
+
+  /**
+   * Concurrent changes are numbered one by one, each event carries the number of its own
+   * change, and the highest number belongs to the final state.
+   */
+  @Test
+  void eventsCarryTheirChangeNumber() throws Exception {
+    TvControl tv = new TvFleet(100, 8).tv(65);
+    tv.turnOn(); // change 1
+    int changes = 8 * 1_000;
+    AtomicIntegerArray channelByNumber = new AtomicIntegerArray(changes + 2);
+    AtomicInteger duplicates = new AtomicInteger();
+    tv.addListener(new TvListener() {
+      @Override
+      public void powerChanged(boolean on) {
+      }
+
+      @Override
+      public void channelChanged(int channel) {
+      }
+
+      @Override
+      public void channelChanged(int channel, int sequence) {
+        if (!channelByNumber.compareAndSet(sequence, 0, channel)) duplicates.incrementAndGet();
+      }
+    });
+
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i++) {
+      int channel = i + 1;
+      threads[i] = new Thread(() -> {
+        for (int n = 0; n < changes / threads.length; n++) {
+          tv.setChannel(channel);
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread t : threads) t.join();
+
+    assertEquals(0, duplicates.get());
+    for (int number = 2; number <= changes + 1; number++) {
+      assertTrue(channelByNumber.get(number) != 0, "no event for change " + number);
+    }
+    assertEquals(tv.getChannel(), channelByNumber.get(changes + 1));
+  }
+}
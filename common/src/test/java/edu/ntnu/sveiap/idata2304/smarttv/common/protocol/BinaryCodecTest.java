@@ -0,0 +1,116 @@
+package edu.ntnu.sveiap.idata2304.smarttv.common.protocol;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for BinaryCodec.
+ */
+class BinaryCodecTest {
+
+  /**
+   * Requests survive a write and read, including arguments that need every varint byte.
+   */
+  @Test
+  void requestsRoundTrip() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryCodec.writeRequest(out, Command.ON, 0);
+    BinaryCodec.writeRequest(out, Command.SET, 7);
+    BinaryCodec.writeRequest(out, Command.USE, 1_000_000);
+    BinaryCodec.writeRequest(out, Command.SET, -1);
+    assertEquals(1 + 2 + 4 + 6, out.size()); // SET 7 is two bytes instead of "SET 7\r\n"
+
+    InputStream in = new ByteArrayInputStream(out.toByteArray());
+    ParsedRequest req = new ParsedRequest();
+    assertEquals(Codec.PARSE_OK, BinaryCodec.readRequest(in, req));
+    assertEquals(Command.ON, req.command());
+    assertFalse(req.hasArg());
+    assertEquals(Codec.PARSE_OK, BinaryCodec.readRequest(in, req));
+    assertEquals(new Request(Command.SET, 7), req.toRequest());
+    assertEquals(Codec.PARSE_OK, BinaryCodec.readRequest(in, req));
+    assertEquals(new Request(Command.USE, 1_000_000), req.toRequest());
+    assertEquals(Codec.PARSE_OK, BinaryCodec.readRequest(in, req));
+    assertEquals(new Request(Command.SET, -1), req.toRequest());
+    assertEquals(BinaryCodec.END_OF_STREAM, BinaryCodec.readRequest(in, req));
+  }
+
+  /**
+   * A bad frame is reported and consumed, and the frame after it is read normally.
+   */
+  @Test
+  void badFramesDoNotLoseSync() throws IOException {
+    int set = BinaryCodec.opcode(Command.SET);
+    byte[] bytes = {
+      (byte) BinaryCodec.OP_INVALID,
+      (byte) 0x7F,
+      (byte) set, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01,
+      (byte) BinaryCodec.opcode(Command.PING)
+    };
+    InputStream in = new ByteArrayInputStream(bytes);
+    ParsedRequest req = new ParsedRequest();
+    assertEquals(Codec.PARSE_UNKNOWN_CMD, BinaryCodec.readRequest(in, req));
+    assertEquals(Codec.PARSE_UNKNOWN_CMD, BinaryCodec.readRequest(in, req));
+    assertEquals(Codec.PARSE_ARG_NOT_INT, BinaryCodec.readRequest(in, req));
+    assertEquals(Codec.PARSE_OK, BinaryCodec.readRequest(in, req));
+    assertEquals(Command.PING, req.command());
+  }
+
+  /**
+   * Every binary reply reads back as the text line it stands for.
+   */
+  @Test
+  void repliesReadAsTextLines() throws IOException {
+    EncodedReplies text = Codec.encodedReplies(10);
+    EncodedReplies binary = text.in(Framing.BINARY);
+    assertSame(Framing.BINARY, binary.framing());
+    assertSame(text, binary.in(Framing.TEXT));
+
+    EncodedLine[] pairs = {
+      text.ok(), binary.ok(),
+      text.okStatus(false), binary.okStatus(false),
+      text.okChannels(), binary.okChannels(),
+      text.okChannel(7), binary.okChannel(7),
+      text.okChannel(300), binary.okChannel(300),
+      text.okTv(123_456), binary.okTv(123_456),
+      text.okPong(), binary.okPong(),
+      text.errTvOff(), binary.errTvOff(),
+      text.errInvalidState(), binary.errInvalidState(),
+      text.errRateLimited(), binary.errRateLimited(),
+      text.evtPowerOff(), binary.evtPowerOff(),
+      text.evtChannel(3), binary.evtChannel(3)
+    };
+    for (int i = 0; i < pairs.length; i += 2) {
+      String line = new String(pairs[i].toByteArray(), StandardCharsets.US_ASCII);
+      String read = BinaryCodec.readReply(new ByteArrayInputStream(pairs[i + 1].toByteArray()));
+      assertEquals(line.substring(0, line.length() - 2), read);
+    }
+    assertEquals(2, binary.okChannel(7).length());
+    assertTrue(BinaryCodec.isOk(binary.okChannel(7).byteAt(0)));
+    assertFalse(BinaryCodec.isOk(binary.errTvOff().byteAt(0)));
+    assertNull(BinaryCodec.readReply(new ByteArrayInputStream(new byte[0])));
+  }
+
+  /**
+   * The handshake line is matched like a command: any case, extra whitespace allowed.
+   */
+  @Test
+  void recognisesHandshake() {
+    assertTrue(BinaryCodec.isHandshake("PROTO BIN"));
+    assertTrue(BinaryCodec.isHandshake("  proto   bin "));
+    assertFalse(BinaryCodec.isHandshake("PROTO TEXT"));
+    assertFalse(BinaryCodec.isHandshake("STATUS"));
+    assertFalse(BinaryCodec.isHandshake(null));
+    assertEquals("OK PROTO=BIN\r\n", Codec.okProto("BIN"));
+  }
+}
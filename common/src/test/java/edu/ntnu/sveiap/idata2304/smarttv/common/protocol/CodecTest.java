@@ -2,7 +2,16 @@ package edu.ntnu.sveiap.idata2304.smarttv.common.protocol;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
 
 import org.junit.jupiter.api.Test;
 
@@ -39,6 +48,16 @@ class CodecTest {
     assertEquals(5, r.arg());
   }
 
+  // USE takes one integer argument, like SET
+  @Test
+  void parsesUseWithIntArg() {
+    Request r = Codec.parseRequest("use 42");
+    assertEquals(Command.USE, r.command());
+    assertEquals(42, r.arg());
+    assertThrows(IllegalArgumentException.class, () -> Codec.parseRequest("USE"));
+    assertEquals("OK TV=42\r\n", Codec.okTv(42));
+  }
+
   // Test if SET command wihout argument gets rejected
   @Test
   void rejectsSetWithoutArg() {
@@ -82,6 +101,7 @@ class CodecTest {
     assertEquals("ERR 404 OUT_OF_RANGE\r\n", Codec.errOutOfRange());
     assertEquals("ERR 409 INVALID_STATE\r\n", Codec.errInvalidState());
     assertEquals("ERR 500 SERVER_ERROR\r\n", Codec.errServerError());
+    assertEquals("ERR 429 RATE_LIMITED\r\n", Codec.errRateLimited());
   }
 
   // Parsing of other no-arg commands
@@ -133,5 +153,112 @@ class CodecTest {
     assertThrows(IllegalArgumentException.class, () -> Codec.parseRequest("SET test")); // ARG_NOT_INT
     assertThrows(IllegalArgumentException.class, () -> Codec.parseRequest("STATUS test")); // EXTRA_ARGS
   }
-  
+
+  // Byte-level parser gives the same result as the String parser
+  @Test
+  void byteParserMatchesStringParser() {
+    String[] lines = {
+      "STATUS", "status", "StAtUs", "    status    ", "SET 5", "SeT   5", "   SET    9   ",
+      "SET", "SET invalid", "SET test", "SET 1 2", "SET -3", "SET +4", "SET 2147483647",
+      "SET 2147483648", "SET -2147483648", "SET -", "STATUS now", "GET 1 2", "Test", "",
+      "   ", "\tPING\t", "ON", "OFF", "CHANNELS", "GET", "UP", "DOWN", "SUB", "UNSUB",
+      "SETX 1", "S", "SET\t7", "SET " + "9".repeat(Limits.MAX_LINE_LENGTH + 1),
+      "USE 0", "use 42", "USE", "USE x", "USE 1 2"
+    };
+    ParsedRequest parsed = new ParsedRequest();
+    for (String line : lines) {
+      byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+      String expected;
+      Request expectedRequest = null;
+      try {
+        expectedRequest = Codec.parseRequest(line);
+        expected = "OK";
+      } catch (IllegalArgumentException e) {
+        expected = e.getMessage();
+      }
+
+      int code = Codec.parseRequest(bytes, 0, bytes.length, parsed);
+      assertEquals(expected, Codec.parseErrorReason(code), "array: '" + line + "'");
+      if (expectedRequest != null) {
+        assertEquals(expectedRequest, parsed.toRequest());
+      }
+
+      int direct = Codec.parseRequest(ByteBuffer.allocateDirect(bytes.length).put(bytes).flip(), parsed);
+      assertEquals(expected, Codec.parseErrorReason(direct), "buffer: '" + line + "'");
+    }
+  }
+
+  // Byte-level parser honours offset/length and buffer position/limit
+  @Test
+  void byteParserReadsOnlyTheGivenSlice() {
+    byte[] bytes = "xxSET 7yy".getBytes(StandardCharsets.US_ASCII);
+    ParsedRequest parsed = new ParsedRequest();
+
+    assertEquals(Codec.PARSE_OK, Codec.parseRequest(bytes, 2, 5, parsed));
+    assertEquals(Command.SET, parsed.command());
+    assertTrue(parsed.hasArg());
+    assertEquals(7, parsed.arg());
+
+    ByteBuffer buf = ByteBuffer.wrap(bytes, 2, 5).slice();
+    assertEquals(Codec.PARSE_OK, Codec.parseRequest(buf, parsed));
+    assertEquals(Command.SET, parsed.command());
+    assertEquals(0, buf.position());
+
+    assertEquals(Codec.PARSE_UNKNOWN_CMD, Codec.parseRequest(bytes, 0, 5, parsed));
+    assertEquals(Codec.PARSE_OK, Codec.parseRequest("ping".getBytes(StandardCharsets.US_ASCII), 0, 4, parsed));
+    assertEquals(Command.PING, parsed.command());
+    assertFalse(parsed.hasArg());
+  }
+
+  // Event helpers follow the protocol format
+  @Test
+  void formatsEvents() {
+    assertEquals("EVT CHANNEL 5\r\n", Codec.evtChannel(5));
+    assertEquals("EVT POWER ON\r\n", Codec.evtPowerOn());
+    assertEquals("EVT POWER OFF\r\n", Codec.evtPowerOff());
+  }
+
+  // Pre-encoded replies equal the String encoders and are shared
+  @Test
+  void encodedRepliesMatchStringEncoders() {
+    EncodedReplies replies = Codec.encodedReplies(3);
+    assertArrayEquals(bytes(Codec.okChannels(3)), replies.okChannels().toByteArray());
+    for (int ch = 1; ch <= 3; ch++) {
+      assertArrayEquals(bytes(Codec.okChannel(ch)), replies.okChannel(ch).toByteArray());
+      assertArrayEquals(bytes(Codec.evtChannel(ch)), replies.evtChannel(ch).toByteArray());
+      assertSame(replies.okChannel(ch), replies.okChannel(ch));
+    }
+    // Outside the table: still correct, encoded on demand
+    assertArrayEquals(bytes(Codec.okChannel(42)), replies.okChannel(42).toByteArray());
+    assertArrayEquals(bytes(Codec.evtChannel(0)), replies.evtChannel(0).toByteArray());
+
+    assertArrayEquals(bytes(Codec.ok()), replies.ok().toByteArray());
+    assertArrayEquals(bytes(Codec.okStatus(true)), replies.okStatus(true).toByteArray());
+    assertArrayEquals(bytes(Codec.okStatus(false)), replies.okStatus(false).toByteArray());
+    assertArrayEquals(bytes(Codec.okPong()), replies.okPong().toByteArray());
+    assertArrayEquals(bytes(Codec.errBadCommand()), replies.errBadCommand().toByteArray());
+    assertArrayEquals(bytes(Codec.errLineTooLong()), replies.errLineTooLong().toByteArray());
+    assertArrayEquals(bytes(Codec.errTvOff()), replies.errTvOff().toByteArray());
+    assertArrayEquals(bytes(Codec.errOutOfRange()), replies.errOutOfRange().toByteArray());
+    assertArrayEquals(bytes(Codec.errInvalidState()), replies.errInvalidState().toByteArray());
+    assertArrayEquals(bytes(Codec.errServerError()), replies.errServerError().toByteArray());
+    assertArrayEquals(bytes(Codec.evtPowerOn()), replies.evtPowerOn().toByteArray());
+    assertArrayEquals(bytes(Codec.evtPowerOff()), replies.evtPowerOff().toByteArray());
+  }
+
+  private static byte[] bytes(String s) {
+    return s.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  @Test
+  void formatsStats() {
+    Map<Command, Long> counts = new EnumMap<>(Command.class);
+    counts.put(Command.GET, 12L);
+    counts.put(Command.ON, 1L);
+    assertEquals("OK UP=30 CONN=2 RPS=150 P50=4 P99=120 CMDS=ON:1,GET:12\r\n",
+        Codec.okStats(30, 2, 150, 4, 120, counts));
+    assertEquals("OK UP=0 CONN=0 RPS=0 P50=0 P99=0 CMDS=\r\n",
+        Codec.okStats(0, 0, 0, 0, 0, Map.of()));
+    assertEquals(Command.STATS, Codec.parseRequest("stats").command());
+  }
 }
@@ -0,0 +1,94 @@
+package edu.ntnu.sveiap.idata2304.smarttv.common.protocol;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for EncodedLine.
+ */
+class EncodedLineTest {
+
+  /**
+   * Nothing a caller gets from a shared line can change what the next caller sends.
+   */
+  @Test
+  void sharedLineCannotBeChanged() {
+    EncodedLine ok = Codec.encodedReplies(10).ok();
+    byte[] copy = ok.toByteArray();
+    copy[0] = 'X';
+    ByteBuffer view = ok.asReadOnlyBuffer();
+    assertThrows(ReadOnlyBufferException.class, () -> view.put(0, (byte) 'X'));
+
+    byte[] source = "OK\r\n".getBytes(StandardCharsets.US_ASCII);
+    EncodedLine of = EncodedLine.of(source);
+    source[0] = 'X';
+
+    assertArrayEquals("OK\r\n".getBytes(StandardCharsets.US_ASCII), ok.toByteArray());
+    assertEquals(ok, of);
+  }
+
+  /**
+   * Every way of writing a line gives the same bytes; the absolute put leaves the
+   * position alone.
+   */
+  @Test
+  void writesTheSameBytesEverywhere() throws IOException {
+    EncodedLine line = Codec.encodedReplies(10).okChannel(7);
+    byte[] expected = "OK CH=7\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    line.writeTo(out);
+    assertArrayEquals(expected, out.toByteArray());
+
+    ByteBuffer relative = ByteBuffer.allocate(16);
+    line.writeTo(relative);
+    assertEquals(expected.length, relative.position());
+
+    ByteBuffer absolute = ByteBuffer.allocateDirect(16);
+    line.writeTo(absolute, 4);
+    assertEquals(0, absolute.position());
+    byte[] read = new byte[expected.length];
+    absolute.get(4, read);
+    assertArrayEquals(expected, read);
+
+    byte[] array = new byte[expected.length + 1];
+    line.copyTo(array, 1);
+    assertArrayEquals(expected, Arrays.copyOfRange(array, 1, array.length));
+    assertEquals(expected.length, line.length());
+    assertEquals('O', line.byteAt(0));
+    assertTrue(line.asReadOnlyBuffer().isReadOnly());
+  }
+
+  /**
+   * A builder joins lines into exactly its capacity and can only build once.
+   */
+  @Test
+  void builderJoinsLines() {
+    EncodedReplies table = Codec.encodedReplies(10);
+    EncodedLine ok = table.ok();
+    EncodedLine ch = table.okChannel(7);
+
+    EncodedLine.Builder builder = new EncodedLine.Builder(ok.length() + ch.length());
+    EncodedLine joined = builder.append(ch).append(ok).build();
+    assertArrayEquals("OK CH=7\r\nOK\r\n".getBytes(StandardCharsets.US_ASCII),
+        joined.toByteArray());
+    assertThrows(IllegalStateException.class, () -> builder.append(ok));
+    assertThrows(IllegalStateException.class, builder::build);
+
+    EncodedLine.Builder partial = new EncodedLine.Builder(ok.length() + 1);
+    partial.append(ok);
+    assertThrows(IllegalStateException.class, partial::build);
+    assertThrows(IndexOutOfBoundsException.class, () -> partial.append(ok));
+  }
+}
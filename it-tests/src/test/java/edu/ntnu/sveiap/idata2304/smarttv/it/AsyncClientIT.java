@@ -0,0 +1,177 @@
+package edu.ntnu.sveiap.idata2304.smarttv.it;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ntnu.sveiap.idata2304.smarttv.client.transport.AsyncTcpClient;
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.TvFleet;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Framing;
+import edu.ntnu.sveiap.idata2304.smarttv.server.adapter.FleetTvRegistry;
+import edu.ntnu.sveiap.idata2304.smarttv.server.adapter.ProtocolHandler;
+import edu.ntnu.sveiap.idata2304.smarttv.server.broadcast.Broadcaster;
+import edu.ntnu.sveiap.idata2304.smarttv.server.transport.TcpServer;
+
+/**
+ * End-to-end test of {@link AsyncTcpClient} against the blocking transport.
+ */
+class AsyncClientIT {
+
+  private static int pickFreePort() throws IOException {
+    try (ServerSocket s = new ServerSocket(0)) {
+      return s.getLocalPort();
+    }
+  }
+
+  private static TcpServer startServer(int port) {
+    TcpServer server = new TcpServer(port,
+        new ProtocolHandler(new FleetTvRegistry(new TvFleet(100, 10), new Broadcaster())));
+    Thread t = new Thread(() -> {
+      try {
+        server.start();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }, "AsyncClientIT-ServerThread");
+    t.setDaemon(true);
+    t.start();
+    return server;
+  }
+
+  private static AsyncTcpClient connectWithRetry(int port, Framing framing,
+      Consumer<String> onEvent) throws Exception {
+    long deadline = System.currentTimeMillis() + 3_000;
+    IOException last = null;
+    while (System.currentTimeMillis() < deadline) {
+      try {
+        return new AsyncTcpClient("127.0.0.1", port, framing, onEvent);
+      } catch (IOException e) {
+        last = e;
+        Thread.sleep(50);
+      }
+    }
+    throw last != null ? last : new IOException("connect retry timed out");
+  }
+
+  /**
+   * Many requests in flight at once get their own replies, and events go to the listener
+   * instead of completing a request.
+   */
+  private static void repliesMatchRequests(Framing framing) throws Exception {
+    int port = pickFreePort();
+    TcpServer server = startServer(port);
+    List<String> events = new CopyOnWriteArrayList<>();
+    try (AsyncTcpClient client = connectWithRetry(port, framing, events::add)) {
+      assertEquals(framing, client.framing());
+      List<CompletableFuture<String>> replies = new ArrayList<>();
+      replies.add(client.request("SUB"));
+      for (int tv = 0; tv < 100; tv++) {
+        replies.add(client.request("USE " + tv));
+        replies.add(client.request("ON"));
+        replies.add(client.request("SET " + (tv % 10 + 1)));
+      }
+      replies.add(client.request("BOGUS"));
+      CompletableFuture.allOf(replies.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+
+      assertEquals("OK", replies.get(0).get());
+      for (int tv = 0; tv < 100; tv++) {
+        assertEquals("OK TV=" + tv, replies.get(1 + 3 * tv).get());
+        assertEquals("OK", replies.get(2 + 3 * tv).get());
+        assertEquals("OK CH=" + (tv % 10 + 1), replies.get(3 + 3 * tv).get());
+      }
+      assertEquals("ERR 400 BAD_COMMAND", replies.get(replies.size() - 1).get());
+      assertEquals(0, client.inFlight());
+      // The subscription follows USE, so every TV reports its power and channel change
+      assertTrue(events.contains("EVT POWER ON"));
+      assertTrue(events.contains("EVT CHANNEL 10"));
+    } finally {
+      server.stop();
+    }
+  }
+
+  @Test
+  void matchesRepliesOverText() throws Exception {
+    repliesMatchRequests(Framing.TEXT);
+  }
+
+  @Test
+  void matchesRepliesOverBinaryFrames() throws Exception {
+    repliesMatchRequests(Framing.BINARY);
+  }
+
+  /**
+   * Requests fail instead of hanging once the connection is gone.
+   */
+  @Test
+  void failsRequestsWhenClosed() throws Exception {
+    int port = pickFreePort();
+    TcpServer server = startServer(port);
+    try {
+      AsyncTcpClient client = connectWithRetry(port, Framing.TEXT, event -> { });
+      assertEquals("OK", client.request("PING").get(5, TimeUnit.SECONDS));
+      client.close();
+      ExecutionException e = assertThrows(ExecutionException.class,
+          () -> client.request("PING").get(5, TimeUnit.SECONDS));
+      assertTrue(e.getCause() instanceof IOException);
+    } finally {
+      server.stop();
+    }
+  }
+
+  /**
+   * Closing the client from a reply callback, which runs on the reader thread, returns
+   * instead of waiting for the reader to exit.
+   */
+  @Test
+  void closesFromReplyCallback() throws Exception {
+    int port = pickFreePort();
+    TcpServer server = startServer(port);
+    CountDownLatch inListener = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    try {
+      // Holds the reader in the listener, so the PING reply cannot complete its future
+      // before the callback is attached and the callback runs on the reader
+      AsyncTcpClient client = connectWithRetry(port, Framing.TEXT, event -> {
+        inListener.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      client.request("SUB");
+      client.request("ON");
+      assertTrue(inListener.await(5, TimeUnit.SECONDS));
+      CompletableFuture<Void> closed = new CompletableFuture<>();
+      client.request("PING").thenAccept(reply -> {
+        try {
+          client.close();
+          closed.complete(null);
+        } catch (IOException e) {
+          closed.completeExceptionally(e);
+        }
+      });
+      release.countDown();
+      closed.get(5, TimeUnit.SECONDS);
+      ExecutionException e = assertThrows(ExecutionException.class,
+          () -> client.request("PING").get(5, TimeUnit.SECONDS));
+      assertTrue(e.getCause() instanceof IOException);
+    } finally {
+      release.countDown();
+      server.stop();
+    }
+  }
+}
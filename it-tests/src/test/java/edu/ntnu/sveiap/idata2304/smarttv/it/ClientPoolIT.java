@@ -0,0 +1,164 @@
+package edu.ntnu.sveiap.idata2304.smarttv.it;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ntnu.sveiap.idata2304.smarttv.client.transport.TcpClient;
+import edu.ntnu.sveiap.idata2304.smarttv.client.transport.TcpClientPool;
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.TvFleet;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Framing;
+import edu.ntnu.sveiap.idata2304.smarttv.server.adapter.FleetTvRegistry;
+import edu.ntnu.sveiap.idata2304.smarttv.server.adapter.ProtocolHandler;
+import edu.ntnu.sveiap.idata2304.smarttv.server.broadcast.Broadcaster;
+import edu.ntnu.sveiap.idata2304.smarttv.server.transport.TcpServer;
+
+/**
+ * End-to-end test of {@link TcpClientPool} against the blocking transport.
+ */
+class ClientPoolIT {
+  private static final String HOST = "127.0.0.1";
+
+  private static int pickFreePort() throws IOException {
+    try (ServerSocket s = new ServerSocket(0)) {
+      return s.getLocalPort();
+    }
+  }
+
+  private static ProtocolHandler newHandler() {
+    return new ProtocolHandler(new FleetTvRegistry(new TvFleet(10, 10), new Broadcaster()));
+  }
+
+  private static TcpServer startServer(int port, ProtocolHandler handler) throws Exception {
+    TcpServer server = new TcpServer(port, handler);
+    Thread t = new Thread(() -> {
+      try {
+        server.start();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }, "ClientPoolIT-ServerThread");
+    t.setDaemon(true);
+    t.start();
+    long deadline = System.currentTimeMillis() + 3_000;
+    while (!server.isRunning() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    return server;
+  }
+
+  private static TcpClientPool.Settings settings(int minIdle, int maxSize, Duration idleTimeout,
+      Duration checkInterval, Duration borrowTimeout) {
+    return new TcpClientPool.Settings(minIdle, maxSize, idleTimeout, checkInterval,
+        borrowTimeout, Framing.TEXT);
+  }
+
+  /**
+   * Sequential requests share one connection, and the TV chosen with USE stays selected.
+   */
+  @Test
+  void reusesConnection() throws Exception {
+    int port = pickFreePort();
+    ProtocolHandler handler = newHandler();
+    TcpServer server = startServer(port, handler);
+    try (TcpClientPool pool = new TcpClientPool()) {
+      assertEquals(List.of("OK TV=3", "OK", "OK CH=5"),
+          pool.pipeline(HOST, port, List.of("USE 3", "ON", "SET 5")));
+      assertEquals("OK CH=5", pool.request(HOST, port, "GET"));
+      assertEquals("OK", pool.request(HOST, port, "PING"));
+      assertEquals(1, pool.openConnections(HOST, port));
+      assertEquals(1, handler.metrics().snapshot().totalConnections());
+    } finally {
+      server.stop();
+    }
+  }
+
+  /**
+   * No more than maxSize connections are opened; a borrower past that waits and then fails.
+   */
+  @Test
+  void capsConnectionsPerServer() throws Exception {
+    int port = pickFreePort();
+    TcpServer server = startServer(port, newHandler());
+    try (TcpClientPool pool = new TcpClientPool(settings(0, 2, Duration.ofSeconds(60),
+        Duration.ofSeconds(5), Duration.ofMillis(100)))) {
+      try (TcpClientPool.Lease a = pool.borrow(HOST, port);
+          TcpClientPool.Lease b = pool.borrow(HOST, port)) {
+        assertNotSame(a.client(), b.client());
+        assertThrows(IOException.class, () -> pool.borrow(HOST, port));
+      }
+      assertEquals(2, pool.openConnections(HOST, port));
+    } finally {
+      server.stop();
+    }
+  }
+
+  /**
+   * After a server restart the first failed request purges the stale connections, and the
+   * next one connects fresh.
+   */
+  @Test
+  void failsOverAfterServerRestart() throws Exception {
+    int port = pickFreePort();
+    TcpServer server = startServer(port, newHandler());
+    try (TcpClientPool pool = new TcpClientPool()) {
+      try (TcpClientPool.Lease a = pool.borrow(HOST, port);
+          TcpClientPool.Lease b = pool.borrow(HOST, port)) {
+        assertEquals("OK", a.client().request("PING"));
+        assertEquals("OK", b.client().request("PING"));
+      }
+      assertEquals(2, pool.openConnections(HOST, port));
+      server.stop();
+      server = startServer(port, newHandler());
+
+      try (TcpClientPool.Lease stale = pool.borrow(HOST, port)) {
+        assertThrows(IOException.class, () -> stale.call(c -> c.request("PING")));
+      }
+      assertEquals(0, pool.openConnections(HOST, port));
+      assertEquals("OK", pool.request(HOST, port, "PING"));
+      assertEquals(1, pool.openConnections(HOST, port));
+    } finally {
+      server.stop();
+    }
+  }
+
+  /**
+   * The background check closes connections idle for too long, down to the minimum.
+   */
+  @Test
+  void evictsIdleConnections() throws Exception {
+    int port = pickFreePort();
+    TcpServer server = startServer(port, newHandler());
+    try (TcpClientPool pool = new TcpClientPool(settings(1, 4, Duration.ofMillis(50),
+        Duration.ofMillis(20), Duration.ofSeconds(1)))) {
+      TcpClient first;
+      try (TcpClientPool.Lease a = pool.borrow(HOST, port);
+          TcpClientPool.Lease b = pool.borrow(HOST, port);
+          TcpClientPool.Lease c = pool.borrow(HOST, port)) {
+        first = a.client();
+        assertNotSame(b.client(), c.client());
+      }
+      assertEquals(3, pool.openConnections(HOST, port));
+      long deadline = System.currentTimeMillis() + 3_000;
+      while (pool.openConnections(HOST, port) > 1 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(20);
+      }
+      assertEquals(1, pool.openConnections(HOST, port));
+      try (TcpClientPool.Lease kept = pool.borrow(HOST, port)) {
+        assertEquals("OK", kept.client().request("PING"));
+        // Oldest go first, so the connection returned last is the one kept
+        assertSame(first, kept.client());
+      }
+    } finally {
+      server.stop();
+    }
+  }
+}
@@ -0,0 +1,165 @@
+package edu.ntnu.sveiap.idata2304.smarttv.it;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ntnu.sveiap.idata2304.smarttv.client.transport.TcpClient;
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.SmartTv;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Framing;
+import edu.ntnu.sveiap.idata2304.smarttv.server.adapter.ProtocolHandler;
+import edu.ntnu.sveiap.idata2304.smarttv.server.transport.NioTcpServer;
+import edu.ntnu.sveiap.idata2304.smarttv.server.transport.ServerTransport;
+import edu.ntnu.sveiap.idata2304.smarttv.server.transport.TcpServer;
+
+/**
+ * End-to-end test of pipelined requests from {@link TcpClient} against both transports.
+ */
+class PipelineIT {
+
+  private static int pickFreePort() throws IOException {
+    try (ServerSocket s = new ServerSocket(0)) {
+      return s.getLocalPort();
+    }
+  }
+
+  private static void startInBackground(ServerTransport server) {
+    Thread t = new Thread(() -> {
+      try {
+        server.start();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }, "PipelineIT-ServerThread");
+    t.setDaemon(true);
+    t.start();
+  }
+
+  private static TcpClient connectWithRetry(int port, Framing framing) throws Exception {
+    long deadline = System.currentTimeMillis() + 3_000;
+    IOException last = null;
+    while (System.currentTimeMillis() < deadline) {
+      try {
+        return new TcpClient("127.0.0.1", port, framing);
+      } catch (IOException e) {
+        last = e;
+        Thread.sleep(50);
+      }
+    }
+    throw last != null ? last : new IOException("connect retry timed out");
+  }
+
+  /**
+   * Sends more commands than one pipeline batch holds, with events and a MULTI/EXEC
+   * batch mixed in, and checks every reply arrives in order.
+   *
+   * @param framing The framing the client asks for.
+   * @param expectedFraming The framing the server should agree to.
+   */
+  private static void pipelinesInOrder(int port, Framing framing, Framing expectedFraming)
+      throws Exception {
+    List<String> lines = new ArrayList<>();
+    List<String> expected = new ArrayList<>();
+    lines.add("SUB");
+    expected.add("OK");
+    lines.add("ON");
+    expected.add("OK");
+    for (int i = 0; i < 600; i++) {
+      int ch = i % 10 + 1;
+      lines.add("SET " + ch);
+      expected.add("OK CH=" + ch);
+      lines.add("GET");
+      expected.add("OK CH=" + ch);
+    }
+    lines.addAll(List.of("MULTI", "SET 2", "UP", "EXEC", "GET"));
+    expected.addAll(List.of("OK", "OK CH=2", "OK CH=3", "OK", "OK CH=3"));
+    lines.add("BOGUS");
+    expected.add("ERR 400 BAD_COMMAND");
+
+    try (TcpClient client = connectWithRetry(port, framing)) {
+      assertEquals(expectedFraming, client.framing());
+      assertEquals(expected, client.pipeline(lines));
+      assertEquals("OK", client.pipeline(List.of("PING")).get(0));
+    }
+  }
+
+  @Test
+  void pipelinesOverBlockingTransport() throws Exception {
+    int port = pickFreePort();
+    TcpServer server = new TcpServer(port, new ProtocolHandler(new SmartTv(10)));
+    startInBackground(server);
+    try {
+      pipelinesInOrder(port, Framing.TEXT, Framing.TEXT);
+    } finally {
+      server.stop();
+    }
+  }
+
+  @Test
+  void pipelinesBinaryFramesOverBlockingTransport() throws Exception {
+    int port = pickFreePort();
+    TcpServer server = new TcpServer(port, new ProtocolHandler(new SmartTv(10)));
+    startInBackground(server);
+    try {
+      pipelinesInOrder(port, Framing.BINARY, Framing.BINARY);
+    } finally {
+      server.stop();
+    }
+  }
+
+  @Test
+  void pipelinesOverNioTransport() throws Exception {
+    int port = pickFreePort();
+    NioTcpServer server = new NioTcpServer(port, new ProtocolHandler(new SmartTv(10)), 2);
+    startInBackground(server);
+    try {
+      pipelinesInOrder(port, Framing.TEXT, Framing.TEXT);
+    } finally {
+      server.stop();
+    }
+  }
+
+  /**
+   * The NIO transport only speaks text; a client asking for binary falls back to it.
+   */
+  @Test
+  void binaryClientFallsBackToTextOverNioTransport() throws Exception {
+    int port = pickFreePort();
+    NioTcpServer server = new NioTcpServer(port, new ProtocolHandler(new SmartTv(10)), 2);
+    startInBackground(server);
+    try {
+      pipelinesInOrder(port, Framing.BINARY, Framing.TEXT);
+    } finally {
+      server.stop();
+    }
+  }
+
+  /**
+   * A batch that starts near the end of one pipeline chunk and ends in the next still gets
+   * its replies, which the server only sends at EXEC.
+   */
+  @Test
+  void batchSpansPipelineChunks() throws Exception {
+    int port = pickFreePort();
+    NioTcpServer server = new NioTcpServer(port, new ProtocolHandler(new SmartTv(10)), 2);
+    startInBackground(server);
+    try (TcpClient client = connectWithRetry(port, Framing.TEXT)) {
+      List<String> lines = new ArrayList<>();
+      List<String> expected = new ArrayList<>();
+      for (int i = 0; i < TcpClient.MAX_PIPELINE_DEPTH - 2; i++) {
+        lines.add("PING");
+        expected.add("OK");
+      }
+      lines.addAll(List.of("MULTI", "ON", "SET 4", "DOWN", "EXEC", "GET"));
+      expected.addAll(List.of("OK", "OK", "OK CH=4", "OK CH=3", "OK", "OK CH=3"));
+      assertEquals(expected, client.pipeline(lines));
+    } finally {
+      server.stop();
+    }
+  }
+}
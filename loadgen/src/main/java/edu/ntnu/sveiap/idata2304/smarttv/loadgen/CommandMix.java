@@ -0,0 +1,93 @@
+package edu.ntnu.sveiap.idata2304.smarttv.loadgen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Codec;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Command;
+
+/**
+ * A weighted mix of commands to send, parsed from a spec such as
+ * {@code STATUS=30,GET=30,SET=20,UP=10,DOWN=5,PING=5}.
+ * SET picks a random channel. All request lines are built up front, so picking the next
+ * command does not allocate.
+ */
+public final class CommandMix {
+
+  /** Mix used when none is given. */
+  public static final String DEFAULT_SPEC = "STATUS=30,GET=30,SET=20,UP=10,DOWN=5,PING=5";
+
+  private static final List<Command> ALLOWED =
+      List.of(Command.STATUS, Command.GET, Command.SET, Command.UP, Command.DOWN, Command.PING);
+
+  /** One entry per weight unit, so a uniform pick follows the weights. */
+  private final String[][] choices;
+
+  private CommandMix(String[][] choices) {
+    this.choices = choices;
+  }
+
+  /**
+   * Parses a mix spec.
+   *
+   * @param spec Comma-separated {@code COMMAND=weight} pairs; weights are non-negative
+   *     integers and at least one must be positive.
+   * @param channels Number of TV channels; SET picks from 1..channels.
+   * @return The mix.
+   * @throws IllegalArgumentException if the spec is malformed or names a command the
+   *     generator does not send.
+   */
+  public static CommandMix parse(String spec, int channels) {
+    if (spec == null || spec.isBlank()) throw new IllegalArgumentException("mix cannot be empty");
+    if (channels < 1) throw new IllegalArgumentException("channels must be at least 1");
+
+    String[] setLines = new String[channels];
+    for (int ch = 1; ch <= channels; ch++) {
+      setLines[ch - 1] = "SET " + ch;
+    }
+
+    List<String[]> choices = new ArrayList<>();
+    for (String part : spec.split(",")) {
+      String[] kv = part.trim().split("=");
+      if (kv.length != 2) throw new IllegalArgumentException("Expected COMMAND=weight: " + part);
+
+      String token = kv[0].trim().toUpperCase(Locale.ROOT);
+      String probe = token.equals("SET") ? setLines[0] : token;
+      Command cmd;
+      try {
+        cmd = Codec.parseRequest(probe).command();
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("Unknown command in mix: " + kv[0]);
+      }
+      if (!ALLOWED.contains(cmd)) throw new IllegalArgumentException("Command not allowed in mix: " + token);
+
+      int weight;
+      try {
+        weight = Integer.parseInt(kv[1].trim());
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Weight is not a number: " + kv[1]);
+      }
+      if (weight < 0) throw new IllegalArgumentException("Weight cannot be negative: " + part);
+
+      String[] lines = cmd == Command.SET ? setLines : new String[] {token};
+      for (int i = 0; i < weight; i++) {
+        choices.add(lines);
+      }
+    }
+    if (choices.isEmpty()) throw new IllegalArgumentException("mix needs at least one positive weight");
+    return new CommandMix(choices.toArray(new String[0][]));
+  }
+
+  /**
+   * Picks the next request line.
+   *
+   * @param random The calling connection's random source.
+   * @return The line to send, without CRLF.
+   */
+  public String next(SplittableRandom random) {
+    String[] lines = choices[random.nextInt(choices.length)];
+    return lines.length == 1 ? lines[0] : lines[random.nextInt(lines.length)];
+  }
+}
@@ -0,0 +1,50 @@
+package edu.ntnu.sveiap.idata2304.smarttv.loadgen;
+
+import java.time.Duration;
+
+/**
+ * Settings for one load run.
+ *
+ * @param host Server host.
+ * @param port Server port.
+ * @param connections Number of concurrent connections.
+ * @param subscribers How many of the connections send SUB before the run and so also
+ *     receive events.
+ * @param rate Total requests per second across all connections (open loop), or 0 to send
+ *     as fast as replies come back (closed loop).
+ * @param warmup Time at the start whose results are discarded.
+ * @param duration Measured time after the warmup.
+ * @param mix The commands to send.
+ */
+public record LoadConfig(String host, int port, int connections, int subscribers, double rate,
+    Duration warmup, Duration duration, CommandMix mix) {
+
+  /**
+   * Validates the settings.
+   *
+   * @throws IllegalArgumentException if a value is out of range or missing.
+   */
+  public LoadConfig {
+    if (host == null || host.isBlank()) throw new IllegalArgumentException("host cannot be empty");
+    if (port < 1 || port > 65535) throw new IllegalArgumentException("port out of range");
+    if (connections < 1) throw new IllegalArgumentException("connections must be at least 1");
+    if (subscribers < 0 || subscribers > connections) {
+      throw new IllegalArgumentException("subscribers must be between 0 and connections");
+    }
+    if (rate < 0) throw new IllegalArgumentException("rate cannot be negative");
+    if (warmup == null || warmup.isNegative()) throw new IllegalArgumentException("warmup cannot be negative");
+    if (duration == null || duration.isNegative() || duration.isZero()) {
+      throw new IllegalArgumentException("duration must be positive");
+    }
+    if (mix == null) throw new IllegalArgumentException("mix cannot be null");
+  }
+
+  /**
+   * Returns whether requests are sent at a fixed rate.
+   *
+   * @return true for an open-loop run.
+   */
+  public boolean openLoop() {
+    return rate > 0;
+  }
+}
@@ -0,0 +1,61 @@
+package edu.ntnu.sveiap.idata2304.smarttv.loadgen;
+
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+
+/**
+ * Command-line entry point for the load generator.
+ * Options (all optional):
+ * {@code --host <host>} (default 127.0.0.1), {@code --port <int>} (default 1238),
+ * {@code --connections <int>} (default 16), {@code --subscribers <int>} (default 0),
+ * {@code --rate <req/s>} (0 = closed loop, default), {@code --warmup <s>} (default 2),
+ * {@code --duration <s>} (default 10), {@code --mix <spec>} (see {@link CommandMix}),
+ * {@code --channels <int>} (default 10) and {@code --hgrm <file>} (write the full
+ * latency distribution).
+ */
+public final class LoadGenApp {
+    private LoadGenApp() {}
+
+    public static void main(String[] args) throws Exception {
+        String host = "127.0.0.1";
+        int port = 1238;
+        int connections = 16;
+        int subscribers = 0;
+        double rate = 0;
+        long warmup = 2;
+        long duration = 10;
+        String mix = CommandMix.DEFAULT_SPEC;
+        int channels = 10;
+        String hgrm = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--host" -> host = args[i + 1];
+                case "--port" -> port = Integer.parseInt(args[i + 1]);
+                case "--connections" -> connections = Integer.parseInt(args[i + 1]);
+                case "--subscribers" -> subscribers = Integer.parseInt(args[i + 1]);
+                case "--rate" -> rate = Double.parseDouble(args[i + 1]);
+                case "--warmup" -> warmup = Long.parseLong(args[i + 1]);
+                case "--duration" -> duration = Long.parseLong(args[i + 1]);
+                case "--mix" -> mix = args[i + 1];
+                case "--channels" -> channels = Integer.parseInt(args[i + 1]);
+                case "--hgrm" -> hgrm = args[i + 1];
+                default -> System.out.println("[LoadGenApp] Ignoring unknown option " + args[i]);
+            }
+        }
+
+        LoadConfig config = new LoadConfig(host, port, connections, subscribers, rate,
+                Duration.ofSeconds(warmup), Duration.ofSeconds(duration),
+                CommandMix.parse(mix, channels));
+        System.out.println("[LoadGenApp] Running against " + host + ":" + port);
+
+        LoadResult result = new LoadGenerator(config).run();
+        result.print(System.out);
+
+        if (hgrm != null) {
+            try (PrintStream out = new PrintStream(new FileOutputStream(hgrm))) {
+                result.printDistribution(out);
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package edu.ntnu.sveiap.idata2304.smarttv.loadgen;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.HdrHistogram.Histogram;
+
+import edu.ntnu.sveiap.idata2304.smarttv.client.transport.TcpClient;
+
+/**
+ * Drives load against a TV server over a number of concurrent {@link TcpClient}
+ * connections, each on its own virtual thread.
+ *
+ * <p>In closed-loop mode every connection sends its next request as soon as the previous
+ * reply arrives, which finds the maximum throughput. In open-loop mode requests are
+ * scheduled at a fixed total rate, spread evenly over the connections, and latency is
+ * measured from when a request was <em>due</em> rather than when it was sent. A stall then
+ * shows up in the latency of every request that should have been sent during it, instead
+ * of being hidden by the generator waiting too (coordinated omission).
+ */
+public final class LoadGenerator {
+  private static final Logger LOG = Logger.getLogger(LoadGenerator.class.getName());
+
+  /** Latencies are kept to three significant digits. */
+  private static final int SIGNIFICANT_DIGITS = 3;
+
+  private final LoadConfig config;
+
+  /**
+   * Creates a load generator.
+   *
+   * @param config The run settings.
+   * @throws IllegalArgumentException if config is null.
+   */
+  public LoadGenerator(LoadConfig config) {
+    if (config == null) throw new IllegalArgumentException("config cannot be null");
+    this.config = config;
+  }
+
+  /**
+   * Turns the TV on, runs the warmup and the measured period, and returns the results.
+   *
+   * @return The measured results.
+   * @throws IOException if the server cannot be reached.
+   * @throws InterruptedException if interrupted while waiting for the connections.
+   */
+  public LoadResult run() throws IOException, InterruptedException {
+    // GET/SET/UP/DOWN only measure the normal path when the TV is on
+    try (TcpClient setup = new TcpClient(config.host(), config.port())) {
+      setup.request("ON");
+    }
+
+    long start = System.nanoTime() + 50_000_000L; // let all connections open first
+    long measureFrom = start + config.warmup().toNanos();
+    long end = measureFrom + config.duration().toNanos();
+
+    List<Future<Stats>> futures = new ArrayList<>();
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int i = 0; i < config.connections(); i++) {
+        int index = i;
+        futures.add(executor.submit(() -> drive(index, start, measureFrom, end)));
+      }
+    }
+
+    Histogram latency = new Histogram(SIGNIFICANT_DIGITS);
+    long requests = 0;
+    long errors = 0;
+    int failed = 0;
+    for (Future<Stats> f : futures) {
+      try {
+        Stats s = f.get();
+        latency.add(s.latency);
+        requests += s.requests;
+        errors += s.errors;
+      } catch (ExecutionException e) {
+        failed++;
+        LOG.log(Level.WARNING, "Connection failed: " + e.getCause().getMessage());
+      }
+    }
+    return new LoadResult(config, requests, errors, failed, end - measureFrom, latency);
+  }
+
+  /**
+   * Runs one connection until the end time.
+   */
+  private Stats drive(int index, long start, long measureFrom, long end) throws IOException {
+    Stats stats = new Stats();
+    SplittableRandom random = new SplittableRandom(index);
+    CommandMix mix = config.mix();
+
+    try (TcpClient client = new TcpClient(config.host(), config.port())) {
+      if (index < config.subscribers()) {
+        client.request("SUB");
+      }
+
+      // Each connection sends every interval, staggered so the total rate is even
+      long interval = config.openLoop() ? (long) (1e9 * config.connections() / config.rate()) : 0;
+      long due = start + interval * index / config.connections();
+      waitUntil(start);
+
+      while (true) {
+        if (interval > 0) {
+          waitUntil(due);
+        } else {
+          due = System.nanoTime();
+        }
+        if (due - end >= 0) break;
+
+        String reply = client.request(mix.next(random));
+        long done = System.nanoTime();
+
+        if (due - measureFrom >= 0) {
+          stats.latency.recordValue(done - due);
+          stats.requests++;
+          if (reply.startsWith("ERR")) stats.errors++;
+        }
+        due += interval;
+      }
+    }
+    return stats;
+  }
+
+  private static void waitUntil(long deadline) {
+    long remaining;
+    while ((remaining = deadline - System.nanoTime()) > 0) {
+      LockSupport.parkNanos(remaining);
+    }
+  }
+
+  /**
+   * Results of one connection; only touched by its own thread until it finishes.
+   */
+  private static final class Stats {
+    private final Histogram latency = new Histogram(SIGNIFICANT_DIGITS);
+    private long requests;
+    private long errors;
+  }
+}
@@ -0,0 +1,73 @@
+package edu.ntnu.sveiap.idata2304.smarttv.loadgen;
+
+import java.io.PrintStream;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Results of a load run.
+ *
+ * @param config The settings the run used.
+ * @param requests Requests completed in the measured period.
+ * @param errors Of those, how many got an {@code ERR} reply.
+ * @param failedConnections Connections that failed with an I/O error.
+ * @param measuredNanos Length of the measured period.
+ * @param latency Latency of each measured request in nanoseconds.
+ */
+public record LoadResult(LoadConfig config, long requests, long errors, int failedConnections,
+    long measuredNanos, Histogram latency) {
+
+  private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+  /**
+   * Returns the achieved throughput.
+   *
+   * @return Completed requests per second.
+   */
+  public double throughput() {
+    return requests * 1e9 / measuredNanos;
+  }
+
+  /**
+   * Returns a latency percentile.
+   *
+   * @param percentile The percentile, 0 to 100.
+   * @return The latency in microseconds.
+   */
+  public double latencyMicros(double percentile) {
+    return latency.getValueAtPercentile(percentile) / 1000.0;
+  }
+
+  /**
+   * Prints a summary.
+   *
+   * @param out Where to print.
+   */
+  public void print(PrintStream out) {
+    out.printf("Mode:        %s%n", config.openLoop()
+        ? String.format("open loop, %.0f req/s target", config.rate()) : "closed loop");
+    out.printf("Connections: %d (%d subscribed)%n", config.connections(), config.subscribers());
+    out.printf("Requests:    %d in %.1f s, %d ERR replies, %d failed connections%n",
+        requests, measuredNanos / 1e9, errors, failedConnections);
+    out.printf("Throughput:  %.0f req/s%n", throughput());
+    out.println("Latency (us):");
+    for (double p : PERCENTILES) {
+      out.printf("  p%-6s %10.1f%n", format(p), latencyMicros(p));
+    }
+    out.printf("  max     %10.1f%n", latency.getMaxValue() / 1000.0);
+    out.printf("  mean    %10.1f%n", latency.getMean() / 1000.0);
+  }
+
+  /**
+   * Writes the full percentile distribution in HdrHistogram's .hgrm format, in microseconds.
+   *
+   * @param out Where to write.
+   */
+  public void printDistribution(PrintStream out) {
+    latency.outputPercentileDistribution(out, 1000.0);
+  }
+
+  private static String format(double p) {
+    return p == Math.rint(p) ? String.valueOf((long) p) : String.valueOf(p);
+  }
+}
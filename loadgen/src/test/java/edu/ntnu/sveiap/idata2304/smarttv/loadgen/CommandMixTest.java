@@ -0,0 +1,50 @@
+package edu.ntnu.sveiap.idata2304.smarttv.loadgen;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for CommandMix.
+ */
+class CommandMixTest {
+
+  /**
+   * Picks follow the weights and SET stays within the channel range.
+   */
+  @Test
+  void picksFollowWeights() {
+    CommandMix mix = CommandMix.parse("status=3, SET=1, PING=0", 4);
+    SplittableRandom random = new SplittableRandom(1);
+    Map<String, Integer> counts = new HashMap<>();
+    for (int i = 0; i < 40_000; i++) {
+      String line = mix.next(random);
+      counts.merge(line.startsWith("SET ") ? "SET" : line, 1, Integer::sum);
+      if (line.startsWith("SET ")) {
+        int ch = Integer.parseInt(line.substring(4));
+        assertTrue(ch >= 1 && ch <= 4);
+      }
+    }
+    assertEquals(2, counts.size());
+    assertTrue(Math.abs(counts.get("STATUS") - 30_000) < 1_000);
+  }
+
+  /**
+   * Malformed specs and commands the generator does not send are rejected.
+   */
+  @Test
+  void rejectsBadSpecs() {
+    assertThrows(IllegalArgumentException.class, () -> CommandMix.parse("", 10));
+    assertThrows(IllegalArgumentException.class, () -> CommandMix.parse("STATUS", 10));
+    assertThrows(IllegalArgumentException.class, () -> CommandMix.parse("FOO=1", 10));
+    assertThrows(IllegalArgumentException.class, () -> CommandMix.parse("OFF=1", 10));
+    assertThrows(IllegalArgumentException.class, () -> CommandMix.parse("GET=x", 10));
+    assertThrows(IllegalArgumentException.class, () -> CommandMix.parse("GET=0", 10));
+  }
+}
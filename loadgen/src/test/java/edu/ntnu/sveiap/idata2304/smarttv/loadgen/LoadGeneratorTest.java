@@ -0,0 +1,91 @@
+package edu.ntnu.sveiap.idata2304.smarttv.loadgen;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.SmartTv;
+import edu.ntnu.sveiap.idata2304.smarttv.server.adapter.ProtocolHandler;
+import edu.ntnu.sveiap.idata2304.smarttv.server.transport.TcpServer;
+
+/**
+ * Runs short loads against a real TcpServer on loopback.
+ */
+class LoadGeneratorTest {
+
+  private static int pickFreePort() throws IOException {
+    try (ServerSocket s = new ServerSocket(0)) {
+      return s.getLocalPort();
+    }
+  }
+
+  private static TcpServer startServer(int port) {
+    TcpServer server = new TcpServer(port, new ProtocolHandler(new SmartTv(10)));
+    Thread t = new Thread(() -> {
+      try {
+        server.start();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }, "LoadGeneratorTest-ServerThread");
+    t.setDaemon(true);
+    t.start();
+    return server;
+  }
+
+  private static LoadResult runAgainst(int port, double rate, int subscribers) throws Exception {
+    IOException last = null;
+    for (int attempt = 0; attempt < 20; attempt++) {
+      LoadConfig config = new LoadConfig("127.0.0.1", port, 4, subscribers, rate,
+          Duration.ofMillis(100), Duration.ofMillis(500),
+          CommandMix.parse("STATUS=1,GET=1,SET=1,PING=1", 10));
+      try {
+        return new LoadGenerator(config).run();
+      } catch (IOException e) {
+        last = e; // server not listening yet
+        Thread.sleep(50);
+      }
+    }
+    throw last;
+  }
+
+  /**
+   * Closed loop sends as fast as replies come back, without errors.
+   */
+  @Test
+  void closedLoopCompletesRequests() throws Exception {
+    int port = pickFreePort();
+    TcpServer server = startServer(port);
+    try {
+      LoadResult result = runAgainst(port, 0, 2);
+      assertEquals(0, result.failedConnections());
+      assertEquals(0, result.errors());
+      assertTrue(result.requests() > 0);
+      assertEquals(result.requests(), result.latency().getTotalCount());
+    } finally {
+      server.stop();
+    }
+  }
+
+  /**
+   * Open loop sends at the configured rate, not faster.
+   */
+  @Test
+  void openLoopHoldsTheRate() throws Exception {
+    int port = pickFreePort();
+    TcpServer server = startServer(port);
+    try {
+      LoadResult result = runAgainst(port, 2_000, 0);
+      // 2000 req/s for 0.5 s, give or take the requests of one interval per connection
+      assertTrue(result.requests() <= 1_000 + 4, "sent " + result.requests());
+      assertTrue(result.requests() >= 500, "sent " + result.requests());
+    } finally {
+      server.stop();
+    }
+  }
+}
@@ -0,0 +1,189 @@
+package edu.ntnu.sveiap.idata2304.smarttv.client.transport;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Framing;
+
+/**
+ * A TCP client that does not block the caller: {@link #request(String)} writes the line and
+ * returns a future that completes with the reply.
+ * Any number of requests may be in flight. The server answers the requests of a connection
+ * in order, so replies are matched to requests first in, first out. {@code EVT} lines are
+ * passed to the event listener instead.
+ *
+ * <p>Each client has one virtual reader thread that parks while waiting for the socket, so
+ * a controller can keep hundreds of clients open without a platform thread per TV.
+ * Replies and events are delivered on that thread: the listener and stages added with the
+ * non-async {@code then...} methods must not block, or they hold up every later reply.
+ *
+ * <p>When the connection fails or is closed, every pending future and every later request
+ * completes exceptionally with the cause.
+ */
+public final class AsyncTcpClient implements Closeable {
+  private static final Logger LOG = Logger.getLogger(AsyncTcpClient.class.getName());
+
+  private final ClientConnection connection;
+  private final Consumer<String> onEvent;
+  private final Queue<CompletableFuture<String>> pending = new ConcurrentLinkedQueue<>();
+  private final ReentrantLock writeLock = new ReentrantLock();
+  private final Thread reader;
+
+  /** Why the connection ended; guarded by writeLock, read without it on the fast path. */
+  private volatile IOException failure;
+
+  /**
+   * Connects using text framing.
+   *
+   * @param host The server host.
+   * @param port The server port.
+   * @param onEvent Receives every {@code EVT ...} line, without CRLF.
+   * @throws IOException if connecting fails.
+   */
+  public AsyncTcpClient(String host, int port, Consumer<String> onEvent) throws IOException {
+    this(host, port, Framing.TEXT, onEvent);
+  }
+
+  /**
+   * Connects and, for {@link Framing#BINARY}, negotiates binary frames, falling back to
+   * text if the server refuses.
+   *
+   * @param host The server host.
+   * @param port The server port.
+   * @param framing The framing to ask for.
+   * @param onEvent Receives every {@code EVT ...} line, without CRLF.
+   * @throws IOException if connecting or the handshake fails.
+   * @throws IllegalArgumentException if onEvent is null.
+   */
+  public AsyncTcpClient(String host, int port, Framing framing, Consumer<String> onEvent)
+      throws IOException {
+    if (onEvent == null) throw new IllegalArgumentException("onEvent cannot be null");
+    this.onEvent = onEvent;
+    this.connection = new ClientConnection(host, port, framing);
+    this.reader = Thread.ofVirtual().name("async-client-" + host + ":" + port).start(this::readLoop);
+  }
+
+  /**
+   * Returns the framing in use, which is text if binary was asked for but refused.
+   *
+   * @return The framing.
+   */
+  public Framing framing() {
+    return connection.framing();
+  }
+
+  /**
+   * Sends a command. The line is written and flushed before this returns; only the reply
+   * is waited for asynchronously.
+   *
+   * @param line The command to send; must not be blank, since the server does not reply
+   *     to blank lines.
+   * @return A future completed with the reply without CRLF, or exceptionally with the
+   *     {@link IOException} that ended the connection.
+   * @throws IllegalArgumentException if the line is null or blank.
+   */
+  public CompletableFuture<String> request(String line) {
+    if (line == null || line.isBlank()) throw new IllegalArgumentException("line cannot be blank");
+    CompletableFuture<String> reply = new CompletableFuture<>();
+    writeLock.lock();
+    try {
+      if (failure != null) {
+        reply.completeExceptionally(failure);
+        return reply;
+      }
+      // Queued before it is written, so the reader never sees a reply it has no future for
+      pending.add(reply);
+      connection.write(line);
+      connection.flush();
+    } catch (IOException e) {
+      fail(e);
+    } finally {
+      writeLock.unlock();
+    }
+    return reply;
+  }
+
+  /**
+   * Returns how many requests are waiting for their reply.
+   *
+   * @return The number of requests in flight.
+   */
+  public int inFlight() {
+    return pending.size();
+  }
+
+  private void readLoop() {
+    IOException cause;
+    try {
+      String line;
+      while ((line = connection.readLine()) != null) {
+        if (line.startsWith("EVT ")) {
+          deliverEvent(line);
+          continue;
+        }
+        CompletableFuture<String> reply = pending.poll();
+        if (reply == null) throw new IOException("Reply without a request: " + line);
+        reply.complete(line);
+      }
+      cause = new EOFException("Connection closed before all replies arrived");
+    } catch (IOException e) {
+      cause = e;
+    }
+    fail(cause);
+  }
+
+  private void deliverEvent(String line) {
+    try {
+      onEvent.accept(line);
+    } catch (RuntimeException e) {
+      LOG.log(Level.WARNING, "Event listener failed: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Ends the connection: the first cause wins, and every pending request fails with it.
+   */
+  private void fail(IOException cause) {
+    writeLock.lock();
+    try {
+      if (failure == null) failure = cause;
+    } finally {
+      writeLock.unlock();
+    }
+    CompletableFuture<String> reply;
+    while ((reply = pending.poll()) != null) {
+      reply.completeExceptionally(failure);
+    }
+  }
+
+  /**
+   * Closes the connection. Requests still waiting for a reply fail, and the reader thread
+   * exits. Waits for the reader unless called on it, from a reply stage or the event
+   * listener; the reader then exits once the callback returns.
+   *
+   * @throws IOException if closing the socket fails.
+   */
+  @Override
+  public void close() throws IOException {
+    fail(new IOException("Client closed"));
+    try {
+      connection.close();
+    } finally {
+      if (Thread.currentThread() != reader) {
+        try {
+          reader.join();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,150 @@
+package edu.ntnu.sveiap.idata2304.smarttv.client.transport;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.BinaryCodec;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Codec;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Framing;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Request;
+
+/**
+ * The socket and framing shared by the clients in this package.
+ * Callers always work with text lines; in {@link Framing#BINARY} each line is encoded as a
+ * request frame and each reply frame is read back as the line the text protocol would
+ * have sent.
+ *
+ * <p>Not thread-safe: one thread may write and another read, but not two of either.
+ */
+final class ClientConnection implements Closeable {
+  private final Socket socket;
+  private final InputStream in;
+  private final OutputStream out;
+  private final ByteArrayOutputStream lineBuffer = new ByteArrayOutputStream();
+  private final Framing framing;
+
+  /**
+   * Connects and, for {@link Framing#BINARY}, negotiates binary frames. A server that does
+   * not know the handshake answers it with an error, and the connection stays text.
+   *
+   * @param host The server host.
+   * @param port The server port.
+   * @param framing The framing to ask for.
+   * @throws IOException if connecting or the handshake fails.
+   */
+  ClientConnection(String host, int port, Framing framing) throws IOException {
+    this.socket = new Socket(host, port);
+    try {
+      socket.setTcpNoDelay(true);
+      this.in = new BufferedInputStream(socket.getInputStream());
+      this.out = new BufferedOutputStream(socket.getOutputStream());
+      this.framing = framing == Framing.BINARY && negotiateBinary() ? Framing.BINARY : Framing.TEXT;
+    } catch (IOException e) {
+      socket.close();
+      throw e;
+    }
+  }
+
+  private boolean negotiateBinary() throws IOException {
+    writeLine(BinaryCodec.HANDSHAKE);
+    out.flush();
+    String reply = readTextLine();
+    if (reply == null) throw new EOFException("Connection closed during the handshake");
+    return reply.equals(Codec.okProto("BIN").trim());
+  }
+
+  /**
+   * Returns the framing in use.
+   */
+  Framing framing() {
+    return framing;
+  }
+
+  /**
+   * Writes one request without flushing. In binary framing a blank line is not sent, as
+   * the server would not reply to it anyway, and a line that does not parse is sent as
+   * {@link BinaryCodec#OP_INVALID} so the server answers BAD_COMMAND just like in text.
+   */
+  void write(String line) throws IOException {
+    if (framing != Framing.BINARY) {
+      writeLine(line);
+      return;
+    }
+    if (line.isBlank()) return;
+    Request req;
+    try {
+      req = Codec.parseRequest(line);
+    } catch (IllegalArgumentException notEncodable) {
+      out.write(BinaryCodec.OP_INVALID);
+      return;
+    }
+    BinaryCodec.writeRequest(out, req.command(), req.arg() == null ? 0 : req.arg());
+  }
+
+  /**
+   * Sets how long a read may block before it fails with a SocketTimeoutException.
+   *
+   * @param millis The timeout, or 0 to wait forever.
+   */
+  void setReadTimeout(int millis) throws IOException {
+    socket.setSoTimeout(millis);
+  }
+
+  void flush() throws IOException {
+    out.flush();
+  }
+
+  /**
+   * Reads the next reply or event.
+   *
+   * @return The line without CRLF, or null if the connection closed.
+   */
+  String readLine() throws IOException {
+    return framing == Framing.BINARY ? BinaryCodec.readReply(in) : readTextLine();
+  }
+
+  private void writeLine(String line) throws IOException {
+    out.write(line.getBytes(StandardCharsets.UTF_8));
+    out.write('\r');
+    out.write('\n');
+  }
+
+  /**
+   * Reads a text line ending in LF, dropping the CR before it.
+   *
+   * @return The line, or null if the connection closed first.
+   */
+  private String readTextLine() throws IOException {
+    lineBuffer.reset();
+    int b;
+    while ((b = in.read()) >= 0 && b != '\n') {
+      lineBuffer.write(b);
+    }
+    if (b < 0 && lineBuffer.size() == 0) return null;
+    int length = lineBuffer.size();
+    byte[] bytes = lineBuffer.toByteArray();
+    if (length > 0 && bytes[length - 1] == '\r') length--;
+    return new String(bytes, 0, length, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Flushes what is written and closes the socket, which also unblocks a thread waiting in
+   * {@link #readLine()}. The socket is closed even if flushing fails.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      out.flush();
+    } finally {
+      socket.close();
+    }
+  }
+}
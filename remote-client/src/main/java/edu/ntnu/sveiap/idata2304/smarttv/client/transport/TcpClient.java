@@ -1,36 +1,69 @@
 package edu.ntnu.sveiap.idata2304.smarttv.client.transport;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.Closeable;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.net.Socket;
-import java.nio.charset.StandardCharsets;
+import java.io.EOFException;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.BinaryCodec;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Framing;
 
 
 /**
  * A simple TCP client that connects to a server, sends and receives lines of text.
  * Each line is terminated with CRLF (\r\n).
  * The client uses UTF-8 encoding for sending and receiving text.
+ *
+ * <p>A client created with {@link Framing#BINARY} asks the server for binary frames
+ * ({@link BinaryCodec}) when it connects. The methods still take and return text lines:
+ * each line is encoded as a request frame and each reply frame is returned as the line the
+ * text protocol would have sent. A server that does not know the handshake answers it with
+ * an error, and the client stays on text.
  */
 public final class TcpClient implements Closeable {
 
-  private final Socket socket;
-  private final BufferedReader in;
-  private final BufferedWriter out;
+  /**
+   * Most requests {@link #pipeline} keeps in flight. Bounds how much the two sides can
+   * have unread in each other's socket buffers, so neither blocks writing while the other
+   * is also writing.
+   */
+  public static final int MAX_PIPELINE_DEPTH = 256;
+
+  private final ClientConnection connection;
 
   public TcpClient(String host, int port) throws IOException {
-    this.socket = new Socket(host, port);
+    this(host, port, Framing.TEXT);
+  }
 
-    this.socket.setTcpNoDelay(true);
+  /**
+   * Connects and, for {@link Framing#BINARY}, negotiates binary frames.
+   *
+   * @param host The server host.
+   * @param port The server port.
+   * @param framing The framing to ask for.
+   * @throws IOException if connecting or the handshake fails.
+   */
+  public TcpClient(String host, int port, Framing framing) throws IOException {
+    this.connection = new ClientConnection(host, port, framing);
+  }
+
+  /**
+   * Returns the framing in use, which is text if binary was asked for but refused.
+   *
+   * @return The framing.
+   */
+  public Framing framing() {
+    return connection.framing();
+  }
 
-    this.in = new BufferedReader(
-              new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
-    this.out = new BufferedWriter(
-               new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
-    
+  /**
+   * Sets how long a read may block; used by {@link TcpClientPool} for liveness checks.
+   *
+   * @param millis The timeout, or 0 to wait forever.
+   */
+  void setReadTimeout(int millis) throws IOException {
+    connection.setReadTimeout(millis);
   }
 
   /**
@@ -40,9 +73,8 @@ public final class TcpClient implements Closeable {
    */
   public void send(String line) throws IOException {
     if (line == null) line = "";
-    out.write(line);
-    out.write("\r\n");
-    out.flush();
+    connection.write(line);
+    connection.flush();
   }
 
   /**
@@ -51,7 +83,7 @@ public final class TcpClient implements Closeable {
    * @return The line received, without the CRLF. If the connection is closed,
    */
   public String receiveLine() throws IOException {
-    return in.readLine();
+    return connection.readLine();
   }
 
   /**
@@ -64,22 +96,97 @@ public final class TcpClient implements Closeable {
     return receiveLine();
   }
 
+  /**
+   * Sends a command and waits for its reply, skipping any event lines
+   * ({@code EVT ...}) that arrive first.
+   *
+   * @param line The command to send; must not be blank, since the server does not reply
+   *     to blank lines.
+   * @return The reply, without the CRLF.
+   * @throws EOFException If the server closes the connection before replying.
+   * @throws IOException If an I/O error occurs.
+   */
+  public String request(String line) throws IOException {
+    if (line == null || line.isBlank()) throw new IllegalArgumentException("line cannot be blank");
+    send(line);
+    return receiveReply();
+  }
+
+  /**
+   * Sends several lines and collects one reply per line, in order.
+   * Lines are written in batches of up to {@link #MAX_PIPELINE_DEPTH} with a single flush,
+   * so a batch costs one round trip instead of one per line. Event lines ({@code EVT ...})
+   * received in between are skipped.
+   *
+   * <p>The lines may hold {@code MULTI}/{@code EXEC} batches. The server answers the lines
+   * of a batch only at {@code EXEC}, so their replies are read once {@code EXEC} is sent.
+   *
+   * @param lines The lines to send.
+   * @return The replies, one per line, without the CRLF.
+   * @throws IllegalArgumentException If a line is null or blank, since the server does
+   *     not reply to blank lines, or if a {@code MULTI} is not closed by {@code EXEC}.
+   * @throws EOFException If the server closes the connection before all replies arrive.
+   * @throws IOException If an I/O error occurs.
+   */
+  public List<String> pipeline(List<String> lines) throws IOException {
+    for (String line : lines) {
+      if (line == null || line.isBlank()) throw new IllegalArgumentException("lines cannot be blank");
+    }
+    boolean batching = false;
+    for (String line : lines) {
+      batching = batching ? !isCommand(line, "EXEC") : isCommand(line, "MULTI");
+    }
+    if (batching) throw new IllegalArgumentException("MULTI without EXEC");
+
+    List<String> replies = new ArrayList<>(lines.size());
+    int deferred = 0;
+    for (int from = 0; from < lines.size(); from += MAX_PIPELINE_DEPTH) {
+      int to = Math.min(lines.size(), from + MAX_PIPELINE_DEPTH);
+      int due = 0;
+      for (String line : lines.subList(from, to)) {
+        connection.write(line);
+        if (!batching) {
+          batching = isCommand(line, "MULTI");
+          due++;
+        } else if (isCommand(line, "EXEC")) {
+          batching = false;
+          due += deferred + 1;
+          deferred = 0;
+        } else {
+          deferred++;
+        }
+      }
+      connection.flush();
+      for (int i = 0; i < due; i++) {
+        replies.add(receiveReply());
+      }
+    }
+    return replies;
+  }
+
+  /**
+   * Returns whether a line is the given command without arguments, in any case.
+   */
+  private static boolean isCommand(String line, String command) {
+    return line.strip().equalsIgnoreCase(command);
+  }
+
+  private String receiveReply() throws IOException {
+    String line;
+    do {
+      line = receiveLine();
+      if (line == null) throw new EOFException("Connection closed before all replies arrived");
+    } while (line.startsWith("EVT "));
+    return line;
+  }
+
   /**
    * Closes the connection to the server.
    * @throws IOException If an I/O error occurs when closing the connection.
-   * All resources are closed, even if an exception occurs.
-   * If an exception occurs, it is thrown after all resources are closed.
+   * The socket is closed even if an exception occurs.
    */
   @Override
   public void close() throws IOException {
-    try {
-      in.close();
-    } finally {
-      try {
-        out.close();
-      } finally {
-        socket.close();
-      }
-    }
+    connection.close();
   }
 }
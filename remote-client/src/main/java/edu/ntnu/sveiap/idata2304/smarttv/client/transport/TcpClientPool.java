@@ -0,0 +1,522 @@
+package edu.ntnu.sveiap.idata2304.smarttv.client.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Command;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Framing;
+
+/**
+ * Keeps {@link TcpClient} connections open between uses, per host and port, so a burst of
+ * short command sequences does not pay a TCP connect for each.
+ *
+ * <p>Borrow a connection with {@link #borrow(String, int)} and close the {@link Lease} to
+ * give it back, or use {@link #request} and {@link #pipeline}, which do both. The most
+ * recently returned connection is handed out first, so rarely needed ones age out. A
+ * connection not used or checked for more than a second is checked with PING before it is
+ * handed out.
+ *
+ * <p>A background thread closes connections idle for longer than the idle timeout (down to
+ * the minimum), checks the rest with PING once they are due and opens new ones up to the
+ * minimum. When a lease reports a broken socket, every idle connection to that server is
+ * closed too: they are usually broken by the same cause, such as a server restart, and the
+ * next borrower connects fresh instead of finding that out one connection at a time.
+ *
+ * <p>Connection state such as the TV selected with USE or a SUB stays with the connection,
+ * so a lease starts where the previous borrower left it. Send USE first if that matters,
+ * and {@link Lease#invalidate()} a connection that should not be reused.
+ */
+public final class TcpClientPool implements Closeable {
+  private static final Logger LOG = Logger.getLogger(TcpClientPool.class.getName());
+
+  /** Connections idle for less than this are handed out without a liveness check. */
+  private static final long VALIDATE_AFTER_NANOS = 1_000_000_000L;
+  private static final int PING_TIMEOUT_MILLIS = 1_000;
+
+  private final Settings settings;
+  private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService maintenance;
+
+  private volatile boolean closed;
+
+  /**
+   * Pool settings.
+   *
+   * @param minIdle Connections kept open per server once it has been used, even when idle.
+   * @param maxSize Most connections open per server; borrowers wait when all are in use.
+   * @param idleTimeout How long a connection above the minimum may stay unused.
+   * @param checkInterval Time between background checks.
+   * @param borrowTimeout How long {@link #borrow} waits for a free connection.
+   * @param framing The framing new connections ask for.
+   */
+  public record Settings(int minIdle, int maxSize, Duration idleTimeout, Duration checkInterval,
+      Duration borrowTimeout, Framing framing) {
+
+    /**
+     * Validates the settings.
+     *
+     * @throws IllegalArgumentException if a value is out of range or missing.
+     */
+    public Settings {
+      if (maxSize < 1) throw new IllegalArgumentException("maxSize must be at least 1");
+      if (minIdle < 0 || minIdle > maxSize) {
+        throw new IllegalArgumentException("minIdle must be between 0 and maxSize");
+      }
+      if (idleTimeout == null || idleTimeout.isNegative()) {
+        throw new IllegalArgumentException("idleTimeout cannot be negative");
+      }
+      if (checkInterval == null || checkInterval.isNegative() || checkInterval.isZero()) {
+        throw new IllegalArgumentException("checkInterval must be positive");
+      }
+      if (borrowTimeout == null || borrowTimeout.isNegative()) {
+        throw new IllegalArgumentException("borrowTimeout cannot be negative");
+      }
+      if (framing == null) throw new IllegalArgumentException("framing cannot be null");
+    }
+
+    /**
+     * Returns the default settings: no minimum, at most 8 connections per server, 60 s idle
+     * timeout, a check every 5 s, 5 s borrow timeout, text framing.
+     *
+     * @return The defaults.
+     */
+    public static Settings defaults() {
+      return new Settings(0, 8, Duration.ofSeconds(60), Duration.ofSeconds(5),
+          Duration.ofSeconds(5), Framing.TEXT);
+    }
+  }
+
+  /**
+   * Creates a pool with {@link Settings#defaults()}.
+   */
+  public TcpClientPool() {
+    this(Settings.defaults());
+  }
+
+  /**
+   * Creates a pool and starts its background checks.
+   *
+   * @param settings The pool settings.
+   * @throws IllegalArgumentException if settings is null.
+   */
+  public TcpClientPool(Settings settings) {
+    if (settings == null) throw new IllegalArgumentException("settings cannot be null");
+    this.settings = settings;
+    this.maintenance = Executors.newSingleThreadScheduledExecutor(
+        Thread.ofPlatform().name("client-pool").daemon().factory());
+    long interval = settings.checkInterval().toNanos();
+    maintenance.scheduleWithFixedDelay(this::maintain, interval, interval, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Takes an idle connection to the server, or opens one if fewer than the maximum are
+   * open. Waits up to the borrow timeout when all connections are in use.
+   *
+   * @param host The server host.
+   * @param port The server port.
+   * @return The lease; close it to give the connection back.
+   * @throws IOException if connecting fails, or no connection became free in time.
+   * @throws IllegalStateException if the pool is closed.
+   */
+  public Lease borrow(String host, int port) throws IOException {
+    if (closed) throw new IllegalStateException("pool is closed");
+    Endpoint ep = endpoints.computeIfAbsent(host + ":" + port, k -> new Endpoint(host, port));
+    long deadline = System.nanoTime() + settings.borrowTimeout().toNanos();
+    while (true) {
+      Idle idle = ep.takeIdleOrReserve(deadline);
+      if (idle == null) {
+        return new Lease(ep, ep.connect());
+      }
+      if (System.nanoTime() - idle.checkedNanos < VALIDATE_AFTER_NANOS || isAlive(idle.client)) {
+        return new Lease(ep, idle.client);
+      }
+      ep.discard(idle.client);
+    }
+  }
+
+  /**
+   * Sends one command on a pooled connection.
+   *
+   * @param host The server host.
+   * @param port The server port.
+   * @param line The command.
+   * @return The reply, without CRLF.
+   * @throws IOException if the connection fails; it is then not reused.
+   */
+  public String request(String host, int port, String line) throws IOException {
+    try (Lease lease = borrow(host, port)) {
+      return lease.call(client -> client.request(line));
+    }
+  }
+
+  /**
+   * Sends several commands on one pooled connection, see {@link TcpClient#pipeline}.
+   *
+   * @param host The server host.
+   * @param port The server port.
+   * @param lines The commands.
+   * @return The replies, one per command, without CRLF.
+   * @throws IOException if the connection fails; it is then not reused.
+   */
+  public List<String> pipeline(String host, int port, List<String> lines) throws IOException {
+    try (Lease lease = borrow(host, port)) {
+      return lease.call(client -> client.pipeline(lines));
+    }
+  }
+
+  /**
+   * Returns how many connections to a server are open, idle or lent out.
+   *
+   * @param host The server host.
+   * @param port The server port.
+   * @return The number of open connections.
+   */
+  public int openConnections(String host, int port) {
+    Endpoint ep = endpoints.get(host + ":" + port);
+    return ep == null ? 0 : ep.open();
+  }
+
+  /**
+   * Sends PING and waits a short time for the reply.
+   */
+  private static boolean isAlive(TcpClient client) {
+    try {
+      client.setReadTimeout(PING_TIMEOUT_MILLIS);
+      boolean alive = client.request(Command.PING.name()).startsWith("OK");
+      client.setReadTimeout(0);
+      return alive;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Runs on the background thread: expires and checks idle connections and tops each
+   * server up to the minimum.
+   */
+  private void maintain() {
+    for (Endpoint ep : endpoints.values()) {
+      try {
+        ep.maintain();
+      } catch (RuntimeException e) {
+        LOG.log(Level.WARNING, "Pool check failed for " + ep.host + ":" + ep.port + ": "
+            + e.getMessage(), e);
+      }
+    }
+  }
+
+  /**
+   * Closes every idle connection and stops the background checks. Lent-out connections
+   * are closed when their lease is closed.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    maintenance.shutdownNow();
+    for (Endpoint ep : endpoints.values()) {
+      ep.closeIdle();
+    }
+  }
+
+  /**
+   * A borrowed connection. Close it to give the connection back to the pool.
+   */
+  public final class Lease implements Closeable {
+    private final Endpoint endpoint;
+    private final TcpClient client;
+    private boolean broken;
+    private boolean returned;
+
+    private Lease(Endpoint endpoint, TcpClient client) {
+      this.endpoint = endpoint;
+      this.client = client;
+    }
+
+    /**
+     * Returns the borrowed client. Do not close it; close the lease.
+     *
+     * @return The client.
+     */
+    public TcpClient client() {
+      return client;
+    }
+
+    /**
+     * Marks the connection as broken: it is closed instead of returned, and so are the
+     * idle connections to the same server.
+     */
+    public void invalidate() {
+      broken = true;
+    }
+
+    /**
+     * Runs an exchange on the client and invalidates the connection if it fails.
+     *
+     * @param exchange What to do with the client.
+     * @param <T> The result type.
+     * @return What the exchange returned.
+     * @throws IOException what the exchange threw.
+     */
+    public <T> T call(Exchange<T> exchange) throws IOException {
+      try {
+        return exchange.run(client);
+      } catch (IOException e) {
+        invalidate();
+        throw e;
+      }
+    }
+
+    /**
+     * Gives the connection back, or closes it if it is broken or the pool is closed.
+     */
+    @Override
+    public void close() {
+      if (returned) return;
+      returned = true;
+      if (broken) {
+        endpoint.discard(client);
+        endpoint.closeIdle();
+      } else {
+        endpoint.giveBack(client);
+      }
+    }
+  }
+
+  /**
+   * Work done with a borrowed client.
+   *
+   * @param <T> The result type.
+   */
+  @FunctionalInterface
+  public interface Exchange<T> {
+    /**
+     * Runs the exchange.
+     *
+     * @param client The borrowed client.
+     * @return The result.
+     * @throws IOException if talking to the server fails.
+     */
+    T run(TcpClient client) throws IOException;
+  }
+
+  /**
+   * An idle connection, with when it was given back and when it was last known to work.
+   */
+  private record Idle(TcpClient client, long sinceNanos, long checkedNanos) {}
+
+  /**
+   * The connections to one server. {@code open} counts idle and lent-out connections and
+   * the ones being opened, so the maximum holds while sockets connect outside the lock.
+   */
+  private final class Endpoint {
+    private final String host;
+    private final int port;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition freed = lock.newCondition();
+    private final ArrayDeque<Idle> idle = new ArrayDeque<>();
+    private int open;
+
+    private Endpoint(String host, int port) {
+      this.host = host;
+      this.port = port;
+    }
+
+    private int open() {
+      lock.lock();
+      try {
+        return open;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /**
+     * Takes the most recently returned idle connection, or reserves room for a new one.
+     *
+     * @return The idle connection, or null if the caller should {@link #connect()}.
+     */
+    private Idle takeIdleOrReserve(long deadlineNanos) throws IOException {
+      lock.lock();
+      try {
+        while (true) {
+          Idle c = idle.pollLast();
+          if (c != null) return c;
+          if (open < settings.maxSize()) {
+            open++;
+            return null;
+          }
+          long wait = deadlineNanos - System.nanoTime();
+          if (wait <= 0) {
+            throw new IOException("No free connection to " + host + ":" + port + " within "
+                + settings.borrowTimeout().toMillis() + " ms");
+          }
+          try {
+            freed.awaitNanos(wait);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a connection");
+          }
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /**
+     * Opens a connection in a slot reserved by {@link #takeIdleOrReserve}.
+     */
+    private TcpClient connect() throws IOException {
+      try {
+        return new TcpClient(host, port, settings.framing());
+      } catch (IOException | RuntimeException e) {
+        release(1);
+        throw e;
+      }
+    }
+
+    private void giveBack(TcpClient client) {
+      if (closed) {
+        discard(client);
+        return;
+      }
+      lock.lock();
+      try {
+        long now = System.nanoTime();
+        idle.addLast(new Idle(client, now, now));
+        freed.signal();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void discard(TcpClient client) {
+      closeQuietly(client);
+      release(1);
+    }
+
+    private void release(int n) {
+      lock.lock();
+      try {
+        open -= n;
+        freed.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void closeIdle() {
+      List<Idle> drained;
+      lock.lock();
+      try {
+        drained = new ArrayList<>(idle);
+        idle.clear();
+      } finally {
+        lock.unlock();
+      }
+      for (Idle c : drained) {
+        discard(c.client);
+      }
+    }
+
+    /**
+     * Closes expired connections, oldest first, and checks those not known to work for
+     * more than a second. Connections are taken out one at a time and only when there is
+     * something to do, so borrowers can keep taking the others meanwhile.
+     */
+    private void maintain() {
+      long idleTimeout = settings.idleTimeout().toNanos();
+      while (true) {
+        Idle c = null;
+        boolean expired = false;
+        lock.lock();
+        try {
+          long now = System.nanoTime();
+          for (Iterator<Idle> it = idle.iterator(); it.hasNext(); ) {
+            Idle candidate = it.next();
+            expired = now - candidate.sinceNanos > idleTimeout && open > settings.minIdle();
+            if (expired || now - candidate.checkedNanos >= VALIDATE_AFTER_NANOS) {
+              it.remove();
+              c = candidate;
+              break;
+            }
+          }
+        } finally {
+          lock.unlock();
+        }
+        if (c == null) break;
+        if (expired || !isAlive(c.client)) {
+          discard(c.client);
+          continue;
+        }
+        lock.lock();
+        try {
+          putBack(new Idle(c.client, c.sinceNanos, System.nanoTime()));
+          freed.signal();
+        } finally {
+          lock.unlock();
+        }
+      }
+      fillToMinimum();
+    }
+
+    /**
+     * Puts a checked connection back where its return time places it, so the deque stays
+     * oldest first: expiry keeps closing the oldest and borrowers keep taking the newest.
+     * Must hold the lock.
+     */
+    private void putBack(Idle c) {
+      ArrayDeque<Idle> newer = new ArrayDeque<>();
+      while (!idle.isEmpty() && idle.peekLast().sinceNanos - c.sinceNanos > 0) {
+        newer.push(idle.pollLast());
+      }
+      idle.addLast(c);
+      while (!newer.isEmpty()) {
+        idle.addLast(newer.pop());
+      }
+    }
+
+    private void fillToMinimum() {
+      while (!closed) {
+        lock.lock();
+        try {
+          if (open >= settings.minIdle()) return;
+          open++;
+        } finally {
+          lock.unlock();
+        }
+        TcpClient client;
+        try {
+          client = connect();
+        } catch (IOException e) {
+          LOG.log(Level.FINE, "Could not open pooled connection to " + host + ":" + port
+              + ": " + e.getMessage());
+          return;
+        }
+        giveBack(client);
+      }
+    }
+  }
+
+  private static void closeQuietly(TcpClient client) {
+    try {
+      client.close();
+    } catch (IOException e) {
+      LOG.log(Level.FINE, "Error closing pooled connection: " + e.getMessage(), e);
+    }
+  }
+}
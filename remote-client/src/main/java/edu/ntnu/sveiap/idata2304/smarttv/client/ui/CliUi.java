@@ -4,6 +4,8 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 
 import edu.ntnu.sveiap.idata2304.smarttv.client.transport.TcpClient;
 
@@ -34,6 +36,8 @@ public final class CliUi {
               
         printWelcome();
 
+        // Lines typed after MULTI, sent together at EXEC since the server answers them then
+        List<String> batch = null;
         while (true) {
           System.out.println("smarttv> ");
           String line = console.readLine();
@@ -48,6 +52,22 @@ public final class CliUi {
             continue;
           }
 
+          if (batch == null && lc.equals("multi")) {
+            batch = new ArrayList<>();
+          }
+          if (batch != null) {
+            batch.add(line);
+            if (!lc.equals("exec")) continue;
+            try {
+              tcp.pipeline(batch).forEach(System.out::println);
+            } catch (IOException io) {
+              System.out.println("[Client] I/O error: " + io.getMessage());
+              break;
+            }
+            batch = null;
+            continue;
+          }
+
           try {
             String reply = tcp.sendAndRecevie(line);
             if (reply == null) {
@@ -87,6 +107,9 @@ public final class CliUi {
               GET                    -> OK CH=<int>
               SET <n>                -> OK CH=<n>
               UP / DOWN              -> OK CH=<n> (ERR 409 at edges)
+              STATS                  -> OK UP=.. CONN=.. RPS=.. P50=.. P99=.. CMDS=..
+              USE <id>               -> OK TV=<id> (switch TV on a fleet server)
+              MULTI ... EXEC         -> commands in between run as one change
             Local commands:
               help, exit
             """);
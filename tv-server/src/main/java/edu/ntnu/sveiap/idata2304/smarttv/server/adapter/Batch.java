@@ -0,0 +1,216 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.adapter;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.TvControl;
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.TvSnapshot;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Command;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.EncodedLine;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.EncodedReplies;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Limits;
+
+/**
+ * The commands a session queued between MULTI and EXEC.
+ *
+ * <p>EXEC runs them against one {@link TvSnapshot} of the session's TV, working out every
+ * reply and the resulting power and channel without touching the TV, and then sets that
+ * state with {@link TvControl#compareAndSet}. If another client changed the TV in between,
+ * the run starts over from a fresh snapshot. So the group takes effect as one state change,
+ * no other command can land between two of its commands, and the TV is locked at most once.
+ *
+ * <p>Only commands that act on the TV and PING can be queued. Any other command, a line
+ * that cannot be parsed or one over the rate limit keeps its place with its error reply. A
+ * batch longer than {@link Limits#MAX_BATCH_COMMANDS} is not run; every line in it, and
+ * EXEC itself, is answered with INVALID_STATE.
+ */
+final class Batch {
+  private final Command[] commands = new Command[Limits.MAX_BATCH_COMMANDS];
+  private final int[] args = new int[Limits.MAX_BATCH_COMMANDS];
+  private final EncodedLine[] replies = new EncodedLine[Limits.MAX_BATCH_COMMANDS];
+  private int size;
+  private int overflow;
+
+  /**
+   * Returns whether a command can be queued.
+   *
+   * @param cmd The command.
+   * @return true for the TV commands and PING.
+   */
+  static boolean canQueue(Command cmd) {
+    return switch (cmd) {
+      case ON, OFF, STATUS, CHANNELS, GET, SET, UP, DOWN, PING -> true;
+      case SUB, UNSUB, USE, STATS, MULTI, EXEC -> false;
+    };
+  }
+
+  /**
+   * Queues a command to run at EXEC.
+   *
+   * @param cmd A command for which {@link #canQueue} is true.
+   * @param arg The argument; only used by SET.
+   * @return false if the batch is full; the line is then only counted.
+   */
+  boolean add(Command cmd, int arg) {
+    if (size == commands.length) {
+      overflow++;
+      return false;
+    }
+    commands[size] = cmd;
+    args[size] = arg;
+    replies[size] = null;
+    size++;
+    return true;
+  }
+
+  /**
+   * Queues the reply to a line that will not run, such as an error.
+   *
+   * @param reply The reply to send in the line's place at EXEC.
+   */
+  void addReply(EncodedLine reply) {
+    if (size == commands.length) {
+      overflow++;
+      return;
+    }
+    commands[size] = null;
+    replies[size] = reply;
+    size++;
+  }
+
+  /**
+   * Returns the number of lines kept in the batch.
+   *
+   * @return The count, without lines past the limit.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns the queued command at a position.
+   *
+   * @param i The position.
+   * @return The command, or null for a line queued with its reply.
+   */
+  Command command(int i) {
+    return commands[i];
+  }
+
+  /**
+   * Returns whether the batch grew past the limit and will not run.
+   *
+   * @return true if lines were dropped.
+   */
+  boolean overflowed() {
+    return overflow > 0;
+  }
+
+  /**
+   * Runs the queued commands as one change of the TV and returns their replies, in order,
+   * followed by the reply to EXEC itself, in one line: OK, or INVALID_STATE if the batch
+   * overflowed and nothing ran. Afterwards {@link #reply(int)} gives
+   * each line's own reply.
+   *
+   * @param tv The TV to change.
+   * @param table The reply table in the session's framing.
+   * @return The replies of all queued lines and of EXEC.
+   */
+  EncodedLine exec(TvControl tv, EncodedReplies table) {
+    if (overflowed()) {
+      EncodedLine err = table.errInvalidState();
+      for (int i = 0; i < size; i++) replies[i] = err;
+      return join(err, overflow, err);
+    }
+    while (true) {
+      TvSnapshot before = tv.snapshot();
+      boolean on = before.isOn();
+      int ch = before.channel();
+      int channels = before.channels();
+      for (int i = 0; i < size; i++) {
+        Command cmd = commands[i];
+        if (cmd == null) continue;
+        EncodedLine reply;
+        switch (cmd) {
+          case ON -> {
+            on = true;
+            reply = table.ok();
+          }
+          case OFF -> {
+            on = false;
+            reply = table.ok();
+          }
+          case STATUS -> reply = table.okStatus(on);
+          case CHANNELS -> reply = on ? table.okChannels() : table.errTvOff();
+          case GET -> reply = on ? table.okChannel(ch) : table.errTvOff();
+          case SET -> {
+            int n = args[i];
+            if (!on) {
+              reply = table.errTvOff();
+            } else if (n < Limits.MIN_CHANNEL || n > channels) {
+              reply = table.errOutOfRange();
+            } else {
+              ch = n;
+              reply = table.okChannel(ch);
+            }
+          }
+          case UP -> {
+            if (!on) {
+              reply = table.errTvOff();
+            } else if (ch >= channels) {
+              reply = table.errInvalidState();
+            } else {
+              reply = table.okChannel(++ch);
+            }
+          }
+          case DOWN -> {
+            if (!on) {
+              reply = table.errTvOff();
+            } else if (ch <= Limits.MIN_CHANNEL) {
+              reply = table.errInvalidState();
+            } else {
+              reply = table.okChannel(--ch);
+            }
+          }
+          // Noted by the session when it was queued
+          case PING -> reply = table.ok();
+          default -> throw new IllegalStateException("Cannot batch " + cmd);
+        }
+        replies[i] = reply;
+      }
+      boolean unchanged = on == before.isOn() && ch == before.channel();
+      if (unchanged || tv.compareAndSet(before, on, ch)) break;
+    }
+    return join(null, 0, table.ok());
+  }
+
+  /**
+   * Returns the reply of a queued line after {@link #exec}.
+   *
+   * @param i The position.
+   * @return The reply.
+   */
+  EncodedLine reply(int i) {
+    return replies[i];
+  }
+
+  /**
+   * Empties the batch for the next MULTI.
+   */
+  void clear() {
+    for (int i = 0; i < size; i++) replies[i] = null;
+    size = 0;
+    overflow = 0;
+  }
+
+  /**
+   * Concatenates the replies of the kept lines, {@code fills} copies of fill and the last
+   * reply.
+   */
+  private EncodedLine join(EncodedLine fill, int fills, EncodedLine last) {
+    int length = last.length();
+    for (int i = 0; i < size; i++) length += replies[i].length();
+    if (fills > 0) length += fills * fill.length();
+    EncodedLine.Builder out = new EncodedLine.Builder(length);
+    for (int i = 0; i < size; i++) out.append(replies[i]);
+    for (int i = 0; i < fills; i++) out.append(fill);
+    return out.append(last).build();
+  }
+}
@@ -0,0 +1,83 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.adapter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.Fleet;
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.TvControl;
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.TvFleet;
+import edu.ntnu.sveiap.idata2304.smarttv.server.broadcast.Broadcaster;
+
+/**
+ * A registry backed by a {@link Fleet}, such as a {@link TvFleet}, for hosting many TVs in
+ * one process. TV state lives in the fleet. Broadcasters are only created for TVs that some
+ * connection subscribed to, so a large fleet that is mostly polled costs no per-TV objects.
+ */
+public final class FleetTvRegistry implements TvRegistry {
+  private final Fleet fleet;
+  private final Broadcaster template;
+  private final Map<Integer, Broadcaster> broadcasters = new ConcurrentHashMap<>();
+
+  /**
+   * Creates the registry.
+   *
+   * @param fleet The TVs.
+   * @param template Settings for the per-TV broadcasters; it receives no events itself.
+   * @throws IllegalArgumentException if fleet or template is null.
+   */
+  public FleetTvRegistry(Fleet fleet, Broadcaster template) {
+    if (fleet == null) throw new IllegalArgumentException("fleet cannot be null");
+    if (template == null) throw new IllegalArgumentException("template cannot be null");
+    this.fleet = fleet;
+    this.template = template;
+  }
+
+  @Override
+  public int size() {
+    return fleet.size();
+  }
+
+  @Override
+  public int channels() {
+    return fleet.getChannelRange();
+  }
+
+  @Override
+  public TvControl tv(int id) {
+    return fleet.tv(id);
+  }
+
+  /**
+   * Returns the TV's broadcaster, creating it and registering it with the TV on first use.
+   */
+  @Override
+  public Broadcaster broadcaster(int id) {
+    TvControl tv = fleet.tv(id); // validates id before anything is created
+    return broadcasters.computeIfAbsent(id, key -> {
+      Broadcaster b = template.withSameSettings();
+      tv.addListener(b);
+      return b;
+    });
+  }
+
+  @Override
+  public long coalesceWindowNanos() {
+    return template.coalesceWindowNanos();
+  }
+
+  @Override
+  public Broadcaster.QueueStats queueStats() {
+    int subscribers = 0;
+    long queued = 0;
+    int maxDepth = 0;
+    long dropped = 0;
+    for (Broadcaster b : broadcasters.values()) {
+      Broadcaster.QueueStats s = b.queueStats();
+      subscribers += s.subscribers();
+      queued += s.queued();
+      maxDepth = Math.max(maxDepth, s.maxDepth());
+      dropped += s.dropped();
+    }
+    return new Broadcaster.QueueStats(subscribers, queued, maxDepth, dropped);
+  }
+}
@@ -1,133 +1,484 @@
 package edu.ntnu.sveiap.idata2304.smarttv.server.adapter;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+
 import edu.ntnu.sveiap.idata2304.smarttv.common.logic.SmartTv;
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.TvControl;
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.TvSnapshot;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.BinaryCodec;
 import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Codec;
 import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Command;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.EncodedLine;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.EncodedReplies;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Framing;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.ParsedRequest;
 import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Request;
+import edu.ntnu.sveiap.idata2304.smarttv.server.broadcast.Broadcaster;
+import edu.ntnu.sveiap.idata2304.smarttv.server.metrics.LatencyHistogram;
+import edu.ntnu.sveiap.idata2304.smarttv.server.metrics.MetricsSnapshot;
+import edu.ntnu.sveiap.idata2304.smarttv.server.metrics.ServerMetrics;
+import edu.ntnu.sveiap.idata2304.smarttv.server.ratelimit.RateLimiter;
 
 /**
- * Server-side protocol handler for Smart TV protocol.  
+ * Server-side protocol handler for Smart TV protocol.
  * Responsibilities:
  * - Parses commands with {@link Codec}
- * - Calls {@link SmartTv} to execute commands
+ * - Calls a {@link TvControl} ({@link SmartTv} or a lock-free variant) to execute commands
  * - Formats responses with {@link Codec}
+ *
+ * <p>Replies come from a table of pre-encoded lines ({@link EncodedReplies}) built once
+ * from the TV's channel count, so the byte-level methods used by the transports do not
+ * allocate. STATUS, GET and CHANNELS read the TV's published {@link TvSnapshot}, one
+ * volatile load, and index the table with it: no lock and no exception for a TV that is
+ * off.
+ *
+ * <p>State changes are published to a {@link Broadcaster}; connections that sent SUB
+ * receive them through their {@link Session}.
+ *
+ * <p>A session answers in its own {@link Framing}: text lines, or binary frames after the
+ * transport accepted a {@link BinaryCodec#HANDSHAKE}. Text lines are parsed here; binary
+ * frames are decoded by the transport and passed to {@link #handle(Session, Command, int)}.
+ * Either way the same dispatch runs, so both framings behave the same.
+ *
+ * <p>The TVs come from a {@link TvRegistry}: one TV, or a {@link FleetTvRegistry} holding
+ * many, which a session picks between with USE.
+ *
+ * <p>Every handled line is counted and timed in the handler's {@link ServerMetrics}.
+ *
+ * <p>Before a command runs, the handler's {@link RateLimiter} takes a token from the
+ * session's and the server's bucket for the command's class; without one the command is
+ * answered with RATE_LIMITED and does not touch the TV.
+ *
+ * <p>After MULTI, lines are queued in the session's {@link Batch} and answered with an
+ * empty array; EXEC runs them as one state change of the TV and returns all their replies,
+ * in order, followed by its own OK. Each queued command takes its token when it is queued,
+ * while MULTI and EXEC are never limited.
  */
 public final class ProtocolHandler {
-  private final SmartTv tv;
-  
+  private final TvRegistry registry;
+  private final EncodedReplies replies;
+  private final ServerMetrics metrics;
+  private final RateLimiter limiter;
+
+  /** Returned for lines queued in a batch; their replies are sent at EXEC. */
+  private static final EncodedLine NO_REPLY = EncodedLine.EMPTY;
+
   /**
-   * Creates a ProtocolHandler with the given SmartTv instance.
-   * 
-   * @param tv The SmartTv instance to control.
+   * Creates a ProtocolHandler with the given TV instance.
+   *
+   * @param tv The TV to control.
    * @throws IllegalArgumentException if tv is null.
    */
-  public ProtocolHandler(SmartTv tv) {
-    if (tv == null) throw new IllegalArgumentException("tv cannot be null");
-    this.tv = tv;
+  public ProtocolHandler(TvControl tv) {
+    this(tv, new Broadcaster());
+  }
+
+  /**
+   * Creates a ProtocolHandler that publishes the TV's state changes to the given broadcaster.
+   *
+   * @param tv The TV to control.
+   * @param broadcaster Delivers events to subscribed connections.
+   * @throws IllegalArgumentException if tv or broadcaster is null.
+   */
+  public ProtocolHandler(TvControl tv, Broadcaster broadcaster) {
+    this(new SingleTvRegistry(tv, broadcaster));
+  }
+
+  /**
+   * Creates a ProtocolHandler for the TVs of a registry.
+   *
+   * @param registry The TVs to control and their broadcasters.
+   * @throws IllegalArgumentException if registry is null.
+   */
+  public ProtocolHandler(TvRegistry registry) {
+    this(registry, RateLimiter.unlimited());
+  }
+
+  /**
+   * Creates a ProtocolHandler for the TVs of a registry that limits the request rate.
+   *
+   * @param registry The TVs to control and their broadcasters.
+   * @param limiter Decides whether each command may run.
+   * @throws IllegalArgumentException if registry or limiter is null.
+   */
+  public ProtocolHandler(TvRegistry registry, RateLimiter limiter) {
+    if (registry == null) throw new IllegalArgumentException("registry cannot be null");
+    if (limiter == null) throw new IllegalArgumentException("limiter cannot be null");
+    this.registry = registry;
+    this.limiter = limiter;
+    this.replies = Codec.encodedReplies(registry.channels());
+    this.metrics = new ServerMetrics(replies, registry::queueStats);
+  }
+
+  /**
+   * Returns the pre-encoded reply table used by this handler.
+   * Transports use it for replies they produce themselves, such as LINE_TOO_LONG.
+   *
+   * @return The shared reply table.
+   */
+  public EncodedReplies replies() {
+    return replies;
+  }
+
+  /**
+   * Returns the TVs this handler controls and their broadcasters.
+   *
+   * @return The registry.
+   */
+  public TvRegistry registry() {
+    return registry;
+  }
+
+  /**
+   * Returns the metrics this handler records into. Transports add connection and byte
+   * counts, and replies they produce themselves.
+   *
+   * @return The server metrics.
+   */
+  public ServerMetrics metrics() {
+    return metrics;
+  }
+
+  /**
+   * Opens the state for a new client connection that does not listen for events.
+   *
+   * @return A new session to pass with every line from that client.
+   */
+  public Session openSession() {
+    return openSession(() -> { });
+  }
+
+  /**
+   * Opens the state for a new client connection.
+   *
+   * @param onEvents Called (from any thread) when events are queued for the session after
+   *     SUB; it should wake the connection's writer and must not block.
+   * @return A new session to pass with every line from that client.
+   */
+  public Session openSession(Runnable onEvents) {
+    return new Session(registry, replies, onEvents, limiter.newQuota());
   }
 
   /**
    * Handles a single raw input line from a client connection.
    * Parsing + dispatch + error mapping.
+   * The line runs in a session of its own that is closed afterwards, so session state such
+   * as the TV chosen with USE never carries over to the next call or to other callers.
    * @param line raw line (may be null)
    * @return protocol response line (always CRLF terminated via Codec)
    */
   public String handleLine(String line) {
+    Session session = openSession();
+    try {
+      return new String(handle(session, line).toByteArray(), StandardCharsets.US_ASCII);
+    } finally {
+      session.close();
+    }
+  }
+
+  /**
+   * Handles a line given as a String and returns the pre-encoded reply.
+   *
+   * @param session The session of the connection the line came from.
+   * @param line raw line (may be null)
+   * @return The shared reply. Empty while a batch is open.
+   */
+  public EncodedLine handle(Session session, String line) {
+    long start = System.nanoTime();
     final Request req;
     try {
       req = Codec.parseRequest(line);
-      } catch (IllegalArgumentException badSyntax) {
+    } catch (IllegalArgumentException badSyntax) {
       // Unknown command token / wrong arg count / invalid arg / null line
-      return Codec.errBadCommand();
-      }
+      return rejected(session);
+    }
+    return execute(session, req.command(), req.arg() == null ? 0 : req.arg(), start);
+  }
 
-      Command cmd = req.command();
-      return switch (cmd) {
-        case STATUS -> handleStatus();
-        case ON -> handleOn();
-        case OFF -> handleOff();
-        case CHANNELS -> handleChannels();
-        case GET -> handleGet();
-        case SET -> handleSet(req.arg());
-        case UP -> handleUp();
-        case DOWN -> handleDown();
-        case PING -> handlePing();
-        // SUB/UNSUB/PING not implemented yet at adapter level; treat as BAD_COMMAND until added
-        default -> Codec.errBadCommand();
-      };
+  /**
+   * Handles a line held in a byte array (without CRLF) and returns the pre-encoded reply.
+   * Neither parsing nor reply encoding allocates.
+   *
+   * @param session The session of the connection the line came from.
+   * @param buf The bytes holding the line.
+   * @param off Offset of the first byte of the line.
+   * @param len Number of bytes in the line.
+   * @return The shared reply. Empty while a batch is open.
+   */
+  public EncodedLine handle(Session session, byte[] buf, int off, int len) {
+    long start = System.nanoTime();
+    ParsedRequest req = session.parsed();
+    if (Codec.parseRequest(buf, off, len, req) != Codec.PARSE_OK) {
+      return rejected(session);
+    }
+    return execute(session, req.command(), req.arg(), start);
   }
 
-  
+  /**
+   * Handles the line between position and limit of a buffer (without CRLF) and returns
+   * the pre-encoded reply. The buffer may be direct; it is parsed in place, and its
+   * position and limit are not changed.
+   *
+   * @param session The session of the connection the line came from.
+   * @param line The buffer holding the line.
+   * @return The shared reply. Empty while a batch is open.
+   */
+  public EncodedLine handle(Session session, ByteBuffer line) {
+    long start = System.nanoTime();
+    ParsedRequest req = session.parsed();
+    if (Codec.parseRequest(line, req) != Codec.PARSE_OK) {
+      return rejected(session);
+    }
+    return execute(session, req.command(), req.arg(), start);
+  }
 
-  private String handleStatus() {
-    return Codec.okStatus(tv.isOn());
+  /**
+   * Handles a request that the transport has already decoded, such as a binary frame.
+   *
+   * @param session The session of the connection the request came from.
+   * @param cmd The command.
+   * @param arg The argument; only used by SET and USE.
+   * @return The shared reply in the session's framing. Empty while a batch is open.
+   */
+  public EncodedLine handle(Session session, Command cmd, int arg) {
+    return execute(session, cmd, arg, System.nanoTime());
   }
 
-  private String handleOn() {
-    tv.turnOn();
-    return Codec.ok();
+  /**
+   * Answers a request that could not be parsed or decoded with BAD_COMMAND, in the
+   * session's framing.
+   *
+   * @param session The session of the connection the request came from.
+   * @return The shared reply. Empty while a batch is open.
+   */
+  public EncodedLine rejected(Session session) {
+    return refused(session, session.replies().errBadCommand());
   }
 
-  private String handleOff() {
-    tv.turnOff();
-    return Codec.ok();
+  /**
+   * Answers a line the transport dropped for being too long with LINE_TOO_LONG, in the
+   * session's framing.
+   *
+   * @param session The session of the connection the line came from.
+   * @return The shared reply. Empty while a batch is open.
+   */
+  public EncodedLine lineTooLong(Session session) {
+    return refused(session, session.replies().errLineTooLong());
   }
 
-  private String handleChannels() {
-    try {
-      return Codec.okChannels(tv.getNumberOfChannels());
-    } catch (IllegalStateException ex) {
-      return Codec.errTvOff();
+  /**
+   * Records a reply to a line that did not become a command, and queues it if a batch is
+   * open.
+   */
+  private EncodedLine refused(Session session, EncodedLine reply) {
+    metrics.recordReply(reply);
+    Batch batch = session.batch();
+    if (batch == null) return reply;
+    batch.addReply(reply);
+    return NO_REPLY;
+  }
+
+  /**
+   * Dispatches a parsed command, unless it is over the rate limit, and records it in the
+   * metrics. While a batch is open the command is queued instead, up to EXEC.
+   *
+   * @param start When handling of the line began, from {@link System#nanoTime()}.
+   */
+  private EncodedLine execute(Session session, Command cmd, int arg, long start) {
+    Batch batch = session.batch();
+    if (batch != null) {
+      if (cmd == Command.EXEC) return exec(session, batch, start);
+      queue(session, batch, cmd, arg, start);
+      return NO_REPLY;
     }
+    boolean allowed = cmd == Command.MULTI || cmd == Command.EXEC
+        || limiter.tryAcquire(session.quota(), cmd);
+    EncodedLine reply = allowed ? dispatch(session, cmd, arg) : session.replies().errRateLimited();
+    metrics.recordCommand(cmd, System.nanoTime() - start, reply);
+    return reply;
   }
 
-  private String handleGet() {
-    try {
-      return Codec.okChannel(tv.getChannel());
-    } catch (IllegalStateException ex) {
-      return Codec.errTvOff();
+  /**
+   * Queues a command in the open batch. A command that cannot be batched or is over the
+   * rate limit is queued with its error, which is recorded now. A queued PING counts for
+   * the ping timeout when it arrives, not at EXEC.
+   */
+  private void queue(Session session, Batch batch, Command cmd, int arg, long start) {
+    EncodedReplies replies = session.replies();
+    EncodedLine reply;
+    if (!Batch.canQueue(cmd)) {
+      reply = replies.errInvalidState();
+    } else if (!limiter.tryAcquire(session.quota(), cmd)) {
+      reply = replies.errRateLimited();
+    } else if (batch.add(cmd, arg)) {
+      if (cmd == Command.PING) session.pinged();
+      return;
+    } else {
+      // Past the limit; the whole batch fails at EXEC
+      metrics.recordCommand(cmd, System.nanoTime() - start, replies.errInvalidState());
+      return;
     }
+    batch.addReply(reply);
+    metrics.recordCommand(cmd, System.nanoTime() - start, reply);
+  }
+
+  /**
+   * Runs the open batch and closes it. The batch is timed once, as EXEC; the commands it
+   * ran are only counted.
+   */
+  private EncodedLine exec(Session session, Batch batch, long start) {
+    EncodedReplies replies = session.replies();
+    EncodedLine reply = batch.exec(session.tv(), replies);
+    for (int i = 0; i < batch.size(); i++) {
+      Command cmd = batch.command(i);
+      if (cmd != null) metrics.recordBatched(cmd, batch.reply(i));
+    }
+    EncodedLine own = batch.overflowed() ? replies.errInvalidState() : replies.ok();
+    metrics.recordCommand(Command.EXEC, System.nanoTime() - start, own);
+    session.endBatch();
+    return reply;
+  }
+
+  /**
+   * Executes a parsed command.
+   *
+   * @param session The session of the connection the command came from.
+   * @param cmd The command.
+   * @param arg The argument; only used by SET and USE.
+   */
+  private EncodedLine dispatch(Session session, Command cmd, int arg) {
+    TvControl tv = session.tv();
+    EncodedReplies replies = session.replies();
+    return switch (cmd) {
+      case STATUS -> handleStatus(tv, replies);
+      case ON -> handleOn(tv, replies);
+      case OFF -> handleOff(tv, replies);
+      case CHANNELS -> handleChannels(tv, replies);
+      case GET -> handleGet(tv, replies);
+      case SET -> handleSet(tv, arg, replies);
+      case UP -> handleUp(tv, replies);
+      case DOWN -> handleDown(tv, replies);
+      case PING -> handlePing(session, replies);
+      case STATS -> handleStats(replies);
+      case SUB -> handleSub(session, replies);
+      case UNSUB -> handleUnsub(session, replies);
+      case USE -> handleUse(session, arg, replies);
+      case MULTI -> handleMulti(session, replies);
+      // Only reached without an open batch
+      case EXEC -> replies.errInvalidState();
+    };
+  }
+
+  private EncodedLine handleStatus(TvControl tv, EncodedReplies replies) {
+    return replies.okStatus(tv.snapshot().isOn());
+  }
+
+  private EncodedLine handleOn(TvControl tv, EncodedReplies replies) {
+    tv.turnOn();
+    return replies.ok();
+  }
+
+  private EncodedLine handleOff(TvControl tv, EncodedReplies replies) {
+    tv.turnOff();
+    return replies.ok();
   }
 
-  private String handleSet(Integer n) {
+  private EncodedLine handleChannels(TvControl tv, EncodedReplies replies) {
+    // The count itself is fixed in the table
+    return tv.snapshot().isOn() ? replies.okChannels() : replies.errTvOff();
+  }
+
+  private EncodedLine handleGet(TvControl tv, EncodedReplies replies) {
+    TvSnapshot s = tv.snapshot();
+    return s.isOn() ? replies.okChannel(s.channel()) : replies.errTvOff();
+  }
+
+  private EncodedLine handleSet(TvControl tv, int n, EncodedReplies replies) {
     try {
-      tv.setChannel(n);
-      return Codec.okChannel(tv.getChannel());
+      return replies.okChannel(tv.setChannel(n));
     } catch (IllegalStateException ex) { // TV off
-      return Codec.errTvOff();
+      return replies.errTvOff();
     } catch (IllegalArgumentException outOfRange) { // channel bounds
-      return Codec.errOutOfRange();
+      return replies.errOutOfRange();
     }
   }
 
-  private String handleUp() {
+  private EncodedLine handleUp(TvControl tv, EncodedReplies replies) {
     try {
-      tv.channelUp();
-      return Codec.okChannel(tv.getChannel());
+      return replies.okChannel(tv.channelUp());
     } catch (IllegalStateException ex) {
-      return mapIllegalState(ex);
+      return mapIllegalState(ex, replies);
     }
   }
 
-  private String handleDown() {
+  private EncodedLine handleDown(TvControl tv, EncodedReplies replies) {
     try {
-      tv.channelDown();
-      return Codec.okChannel(tv.getChannel());
+      return replies.okChannel(tv.channelDown());
     } catch (IllegalStateException ex) {
-      return mapIllegalState(ex);
+      return mapIllegalState(ex, replies);
     }
   }
 
-  private String handlePing() {
-    return Codec.ok();
+  private EncodedLine handlePing(Session session, EncodedReplies replies) {
+    session.pinged();
+    return replies.ok();
+  }
+
+  /**
+   * Builds the STATS reply from a metrics snapshot. The snapshot only reads counters, so
+   * this does not slow down other requests; it allocates, unlike the other commands.
+   */
+  private EncodedLine handleStats(EncodedReplies replies) {
+    MetricsSnapshot s = metrics.snapshot();
+    LatencyHistogram.Snapshot latency = s.overallLatency();
+    Map<Command, Long> counts = new EnumMap<>(Command.class);
+    s.commands().forEach((cmd, stats) -> counts.put(cmd, stats.count()));
+    return replies.okStats(
+        s.uptimeNanos() / 1_000_000_000L,
+        s.activeConnections(),
+        Math.round(s.requestsPerSecond()),
+        latency.percentile(50) / 1_000,
+        latency.percentile(99) / 1_000,
+        counts);
+  }
+
+  private EncodedLine handleSub(Session session, EncodedReplies replies) {
+    session.subscribe();
+    return replies.ok();
+  }
+
+  private EncodedLine handleUnsub(Session session, EncodedReplies replies) {
+    session.unsubscribe();
+    return replies.ok();
+  }
+
+  private EncodedLine handleMulti(Session session, EncodedReplies replies) {
+    session.beginBatch();
+    return replies.ok();
+  }
+
+  /**
+   * Switches the session to another TV. The reply is encoded per call since the table
+   * would need a line per TV; USE is rare next to the commands that follow it.
+   */
+  private EncodedLine handleUse(Session session, int id, EncodedReplies replies) {
+    try {
+      session.use(id);
+      return replies.okTv(id);
+    } catch (IllegalArgumentException unknownTv) {
+      return replies.errOutOfRange();
+    }
   }
 
   /**
-   * Maps IllegalStateException messages produced by SmartTv to protocol errors.
+   * Maps IllegalStateException messages produced by the TV logic to protocol errors.
    * SmartTv.ensureOn() throws IllegalStateException("TV_OFF"). channelUp/Down throw
    * IllegalStateException("INVALID_STATE") for boundary conditions.
    */
-  private String mapIllegalState(IllegalStateException ex) {
-    return "TV_OFF".equals(ex.getMessage()) ? Codec.errTvOff() : Codec.errInvalidState();
+  private EncodedLine mapIllegalState(IllegalStateException ex, EncodedReplies replies) {
+    return "TV_OFF".equals(ex.getMessage()) ? replies.errTvOff() : replies.errInvalidState();
   }
 }
@@ -0,0 +1,214 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.adapter;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.TvControl;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.EncodedLine;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.EncodedReplies;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Framing;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.ParsedRequest;
+import edu.ntnu.sveiap.idata2304.smarttv.server.broadcast.Broadcaster;
+import edu.ntnu.sveiap.idata2304.smarttv.server.broadcast.Events;
+import edu.ntnu.sveiap.idata2304.smarttv.server.broadcast.Subscriber;
+import edu.ntnu.sveiap.idata2304.smarttv.server.ratelimit.RateLimiter;
+
+/**
+ * Per-connection state used by {@link ProtocolHandler}.
+ * A transport opens one session per client with {@link ProtocolHandler#openSession(Runnable)}
+ * and passes it with every line from that client. Lines of one session are handled by one
+ * thread at a time; {@link #pollEvent()} may be called from the connection's writer thread.
+ *
+ * <p>A session controls one TV of the handler's {@link TvRegistry} at a time, starting with
+ * TV 0; USE switches it and moves an active subscription along.
+ *
+ * <p>Replies and events are encoded in the session's {@link Framing}, text unless the
+ * transport switched it after a handshake.
+ *
+ * <p>Between MULTI and EXEC the session holds a {@link Batch} of queued commands.
+ */
+public final class Session {
+  private final ParsedRequest parsed = new ParsedRequest();
+  private final TvRegistry registry;
+  private final Runnable onEvents;
+  private final RateLimiter.Quota quota;
+
+  private EncodedReplies replies;
+  private int tvId;
+  private TvControl tv;
+  private Broadcaster broadcaster;
+  private volatile Subscriber subscriber;
+  private volatile long lastPingNanos;
+  private Batch batch;
+  private boolean batching;
+
+  Session(TvRegistry registry, EncodedReplies replies, Runnable onEvents,
+      RateLimiter.Quota quota) {
+    this.registry = registry;
+    this.replies = replies;
+    this.onEvents = onEvents;
+    this.quota = quota;
+    this.tv = registry.tv(0);
+    this.lastPingNanos = System.nanoTime();
+  }
+
+  /**
+   * Scratch holder reused by the byte-level parser for every line of this connection.
+   */
+  ParsedRequest parsed() {
+    return parsed;
+  }
+
+  /**
+   * Returns this connection's rate limit buckets.
+   */
+  RateLimiter.Quota quota() {
+    return quota;
+  }
+
+  /**
+   * Returns the reply table in this session's framing.
+   */
+  EncodedReplies replies() {
+    return replies;
+  }
+
+  /**
+   * Switches the framing of replies and events, after the client asked for it with a
+   * handshake. Call it before the first command and before events can be polled.
+   *
+   * @param framing The framing to use from now on.
+   */
+  public void useFraming(Framing framing) {
+    replies = replies.in(framing);
+  }
+
+  /**
+   * Returns the TV this session's commands go to.
+   */
+  TvControl tv() {
+    return tv;
+  }
+
+  /**
+   * Returns the index of the TV this session's commands go to.
+   */
+  int tvId() {
+    return tvId;
+  }
+
+  /**
+   * Returns the batch opened by MULTI, or null if commands run as they arrive.
+   */
+  Batch batch() {
+    return batching ? batch : null;
+  }
+
+  /**
+   * Opens a batch (MULTI); commands are queued in it until EXEC.
+   */
+  void beginBatch() {
+    if (batch == null) batch = new Batch();
+    batching = true;
+  }
+
+  /**
+   * Closes the batch after EXEC, keeping it for the next MULTI.
+   */
+  void endBatch() {
+    batch.clear();
+    batching = false;
+  }
+
+  /**
+   * Switches to another TV (USE). If subscribed, the subscription moves to the new TV;
+   * events of the old TV not yet written are discarded.
+   *
+   * @param id Index of the TV.
+   * @throws IllegalArgumentException if the registry has no such TV.
+   */
+  void use(int id) {
+    TvControl next = registry.tv(id);
+    if (id == tvId) return;
+    boolean subscribed = subscriber != null;
+    unsubscribe();
+    tvId = id;
+    tv = next;
+    if (subscribed) subscribe();
+  }
+
+  /**
+   * Starts receiving events of the current TV (SUB). Subscribing twice has no effect.
+   */
+  void subscribe() {
+    if (subscriber == null) {
+      broadcaster = registry.broadcaster(tvId);
+      subscriber = broadcaster.subscribe(onEvents);
+    }
+  }
+
+  /**
+   * Stops receiving events (UNSUB). Events not yet written are discarded.
+   */
+  void unsubscribe() {
+    Subscriber s = subscriber;
+    if (s != null) {
+      broadcaster.unsubscribe(s);
+      subscriber = null;
+      broadcaster = null;
+    }
+  }
+
+  /**
+   * Returns whether this connection is subscribed to events.
+   *
+   * @return true after SUB and before UNSUB.
+   */
+  public boolean isSubscribed() {
+    return subscriber != null;
+  }
+
+  /**
+   * Takes the next queued event for this connection.
+   *
+   * @return The pre-encoded EVT line, or null if none is queued.
+   */
+  public EncodedLine pollEvent() {
+    Subscriber s = subscriber;
+    if (s == null) return null;
+    int event = s.poll();
+    return event == Events.NONE ? null : Events.encode(event, replies);
+  }
+
+  /**
+   * Records a PING from the client.
+   */
+  void pinged() {
+    lastPingNanos = System.nanoTime();
+  }
+
+  /**
+   * Returns when the client last sent PING, for transports that drop clients that stop
+   * pinging. Safe to call from any thread.
+   *
+   * @return The {@link System#nanoTime()} of the last PING, or of opening the session.
+   */
+  public long lastPingNanos() {
+    return lastPingNanos;
+  }
+
+  /**
+   * Returns whether the event queue overflowed under the DISCONNECT policy.
+   * The transport should close the connection when this is true.
+   *
+   * @return true if the connection should be dropped.
+   */
+  public boolean isEvicted() {
+    Subscriber s = subscriber;
+    return s != null && s.isEvicted();
+  }
+
+  /**
+   * Releases the session when the connection closes.
+   */
+  public void close() {
+    unsubscribe();
+  }
+}
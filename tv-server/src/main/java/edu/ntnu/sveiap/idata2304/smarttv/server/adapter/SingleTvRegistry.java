@@ -0,0 +1,63 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.adapter;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.TvControl;
+import edu.ntnu.sveiap.idata2304.smarttv.server.broadcast.Broadcaster;
+
+/**
+ * A registry holding one TV with index 0; the classic single-TV server.
+ */
+public final class SingleTvRegistry implements TvRegistry {
+  private final TvControl tv;
+  private final Broadcaster broadcaster;
+
+  /**
+   * Creates the registry and registers the broadcaster as a listener of the TV.
+   *
+   * @param tv The TV.
+   * @param broadcaster Delivers the TV's events to subscribed connections.
+   * @throws IllegalArgumentException if tv or broadcaster is null.
+   */
+  public SingleTvRegistry(TvControl tv, Broadcaster broadcaster) {
+    if (tv == null) throw new IllegalArgumentException("tv cannot be null");
+    if (broadcaster == null) throw new IllegalArgumentException("broadcaster cannot be null");
+    this.tv = tv;
+    this.broadcaster = broadcaster;
+    tv.addListener(broadcaster);
+  }
+
+  @Override
+  public int size() {
+    return 1;
+  }
+
+  @Override
+  public int channels() {
+    return tv.getChannelRange();
+  }
+
+  @Override
+  public TvControl tv(int id) {
+    check(id);
+    return tv;
+  }
+
+  @Override
+  public Broadcaster broadcaster(int id) {
+    check(id);
+    return broadcaster;
+  }
+
+  @Override
+  public long coalesceWindowNanos() {
+    return broadcaster.coalesceWindowNanos();
+  }
+
+  @Override
+  public Broadcaster.QueueStats queueStats() {
+    return broadcaster.queueStats();
+  }
+
+  private static void check(int id) {
+    if (id != 0) throw new IllegalArgumentException("Unknown TV: " + id);
+  }
+}
@@ -0,0 +1,59 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.adapter;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.TvControl;
+import edu.ntnu.sveiap.idata2304.smarttv.server.broadcast.Broadcaster;
+
+/**
+ * The TVs a server hosts, addressed by index in {@code [0, size)}.
+ * A {@link Session} starts on TV 0 and switches with USE; lookups must be O(1) since
+ * they happen on the command path. All TVs share one channel count, so one reply table
+ * serves them all.
+ */
+public interface TvRegistry {
+
+  /**
+   * Returns the number of TVs.
+   *
+   * @return The number of TVs, at least 1.
+   */
+  int size();
+
+  /**
+   * Returns the channel count shared by all TVs.
+   *
+   * @return The number of channels.
+   */
+  int channels();
+
+  /**
+   * Returns the TV with the given index.
+   *
+   * @param id Index of the TV.
+   * @return The TV.
+   * @throws IllegalArgumentException if id is not in {@code [0, size)}.
+   */
+  TvControl tv(int id);
+
+  /**
+   * Returns the broadcaster that receives the given TV's state changes.
+   *
+   * @param id Index of the TV.
+   * @return The TV's broadcaster.
+   * @throws IllegalArgumentException if id is not in {@code [0, size)}.
+   */
+  Broadcaster broadcaster(int id);
+
+  /**
+   * Returns how long transports should wait after being woken before writing events.
+   *
+   * @return The coalescing window in nanoseconds, 0 for none.
+   */
+  long coalesceWindowNanos();
+
+  /**
+   * Adds up the subscriber queues of all TVs.
+   *
+   * @return The totals.
+   */
+  Broadcaster.QueueStats queueStats();
+}
@@ -1,21 +1,74 @@
 package edu.ntnu.sveiap.idata2304.smarttv.server.app;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
 import java.util.logging.Handler;
 
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.AtomicSmartTv;
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.Fleet;
 import edu.ntnu.sveiap.idata2304.smarttv.common.logic.SmartTv;
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.TvControl;
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.TvFleet;
+import edu.ntnu.sveiap.idata2304.smarttv.server.adapter.FleetTvRegistry;
 import edu.ntnu.sveiap.idata2304.smarttv.server.adapter.ProtocolHandler;
+import edu.ntnu.sveiap.idata2304.smarttv.server.adapter.SingleTvRegistry;
+import edu.ntnu.sveiap.idata2304.smarttv.server.adapter.TvRegistry;
+import edu.ntnu.sveiap.idata2304.smarttv.server.broadcast.Broadcaster;
+import edu.ntnu.sveiap.idata2304.smarttv.server.broadcast.OverflowPolicy;
+import edu.ntnu.sveiap.idata2304.smarttv.server.persist.MappedStateFile;
+import edu.ntnu.sveiap.idata2304.smarttv.server.persist.StateStore;
+import edu.ntnu.sveiap.idata2304.smarttv.server.ratelimit.CommandClass;
+import edu.ntnu.sveiap.idata2304.smarttv.server.ratelimit.Rate;
+import edu.ntnu.sveiap.idata2304.smarttv.server.ratelimit.RateLimiter;
+import edu.ntnu.sveiap.idata2304.smarttv.server.shard.ShardedFleet;
+import edu.ntnu.sveiap.idata2304.smarttv.server.transport.ConnectionLimits;
+import edu.ntnu.sveiap.idata2304.smarttv.server.transport.NioTcpServer;
+import edu.ntnu.sveiap.idata2304.smarttv.server.transport.ServerTransport;
 import edu.ntnu.sveiap.idata2304.smarttv.server.transport.TcpServer;
 
 /**
  * Main application class for the TV server.
  * Starts a TCP server on the specified port (default 1238).
- * Accepts an optional command-line argument to specify a different port.
+ * Accepts optional command-line arguments:
+ * {@code --port <int>}, {@code --max-connections <int>},
+ * {@code --transport blocking|nio}, {@code --loops <int>} (NIO event loops) and
+ * {@code --state locked|atomic|sharded} (TV state implementation, default locked; sharded
+ * runs all changes on {@code --shards <int>} single-writer threads, default one per core),
+ * {@code --tvs <int>} (number of TVs, selected per connection with USE; more than one
+ * uses the array-backed fleet unless --state is sharded, and rejects locked and atomic),
+ * {@code --event-queue <int>} (events queued per subscriber) and
+ * {@code --overflow drop-oldest|coalesce|disconnect} (what a full event queue does),
+ * {@code --coalesce on|off} (collapse pending channel events) and
+ * {@code --coalesce-window <ms>} (how long to hold events back so bursts collapse) and
+ * {@code --metrics-interval <s>} (log the metrics dump periodically; 0 = only at shutdown),
+ * {@code --data-dir <path>} (keep TV state across restarts in a write-ahead log and
+ * snapshots there), {@code --wal-sync <ms>} (group commit interval) and
+ * {@code --snapshot-interval <s>}, or instead {@code --mapped-state <file>} (the TVs' state
+ * lives in a memory-mapped file, so restarts need no replay) with {@code --mapped-sync <s>}
+ * (how often it is forced to disk; 0 = only at shutdown),
+ * {@code --idle-timeout <s>} (close clients that send nothing for that long),
+ * {@code --ping-interval <s>} (close clients that do not PING that often),
+ * {@code --write-timeout <s>} (close clients that stop reading replies) and
+ * {@code --max-outbound <bytes>} (close NIO clients with that many reply bytes queued);
+ * 0 turns any of these off,
+ * {@code --rate-read <n[:burst]>} and {@code --rate-write <n[:burst]>} (commands per
+ * second each connection may send that read or change a TV; over it they are answered
+ * {@code ERR 429 RATE_LIMITED}) and {@code --global-rate-read}/{@code --global-rate-write}
+ * (the same for all connections together); unlimited unless given.
  */
 public final class TvServerApp {
+    private static final Logger LOG = Logger.getLogger(TvServerApp.class.getName());
+
     private TvServerApp() {}
 
     /**
@@ -41,15 +94,135 @@ public final class TvServerApp {
     public static void main(String[] args) throws Exception {
         initLogging();
         int port = 1238;
-        if (args.length >= 2 && "--port".equals(args[0])) {
-            port = Integer.parseInt(args[1]);
+        int maxConnections = TcpServer.DEFAULT_MAX_CONNECTIONS;
+        String transport = "blocking";
+        int loops = Runtime.getRuntime().availableProcessors();
+        String state = null;
+        int tvs = 1;
+        int shards = Runtime.getRuntime().availableProcessors();
+        int eventQueue = Broadcaster.DEFAULT_QUEUE_CAPACITY;
+        OverflowPolicy overflow = OverflowPolicy.DROP_OLDEST;
+        boolean coalesce = true;
+        long coalesceWindow = Broadcaster.DEFAULT_COALESCE_WINDOW_MILLIS;
+        long metricsInterval = 0;
+        String dataDir = null;
+        long walSync = StateStore.DEFAULT_SYNC_INTERVAL_MILLIS;
+        long snapshotInterval = StateStore.DEFAULT_SNAPSHOT_INTERVAL_SECONDS;
+        String mappedState = null;
+        long mappedSync = 1;
+        ConnectionLimits defaults = ConnectionLimits.defaults();
+        long idleTimeout = defaults.readIdleTimeout().toSeconds();
+        long pingInterval = defaults.pingInterval().toSeconds();
+        long writeTimeout = defaults.writeTimeout().toSeconds();
+        int maxOutbound = defaults.maxOutboundBytes();
+        Map<CommandClass, Rate> connectionRates = new EnumMap<>(CommandClass.class);
+        Map<CommandClass, Rate> globalRates = new EnumMap<>(CommandClass.class);
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--port" -> port = Integer.parseInt(args[i + 1]);
+                case "--max-connections" -> maxConnections = Integer.parseInt(args[i + 1]);
+                case "--transport" -> transport = args[i + 1];
+                case "--loops" -> loops = Integer.parseInt(args[i + 1]);
+                case "--state" -> state = args[i + 1];
+                case "--tvs" -> tvs = Integer.parseInt(args[i + 1]);
+                case "--shards" -> shards = Integer.parseInt(args[i + 1]);
+                case "--event-queue" -> eventQueue = Integer.parseInt(args[i + 1]);
+                case "--coalesce" -> coalesce = "on".equals(args[i + 1]);
+                case "--coalesce-window" -> coalesceWindow = Long.parseLong(args[i + 1]);
+                case "--metrics-interval" -> metricsInterval = Long.parseLong(args[i + 1]);
+                case "--data-dir" -> dataDir = args[i + 1];
+                case "--wal-sync" -> walSync = Long.parseLong(args[i + 1]);
+                case "--snapshot-interval" -> snapshotInterval = Long.parseLong(args[i + 1]);
+                case "--mapped-state" -> mappedState = args[i + 1];
+                case "--mapped-sync" -> mappedSync = Long.parseLong(args[i + 1]);
+                case "--idle-timeout" -> idleTimeout = Long.parseLong(args[i + 1]);
+                case "--ping-interval" -> pingInterval = Long.parseLong(args[i + 1]);
+                case "--write-timeout" -> writeTimeout = Long.parseLong(args[i + 1]);
+                case "--max-outbound" -> maxOutbound = Integer.parseInt(args[i + 1]);
+                case "--rate-read" -> connectionRates.put(CommandClass.READ, Rate.parse(args[i + 1]));
+                case "--rate-write" -> connectionRates.put(CommandClass.WRITE, Rate.parse(args[i + 1]));
+                case "--global-rate-read" -> globalRates.put(CommandClass.READ, Rate.parse(args[i + 1]));
+                case "--global-rate-write" -> globalRates.put(CommandClass.WRITE, Rate.parse(args[i + 1]));
+                case "--overflow" -> overflow = OverflowPolicy.valueOf(args[i + 1].toUpperCase().replace('-', '_'));
+                default -> System.out.println("[TvServerApp] Ignoring unknown option " + args[i]);
+            }
+        }
+        System.out.println("[TvServerApp] Starting " + transport + " transport on port " + port);
+
+        if (state != null && !List.of("locked", "atomic", "sharded").contains(state)) {
+            throw new IllegalArgumentException("Unknown state implementation: " + state);
+        }
+        boolean fleetPath = tvs > 1 || mappedState != null;
+        if (fleetPath && state != null && !"sharded".equals(state)) {
+            throw new IllegalArgumentException("--state " + state
+                    + " only applies to a single TV; with --tvs or --mapped-state use sharded or leave it out");
+        }
+        if (mappedSync < 0) {
+            throw new IllegalArgumentException("--mapped-sync cannot be negative: " + mappedSync);
+        }
+
+        Broadcaster broadcaster = new Broadcaster(eventQueue, overflow, coalesce, coalesceWindow);
+        if (mappedState != null && (dataDir != null || "sharded".equals(state))) {
+            throw new IllegalArgumentException("--mapped-state cannot be combined with --data-dir or --state sharded");
         }
-        System.out.println("[TvServerApp] Starting on port " + port);
+        MappedStateFile mapped = mappedState == null ? null
+                : MappedStateFile.open(Path.of(mappedState), tvs, 10);
+        Fleet fleet;
+        TvControl singleTv = null;
+        if (mapped != null) {
+            fleet = mapped.fleet();
+        } else if ("sharded".equals(state)) {
+            fleet = new ShardedFleet(tvs, 10, shards);
+        } else if (tvs > 1) {
+            fleet = new TvFleet(tvs, 10);
+        } else {
+            singleTv = "atomic".equals(state) ? new AtomicSmartTv(10) : new SmartTv(10);
+            fleet = Fleet.of(singleTv);
+        }
+
+        // Restore before the broadcasters listen, so replaying the state sends no events
+        StateStore store = dataDir == null ? null
+                : StateStore.open(Path.of(dataDir), fleet, walSync, snapshotInterval);
+
+        TvRegistry registry = singleTv != null
+                ? new SingleTvRegistry(singleTv, broadcaster)
+                : new FleetTvRegistry(fleet, broadcaster);
+
+        ProtocolHandler handler = new ProtocolHandler(registry,
+                new RateLimiter(connectionRates, globalRates));
+        ConnectionLimits limits = new ConnectionLimits(Duration.ofSeconds(idleTimeout),
+                Duration.ofSeconds(writeTimeout), Duration.ofSeconds(pingInterval), maxOutbound);
+        ServerTransport server = switch (transport) {
+            case "nio" -> new NioTcpServer(port, handler, loops, limits);
+            case "blocking" -> new TcpServer(port, handler, maxConnections, limits);
+            default -> throw new IllegalArgumentException("Unknown transport: " + transport);
+        };
 
-        SmartTv tv = new SmartTv(10);
+        if (mapped != null && mappedSync > 0) {
+            ScheduledExecutorService mappedSyncer = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().name("mapped-sync").daemon().factory());
+            mappedSyncer.scheduleAtFixedRate(mapped::force, mappedSync, mappedSync, TimeUnit.SECONDS);
+        }
+
+        if (metricsInterval > 0) {
+            ScheduledExecutorService metricsLog = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().name("metrics-log").daemon().factory());
+            metricsLog.scheduleAtFixedRate(
+                    () -> LOG.info("Metrics:\n" + handler.metrics().dump()),
+                    metricsInterval, metricsInterval, TimeUnit.SECONDS);
+        }
 
-        ProtocolHandler handler = new ProtocolHandler(tv);
-        TcpServer server = new TcpServer(port, handler);
+        // Close the listener and all clients on Ctrl+C, save the state, then print the final metrics
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            if (store != null) {
+                store.close();
+            }
+            if (mapped != null) {
+                mapped.force();
+            }
+            System.out.print(handler.metrics().dump());
+        }, "tv-server-shutdown"));
 
         server.start();
 
@@ -0,0 +1,197 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.broadcast;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.ChangeSequence;
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.TvListener;
+
+/**
+ * Fans TV state changes out to all subscribed connections.
+ * Registered as a {@link TvListener}; each change is offered to every {@link Subscriber}'s
+ * bounded queue. Publishing does no I/O, so it is safe on the command path.
+ *
+ * <p>By default pending channel events are coalesced (see {@link Subscriber}). A coalescing
+ * window makes the transports wait that long after the first event of a burst before
+ * writing, so events that arrive in between collapse too; replies still go out at once and
+ * carry whatever events are queued at that point.
+ */
+public final class Broadcaster implements TvListener {
+
+  /** Default number of events queued per subscriber. */
+  public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+  /** Default coalescing window: write events as soon as the connection can. */
+  public static final long DEFAULT_COALESCE_WINDOW_MILLIS = 0;
+
+  private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+  private final int queueCapacity;
+  private final OverflowPolicy policy;
+  private final boolean coalesce;
+  private final long coalesceWindowMillis;
+
+  /**
+   * Creates a broadcaster with the default queue capacity that coalesces channel events
+   * and drops the oldest event on overflow.
+   */
+  public Broadcaster() {
+    this(DEFAULT_QUEUE_CAPACITY, OverflowPolicy.DROP_OLDEST);
+  }
+
+  /**
+   * Creates a broadcaster that coalesces channel events without a window.
+   *
+   * @param queueCapacity Events queued per subscriber before the policy applies.
+   * @param policy What to do when a subscriber's queue is full.
+   * @throws IllegalArgumentException if queueCapacity is less than 1 or policy is null.
+   */
+  public Broadcaster(int queueCapacity, OverflowPolicy policy) {
+    this(queueCapacity, policy, true, DEFAULT_COALESCE_WINDOW_MILLIS);
+  }
+
+  /**
+   * Creates a broadcaster.
+   *
+   * @param queueCapacity Events queued per subscriber before the policy applies.
+   * @param policy What to do when a subscriber's queue is full.
+   * @param coalesce Whether pending channel events collapse to the latest one.
+   * @param coalesceWindowMillis How long transports hold back events before writing them;
+   *     0 writes as soon as possible. Ignored when coalesce is false.
+   * @throws IllegalArgumentException if queueCapacity is less than 1, policy is null or
+   *     the window is negative.
+   */
+  public Broadcaster(int queueCapacity, OverflowPolicy policy, boolean coalesce,
+      long coalesceWindowMillis) {
+    if (queueCapacity < 1) throw new IllegalArgumentException("queueCapacity must be at least 1");
+    if (policy == null) throw new IllegalArgumentException("policy cannot be null");
+    if (coalesceWindowMillis < 0) {
+      throw new IllegalArgumentException("coalesceWindowMillis cannot be negative");
+    }
+    this.queueCapacity = queueCapacity;
+    this.policy = policy;
+    this.coalesce = coalesce;
+    this.coalesceWindowMillis = coalesce ? coalesceWindowMillis : 0;
+  }
+
+  /**
+   * Returns how long transports should wait after being woken before writing events.
+   *
+   * @return The coalescing window in nanoseconds, 0 for none.
+   */
+  public long coalesceWindowNanos() {
+    return coalesceWindowMillis * 1_000_000L;
+  }
+
+  /**
+   * Creates an empty broadcaster with the same queue capacity, policy and coalescing.
+   * Used to give every TV of a fleet its own broadcaster configured like this one.
+   *
+   * @return A new broadcaster without subscribers.
+   */
+  public Broadcaster withSameSettings() {
+    return new Broadcaster(queueCapacity, policy, coalesce, coalesceWindowMillis);
+  }
+
+  /**
+   * Subscribes a connection.
+   *
+   * @param onReady Wakes the connection's writer when events are queued.
+   * @return The new subscriber queue.
+   */
+  public Subscriber subscribe(Runnable onReady) {
+    Subscriber s = new Subscriber(queueCapacity, policy, coalesce, onReady);
+    subscribers.add(s);
+    return s;
+  }
+
+  /**
+   * Removes a subscriber. Events already queued stay readable.
+   *
+   * @param subscriber The subscriber to remove.
+   */
+  public void unsubscribe(Subscriber subscriber) {
+    subscribers.remove(subscriber);
+  }
+
+  /**
+   * Returns the number of subscribed connections.
+   *
+   * @return The subscriber count.
+   */
+  public int subscriberCount() {
+    return subscribers.size();
+  }
+
+  /**
+   * Adds up the state of all subscriber queues.
+   *
+   * @return The totals; each queue is read separately, so they are not an atomic view.
+   */
+  public QueueStats queueStats() {
+    int count = 0;
+    long queued = 0;
+    int maxDepth = 0;
+    long dropped = 0;
+    for (Subscriber s : subscribers) {
+      int depth = s.size();
+      count++;
+      queued += depth;
+      maxDepth = Math.max(maxDepth, depth);
+      dropped += s.dropped();
+    }
+    return new QueueStats(count, queued, maxDepth, dropped);
+  }
+
+  /**
+   * Totals over the subscriber queues.
+   *
+   * @param subscribers Number of subscribers.
+   * @param queued Events waiting in all queues.
+   * @param maxDepth Events in the fullest queue.
+   * @param dropped Events the current subscribers lost to overflow.
+   */
+  public record QueueStats(int subscribers, long queued, int maxDepth, long dropped) {}
+
+  /**
+   * Queues an event for every subscriber.
+   *
+   * @param event The event code.
+   */
+  public void publish(int event) {
+    for (Subscriber s : subscribers) {
+      s.offer(event);
+    }
+  }
+
+  /**
+   * Queues an event for every subscriber that has not already queued a newer change.
+   *
+   * @param event The event code.
+   * @param sequence The {@link ChangeSequence} number of the change.
+   */
+  public void publish(int event, int sequence) {
+    for (Subscriber s : subscribers) {
+      s.offer(event, sequence);
+    }
+  }
+
+  @Override
+  public void powerChanged(boolean on) {
+    publish(on ? Events.POWER_ON : Events.POWER_OFF);
+  }
+
+  @Override
+  public void channelChanged(int channel) {
+    publish(Events.channel(channel));
+  }
+
+  @Override
+  public void powerChanged(boolean on, int sequence) {
+    publish(on ? Events.POWER_ON : Events.POWER_OFF, sequence);
+  }
+
+  @Override
+  public void channelChanged(int channel, int sequence) {
+    publish(Events.channel(channel), sequence);
+  }
+}
@@ -0,0 +1,55 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.broadcast;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.EncodedLine;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.EncodedReplies;
+
+/**
+ * Events are passed through the broadcast bus as plain ints so queuing them never allocates.
+ * A positive value is a channel event for that channel; the power events use negative codes.
+ */
+public final class Events {
+
+  // Prevent instantiation
+  private Events() {}
+
+  /** Returned by {@link Subscriber#poll()} when no event is queued. */
+  public static final int NONE = 0;
+
+  public static final int POWER_ON = -1;
+  public static final int POWER_OFF = -2;
+
+  /**
+   * Returns the event code for a channel change.
+   *
+   * @param channel The new channel, at least 1.
+   * @return The event code.
+   */
+  public static int channel(int channel) {
+    return channel;
+  }
+
+  /**
+   * Checks whether an event code is a channel change.
+   *
+   * @param event The event code.
+   * @return true for channel events.
+   */
+  public static boolean isChannel(int event) {
+    return event > 0;
+  }
+
+  /**
+   * Returns the pre-encoded EVT line for an event code.
+   *
+   * @param event The event code (not {@link #NONE}).
+   * @param replies The reply table to take the bytes from.
+   * @return The encoded event line.
+   */
+  public static EncodedLine encode(int event, EncodedReplies replies) {
+    return switch (event) {
+      case POWER_ON -> replies.evtPowerOn();
+      case POWER_OFF -> replies.evtPowerOff();
+      default -> replies.evtChannel(event);
+    };
+  }
+}
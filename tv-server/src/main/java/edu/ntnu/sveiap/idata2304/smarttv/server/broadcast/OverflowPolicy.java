@@ -0,0 +1,16 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.broadcast;
+
+/**
+ * What a {@link Subscriber} does when an event arrives and its queue is full.
+ */
+public enum OverflowPolicy {
+  /** Drop the oldest queued event to make room. */
+  DROP_OLDEST,
+  /**
+   * Drop all queued channel events except the newest, since only the latest channel
+   * matters. Power events are kept; if the queue holds nothing else, the oldest is dropped.
+   */
+  COALESCE,
+  /** Drop everything and mark the subscriber as evicted so its connection is closed. */
+  DISCONNECT
+}
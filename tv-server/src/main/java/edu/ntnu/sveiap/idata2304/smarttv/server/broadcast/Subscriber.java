@@ -0,0 +1,232 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.broadcast;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.ChangeSequence;
+
+/**
+ * The outbound event queue of one subscribed connection.
+ * The queue is a bounded ring of event codes. Publishing only takes the subscriber's own
+ * short lock and never waits for the connection, so a slow client cannot hold up the
+ * command path or other subscribers; when its queue is full the {@link OverflowPolicy}
+ * decides what is lost.
+ *
+ * <p>With coalescing on, a channel event that arrives while the newest queued event is also
+ * a channel event replaces it instead of taking a slot: a burst of UP presses that the
+ * connection has not written yet collapses to the final channel. Only a channel event at
+ * the tail is replaced, so power events keep their position relative to channel events.
+ *
+ * <p>Events of numbered changes (see {@link ChangeSequence}) can be published by several
+ * threads at once and arrive out of order. An event numbered before the last one queued is
+ * stale and is dropped, so the newest queued event always matches the TV's latest change.
+ *
+ * <p>The {@code onReady} callback runs when the queue goes from empty to non-empty (and
+ * on eviction). It is called on the publishing thread and must only wake the connection's
+ * writer, never write itself.
+ */
+public final class Subscriber {
+  private final int[] ring;
+  private final OverflowPolicy policy;
+  private final Runnable onReady;
+  private final boolean coalesce;
+
+  private int head;
+  private int size;
+  private boolean evicted;
+  private long dropped;
+  private long coalesced;
+  private boolean numbered;
+  private int lastSequence;
+
+  /**
+   * Creates a subscriber queue that does not coalesce.
+   *
+   * @param capacity Maximum number of queued events.
+   * @param policy What to do when the queue is full.
+   * @param onReady Wakes the connection when events become available.
+   * @throws IllegalArgumentException if capacity is less than 1.
+   */
+  public Subscriber(int capacity, OverflowPolicy policy, Runnable onReady) {
+    this(capacity, policy, false, onReady);
+  }
+
+  /**
+   * Creates a subscriber queue.
+   *
+   * @param capacity Maximum number of queued events.
+   * @param policy What to do when the queue is full.
+   * @param coalesce Whether a queued channel event is replaced by a newer one.
+   * @param onReady Wakes the connection when events become available.
+   * @throws IllegalArgumentException if capacity is less than 1.
+   */
+  public Subscriber(int capacity, OverflowPolicy policy, boolean coalesce, Runnable onReady) {
+    if (capacity < 1) throw new IllegalArgumentException("capacity must be at least 1");
+    this.ring = new int[capacity];
+    this.policy = policy;
+    this.coalesce = coalesce;
+    this.onReady = onReady;
+  }
+
+  /**
+   * Queues an event. Never blocks on I/O.
+   *
+   * @param event The event code.
+   */
+  void offer(int event) {
+    boolean signal;
+    synchronized (this) {
+      signal = enqueue(event);
+    }
+    if (signal) onReady.run();
+  }
+
+  /**
+   * Queues the event of a numbered change, or drops it if a later change was queued
+   * already. Never blocks on I/O.
+   *
+   * @param event The event code.
+   * @param sequence The {@link ChangeSequence} number of the change.
+   */
+  void offer(int event, int sequence) {
+    boolean signal;
+    synchronized (this) {
+      if (evicted) return;
+      if (numbered && ChangeSequence.isBefore(sequence, lastSequence)) {
+        coalesced++;
+        return;
+      }
+      numbered = true;
+      lastSequence = sequence;
+      signal = enqueue(event);
+    }
+    if (signal) onReady.run();
+  }
+
+  /**
+   * Adds an event to the ring, coalescing or making room as configured. Caller holds the lock.
+   *
+   * @return true if the connection must be woken.
+   */
+  private boolean enqueue(int event) {
+    if (evicted) return false;
+    if (coalesce && size > 0 && Events.isChannel(event)) {
+      int tail = (head + size - 1) % ring.length;
+      if (Events.isChannel(ring[tail])) {
+        ring[tail] = event;
+        coalesced++;
+        return false;
+      }
+    }
+    boolean signal = size == 0;
+    if (size == ring.length && !makeRoom()) {
+      signal = true;
+    } else {
+      ring[(head + size) % ring.length] = event;
+      size++;
+    }
+    return signal;
+  }
+
+  /**
+   * Frees at least one slot according to the policy.
+   *
+   * @return false if the subscriber was evicted instead.
+   */
+  private boolean makeRoom() {
+    switch (policy) {
+      case DISCONNECT -> {
+        dropped += size;
+        size = 0;
+        evicted = true;
+        return false;
+      }
+      case COALESCE -> {
+        if (!keepOnlyLastChannelEvent()) dropOldest();
+      }
+      default -> dropOldest();
+    }
+    return true;
+  }
+
+  private void dropOldest() {
+    head = (head + 1) % ring.length;
+    size--;
+    dropped++;
+  }
+
+  /**
+   * Removes every queued channel event except the newest one, keeping the order of the rest.
+   *
+   * @return true if a slot was freed.
+   */
+  private boolean keepOnlyLastChannelEvent() {
+    int last = -1;
+    for (int i = size - 1; i >= 0; i--) {
+      if (Events.isChannel(ring[(head + i) % ring.length])) {
+        last = i;
+        break;
+      }
+    }
+    int kept = 0;
+    for (int i = 0; i < size; i++) {
+      int e = ring[(head + i) % ring.length];
+      if (!Events.isChannel(e) || i == last) {
+        ring[(head + kept) % ring.length] = e;
+        kept++;
+      }
+    }
+    dropped += size - kept;
+    boolean freed = kept < size;
+    size = kept;
+    return freed;
+  }
+
+  /**
+   * Takes the oldest queued event.
+   *
+   * @return The event code, or {@link Events#NONE} if the queue is empty.
+   */
+  public synchronized int poll() {
+    if (size == 0) return Events.NONE;
+    int e = ring[head];
+    head = (head + 1) % ring.length;
+    size--;
+    return e;
+  }
+
+  /**
+   * Returns the number of queued events.
+   *
+   * @return The queue depth.
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Returns how many events were lost to overflow.
+   *
+   * @return The number of dropped events.
+   */
+  public synchronized long dropped() {
+    return dropped;
+  }
+
+  /**
+   * Returns how many channel events were replaced by a newer one before being written, plus
+   * how many stale events were dropped.
+   *
+   * @return The number of coalesced events.
+   */
+  public synchronized long coalesced() {
+    return coalesced;
+  }
+
+  /**
+   * Returns whether the subscriber overflowed under {@link OverflowPolicy#DISCONNECT}.
+   * The connection should be closed once this is true.
+   *
+   * @return true if evicted.
+   */
+  public synchronized boolean isEvicted() {
+    return evicted;
+  }
+}
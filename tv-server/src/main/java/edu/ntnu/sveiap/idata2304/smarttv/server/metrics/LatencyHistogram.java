@@ -0,0 +1,165 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A concurrent latency histogram with log-linear buckets.
+ * Each power of two is split into four buckets, so a recorded value is known to within
+ * 25%. Recording is one atomic increment and does not allocate.
+ *
+ * <p>The counts are striped: each thread increments one of several bucket arrays, picked
+ * by its thread id, so threads recording at the same time rarely touch the same counter.
+ * A snapshot adds the stripes together.
+ */
+public final class LatencyHistogram {
+
+  /** Values are clamped to 2^40 ns (about 18 minutes). */
+  private static final int MAX_MAGNITUDE = 40;
+  private static final int SUB_BUCKETS = 4;
+
+  /** Number of buckets: values 0..3 get their own, then four per power of two from 4. */
+  static final int BUCKETS = SUB_BUCKETS + (MAX_MAGNITUDE - 2) * SUB_BUCKETS;
+
+  private final AtomicLongArray[] stripes;
+  private final int mask;
+
+  /**
+   * Creates a histogram with a stripe count based on the number of processors.
+   */
+  public LatencyHistogram() {
+    this(Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1));
+  }
+
+  /**
+   * Creates a histogram.
+   *
+   * @param stripes Number of bucket arrays; must be a power of two.
+   * @throws IllegalArgumentException if stripes is not a positive power of two.
+   */
+  public LatencyHistogram(int stripes) {
+    if (stripes < 1 || Integer.bitCount(stripes) != 1) {
+      throw new IllegalArgumentException("stripes must be a power of two");
+    }
+    this.stripes = new AtomicLongArray[stripes];
+    for (int i = 0; i < stripes; i++) {
+      this.stripes[i] = new AtomicLongArray(BUCKETS);
+    }
+    this.mask = stripes - 1;
+  }
+
+  /**
+   * Records one value.
+   *
+   * @param nanos The latency in nanoseconds; negative values count as 0.
+   */
+  public void record(long nanos) {
+    int stripe = (int) Thread.currentThread().threadId() & mask;
+    stripes[stripe].incrementAndGet(bucketOf(nanos));
+  }
+
+  /**
+   * Adds up the stripes into a snapshot. Values recorded while this runs may or may not
+   * be included.
+   *
+   * @return The snapshot.
+   */
+  public Snapshot snapshot() {
+    long[] counts = new long[BUCKETS];
+    for (AtomicLongArray stripe : stripes) {
+      for (int i = 0; i < BUCKETS; i++) {
+        counts[i] += stripe.get(i);
+      }
+    }
+    return new Snapshot(counts);
+  }
+
+  static int bucketOf(long value) {
+    if (value < SUB_BUCKETS) return (int) Math.max(0, value);
+    value = Math.min(value, (1L << MAX_MAGNITUDE) - 1);
+    int magnitude = 63 - Long.numberOfLeadingZeros(value);
+    int sub = (int) (value >>> (magnitude - 2)) & (SUB_BUCKETS - 1);
+    return SUB_BUCKETS + (magnitude - 2) * SUB_BUCKETS + sub;
+  }
+
+  /**
+   * Returns the largest value that falls in a bucket.
+   */
+  static long upperBound(int bucket) {
+    if (bucket < SUB_BUCKETS) return bucket;
+    int magnitude = (bucket - SUB_BUCKETS) / SUB_BUCKETS + 2;
+    int sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+    return ((long) (SUB_BUCKETS + sub + 1) << (magnitude - 2)) - 1;
+  }
+
+  /**
+   * An immutable copy of the bucket counts.
+   */
+  public static final class Snapshot {
+    private final long[] counts;
+    private final long total;
+
+    private Snapshot(long[] counts) {
+      this.counts = counts;
+      long sum = 0;
+      for (long c : counts) {
+        sum += c;
+      }
+      this.total = sum;
+    }
+
+    /**
+     * Adds several snapshots together, e.g. to get the latency over all commands.
+     *
+     * @param snapshots The snapshots to add.
+     * @return A snapshot with the summed counts.
+     */
+    public static Snapshot sum(Iterable<Snapshot> snapshots) {
+      long[] counts = new long[BUCKETS];
+      for (Snapshot s : snapshots) {
+        for (int i = 0; i < BUCKETS; i++) {
+          counts[i] += s.counts[i];
+        }
+      }
+      return new Snapshot(counts);
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return The count.
+     */
+    public long count() {
+      return total;
+    }
+
+    /**
+     * Returns an upper bound for a percentile.
+     *
+     * @param percentile The percentile, 0 to 100.
+     * @return The upper edge of the bucket holding that percentile in nanoseconds,
+     *     or 0 if nothing was recorded.
+     */
+    public long percentile(double percentile) {
+      if (total == 0) return 0;
+      long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank) return upperBound(i);
+      }
+      return upperBound(counts.length - 1);
+    }
+
+    /**
+     * Returns an upper bound for the largest recorded value.
+     *
+     * @return The upper edge of the highest non-empty bucket in nanoseconds, or 0.
+     */
+    public long max() {
+      for (int i = counts.length - 1; i >= 0; i--) {
+        if (counts[i] > 0) return upperBound(i);
+      }
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Command;
+
+/**
+ * A point-in-time copy of the server metrics. Counters are read one by one, so values
+ * that change while the snapshot is taken may be off by a few against each other.
+ *
+ * @param uptimeNanos Time since the metrics were created.
+ * @param activeConnections Currently open client connections.
+ * @param totalConnections Connections accepted since start.
+ * @param requestsPerSecond Request rate over roughly the last second (since start for the
+ *     first second).
+ * @param bytesIn Bytes read from clients.
+ * @param bytesOut Bytes written to clients, including events.
+ * @param commands Count and latency per command, for commands seen at least once.
+ * @param outcomes Replies per outcome, for outcomes seen at least once.
+ * @param subscribers Connections currently subscribed to events.
+ * @param queuedEvents Events waiting in subscriber queues.
+ * @param maxQueueDepth Deepest subscriber queue.
+ * @param droppedEvents Events lost to full queues by current subscribers.
+ */
+public record MetricsSnapshot(long uptimeNanos, long activeConnections, long totalConnections,
+    double requestsPerSecond, long bytesIn, long bytesOut, Map<Command, CommandStats> commands,
+    Map<Outcome, Long> outcomes, int subscribers, long queuedEvents, int maxQueueDepth,
+    long droppedEvents) {
+
+  /**
+   * Count and latency of one command.
+   *
+   * @param count Times the command was handled.
+   * @param latency Handling time (parse, execute, encode) in nanoseconds.
+   */
+  public record CommandStats(long count, LatencyHistogram.Snapshot latency) {}
+
+  /**
+   * Returns the handling time over all commands.
+   *
+   * @return The summed latency histogram.
+   */
+  public LatencyHistogram.Snapshot overallLatency() {
+    List<LatencyHistogram.Snapshot> all = new ArrayList<>();
+    for (CommandStats stats : commands.values()) {
+      all.add(stats.latency());
+    }
+    return LatencyHistogram.Snapshot.sum(all);
+  }
+
+  /**
+   * Returns the number of replies of all outcomes.
+   *
+   * @return The total number of requests answered.
+   */
+  public long requests() {
+    long sum = 0;
+    for (long n : outcomes.values()) {
+      sum += n;
+    }
+    return sum;
+  }
+}
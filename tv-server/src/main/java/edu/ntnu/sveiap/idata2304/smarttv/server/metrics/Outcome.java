@@ -0,0 +1,46 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.metrics;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.BinaryCodec;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.EncodedLine;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.EncodedReplies;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Framing;
+
+/**
+ * The kind of reply sent for a request: OK or one of the protocol's error codes.
+ */
+public enum Outcome {
+  OK,
+  BAD_COMMAND,
+  LINE_TOO_LONG,
+  TV_OFF,
+  OUT_OF_RANGE,
+  INVALID_STATE,
+  SERVER_ERROR,
+  RATE_LIMITED,
+  /** An ERR reply this enum does not know yet. */
+  OTHER_ERROR;
+
+  /**
+   * Classifies a reply in either framing. The error replies are the shared lines from the
+   * reply tables, so they are matched by identity and nothing is parsed.
+   *
+   * @param reply The reply.
+   * @param replies The table the reply came from, or its sibling in the other framing.
+   * @return The outcome.
+   */
+  public static Outcome of(EncodedLine reply, EncodedReplies replies) {
+    if (reply.length() > 0 && (reply.byteAt(0) == 'O' || BinaryCodec.isOk(reply.byteAt(0)))) {
+      return OK;
+    }
+    EncodedReplies text = replies.in(Framing.TEXT);
+    EncodedReplies binary = replies.in(Framing.BINARY);
+    if (reply == text.errBadCommand() || reply == binary.errBadCommand()) return BAD_COMMAND;
+    if (reply == text.errLineTooLong() || reply == binary.errLineTooLong()) return LINE_TOO_LONG;
+    if (reply == text.errTvOff() || reply == binary.errTvOff()) return TV_OFF;
+    if (reply == text.errOutOfRange() || reply == binary.errOutOfRange()) return OUT_OF_RANGE;
+    if (reply == text.errInvalidState() || reply == binary.errInvalidState()) return INVALID_STATE;
+    if (reply == text.errServerError() || reply == binary.errServerError()) return SERVER_ERROR;
+    if (reply == text.errRateLimited() || reply == binary.errRateLimited()) return RATE_LIMITED;
+    return OTHER_ERROR;
+  }
+}
@@ -0,0 +1,219 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.metrics;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Command;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.EncodedLine;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.EncodedReplies;
+import edu.ntnu.sveiap.idata2304.smarttv.server.broadcast.Broadcaster;
+
+/**
+ * Counters and latency histograms for one server.
+ * {@link edu.ntnu.sveiap.idata2304.smarttv.server.adapter.ProtocolHandler} records every
+ * command it handles; the transports record connections and bytes. Recording only
+ * increments {@link LongAdder}s and striped histogram buckets, so it does not allocate
+ * and threads do not contend on a shared counter.
+ *
+ * <p>Read the values with {@link #snapshot()} or as text with {@link #dump()}.
+ */
+public final class ServerMetrics {
+  private static final Command[] COMMANDS = Command.values();
+  private static final Outcome[] OUTCOMES = Outcome.values();
+  private static final long RATE_WINDOW_NANOS = 1_000_000_000L;
+
+  private final long startNanos = System.nanoTime();
+  private final EncodedReplies replies;
+  private final Supplier<Broadcaster.QueueStats> queueStats;
+
+  private final LongAdder[] commandCounts = new LongAdder[COMMANDS.length];
+  private final LatencyHistogram[] commandLatency = new LatencyHistogram[COMMANDS.length];
+  private final LongAdder[] outcomeCounts = new LongAdder[OUTCOMES.length];
+
+  private final LongAdder connectionsOpened = new LongAdder();
+  private final LongAdder connectionsClosed = new LongAdder();
+  private final LongAdder bytesIn = new LongAdder();
+  private final LongAdder bytesOut = new LongAdder();
+
+  /** Request count when the current rate window began; only snapshots touch it. */
+  private final AtomicReference<RateSample> rateSample =
+      new AtomicReference<>(new RateSample(startNanos, 0, Double.NaN));
+
+  /**
+   * Creates the metrics for a server.
+   *
+   * @param replies The reply table, used to classify replies.
+   * @param queueStats Totals over the subscriber queues to report, e.g.
+   *     {@link Broadcaster#queueStats()}.
+   * @throws IllegalArgumentException if an argument is null.
+   */
+  public ServerMetrics(EncodedReplies replies, Supplier<Broadcaster.QueueStats> queueStats) {
+    if (replies == null) throw new IllegalArgumentException("replies cannot be null");
+    if (queueStats == null) throw new IllegalArgumentException("queueStats cannot be null");
+    this.replies = replies;
+    this.queueStats = queueStats;
+    for (int i = 0; i < COMMANDS.length; i++) {
+      commandCounts[i] = new LongAdder();
+      commandLatency[i] = new LatencyHistogram();
+    }
+    for (int i = 0; i < OUTCOMES.length; i++) {
+      outcomeCounts[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Records a handled command.
+   *
+   * @param command The command.
+   * @param nanos How long handling took.
+   * @param reply The reply sent.
+   */
+  public void recordCommand(Command command, long nanos, EncodedLine reply) {
+    commandCounts[command.ordinal()].increment();
+    commandLatency[command.ordinal()].record(nanos);
+    recordReply(reply);
+  }
+
+  /**
+   * Records a command that ran as part of a MULTI/EXEC batch. It is counted, but adds no
+   * latency sample: the batch is timed once, as EXEC.
+   *
+   * @param command The command.
+   * @param reply The reply sent.
+   */
+  public void recordBatched(Command command, EncodedLine reply) {
+    commandCounts[command.ordinal()].increment();
+    recordReply(reply);
+  }
+
+  /**
+   * Records a reply that was not produced by a command, such as a parse error or a line
+   * the transport rejected.
+   *
+   * @param reply The reply sent.
+   */
+  public void recordReply(EncodedLine reply) {
+    outcomeCounts[Outcome.of(reply, replies).ordinal()].increment();
+  }
+
+  /**
+   * Records an accepted connection.
+   */
+  public void connectionOpened() {
+    connectionsOpened.increment();
+  }
+
+  /**
+   * Records a closed connection.
+   */
+  public void connectionClosed() {
+    connectionsClosed.increment();
+  }
+
+  /**
+   * Records bytes read from a client.
+   *
+   * @param n The number of bytes.
+   */
+  public void bytesIn(long n) {
+    bytesIn.add(n);
+  }
+
+  /**
+   * Records bytes written to a client.
+   *
+   * @param n The number of bytes.
+   */
+  public void bytesOut(long n) {
+    bytesOut.add(n);
+  }
+
+  /**
+   * Copies the current values. Only reads the counters, so taking snapshots (for example
+   * for the STATS command) never blocks request handling.
+   *
+   * @return The snapshot.
+   */
+  public MetricsSnapshot snapshot() {
+    long now = System.nanoTime();
+    Map<Command, MetricsSnapshot.CommandStats> commands = new EnumMap<>(Command.class);
+    for (int i = 0; i < COMMANDS.length; i++) {
+      long count = commandCounts[i].sum();
+      if (count > 0) {
+        commands.put(COMMANDS[i],
+            new MetricsSnapshot.CommandStats(count, commandLatency[i].snapshot()));
+      }
+    }
+    Map<Outcome, Long> outcomes = new EnumMap<>(Outcome.class);
+    long requests = 0;
+    for (int i = 0; i < OUTCOMES.length; i++) {
+      long count = outcomeCounts[i].sum();
+      if (count > 0) {
+        outcomes.put(OUTCOMES[i], count);
+        requests += count;
+      }
+    }
+    long closed = connectionsClosed.sum();
+    long opened = connectionsOpened.sum();
+    Broadcaster.QueueStats queues = queueStats.get();
+    return new MetricsSnapshot(now - startNanos, opened - closed, opened,
+        requestRate(now, requests), bytesIn.sum(), bytesOut.sum(), commands, outcomes, queues.subscribers(),
+        queues.queued(), queues.maxDepth(), queues.dropped());
+  }
+
+  /**
+   * Returns the request rate since the start of the current window. The window moves on
+   * when a snapshot finds it at least a second old, so pollers asking every second get
+   * the rate of the last second. Concurrent snapshots race with a CAS; the loser simply
+   * reports the rate it computed.
+   */
+  private double requestRate(long now, long requests) {
+    RateSample last = rateSample.get();
+    long elapsed = now - last.atNanos();
+    if (elapsed < RATE_WINDOW_NANOS) {
+      return Double.isNaN(last.rate()) ? requests * 1e9 / Math.max(1, elapsed) : last.rate();
+    }
+    double rate = (requests - last.requests()) * 1e9 / elapsed;
+    rateSample.compareAndSet(last, new RateSample(now, requests, rate));
+    return rate;
+  }
+
+  private record RateSample(long atNanos, long requests, double rate) {}
+
+  /**
+   * Formats a snapshot as plain text, one section per line and a table of commands with
+   * latency percentiles in microseconds.
+   *
+   * @return The text, ending with a newline.
+   */
+  public String dump() {
+    MetricsSnapshot s = snapshot();
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format(Locale.ROOT, "uptime       %.1f s%n", s.uptimeNanos() / 1e9));
+    sb.append(String.format(Locale.ROOT, "connections  active=%d total=%d%n",
+        s.activeConnections(), s.totalConnections()));
+    sb.append(String.format(Locale.ROOT, "requests     total=%d rate=%.0f/s%n",
+        s.requests(), s.requestsPerSecond()));
+    sb.append(String.format(Locale.ROOT, "bytes        in=%d out=%d%n", s.bytesIn(), s.bytesOut()));
+    sb.append(String.format(Locale.ROOT, "subscribers  count=%d queued=%d max_queue=%d dropped=%d%n",
+        s.subscribers(), s.queuedEvents(), s.maxQueueDepth(), s.droppedEvents()));
+    sb.append("replies     ");
+    for (Map.Entry<Outcome, Long> e : s.outcomes().entrySet()) {
+      sb.append(' ').append(e.getKey()).append('=').append(e.getValue());
+    }
+    sb.append(System.lineSeparator());
+    sb.append(String.format(Locale.ROOT, "%-9s %10s %9s %9s %9s %9s%n",
+        "command", "count", "p50_us", "p90_us", "p99_us", "max_us"));
+    for (Map.Entry<Command, MetricsSnapshot.CommandStats> e : s.commands().entrySet()) {
+      LatencyHistogram.Snapshot h = e.getValue().latency();
+      sb.append(String.format(Locale.ROOT, "%-9s %10d %9.1f %9.1f %9.1f %9.1f%n",
+          e.getKey(), e.getValue().count(), h.percentile(50) / 1e3, h.percentile(90) / 1e3,
+          h.percentile(99) / 1e3, h.max() / 1e3));
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,53 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.persist;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.IntConsumer;
+
+/**
+ * Ids of TVs changed since they were last written, as one bit per TV.
+ * Marking is a read and at most one atomic OR, so command threads do not allocate or
+ * queue; a TV changed many times between two commits is written once.
+ */
+final class DirtySet {
+  private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+  private final long[] words;
+  private volatile boolean any;
+
+  DirtySet(int size) {
+    this.words = new long[(size + 63) >>> 6];
+  }
+
+  /**
+   * Marks a TV as changed. Safe to call from any thread.
+   *
+   * @param id Index of the TV.
+   */
+  void mark(int id) {
+    int w = id >>> 6;
+    long bit = 1L << id;
+    if (((long) WORDS.getVolatile(words, w) & bit) == 0) {
+      WORDS.getAndBitwiseOr(words, w, bit);
+    }
+    if (!any) any = true;
+  }
+
+  /**
+   * Clears every marked TV and passes its id to the action. Only one thread may drain.
+   *
+   * @param action Receives the ids in ascending order.
+   */
+  void drain(IntConsumer action) {
+    if (!any) return;
+    any = false; // before the scan, so a mark that misses the scan sets it again
+    for (int w = 0; w < words.length; w++) {
+      if ((long) WORDS.getVolatile(words, w) == 0) continue;
+      long bits = (long) WORDS.getAndSet(words, w, 0L);
+      while (bits != 0) {
+        action.accept((w << 6) + Long.numberOfTrailingZeros(bits));
+        bits &= bits - 1;
+      }
+    }
+  }
+}
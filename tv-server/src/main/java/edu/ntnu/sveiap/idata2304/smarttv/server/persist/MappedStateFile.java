@@ -0,0 +1,113 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.persist;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.TvFleet;
+
+/**
+ * TV state kept in a memory-mapped file, so a restart serves the saved state at once.
+ * The file is a 16-byte header {@code [int magic][int version][int size][int channels]}
+ * followed by one fixed-width {@link TvFleet#STATE_BYTES} slot per TV, all little-endian.
+ * The {@link TvFleet} returned by {@link #fleet()} works directly on the mapped slots:
+ * reopening maps the file and checks the header, with no parsing or replay, so restart
+ * time does not grow with the fleet.
+ *
+ * <p>Changes reach the page cache immediately and therefore survive a crash of the
+ * process. The operating system writes them to disk on its own schedule; {@link #force()}
+ * makes it happen now, so a power loss loses at most what changed since the last force.
+ * Each slot is one aligned 4-byte word, so a TV is never half written.
+ */
+public final class MappedStateFile implements AutoCloseable {
+  private static final int MAGIC = 0x53545654; // "STVT"
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 16;
+
+  private final FileChannel channel;
+  private final MappedByteBuffer map;
+  private final TvFleet fleet;
+
+  private MappedStateFile(FileChannel channel, MappedByteBuffer map, int channels) {
+    this.channel = channel;
+    this.map = map;
+    this.fleet = new TvFleet(map.slice(HEADER_BYTES, map.capacity() - HEADER_BYTES), channels);
+  }
+
+  /**
+   * Opens the state file, creating it with every TV off on channel 1 if it does not exist.
+   *
+   * @param file The state file.
+   * @param size Number of TVs.
+   * @param channels Channels per TV.
+   * @return The open file.
+   * @throws IOException if the file cannot be mapped, or holds a different fleet.
+   * @throws IllegalArgumentException if size or channels is less than 1, or channels is
+   *     more than {@link TvFleet#MAX_CHANNELS}.
+   */
+  public static MappedStateFile open(Path file, int size, int channels) throws IOException {
+    if (size < 1) throw new IllegalArgumentException("There must be at least one TV.");
+    if (channels < 1) throw new IllegalArgumentException("There must be at least one channel.");
+    if (channels > TvFleet.MAX_CHANNELS) {
+      throw new IllegalArgumentException("At most " + TvFleet.MAX_CHANNELS + " channels per TV.");
+    }
+    boolean created = !Files.exists(file);
+    long length = HEADER_BYTES + (long) size * TvFleet.STATE_BYTES;
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      if (!created && channel.size() != length) {
+        throw new IOException("State file " + file + " has " + channel.size()
+            + " bytes, expected " + length + " for " + size + " TVs");
+      }
+      // Mapping past the end grows the file; the new slots read as zero, i.e. off on channel 1
+      MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+      map.order(ByteOrder.LITTLE_ENDIAN);
+      if (created) {
+        map.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, size).putInt(12, channels);
+        map.force();
+      } else if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION) {
+        throw new IOException("State file " + file + " has an unknown format");
+      } else if (map.getInt(8) != size || map.getInt(12) != channels) {
+        throw new IOException("State file " + file + " holds " + map.getInt(8) + " TVs with "
+            + map.getInt(12) + " channels, expected " + size + " with " + channels);
+      }
+      return new MappedStateFile(channel, map, channels);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the fleet whose state lives in this file.
+   *
+   * @return The fleet.
+   */
+  public TvFleet fleet() {
+    return fleet;
+  }
+
+  /**
+   * Writes changed pages to disk now.
+   */
+  public void force() {
+    map.force();
+  }
+
+  /**
+   * Forces the state to disk and closes the file. The mapping stays valid until it is
+   * garbage collected, so TVs changed afterwards are not an error, only not saved.
+   *
+   * @throws IOException if the file cannot be closed.
+   */
+  @Override
+  public void close() throws IOException {
+    force();
+    channel.close();
+  }
+}
@@ -0,0 +1,112 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.persist;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.Fleet;
+
+/**
+ * The state of every TV that is not in its initial state, written in one file.
+ * Layout: {@code [int magic][int version][int fleet size]}, then {@code [int id][int state]}
+ * records, then an int CRC32C over everything before it. The file is written next to the
+ * target and moved into place atomically, so a crash leaves the previous snapshot intact.
+ * The directory is forced after the move, so once {@link #write} returns the new snapshot
+ * survives a power loss and the log it replaces may be emptied.
+ */
+final class SnapshotFile {
+  private static final int MAGIC = 0x53545653; // "STVS"
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 12;
+  private static final int CHUNK_BYTES = 64 * 1024;
+
+  private SnapshotFile() {}
+
+  /**
+   * Writes the current state of the fleet.
+   *
+   * @param file Where the snapshot goes.
+   * @param fleet The TVs to save.
+   * @throws IOException if writing fails; the previous snapshot is then kept.
+   */
+  static void write(Path file, Fleet fleet) throws IOException {
+    Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    CRC32C crc = new CRC32C();
+    ByteBuffer buf = ByteBuffer.allocate(CHUNK_BYTES);
+    try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      buf.putInt(MAGIC).putInt(VERSION).putInt(fleet.size());
+      for (int id = 0; id < fleet.size(); id++) {
+        int state = StateStore.stateOf(fleet.tv(id));
+        if (state == StateStore.INITIAL_STATE) continue;
+        if (buf.remaining() < WriteAheadLog.RECORD_BYTES) {
+          flush(out, buf, crc);
+        }
+        buf.putInt(id).putInt(state);
+      }
+      flush(out, buf, crc);
+      buf.putInt((int) crc.getValue()).flip();
+      while (buf.hasRemaining()) out.write(buf);
+      out.force(true);
+    }
+    Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    forceDirectory(file.toAbsolutePath().getParent());
+  }
+
+  /**
+   * Forces a directory's entries to disk, making a rename in it durable.
+   */
+  private static void forceDirectory(Path dir) throws IOException {
+    FileChannel channel;
+    try {
+      channel = FileChannel.open(dir, StandardOpenOption.READ);
+    } catch (IOException notSupported) {
+      // Windows cannot open a directory; NTFS journals the rename itself
+      return;
+    }
+    try (channel) {
+      channel.force(true);
+    }
+  }
+
+  private static void flush(FileChannel out, ByteBuffer buf, CRC32C crc) throws IOException {
+    buf.flip();
+    crc.update(buf.duplicate());
+    while (buf.hasRemaining()) out.write(buf);
+    buf.clear();
+  }
+
+  /**
+   * Reads a snapshot if one exists.
+   *
+   * @param file The snapshot file.
+   * @param sink Receives every saved TV.
+   * @return false if there is no snapshot.
+   * @throws IOException if the file cannot be read or is damaged.
+   */
+  static boolean read(Path file, WriteAheadLog.RecordSink sink) throws IOException {
+    if (!Files.exists(file)) return false;
+    ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+    int end = data.limit() - 4;
+    if (end < HEADER_BYTES || (end - HEADER_BYTES) % WriteAheadLog.RECORD_BYTES != 0) {
+      throw new IOException("Damaged snapshot " + file + ": bad length");
+    }
+    CRC32C crc = new CRC32C();
+    crc.update(data.array(), 0, end);
+    if ((int) crc.getValue() != data.getInt(end)) {
+      throw new IOException("Damaged snapshot " + file + ": checksum mismatch");
+    }
+    if (data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+      throw new IOException("Unknown snapshot format in " + file);
+    }
+    for (int i = HEADER_BYTES; i < end; i += WriteAheadLog.RECORD_BYTES) {
+      sink.record(data.getInt(i), data.getInt(i + 4));
+    }
+    return true;
+  }
+}
@@ -0,0 +1,249 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.persist;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.Fleet;
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.TvControl;
+
+/**
+ * Keeps the power state and channel of a fleet on disk so they survive restarts.
+ * {@link #open} restores the TVs from the last snapshot plus the write-ahead log written
+ * after it, then registers as a {@link edu.ntnu.sveiap.idata2304.smarttv.common.logic.FleetListener}.
+ *
+ * <p>Changes only mark the TV as dirty; nothing is written on the command path. A writer
+ * thread wakes every sync interval, reads the current state of the dirty TVs and appends
+ * it to the log as one frame with one fsync (group commit). A replied change is therefore
+ * on disk within one interval, and a crash loses at most the last interval. Records hold
+ * the state itself, not the command, so replaying one twice is harmless.
+ *
+ * <p>Every snapshot interval the writer saves all TVs to a snapshot and empties the log,
+ * which keeps recovery time bounded.
+ */
+public final class StateStore implements AutoCloseable {
+
+  /** Default time between group commits. */
+  public static final long DEFAULT_SYNC_INTERVAL_MILLIS = 10;
+
+  /** Default time between snapshots. */
+  public static final long DEFAULT_SNAPSHOT_INTERVAL_SECONDS = 300;
+
+  /** State of a TV that was never changed: off, channel 1. */
+  static final int INITIAL_STATE = 0;
+
+  private static final Logger LOG = Logger.getLogger(StateStore.class.getName());
+  private static final int ON_BIT = 1 << 31;
+  private static final int CHANNEL_MASK = ~ON_BIT;
+
+  private final Fleet fleet;
+  private final Path snapshotFile;
+  private final WriteAheadLog wal;
+  private final DirtySet dirty;
+  private final long syncIntervalNanos;
+  private final long snapshotIntervalNanos;
+  private final Thread writer;
+  private ByteBuffer batch = ByteBuffer.allocate(64 * WriteAheadLog.RECORD_BYTES);
+  private long lastSnapshotNanos = System.nanoTime();
+
+  private volatile boolean running = true;
+  private volatile long commits;
+  private volatile long records;
+  private volatile long snapshots;
+
+  private StateStore(Fleet fleet, Path dir, long syncIntervalMillis, long snapshotIntervalSeconds)
+      throws IOException {
+    this.fleet = fleet;
+    this.snapshotFile = dir.resolve("snapshot.bin");
+    this.wal = new WriteAheadLog(dir.resolve("wal.log"));
+    this.dirty = new DirtySet(fleet.size());
+    this.syncIntervalNanos = syncIntervalMillis * 1_000_000L;
+    this.snapshotIntervalNanos = snapshotIntervalSeconds * 1_000_000_000L;
+    this.writer = Thread.ofPlatform().name("state-store").daemon().unstarted(this::run);
+  }
+
+  /**
+   * Restores the fleet from the directory and starts persisting its changes.
+   * Call this before anything else listens to or changes the TVs, since restoring a TV
+   * replays ON, SET and OFF on it.
+   *
+   * @param dir Directory for the snapshot and log; created if missing.
+   * @param fleet The TVs, all in their initial state.
+   * @param syncIntervalMillis Time between group commits; at least 1.
+   * @param snapshotIntervalSeconds Time between snapshots; at least 1.
+   * @return The running store.
+   * @throws IOException if the files cannot be opened or the snapshot is damaged.
+   * @throws IllegalArgumentException if an argument is null or an interval is less than 1.
+   */
+  public static StateStore open(Path dir, Fleet fleet, long syncIntervalMillis,
+      long snapshotIntervalSeconds) throws IOException {
+    if (dir == null) throw new IllegalArgumentException("dir cannot be null");
+    if (fleet == null) throw new IllegalArgumentException("fleet cannot be null");
+    if (syncIntervalMillis < 1) throw new IllegalArgumentException("syncIntervalMillis must be at least 1");
+    if (snapshotIntervalSeconds < 1) {
+      throw new IllegalArgumentException("snapshotIntervalSeconds must be at least 1");
+    }
+    Files.createDirectories(dir);
+    StateStore store = new StateStore(fleet, dir, syncIntervalMillis, snapshotIntervalSeconds);
+    try {
+      store.recover();
+    } catch (IOException | RuntimeException e) {
+      store.wal.close();
+      throw e;
+    }
+    fleet.addListener(store.dirty::mark);
+    store.writer.start();
+    return store;
+  }
+
+  /**
+   * Packs the state of a TV: bit 31 is the power bit, the low bits the channel minus one.
+   */
+  static int stateOf(TvControl tv) {
+    return (tv.isOn() ? ON_BIT : 0) | (tv.getLastChannel() - 1);
+  }
+
+  /**
+   * Reads snapshot and log into one image, then applies each TV's final state once.
+   */
+  private void recover() throws IOException {
+    int[] image = new int[fleet.size()];
+    int[] skipped = new int[1];
+    WriteAheadLog.RecordSink sink = (id, state) -> {
+      if (id < 0 || id >= image.length || (state & CHANNEL_MASK) >= fleet.getChannelRange()) {
+        skipped[0]++;
+      } else {
+        image[id] = state;
+      }
+    };
+    boolean hadSnapshot = SnapshotFile.read(snapshotFile, sink);
+    long replayed = wal.replay(sink);
+
+    int restored = 0;
+    for (int id = 0; id < image.length; id++) {
+      if (image[id] == INITIAL_STATE) continue;
+      restore(fleet.tv(id), image[id]);
+      restored++;
+    }
+    LOG.info("Restored " + restored + " TVs from " + (hadSnapshot ? "snapshot and " : "")
+        + replayed + " log records" + (skipped[0] > 0 ? ", skipped " + skipped[0]
+        + " records for TVs or channels this server does not have" : ""));
+  }
+
+  private static void restore(TvControl tv, int state) {
+    tv.turnOn();
+    tv.setChannel((state & CHANNEL_MASK) + 1);
+    if ((state & ON_BIT) == 0) tv.turnOff();
+  }
+
+  private void run() {
+    while (running) {
+      LockSupport.parkNanos(this, syncIntervalNanos);
+      try {
+        commit();
+        if (System.nanoTime() - lastSnapshotNanos >= snapshotIntervalNanos && wal.size() > 0) {
+          snapshot();
+        }
+      } catch (IOException e) {
+        LOG.log(Level.SEVERE, "Could not persist TV state: " + e.getMessage(), e);
+      }
+    }
+    try {
+      commit();
+    } catch (IOException e) {
+      LOG.log(Level.SEVERE, "Could not persist TV state at shutdown: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Writes the current state of all dirty TVs as one frame. If writing fails, the TVs
+   * are marked dirty again so the next commit retries them.
+   */
+  private synchronized void commit() throws IOException {
+    batch.clear();
+    dirty.drain(this::append);
+    batch.flip();
+    if (!batch.hasRemaining()) return;
+    int count = batch.remaining() / WriteAheadLog.RECORD_BYTES;
+    try {
+      wal.append(batch);
+    } catch (IOException e) {
+      for (int i = 0; i < count; i++) dirty.mark(batch.getInt(i * WriteAheadLog.RECORD_BYTES));
+      throw e;
+    }
+    records += count;
+    commits++;
+  }
+
+  private void append(int id) {
+    if (batch.remaining() < WriteAheadLog.RECORD_BYTES) {
+      ByteBuffer bigger = ByteBuffer.allocate(batch.capacity() * 2);
+      batch.flip();
+      batch = bigger.put(batch);
+    }
+    batch.putInt(id).putInt(stateOf(fleet.tv(id)));
+  }
+
+  /**
+   * Saves every TV to the snapshot and empties the log. The writer calls this every
+   * snapshot interval. It never overlaps a commit, so every logged record is older than
+   * the state the snapshot reads; TVs changed but not yet committed stay dirty and are
+   * logged after the reset.
+   *
+   * @throws IOException if writing fails; the previous snapshot and the log are kept.
+   */
+  public synchronized void snapshot() throws IOException {
+    SnapshotFile.write(snapshotFile, fleet);
+    wal.reset();
+    lastSnapshotNanos = System.nanoTime();
+    snapshots++;
+  }
+
+  /**
+   * Returns how many group commits (one fsync each) were written.
+   *
+   * @return The number of commits.
+   */
+  public long commits() {
+    return commits;
+  }
+
+  /**
+   * Returns how many TV states were written to the log.
+   *
+   * @return The number of records.
+   */
+  public long records() {
+    return records;
+  }
+
+  /**
+   * Returns how many snapshots were written.
+   *
+   * @return The number of snapshots.
+   */
+  public long snapshots() {
+    return snapshots;
+  }
+
+  /**
+   * Commits pending changes and closes the log.
+   */
+  @Override
+  public void close() {
+    running = false;
+    LockSupport.unpark(writer);
+    try {
+      writer.join();
+      wal.close();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      LOG.log(Level.WARNING, "Could not close the write-ahead log: " + e.getMessage(), e);
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.persist;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only file of state records, written in checksummed frames.
+ * Each frame is {@code [int length][int crc32c][length bytes of records]}, and each record
+ * is {@code [int id][int state]}. One frame is one group commit: it is written and forced
+ * to disk with a single {@code force} call. A frame cut short by a crash fails its length
+ * or checksum check; replay stops there and the tail is truncated.
+ */
+final class WriteAheadLog implements Closeable {
+  static final int RECORD_BYTES = 8;
+  private static final int HEADER_BYTES = 8;
+
+  private final FileChannel channel;
+  private final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+  private final CRC32C crc = new CRC32C();
+
+  /**
+   * Receives replayed records.
+   */
+  @FunctionalInterface
+  interface RecordSink {
+    void record(int id, int state);
+  }
+
+  /**
+   * Opens or creates the log. Call {@link #replay(RecordSink)} before appending.
+   *
+   * @param file The log file.
+   * @throws IOException if the file cannot be opened.
+   */
+  WriteAheadLog(Path file) throws IOException {
+    this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+  }
+
+  /**
+   * Reads all intact frames from the start, cuts off a torn tail and positions the log
+   * for appending after the last intact frame.
+   *
+   * @param sink Receives every record in log order.
+   * @return The number of records replayed.
+   * @throws IOException if reading fails.
+   */
+  long replay(RecordSink sink) throws IOException {
+    long size = channel.size();
+    long pos = 0;
+    long records = 0;
+    while (pos + HEADER_BYTES <= size) {
+      header.clear();
+      channel.read(header, pos);
+      int length = header.getInt(0);
+      int checksum = header.getInt(4);
+      if (length <= 0 || length % RECORD_BYTES != 0 || pos + HEADER_BYTES + length > size) break;
+      ByteBuffer payload = ByteBuffer.allocate(length);
+      while (payload.hasRemaining()) {
+        if (channel.read(payload, pos + HEADER_BYTES + payload.position()) < 0) break;
+      }
+      crc.reset();
+      crc.update(payload.array(), 0, length);
+      if ((int) crc.getValue() != checksum) break;
+      for (int i = 0; i < length; i += RECORD_BYTES) {
+        sink.record(payload.getInt(i), payload.getInt(i + 4));
+      }
+      records += length / RECORD_BYTES;
+      pos += HEADER_BYTES + length;
+    }
+    if (pos < size) {
+      channel.truncate(pos);
+    }
+    channel.position(pos);
+    return records;
+  }
+
+  /**
+   * Appends the records between position and limit of the buffer as one frame and
+   * forces it to disk. If that fails, whatever part of the frame was written is cut off
+   * again, so a retried commit does not land behind a torn frame that replay would stop
+   * at.
+   *
+   * @param records Whole records; the buffer is consumed.
+   * @throws IOException if writing or forcing fails.
+   */
+  void append(ByteBuffer records) throws IOException {
+    crc.reset();
+    crc.update(records.duplicate());
+    header.clear();
+    header.putInt(records.remaining()).putInt((int) crc.getValue()).flip();
+    ByteBuffer[] frame = {header, records};
+    long start = channel.position();
+    try {
+      while (records.hasRemaining()) {
+        channel.write(frame);
+      }
+      channel.force(false);
+    } catch (IOException e) {
+      try {
+        channel.truncate(start);
+        channel.position(start);
+      } catch (IOException again) {
+        e.addSuppressed(again);
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Empties the log after a snapshot has made its records redundant.
+   *
+   * @throws IOException if truncating fails.
+   */
+  void reset() throws IOException {
+    channel.truncate(0);
+    channel.position(0);
+    channel.force(false);
+  }
+
+  /**
+   * Returns the size of the log file.
+   *
+   * @return The size in bytes.
+   * @throws IOException if the size cannot be read.
+   */
+  long size() throws IOException {
+    return channel.size();
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -0,0 +1,32 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.ratelimit;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Command;
+
+/**
+ * Groups of commands that share a rate limit.
+ */
+public enum CommandClass {
+  /** Commands that only read the TV: STATUS, GET, CHANNELS. */
+  READ,
+  /** Commands that change the TV and take its lock: ON, OFF, SET, UP, DOWN. */
+  WRITE,
+  /**
+   * Commands that only touch the connection or the server: PING, STATS, SUB, UNSUB, USE,
+   * MULTI, EXEC.
+   */
+  SESSION;
+
+  /**
+   * Returns the class a command belongs to.
+   *
+   * @param cmd The command.
+   * @return Its class.
+   */
+  public static CommandClass of(Command cmd) {
+    return switch (cmd) {
+      case STATUS, GET, CHANNELS -> READ;
+      case ON, OFF, SET, UP, DOWN -> WRITE;
+      case PING, STATS, SUB, UNSUB, USE, MULTI, EXEC -> SESSION;
+    };
+  }
+}
@@ -0,0 +1,46 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.ratelimit;
+
+/**
+ * A sustained request rate with a burst allowance.
+ *
+ * @param perSecond Requests allowed per second on average.
+ * @param burst Requests allowed back to back after a quiet period.
+ */
+public record Rate(long perSecond, int burst) {
+
+  /**
+   * Validates the rate.
+   *
+   * @throws IllegalArgumentException if perSecond is not in {@code [1, 1_000_000_000]}
+   *     or burst is less than 1.
+   */
+  public Rate {
+    if (perSecond < 1 || perSecond > 1_000_000_000L) {
+      throw new IllegalArgumentException("perSecond must be between 1 and 1000000000");
+    }
+    if (burst < 1) throw new IllegalArgumentException("burst must be at least 1");
+  }
+
+  /**
+   * Parses {@code <perSecond>} or {@code <perSecond>:<burst>}. Without a burst, one
+   * second's worth of requests may come back to back.
+   *
+   * @param text The rate as given on the command line.
+   * @return The rate.
+   * @throws IllegalArgumentException if the text is not a valid rate.
+   */
+  public static Rate parse(String text) {
+    if (text == null) throw new IllegalArgumentException("rate cannot be null");
+    int colon = text.indexOf(':');
+    try {
+      if (colon < 0) {
+        long perSecond = Long.parseLong(text.trim());
+        return new Rate(perSecond, (int) Math.min(Integer.MAX_VALUE, perSecond));
+      }
+      return new Rate(Long.parseLong(text.substring(0, colon).trim()),
+          Integer.parseInt(text.substring(colon + 1).trim()));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid rate: " + text, e);
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.ratelimit;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Command;
+
+/**
+ * Decides whether a command may run, from per-connection and server-wide
+ * {@link TokenBucket}s per {@link CommandClass}.
+ * Each connection gets its own buckets ({@link #newQuota()}), so one client flooding the
+ * server runs out of tokens without using up those of the others; the global buckets cap
+ * what all clients together can put on the TVs.
+ *
+ * <p>The connection's bucket is asked first. A flooding client is then refused by its own
+ * bucket and never touches the shared global one, which stays uncontended for everyone
+ * else. A request the global bucket refuses still uses its connection's token.
+ *
+ * <p>Classes without a rate are not limited.
+ */
+public final class RateLimiter {
+  private static final CommandClass[] CLASS_OF = new CommandClass[Command.values().length];
+  private static final RateLimiter UNLIMITED = new RateLimiter(Map.of(), Map.of());
+
+  static {
+    for (Command cmd : Command.values()) {
+      CLASS_OF[cmd.ordinal()] = CommandClass.of(cmd);
+    }
+  }
+
+  private final Rate[] perConnection = new Rate[CommandClass.values().length];
+  private final TokenBucket[] global = new TokenBucket[CommandClass.values().length];
+  private final boolean limited;
+  private final Quota unlimitedQuota = new Quota(new TokenBucket[CommandClass.values().length]);
+
+  /**
+   * Creates a rate limiter.
+   *
+   * @param perConnection The rate each connection may send commands of a class at.
+   * @param global The rate all connections together may send commands of a class at.
+   * @throws IllegalArgumentException if a map is null.
+   */
+  public RateLimiter(Map<CommandClass, Rate> perConnection, Map<CommandClass, Rate> global) {
+    if (perConnection == null || global == null) {
+      throw new IllegalArgumentException("rate maps cannot be null");
+    }
+    Map<CommandClass, Rate> conn = new EnumMap<>(CommandClass.class);
+    conn.putAll(perConnection);
+    conn.forEach((cls, rate) -> this.perConnection[cls.ordinal()] = rate);
+    Map<CommandClass, Rate> all = new EnumMap<>(CommandClass.class);
+    all.putAll(global);
+    all.forEach((cls, rate) -> this.global[cls.ordinal()] = new TokenBucket(rate));
+    this.limited = !conn.isEmpty() || !all.isEmpty();
+  }
+
+  /**
+   * Returns a limiter that lets every command through.
+   *
+   * @return The shared unlimited limiter.
+   */
+  public static RateLimiter unlimited() {
+    return UNLIMITED;
+  }
+
+  /**
+   * Creates the buckets for a new connection.
+   *
+   * @return The connection's quota.
+   */
+  public Quota newQuota() {
+    if (!limited) return unlimitedQuota;
+    TokenBucket[] buckets = new TokenBucket[perConnection.length];
+    for (int i = 0; i < buckets.length; i++) {
+      if (perConnection[i] != null) buckets[i] = new TokenBucket(perConnection[i]);
+    }
+    return new Quota(buckets);
+  }
+
+  /**
+   * Takes a token for a command from the connection's bucket and then the global one.
+   *
+   * @param quota The quota of the connection the command came from.
+   * @param cmd The command.
+   * @return true if the command may run, false if it should be answered with RATE_LIMITED.
+   */
+  public boolean tryAcquire(Quota quota, Command cmd) {
+    if (!limited) return true;
+    int cls = CLASS_OF[cmd.ordinal()].ordinal();
+    TokenBucket own = quota.buckets[cls];
+    if (own != null && !own.tryAcquire()) return false;
+    TokenBucket shared = global[cls];
+    return shared == null || shared.tryAcquire();
+  }
+
+  /**
+   * The buckets of one connection.
+   */
+  public static final class Quota {
+    private final TokenBucket[] buckets;
+
+    private Quota(TokenBucket[] buckets) {
+      this.buckets = buckets;
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free token bucket.
+ * Instead of a token count and a refill timer, the bucket keeps one timestamp: the
+ * {@link System#nanoTime()} at which it would be full again. Taking a token moves that
+ * time one refill interval later; a request is refused if that would put it more than a
+ * full bucket ahead of now. Refill is implied by the clock moving on, so there is no
+ * background thread and a request costs one read and one compare-and-set.
+ *
+ * <p>A refused request does not write at all, so clients over the limit do not contend
+ * with clients under it.
+ */
+public final class TokenBucket {
+  private final long intervalNanos;
+  private final long capacityNanos;
+
+  /** When the bucket would be full again; at or before now means it is full. */
+  private final AtomicLong fullAt;
+
+  /**
+   * Creates a full bucket.
+   *
+   * @param rate The refill rate and capacity.
+   * @throws IllegalArgumentException if rate is null.
+   */
+  public TokenBucket(Rate rate) {
+    if (rate == null) throw new IllegalArgumentException("rate cannot be null");
+    this.intervalNanos = 1_000_000_000L / rate.perSecond();
+    this.capacityNanos = intervalNanos * rate.burst();
+    this.fullAt = new AtomicLong(System.nanoTime());
+  }
+
+  /**
+   * Takes a token if one is available.
+   *
+   * @return true if the request may go ahead.
+   */
+  public boolean tryAcquire() {
+    return tryAcquire(System.nanoTime());
+  }
+
+  /**
+   * Takes a token at the given time; for tests that need a controlled clock.
+   *
+   * @param now The current {@link System#nanoTime()}.
+   * @return true if the request may go ahead.
+   */
+  boolean tryAcquire(long now) {
+    while (true) {
+      long full = fullAt.get();
+      long next = (full - now > 0 ? full : now) + intervalNanos;
+      if (next - now > capacityNanos) return false;
+      if (fullAt.compareAndSet(full, next)) return true;
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.shard;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue for many producers and one consumer.
+ * Producers claim a slot by compare-and-set on the tail counter; every slot carries a
+ * sequence number that tells producers when it is free and the consumer when it is
+ * filled, so neither side takes a lock and the consumer needs no atomic operation.
+ *
+ * @param <T> The element type.
+ */
+final class MpscQueue<T> {
+  private final Object[] elements;
+  private final AtomicLongArray sequences;
+  private final int mask;
+  private final AtomicLong tail = new AtomicLong();
+  private long head; // consumer only
+
+  /**
+   * Creates a queue.
+   *
+   * @param capacity Maximum number of queued elements; rounded up to a power of two.
+   * @throws IllegalArgumentException if capacity is less than 1.
+   */
+  MpscQueue(int capacity) {
+    if (capacity < 1) throw new IllegalArgumentException("capacity must be at least 1");
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) size <<= 1;
+    this.elements = new Object[size];
+    this.sequences = new AtomicLongArray(size);
+    this.mask = size - 1;
+    for (int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  /**
+   * Returns the number of slots.
+   *
+   * @return The capacity.
+   */
+  int capacity() {
+    return elements.length;
+  }
+
+  /**
+   * Adds an element. Safe to call from any thread.
+   *
+   * @param element The element, not null.
+   * @return false if the queue is full.
+   */
+  boolean offer(T element) {
+    long t;
+    int slot;
+    while (true) {
+      t = tail.get();
+      slot = (int) t & mask;
+      long free = sequences.get(slot) - t;
+      if (free == 0) {
+        if (tail.compareAndSet(t, t + 1)) break;
+      } else if (free < 0) {
+        return false; // the consumer has not taken this slot's previous element yet
+      }
+      // free > 0: another producer claimed t first; read the tail again
+    }
+    elements[slot] = element;
+    // A full (volatile) write, so a consumer that checks after announcing it is about to
+    // park cannot miss this element
+    sequences.set(slot, t + 1);
+    return true;
+  }
+
+  /**
+   * Takes the oldest element. Only the consumer thread may call this.
+   *
+   * @return The element, or null if the queue is empty.
+   */
+  @SuppressWarnings("unchecked")
+  T poll() {
+    int slot = (int) head & mask;
+    if (sequences.get(slot) != head + 1) return null;
+    T element = (T) elements[slot];
+    elements[slot] = null;
+    sequences.lazySet(slot, head + elements.length);
+    head++;
+    return element;
+  }
+}
@@ -0,0 +1,454 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.shard;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.Fleet;
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.FleetListener;
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.TvControl;
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.TvListener;
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.TvSnapshot;
+
+/**
+ * A fleet whose TVs are partitioned over a fixed set of single-writer shards.
+ * TV {@code id} belongs to shard {@code id % shards}. Each shard is one thread that owns
+ * the state of its TVs in a plain int array (power bit + channel, like
+ * {@link edu.ntnu.sveiap.idata2304.smarttv.common.logic.TvFleet}); only that thread writes
+ * it, so changes need neither locks nor compare-and-set and never contend across shards.
+ *
+ * <p>Changes (ON, OFF, SET, UP, DOWN, compare-and-set and adding listeners) are handed to
+ * the owning shard through a bounded {@link MpscQueue} and the caller waits for the result.
+ * A full queue makes callers wait, which pushes back on the connections sending to a busy
+ * shard. Reads (STATUS, GET, CHANNELS) do not go through the shard: the shard publishes
+ * every write with release semantics and readers load the state word with acquire
+ * semantics.
+ *
+ * <p>Listeners, including {@link FleetListener}s, run on the shard thread and must not call back into another shard's TVs
+ * in a way that waits for this one.
+ */
+public final class ShardedFleet implements Fleet, AutoCloseable {
+
+  /** Default number of pending changes per shard. */
+  public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+  private static final VarHandle STATE = MethodHandles.arrayElementVarHandle(int[].class);
+  private static final int ON_BIT = 1 << 31;
+  private static final int CHANNEL_MASK = ~ON_BIT;
+  private static final TvListener[] NO_LISTENERS = new TvListener[0];
+  private static final FleetListener[] NO_FLEET_LISTENERS = new FleetListener[0];
+
+  private static final int TURN_ON = 0;
+  private static final int TURN_OFF = 1;
+  private static final int SET = 2;
+  private static final int UP = 3;
+  private static final int DOWN = 4;
+  private static final int ADD_LISTENER = 5;
+  private static final int COMPARE_AND_SET = 6;
+
+  /**
+   * Busy-wait iterations before a caller parks; most changes finish within them. A parked
+   * caller is unparked by the shard thread as soon as its change is done.
+   */
+  private static final int SPINS = 100;
+  /** How often a caller rechecks a stopping shard, which may exit without seeing it. */
+  private static final long SHUTDOWN_CHECK_NANOS = 1_000_000L;
+
+  private final int size;
+  private final int channels;
+  private final TvSnapshot.Table snapshots;
+  private final Shard[] shards;
+  private final ThreadLocal<Call> calls = ThreadLocal.withInitial(Call::new);
+  private volatile FleetListener[] fleetListeners = NO_FLEET_LISTENERS;
+
+  /**
+   * Creates a fleet with the default queue capacity and starts its shard threads.
+   * Every TV starts off, on channel 1.
+   *
+   * @param size Number of TVs.
+   * @param channels The maximum number of channels available on each TV.
+   * @param shardCount Number of shard threads, typically one per core.
+   * @throws IllegalArgumentException if any argument is less than 1.
+   */
+  public ShardedFleet(int size, int channels, int shardCount) {
+    this(size, channels, shardCount, DEFAULT_QUEUE_CAPACITY);
+  }
+
+  /**
+   * Creates a fleet and starts its shard threads. Every TV starts off, on channel 1.
+   *
+   * @param size Number of TVs.
+   * @param channels The maximum number of channels available on each TV.
+   * @param shardCount Number of shard threads, typically one per core.
+   * @param queueCapacity Pending changes per shard before callers wait.
+   * @throws IllegalArgumentException if any argument is less than 1.
+   */
+  public ShardedFleet(int size, int channels, int shardCount, int queueCapacity) {
+    if (size < 1) throw new IllegalArgumentException("There must be at least one TV.");
+    if (channels < 1) throw new IllegalArgumentException("There must be at least one channel.");
+    if (shardCount < 1) throw new IllegalArgumentException("shardCount must be at least 1");
+    this.size = size;
+    this.channels = channels;
+    this.snapshots = new TvSnapshot.Table(channels);
+    this.shards = new Shard[Math.min(shardCount, size)];
+    for (int s = 0; s < shards.length; s++) {
+      int tvs = (size - s + shards.length - 1) / shards.length;
+      shards[s] = new Shard(this, s, tvs, channels, queueCapacity);
+    }
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public int getChannelRange() {
+    return channels;
+  }
+
+  /**
+   * Returns the number of shard threads.
+   *
+   * @return The shard count.
+   */
+  public int shardCount() {
+    return shards.length;
+  }
+
+  @Override
+  public TvControl tv(int id) {
+    if (id < 0 || id >= size) throw new IllegalArgumentException("Unknown TV: " + id);
+    return new Tv(shards[id % shards.length], id / shards.length);
+  }
+
+  @Override
+  public synchronized void addListener(FleetListener listener) {
+    FleetListener[] next = Arrays.copyOf(fleetListeners, fleetListeners.length + 1);
+    next[fleetListeners.length] = listener;
+    fleetListeners = next;
+  }
+
+  /**
+   * Stops the shard threads. Changes still queued fail with SHUTDOWN.
+   */
+  @Override
+  public void close() {
+    for (Shard s : shards) s.stop();
+    for (Shard s : shards) {
+      try {
+        s.thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  private static boolean on(int word) {
+    return (word & ON_BIT) != 0;
+  }
+
+  private static int channel(int word) {
+    return (word & CHANNEL_MASK) + 1;
+  }
+
+  private int call(Shard shard, int op, int local, int arg, TvListener listener) {
+    return call(shard, op, local, arg, 0, listener);
+  }
+
+  /**
+   * Runs a change on the owning shard and waits for it.
+   *
+   * @param expected The state word COMPARE_AND_SET expects; ignored by the other changes.
+   */
+  private int call(Shard shard, int op, int local, int arg, int expected, TvListener listener) {
+    if (Thread.currentThread() == shard.thread) {
+      // a listener changing a TV of its own shard
+      return shard.apply(op, local, arg, expected, listener);
+    }
+    Call c = calls.get();
+    c.op = op;
+    c.local = local;
+    c.arg = arg;
+    c.expected = expected;
+    c.listener = listener;
+    c.error = null;
+    c.done = false;
+    shard.submit(c);
+    for (int spins = 0; !c.done; spins++) {
+      if (spins < SPINS) {
+        Thread.onSpinWait();
+      } else if (shard.running) {
+        LockSupport.park(this);
+      } else {
+        LockSupport.parkNanos(this, SHUTDOWN_CHECK_NANOS);
+        if (!c.done && !shard.thread.isAlive()) throw new IllegalStateException("SHUTDOWN");
+      }
+    }
+    c.listener = null;
+    if (c.error != null) throw c.error;
+    return c.result;
+  }
+
+  /**
+   * A pending change. Each calling thread reuses its own, since it waits for one change
+   * at a time; the volatile {@code done} publishes the result back to it.
+   */
+  private static final class Call {
+    final Thread caller = Thread.currentThread();
+    int op;
+    int local;
+    int arg;
+    int expected;
+    TvListener listener;
+    int result;
+    RuntimeException error;
+    volatile boolean done;
+  }
+
+  /**
+   * One single-writer partition of the fleet.
+   */
+  private static final class Shard implements Runnable {
+    final ShardedFleet fleet;
+    final int index;
+    final int[] states;
+    final TvListener[][] listeners;
+    final int channels;
+    final MpscQueue<Call> queue;
+    final Thread thread;
+    volatile boolean running = true;
+    volatile boolean parked;
+
+    Shard(ShardedFleet fleet, int index, int tvs, int channels, int queueCapacity) {
+      this.fleet = fleet;
+      this.index = index;
+      this.states = new int[tvs];
+      this.listeners = new TvListener[tvs][];
+      this.channels = channels;
+      this.queue = new MpscQueue<>(queueCapacity);
+      this.thread = Thread.ofPlatform().name("shard-" + index).daemon().start(this);
+    }
+
+    int read(int local) {
+      return (int) STATE.getAcquire(states, local);
+    }
+
+    void submit(Call c) {
+      while (!queue.offer(c)) {
+        if (!running) throw new IllegalStateException("SHUTDOWN");
+        Thread.yield();
+      }
+      if (parked) LockSupport.unpark(thread);
+    }
+
+    void stop() {
+      running = false;
+      LockSupport.unpark(thread);
+    }
+
+    @Override
+    public void run() {
+      while (running) {
+        Call c = queue.poll();
+        if (c == null) {
+          parked = true;
+          c = queue.poll(); // a producer may have offered before seeing parked
+          if (c == null && running) LockSupport.park(this);
+          parked = false;
+          if (c == null) continue;
+        }
+        execute(c);
+      }
+      for (Call c; (c = queue.poll()) != null; ) {
+        c.error = new IllegalStateException("SHUTDOWN");
+        c.done = true;
+        LockSupport.unpark(c.caller);
+      }
+    }
+
+    private void execute(Call c) {
+      try {
+        c.result = apply(c.op, c.local, c.arg, c.expected, c.listener);
+      } catch (RuntimeException e) {
+        c.error = e;
+      }
+      c.done = true;
+      LockSupport.unpark(c.caller);
+    }
+
+    /**
+     * Applies a change. Only the shard thread calls this, so plain reads of its own
+     * state are current; writes are released for the lock-free readers.
+     */
+    int apply(int op, int local, int arg, int expected, TvListener listener) {
+      int word = states[local];
+      switch (op) {
+        case TURN_ON -> {
+          if (on(word)) return 0;
+          STATE.setRelease(states, local, word | ON_BIT);
+          for (TvListener l : listenersOf(local)) l.powerChanged(true);
+          fireFleetListeners(local);
+          return 0;
+        }
+        case TURN_OFF -> {
+          if (!on(word)) return 0;
+          STATE.setRelease(states, local, word & CHANNEL_MASK);
+          for (TvListener l : listenersOf(local)) l.powerChanged(false);
+          fireFleetListeners(local);
+          return 0;
+        }
+        case SET -> {
+          if (!on(word)) throw new IllegalStateException("TV_OFF");
+          if (arg < 1 || arg > channels) {
+            throw new IllegalArgumentException("Channel out of range: " + arg);
+          }
+          return changeChannel(local, arg);
+        }
+        case UP -> {
+          if (!on(word)) throw new IllegalStateException("TV_OFF");
+          if (channel(word) >= channels) throw new IllegalStateException("INVALID_STATE");
+          return changeChannel(local, channel(word) + 1);
+        }
+        case DOWN -> {
+          if (!on(word)) throw new IllegalStateException("TV_OFF");
+          if (channel(word) <= 1) throw new IllegalStateException("INVALID_STATE");
+          return changeChannel(local, channel(word) - 1);
+        }
+        case COMPARE_AND_SET -> {
+          if (word != expected) return 0;
+          if (arg == word) return 1;
+          STATE.setRelease(states, local, arg);
+          if (on(arg) != on(word)) {
+            for (TvListener l : listenersOf(local)) l.powerChanged(on(arg));
+          }
+          if (on(arg) && channel(arg) != channel(word)) {
+            for (TvListener l : listenersOf(local)) l.channelChanged(channel(arg));
+          }
+          fireFleetListeners(local);
+          return 1;
+        }
+        case ADD_LISTENER -> {
+          TvListener[] current = listenersOf(local);
+          TvListener[] next = Arrays.copyOf(current, current.length + 1);
+          next[current.length] = listener;
+          listeners[local] = next;
+          return 0;
+        }
+        default -> throw new IllegalArgumentException("Unknown operation: " + op);
+      }
+    }
+
+    private int changeChannel(int local, int ch) {
+      STATE.setRelease(states, local, ON_BIT | (ch - 1));
+      for (TvListener l : listenersOf(local)) l.channelChanged(ch);
+      fireFleetListeners(local);
+      return ch;
+    }
+
+    private void fireFleetListeners(int local) {
+      int id = local * fleet.shards.length + index;
+      for (FleetListener l : fleet.fleetListeners) l.tvChanged(id);
+    }
+
+    private TvListener[] listenersOf(int local) {
+      TvListener[] l = listeners[local];
+      return l == null ? NO_LISTENERS : l;
+    }
+  }
+
+  /**
+   * One TV of the fleet: the owning shard and the TV's index within it.
+   */
+  private final class Tv implements TvControl {
+    private final Shard shard;
+    private final int local;
+
+    Tv(Shard shard, int local) {
+      this.shard = shard;
+      this.local = local;
+    }
+
+    private int readOn() {
+      int word = shard.read(local);
+      if (!on(word)) {
+        throw new IllegalStateException("TV_OFF");
+      }
+      return word;
+    }
+
+    @Override
+    public void turnOn() {
+      call(shard, TURN_ON, local, 0, null);
+    }
+
+    @Override
+    public void turnOff() {
+      call(shard, TURN_OFF, local, 0, null);
+    }
+
+    @Override
+    public boolean isOn() {
+      return on(shard.read(local));
+    }
+
+    @Override
+    public int getNumberOfChannels() {
+      readOn();
+      return channels;
+    }
+
+    @Override
+    public int getChannelRange() {
+      return channels;
+    }
+
+    @Override
+    public int getChannel() {
+      return channel(readOn());
+    }
+
+    @Override
+    public int getLastChannel() {
+      return channel(shard.read(local));
+    }
+
+    @Override
+    public TvSnapshot snapshot() {
+      int word = shard.read(local);
+      return snapshots.get(on(word), channel(word));
+    }
+
+    @Override
+    public int setChannel(int n) {
+      return call(shard, SET, local, n, null);
+    }
+
+    @Override
+    public int channelUp() {
+      return call(shard, UP, local, 0, null);
+    }
+
+    @Override
+    public int channelDown() {
+      return call(shard, DOWN, local, 0, null);
+    }
+
+    @Override
+    public boolean compareAndSet(TvSnapshot expected, boolean on, int channel) {
+      if (channel < 1 || channel > channels) {
+        throw new IllegalArgumentException("Channel out of range: " + channel);
+      }
+      int word = (expected.isOn() ? ON_BIT : 0) | (expected.channel() - 1);
+      int next = (on ? ON_BIT : 0) | (channel - 1);
+      return call(shard, COMPARE_AND_SET, local, next, word, null) != 0;
+    }
+
+    @Override
+    public void addListener(TvListener listener) {
+      call(shard, ADD_LISTENER, local, 0, listener);
+    }
+  }
+}
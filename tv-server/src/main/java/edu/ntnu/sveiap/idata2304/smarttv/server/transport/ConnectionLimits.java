@@ -0,0 +1,72 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.transport;
+
+import java.time.Duration;
+
+/**
+ * How long a transport lets a connection sit idle or stall before closing it.
+ * A zero duration or size turns that check off.
+ *
+ * @param readIdleTimeout Close a connection that sends nothing for this long.
+ * @param writeTimeout Close a connection whose socket has not taken a pending reply for
+ *     this long, because the client stopped reading.
+ * @param pingInterval Close a connection that sends no PING for this long.
+ * @param maxOutboundBytes Close a connection once this many reply bytes are waiting for
+ *     the socket. Only {@link NioTcpServer} queues replies, and it stops reading from a
+ *     connection at half of this, so the cap is a last resort; {@link TcpServer} blocks in
+ *     the write instead, so there the write timeout covers it.
+ */
+public record ConnectionLimits(Duration readIdleTimeout, Duration writeTimeout,
+    Duration pingInterval, int maxOutboundBytes) {
+
+  /** Default write timeout. */
+  public static final Duration DEFAULT_WRITE_TIMEOUT = Duration.ofSeconds(30);
+
+  /** Default cap on queued reply bytes per connection. */
+  public static final int DEFAULT_MAX_OUTBOUND_BYTES = 1024 * 1024;
+
+  /**
+   * Validates the limits.
+   *
+   * @throws IllegalArgumentException if a duration is null or negative, or the byte cap
+   *     is negative.
+   */
+  public ConnectionLimits {
+    requireNotNegative(readIdleTimeout, "readIdleTimeout");
+    requireNotNegative(writeTimeout, "writeTimeout");
+    requireNotNegative(pingInterval, "pingInterval");
+    if (maxOutboundBytes < 0) throw new IllegalArgumentException("maxOutboundBytes cannot be negative");
+  }
+
+  private static void requireNotNegative(Duration d, String name) {
+    if (d == null || d.isNegative()) throw new IllegalArgumentException(name + " cannot be negative");
+  }
+
+  /**
+   * Returns the defaults: slow readers are dropped after {@link #DEFAULT_WRITE_TIMEOUT} or
+   * {@link #DEFAULT_MAX_OUTBOUND_BYTES}; idle clients and clients that do not PING are kept.
+   *
+   * @return The default limits.
+   */
+  public static ConnectionLimits defaults() {
+    return new ConnectionLimits(Duration.ZERO, DEFAULT_WRITE_TIMEOUT, Duration.ZERO,
+        DEFAULT_MAX_OUTBOUND_BYTES);
+  }
+
+  /**
+   * Returns limits with every check turned off.
+   *
+   * @return The limits.
+   */
+  public static ConnectionLimits none() {
+    return new ConnectionLimits(Duration.ZERO, Duration.ZERO, Duration.ZERO, 0);
+  }
+
+  /**
+   * Returns whether any of the timeouts is on, so connections need a watchdog.
+   *
+   * @return true if a timeout is set.
+   */
+  boolean hasTimeouts() {
+    return !readIdleTimeout.isZero() || !writeTimeout.isZero() || !pingInterval.isZero();
+  }
+}
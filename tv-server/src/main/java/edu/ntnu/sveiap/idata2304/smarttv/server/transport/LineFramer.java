@@ -0,0 +1,152 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.transport;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Limits;
+
+/**
+ * Splits the bytes of one connection into CRLF (or bare LF) terminated lines as they
+ * arrive, shared by every transport.
+ * A line that lies within one received chunk is handed out as a view of that chunk, so
+ * it is parsed where it was read. Only the start of a line that is split across reads is
+ * kept, in a buffer of {@link Limits#MAX_LINE_LENGTH} plus one byte allocated on first
+ * use; that is all the memory a connection can make the framer hold.
+ *
+ * <p>The length limit is enforced while scanning. Once a line is too long its bytes are
+ * dropped as they arrive, {@link Sink#tooLong()} is called when its LF comes and framing
+ * resumes with the next line. Lines that are empty or only whitespace are skipped, as the
+ * protocol ignores them.
+ *
+ * <p>A framer is used by one thread at a time.
+ */
+final class LineFramer {
+
+  /**
+   * Receives the lines of a connection.
+   */
+  interface Sink {
+
+    /**
+     * Called for every complete line.
+     *
+     * @param line The line without its terminator, between position and limit. Only valid
+     *     during the call; the sink must not keep it or change its position or limit.
+     * @throws IOException if answering the line fails.
+     */
+    void line(ByteBuffer line) throws IOException;
+
+    /**
+     * Called in place of {@link #line} for a line longer than {@link Limits#MAX_LINE_LENGTH}.
+     *
+     * @throws IOException if answering the line fails.
+     */
+    void tooLong() throws IOException;
+  }
+
+  /** Bytes of a line that is not complete yet, allocated on first use. */
+  private byte[] carry;
+  private ByteBuffer carryView;
+  private int carryLength;
+
+  /** True while discarding a line that is already longer than the limit. */
+  private boolean overflow;
+
+  /**
+   * Frames the bytes between position and limit of a buffer. Every complete line is handed
+   * to the sink; the start of an unfinished one is kept for the next call.
+   *
+   * @param src The received bytes; afterwards its position is at its limit.
+   * @param sink Receives the lines.
+   * @throws IOException if the sink throws.
+   */
+  void feed(ByteBuffer src, Sink sink) throws IOException {
+    int start = src.position();
+    int limit = src.limit();
+    try {
+      for (int i = start; i < limit; i++) {
+        if (src.get(i) == '\n') {
+          complete(src, start, i, sink);
+          src.limit(limit);
+          start = i + 1;
+        }
+      }
+      keep(src, start, limit);
+    } finally {
+      src.limit(limit).position(limit);
+    }
+  }
+
+  /**
+   * Returns whether part of a line is waiting for its LF.
+   *
+   * @return true if bytes are carried over or a too long line is being dropped.
+   */
+  boolean hasPartialLine() {
+    return carryLength > 0 || overflow;
+  }
+
+  /**
+   * Called for every LF: the line is the carried bytes plus src[from, to).
+   */
+  private void complete(ByteBuffer src, int from, int to, Sink sink) throws IOException {
+    if (overflow) {
+      overflow = false;
+      carryLength = 0;
+      sink.tooLong();
+      return;
+    }
+
+    if (to > from && src.get(to - 1) == '\r') {
+      to--;
+    } else if (to == from && carryLength > 0 && carry[carryLength - 1] == '\r') {
+      carryLength--;
+    }
+    int length = carryLength + (to - from);
+    if (length > Limits.MAX_LINE_LENGTH) {
+      carryLength = 0;
+      sink.tooLong();
+      return;
+    }
+
+    ByteBuffer line;
+    if (carryLength == 0) {
+      line = src.limit(to).position(from);
+    } else {
+      src.get(from, carry, carryLength, to - from);
+      carryLength = 0;
+      line = carryView.limit(length).position(0);
+    }
+    if (!isBlank(line)) {
+      sink.line(line);
+    }
+  }
+
+  /**
+   * Keeps the bytes of an unfinished line until the rest of it arrives.
+   */
+  private void keep(ByteBuffer src, int from, int to) {
+    int n = to - from;
+    if (n == 0 || overflow) return;
+    // One extra byte for a CR that arrives before its LF
+    if (carryLength + n > Limits.MAX_LINE_LENGTH + 1) {
+      overflow = true;
+      carryLength = 0;
+      return;
+    }
+    if (carry == null) {
+      carry = new byte[Limits.MAX_LINE_LENGTH + 1];
+      carryView = ByteBuffer.wrap(carry);
+    }
+    src.get(from, carry, carryLength, n);
+    carryLength += n;
+  }
+
+  private static boolean isBlank(ByteBuffer line) {
+    for (int i = line.position(); i < line.limit(); i++) {
+      byte b = line.get(i);
+      if (b < 0 || b > ' ') return false;
+    }
+    return true;
+  }
+}
@@ -0,0 +1,653 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.EncodedLine;
+import edu.ntnu.sveiap.idata2304.smarttv.server.adapter.ProtocolHandler;
+import edu.ntnu.sveiap.idata2304.smarttv.server.adapter.Session;
+
+/**
+ * A non-blocking TCP server built on {@link Selector}.
+ * The calling thread accepts clients and hands them round-robin to a fixed number of
+ * event loops. Each event loop owns one selector and serves all of its connections on a
+ * single thread, so an idle client costs a selection key and a small connection object
+ * instead of a thread.
+ *
+ * <p>Lines are framed on CRLF by each connection's {@link LineFramer}. Each event loop
+ * reuses one direct read buffer and one direct write buffer for all its connections; only
+ * bytes of a line that is split across reads, or replies the socket could not take yet,
+ * are kept per connection. Lines are parsed in place in the read buffer and answered with
+ * pre-encoded replies, so steady-state request handling does not allocate.
+ *
+ * <p>Replies the socket could not take are queued per connection as a list of buffers and
+ * sent with one gathering write once the socket is writable again. Every reply is copied
+ * once, into a direct buffer the socket can write from: the write buffer itself is handed
+ * to the queue when the socket leaves part of it, and the loop continues with a spare one;
+ * replies that follow a backlog are appended to the last queued buffer. A reply too big
+ * for a write buffer is queued as a read-only view of its shared pre-encoded bytes.
+ * Drained buffers go back to the loop's spares.
+ *
+ * <p>While more than {@link #READ_PAUSE_BYTES} (at most half the outbound cap) of replies
+ * wait for a connection, the loop stops reading from it, so a client that pipelines
+ * faster than it reads is slowed down by TCP instead of piling up replies. Reading resumes
+ * once the backlog is back under that mark.
+ *
+ * <p>Connections that go quiet, stop pinging, stop reading their replies or let more than
+ * the cap of reply bytes pile up are closed according to the server's
+ * {@link ConnectionLimits}. One {@link TimingWheel} thread keeps the deadlines of all
+ * connections and hands expired ones back to their event loop to close.
+ */
+public final class NioTcpServer implements ServerTransport {
+  private static final Logger LOG = Logger.getLogger(NioTcpServer.class.getName());
+
+  private static final int READ_BUFFER_SIZE = 16 * 1024;
+  private static final int WRITE_BUFFER_SIZE = 16 * 1024;
+
+  /** Most queued buffers passed to one gathering write, well below any IOV_MAX. */
+  private static final int MAX_GATHER = 64;
+
+  /** Drained write buffers an event loop keeps for reuse. */
+  private static final int MAX_SPARE_BUFFERS = 16;
+
+  /** Queued reply bytes above which a connection is not read from until they drain. */
+  private static final int READ_PAUSE_BYTES = 64 * 1024;
+
+  private final int port;
+  private final ProtocolHandler handler;
+  private final int loopCount;
+  private final ConnectionLimits limits;
+  private final int readPauseBytes;
+
+  private volatile boolean running;
+  private volatile ServerSocketChannel serverChannel;
+
+  /**
+   * Creates a server with one event loop per available processor.
+   *
+   * @param port The port to listen on.
+   * @param handler The handler that processes incoming lines.
+   */
+  public NioTcpServer(int port, ProtocolHandler handler) {
+    this(port, handler, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Creates a server with the given number of event loops.
+   *
+   * @param port The port to listen on.
+   * @param handler The handler that processes incoming lines.
+   * @param loops The number of selector threads.
+   * @throws IllegalArgumentException if loops is less than 1.
+   */
+  public NioTcpServer(int port, ProtocolHandler handler, int loops) {
+    this(port, handler, loops, ConnectionLimits.defaults());
+  }
+
+  /**
+   * Creates a server with the given number of event loops and connection limits.
+   *
+   * @param port The port to listen on.
+   * @param handler The handler that processes incoming lines.
+   * @param loops The number of selector threads.
+   * @param limits When to close idle or stalled connections.
+   * @throws IllegalArgumentException if loops is less than 1 or limits is null.
+   */
+  public NioTcpServer(int port, ProtocolHandler handler, int loops, ConnectionLimits limits) {
+    if (loops < 1) throw new IllegalArgumentException("loops must be at least 1");
+    if (limits == null) throw new IllegalArgumentException("limits cannot be null");
+    this.port = port;
+    this.handler = handler;
+    this.loopCount = loops;
+    this.limits = limits;
+    int cap = limits.maxOutboundBytes();
+    this.readPauseBytes = cap > 0 ? Math.min(READ_PAUSE_BYTES, cap / 2) : READ_PAUSE_BYTES;
+  }
+
+  /**
+   * Starts the server. Blocks accepting clients until {@link #stop()} is called,
+   * then waits for the event loops to close their connections.
+   *
+   * @throws IOException if the listening socket or a selector cannot be opened.
+   */
+  @Override
+  public void start() throws IOException {
+    EventLoop[] loops = new EventLoop[loopCount];
+    TimingWheel timers = limits.hasTimeouts()
+        ? new TimingWheel(TcpServer.TIMER_TICK_MILLIS, TimeUnit.MILLISECONDS,
+            TcpServer.TIMER_WHEEL_SIZE, "nio-timeouts")
+        : null;
+    try (ServerSocketChannel server = ServerSocketChannel.open()) {
+      server.bind(new InetSocketAddress(port));
+      serverChannel = server;
+
+      for (int i = 0; i < loops.length; i++) {
+        loops[i] = new EventLoop(i, timers);
+        loops[i].thread.start();
+      }
+      running = true;
+      LOG.log(Level.INFO, "Listening on port " + port + " (NIO, " + loopCount + " event loops)...");
+
+      int next = 0;
+      while (running) {
+        SocketChannel channel;
+        try {
+          channel = server.accept();
+        } catch (ClosedChannelException closed) {
+          break;
+        } catch (IOException e) {
+          if (!running) break;
+          LOG.log(Level.WARNING, "Accept failed: " + e.getMessage(), e);
+          continue;
+        }
+
+        try {
+          channel.configureBlocking(false);
+          channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        } catch (IOException e) {
+          LOG.log(Level.WARNING, "Could not configure client channel: " + e.getMessage(), e);
+          closeQuietly(channel);
+          continue;
+        }
+        loops[next].register(channel);
+        next = (next + 1) % loops.length;
+      }
+    } finally {
+      running = false;
+      for (EventLoop loop : loops) {
+        if (loop != null) loop.shutdown();
+      }
+      for (EventLoop loop : loops) {
+        if (loop != null) loop.join();
+      }
+      if (timers != null) timers.close();
+      LOG.log(Level.INFO, "Server on port " + port + " stopped.");
+    }
+  }
+
+  /**
+   * Stops the server. The listening channel is closed and every event loop closes its
+   * connections. {@link #start()} returns once all event loops have exited.
+   */
+  @Override
+  public void stop() {
+    running = false;
+    ServerSocketChannel server = serverChannel;
+    if (server != null) {
+      closeQuietly(server);
+    }
+  }
+
+  /**
+   * Returns whether the server is currently accepting clients.
+   *
+   * @return true if running, false otherwise.
+   */
+  public boolean isRunning() {
+    return running;
+  }
+
+  private static void closeQuietly(Closeable channel) {
+    try {
+      channel.close();
+    } catch (IOException e) {
+      LOG.log(Level.FINE, "Error closing channel: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Per-connection state kept between selector wake-ups.
+   */
+  private static final class Connection {
+    private final SocketChannel channel;
+    private Session session;
+    private SelectionKey key;
+
+    private final LineFramer framer = new LineFramer();
+    private LineFramer.Sink lines;
+
+    /** Reply buffers the socket did not accept yet, oldest first; allocated on first use. */
+    private ArrayDeque<ByteBuffer> pendingOut;
+    private int pendingBytes;
+
+    /** When held-back events are due to be written, see {@link EventLoop#delayed}. */
+    private long eventsDueNanos;
+
+    private Watchdog watchdog;
+
+    private Connection(SocketChannel channel) {
+      this.channel = channel;
+    }
+  }
+
+  /**
+   * One selector thread serving a subset of the connections.
+   */
+  private final class EventLoop implements Runnable {
+    private final Selector selector;
+    private final Thread thread;
+    private final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+    private final Queue<Connection> eventsReady = new ConcurrentLinkedQueue<>();
+    private final Queue<Connection> expired = new ConcurrentLinkedQueue<>();
+    private final TimingWheel timers;
+
+    /**
+     * Connections whose events are held back for the coalescing window, in due order
+     * (the window is the same for all). Only touched by the loop thread.
+     */
+    private final ArrayDeque<Connection> delayed = new ArrayDeque<>();
+    private final long coalesceWindowNanos = handler.registry().coalesceWindowNanos();
+
+    // Shared by all connections of this loop, only touched by the loop thread
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    private ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+    private final ArrayDeque<ByteBuffer> spareBuffers = new ArrayDeque<>();
+
+    private volatile boolean open = true;
+
+    private EventLoop(int index, TimingWheel timers) throws IOException {
+      this.timers = timers;
+      this.selector = Selector.open();
+      this.thread = new Thread(this, "nio-loop-" + index);
+      this.thread.setDaemon(true);
+    }
+
+    /**
+     * Hands a newly accepted channel to this loop. Called from the accept thread.
+     */
+    private void register(SocketChannel channel) {
+      pending.add(channel);
+      selector.wakeup();
+    }
+
+    private void shutdown() {
+      open = false;
+      selector.wakeup();
+    }
+
+    private void join() {
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (open) {
+          selector.select(this::handleKey, selectTimeoutMillis());
+          registerPending();
+          closeExpired();
+          writeReadyEvents();
+        }
+      } catch (IOException e) {
+        LOG.log(Level.SEVERE, "Event loop failed: " + e.getMessage(), e);
+      } finally {
+        for (SelectionKey key : selector.keys()) {
+          close(key);
+        }
+        SocketChannel channel;
+        while ((channel = pending.poll()) != null) {
+          closeQuietly(channel);
+        }
+        closeQuietly(selector);
+      }
+    }
+
+    private void registerPending() {
+      SocketChannel channel;
+      while ((channel = pending.poll()) != null) {
+        try {
+          Connection c = new Connection(channel);
+          c.session = handler.openSession(() -> signalEvents(c));
+          c.lines = new LineFramer.Sink() {
+            @Override
+            public void line(ByteBuffer line) throws IOException {
+              process(c, line);
+            }
+
+            @Override
+            public void tooLong() throws IOException {
+              rejectTooLong(c);
+            }
+          };
+          c.key = channel.register(selector, SelectionKey.OP_READ, c);
+          c.watchdog = new Watchdog(timers, limits, c.session, reason -> expire(c, reason));
+          c.watchdog.start();
+          handler.metrics().connectionOpened();
+          LOG.log(Level.FINE, "Client connected: {0}", channel.getRemoteAddress());
+        } catch (IOException e) {
+          LOG.log(Level.WARNING, "Could not register client: " + e.getMessage(), e);
+          closeQuietly(channel);
+        }
+      }
+    }
+
+    private void handleKey(SelectionKey key) {
+      Connection c = (Connection) key.attachment();
+      try {
+        if (key.isReadable()) {
+          read(key, c);
+        }
+        if (key.isValid() && key.isWritable()) {
+          write(c);
+        }
+      } catch (IOException e) {
+        LOG.log(Level.FINE, "Client I/O error: " + e.getMessage());
+        close(key);
+      }
+    }
+
+    private void close(SelectionKey key) {
+      if (!key.isValid()) return; // already closed, still listed until the next select
+      handler.metrics().connectionClosed();
+      key.cancel();
+      closeQuietly(key.channel());
+      Connection c = (Connection) key.attachment();
+      c.watchdog.stop();
+      c.session.close();
+      LOG.log(Level.FINE, "Client disconnected.");
+    }
+
+    /**
+     * Called by the timer thread when a connection exceeds a limit; the loop closes it.
+     */
+    private void expire(Connection c, String reason) {
+      LOG.log(Level.FINE, "Closing client: " + reason);
+      expired.add(c);
+      selector.wakeup();
+    }
+
+    private void closeExpired() {
+      Connection c;
+      while ((c = expired.poll()) != null) {
+        close(c.key);
+      }
+    }
+
+    /**
+     * Called by the broadcast bus, on the publishing thread, when a connection has events queued.
+     */
+    private void signalEvents(Connection c) {
+      eventsReady.add(c);
+      selector.wakeup();
+    }
+
+    /**
+     * Returns how long the selector may block before the next held-back events are due.
+     *
+     * @return The timeout in milliseconds, 0 to block until woken.
+     */
+    private long selectTimeoutMillis() {
+      Connection next = delayed.peek();
+      if (next == null) return 0;
+      long waitNanos = next.eventsDueNanos - System.nanoTime();
+      // 0 means "no timeout" to select, so wait at least 1 ms
+      return Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos + 999_999));
+    }
+
+    /**
+     * Writes queued events for every connection that was signalled since the last wake-up,
+     * or, with a coalescing window, whose window has passed.
+     */
+    private void writeReadyEvents() {
+      Connection c;
+      if (coalesceWindowNanos > 0) {
+        long now = System.nanoTime();
+        while ((c = eventsReady.poll()) != null) {
+          c.eventsDueNanos = now + coalesceWindowNanos;
+          delayed.add(c);
+        }
+        while ((c = delayed.peek()) != null && c.eventsDueNanos - now <= 0) {
+          delayed.poll();
+          writeEvents(c);
+        }
+        return;
+      }
+      while ((c = eventsReady.poll()) != null) {
+        writeEvents(c);
+      }
+    }
+
+    private void writeEvents(Connection c) {
+      SelectionKey key = c.key;
+      if (!key.isValid()) return;
+      if (c.session.isEvicted()) {
+        LOG.log(Level.FINE, "Evicting slow subscriber.");
+        close(key);
+        return;
+      }
+      try {
+        writeBuffer.clear();
+        emitEvents(c);
+        flushWriteBuffer(c);
+        updateInterest(c);
+      } catch (IOException e) {
+        LOG.log(Level.FINE, "Client I/O error: " + e.getMessage());
+        close(key);
+      }
+    }
+
+    /**
+     * Moves queued events to the write buffer. Skipped while the socket is backed up, so
+     * the events stay in the subscriber's bounded queue where its overflow policy applies;
+     * {@link #write} picks them up once the backlog is gone.
+     */
+    private void emitEvents(Connection c) throws IOException {
+      if (c.pendingBytes > 0) return;
+      EncodedLine event;
+      while ((event = c.session.pollEvent()) != null) {
+        emit(c, event);
+      }
+    }
+
+    /**
+     * Reads what is available, handles every complete line and writes all replies
+     * produced by this read in as few writes as possible.
+     */
+    private void read(SelectionKey key, Connection c) throws IOException {
+      readBuffer.clear();
+      int n = c.channel.read(readBuffer);
+      if (n < 0) {
+        close(key);
+        return;
+      }
+      handler.metrics().bytesIn(n);
+      c.watchdog.readActivity();
+      readBuffer.flip();
+      writeBuffer.clear();
+      c.framer.feed(readBuffer, c.lines);
+
+      // Events caused by these lines go out after their replies
+      emitEvents(c);
+      flushWriteBuffer(c);
+      updateInterest(c);
+    }
+
+    private void rejectTooLong(Connection c) throws IOException {
+      emit(c, handler.lineTooLong(c.session));
+    }
+
+    private void process(Connection c, ByteBuffer line) throws IOException {
+      EncodedLine reply;
+      try {
+        reply = handler.handle(c.session, line);
+      } catch (Exception e) {
+        LOG.log(Level.SEVERE, "Unexpected handler error: " + e.getMessage(), e);
+        reply = handler.replies().errServerError();
+        handler.metrics().recordReply(reply);
+      }
+      emit(c, reply);
+    }
+
+    /**
+     * Adds a reply to the shared write buffer, flushing first if it is full. Behind a
+     * backlog the reply is queued instead, so it cannot overtake it.
+     */
+    private void emit(Connection c, EncodedLine reply) throws IOException {
+      if (c.pendingBytes == 0 && writeBuffer.remaining() < reply.length()) {
+        flushWriteBuffer(c);
+      }
+      if (c.pendingBytes > 0 || writeBuffer.remaining() < reply.length()) {
+        queue(c, reply);
+        return;
+      }
+      reply.writeTo(writeBuffer);
+    }
+
+    /**
+     * Queues a reply behind the connection's backlog: copied into the last queued write
+     * buffer if it has room, into a spare one otherwise, or as a read-only view of the
+     * shared bytes if it is larger than a write buffer.
+     */
+    private void queue(Connection c, EncodedLine reply) throws IOException {
+      ByteBuffer tail = c.pendingOut == null ? null : c.pendingOut.peekLast();
+      if (tail != null && tail.isDirect() && tail.capacity() - tail.limit() >= reply.length()) {
+        reserve(c, reply.length());
+        int end = tail.limit();
+        tail.limit(end + reply.length());
+        reply.writeTo(tail, end);
+        c.pendingBytes += reply.length();
+      } else if (reply.length() > WRITE_BUFFER_SIZE) {
+        appendPending(c, reply.asReadOnlyBuffer());
+      } else {
+        ByteBuffer b = takeSpare();
+        reply.writeTo(b);
+        appendPending(c, b.flip());
+      }
+    }
+
+    /**
+     * Writes the shared write buffer to the connection. If the socket does not take all of
+     * it, the buffer itself is queued with the unwritten rest and a spare one takes its
+     * place, so nothing is copied.
+     */
+    private void flushWriteBuffer(Connection c) throws IOException {
+      writeBuffer.flip();
+      if (!writeBuffer.hasRemaining()) {
+        writeBuffer.clear();
+        return;
+      }
+      if (c.pendingBytes == 0) {
+        handler.metrics().bytesOut(c.channel.write(writeBuffer));
+      }
+      if (writeBuffer.hasRemaining()) {
+        appendPending(c, writeBuffer);
+        writeBuffer = takeSpare();
+      } else {
+        writeBuffer.clear();
+      }
+    }
+
+    private ByteBuffer takeSpare() {
+      ByteBuffer b = spareBuffers.poll();
+      return b != null ? b.clear() : ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+    }
+
+    /**
+     * Takes back a drained write buffer; views of shared replies are simply dropped.
+     */
+    private void recycle(ByteBuffer b) {
+      if (b.isDirect() && spareBuffers.size() < MAX_SPARE_BUFFERS) spareBuffers.add(b);
+    }
+
+    /**
+     * Queues reply bytes the socket did not take.
+     *
+     * @param src The bytes, owned by the queue from now on.
+     * @throws IOException if the queued bytes would exceed the outbound cap.
+     */
+    private void appendPending(Connection c, ByteBuffer src) throws IOException {
+      reserve(c, src.remaining());
+      if (c.pendingOut == null) c.pendingOut = new ArrayDeque<>();
+      c.pendingOut.add(src);
+      c.pendingBytes += src.remaining();
+    }
+
+    /**
+     * Checks that n more queued bytes stay within the cap. A client that keeps sending but
+     * does not read would grow the queue without bound, so past the cap the connection is
+     * dropped.
+     */
+    private void reserve(Connection c, int n) throws IOException {
+      int cap = limits.maxOutboundBytes();
+      if (cap > 0 && c.pendingBytes + n > cap) {
+        throw new IOException("More than " + cap + " reply bytes queued, client is not reading");
+      }
+      if (c.pendingBytes == 0) c.watchdog.writeStarted();
+    }
+
+    /**
+     * Writes as much of the pending output as the socket takes, up to {@link #MAX_GATHER}
+     * buffers per system call.
+     *
+     * @return true if nothing is pending any more.
+     */
+    private boolean writePending(Connection c) throws IOException {
+      ArrayDeque<ByteBuffer> out = c.pendingOut;
+      while (c.pendingBytes > 0) {
+        int n = 0;
+        for (ByteBuffer b : out) {
+          if (n == MAX_GATHER) break;
+          gather[n++] = b;
+        }
+        long written = c.channel.write(gather, 0, n);
+        boolean full = gather[n - 1].hasRemaining();
+        Arrays.fill(gather, 0, n, null);
+        handler.metrics().bytesOut(written);
+        c.pendingBytes -= (int) written;
+        while (!out.isEmpty() && !out.peek().hasRemaining()) {
+          recycle(out.poll());
+        }
+        if (full) {
+          if (written > 0) c.watchdog.writeProgress();
+          return false;
+        }
+      }
+      c.watchdog.writeFinished();
+      return true;
+    }
+
+    private void write(Connection c) throws IOException {
+      if (c.pendingBytes == 0 || writePending(c)) {
+        // Events that waited for the backlog to clear
+        writeBuffer.clear();
+        emitEvents(c);
+        flushWriteBuffer(c);
+      }
+      updateInterest(c);
+    }
+
+    /**
+     * Asks for OP_WRITE while replies are pending and drops OP_READ while more than the
+     * pause mark are, so the client's requests wait in TCP until it reads its replies.
+     */
+    private void updateInterest(Connection c) {
+      int ops = c.pendingBytes > readPauseBytes ? 0 : SelectionKey.OP_READ;
+      if (c.pendingBytes > 0) ops |= SelectionKey.OP_WRITE;
+      int old = c.key.interestOps();
+      if (old == ops) return;
+      c.key.interestOps(ops);
+      boolean paused = (ops & SelectionKey.OP_READ) == 0;
+      if (paused != ((old & SelectionKey.OP_READ) == 0)) c.watchdog.readPaused(paused);
+    }
+  }
+}
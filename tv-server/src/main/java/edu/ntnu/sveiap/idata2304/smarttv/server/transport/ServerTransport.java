@@ -0,0 +1,22 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.transport;
+
+import java.io.IOException;
+
+/**
+ * A server transport that accepts clients and feeds their lines to a ProtocolHandler.
+ * Lets the application choose between transport implementations at startup.
+ */
+public interface ServerTransport {
+
+  /**
+   * Starts the transport. Blocks until {@link #stop()} is called.
+   *
+   * @throws IOException if the listening socket cannot be opened.
+   */
+  void start() throws IOException;
+
+  /**
+   * Stops accepting clients and closes all open connections.
+   */
+  void stop();
+}
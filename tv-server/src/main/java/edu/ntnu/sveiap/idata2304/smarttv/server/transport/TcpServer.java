@@ -1,108 +1,624 @@
 package edu.ntnu.sveiap.idata2304.smarttv.server.transport;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.BinaryCodec;
 import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Codec;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.EncodedLine;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.EncodedReplies;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Framing;
 import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Limits;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.ParsedRequest;
 import edu.ntnu.sveiap.idata2304.smarttv.server.adapter.ProtocolHandler;
+import edu.ntnu.sveiap.idata2304.smarttv.server.adapter.Session;
+import edu.ntnu.sveiap.idata2304.smarttv.server.metrics.ServerMetrics;
 
 /**
  * A simple TCP server that listens for incoming connections on a specified port.
  * For each connected client, it reads lines of text, processes them using a ProtocolHandler,
- * and sends back the response. Each line is terminated with CRLF (\r\n).
- * The server uses UTF-8 encoding for sending and receiving text.
- * Currently handles one client at a time.
+ * and sends back the response. Each line is terminated with CRLF (\r\n) and framed by a
+ * {@link LineFramer}, so a client cannot make the server buffer more than one line.
+ * The server uses UTF-8 encoding for sending and receiving text. A client that opens with
+ * {@code PROTO BIN} is served binary frames ({@link BinaryCodec}) instead.
+ * Every accepted client is served on its own virtual thread, so many clients can be
+ * connected at the same time. The number of open connections is capped; when the cap
+ * is reached the server stops accepting until a client disconnects.
+ *
+ * <p>Connections that go quiet, stop pinging or stop reading their replies are closed
+ * according to the server's {@link ConnectionLimits}; one {@link TimingWheel} thread keeps
+ * the deadlines of all of them.
  */
-public class TcpServer {
+public class TcpServer implements ServerTransport {
   private static final Logger LOG = Logger.getLogger(TcpServer.class.getName());
 
+  /** Default maximum number of simultaneously open client connections. */
+  public static final int DEFAULT_MAX_CONNECTIONS = 10_000;
+
+  /** Timeouts fire up to one tick late; 512 ticks of 100 ms cover 51 s per turn. */
+  static final long TIMER_TICK_MILLIS = 100;
+  static final int TIMER_WHEEL_SIZE = 512;
+
+  private static final int READ_BUFFER_SIZE = 8 * 1024;
+
   private final int port;
   private final ProtocolHandler handler;
+  private final int maxConnections;
+  private final Semaphore permits;
+  private final ConnectionLimits limits;
+  private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+
+  // Guards the switch between running and stopped against accepted sockets being registered
+  private final Object lifecycle = new Object();
+  private boolean stopped;
+  private volatile boolean running;
+  private volatile ServerSocket serverSocket;
+  private volatile Thread acceptThread;
 
   /**
    * Creates a TCP server that listens on the specified port and uses the given ProtocolHandler
    * to process incoming lines.
    */
   public TcpServer(int port, ProtocolHandler handler) {
+    this(port, handler, DEFAULT_MAX_CONNECTIONS);
+  }
+
+  /**
+   * Creates a TCP server with a custom connection cap.
+   *
+   * @param port The port to listen on.
+   * @param handler The handler that processes incoming lines.
+   * @param maxConnections Maximum number of clients served at the same time.
+   * @throws IllegalArgumentException if maxConnections is less than 1.
+   */
+  public TcpServer(int port, ProtocolHandler handler, int maxConnections) {
+    this(port, handler, maxConnections, ConnectionLimits.defaults());
+  }
+
+  /**
+   * Creates a TCP server with a custom connection cap and connection limits.
+   *
+   * @param port The port to listen on.
+   * @param handler The handler that processes incoming lines.
+   * @param maxConnections Maximum number of clients served at the same time.
+   * @param limits When to close idle or stalled connections.
+   * @throws IllegalArgumentException if maxConnections is less than 1 or limits is null.
+   */
+  public TcpServer(int port, ProtocolHandler handler, int maxConnections, ConnectionLimits limits) {
+    if (maxConnections < 1) throw new IllegalArgumentException("maxConnections must be at least 1");
+    if (limits == null) throw new IllegalArgumentException("limits cannot be null");
     this.port = port;
     this.handler = handler;
+    this.maxConnections = maxConnections;
+    this.permits = new Semaphore(maxConnections);
+    this.limits = limits;
   }
 
   /**
-   * Starts the TCP server. This method blocks and runs indefinitely,
-   * accepting and handling one client at a time.
+   * Starts the TCP server. This method blocks and accepts clients until {@link #stop()}
+   * is called. Each client is handled on its own virtual thread.
+   * When the server is stopped, this method returns after all client threads have finished.
+   * A server that was stopped, even before it got to listen, returns at once.
    *
-   * @throws IOException if an I/O error occurs when opening the socket or during communication.
+   * @throws IOException if an I/O error occurs when opening the socket.
    */
+  @Override
   public void start() throws IOException {
-    try (ServerSocket server = new ServerSocket(port)) {
-      LOG.log(Level.INFO, "Listening on port " + port + "...");
-    
-      // TODO: refactor to handle more than one client
-      while (true) {
-        try (Socket socket = server.accept()) {
-          LOG.log(Level.INFO, "Client connected: {0}", socket.getRemoteSocketAddress());
-          serve(socket);
-          LOG.log(Level.INFO, "Client disconnected.");
+    synchronized (lifecycle) {
+      if (stopped) return;
+    }
+    // Declared first so it is closed last, after every connection has stopped its watchdog
+    try (TimingWheel timers = limits.hasTimeouts()
+            ? new TimingWheel(TIMER_TICK_MILLIS, TimeUnit.MILLISECONDS, TIMER_WHEEL_SIZE, "tcp-timeouts")
+            : null;
+        ServerSocket server = new ServerSocket(port);
+        ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor()) {
+      synchronized (lifecycle) {
+        if (stopped) return;
+        serverSocket = server;
+        acceptThread = Thread.currentThread();
+        running = true;
+      }
+      LOG.log(Level.INFO, "Listening on port " + port + " (max " + maxConnections + " connections)...");
+
+      while (running) {
+        try {
+          permits.acquire();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+
+        final Socket socket;
+        try {
+          socket = server.accept();
         } catch (IOException e) {
-          LOG.log(Level.WARNING, "Client I/O error: {0}" + e.getMessage(), e);
+          permits.release();
+          if (!running) break;
+          LOG.log(Level.WARNING, "Accept failed: " + e.getMessage(), e);
+          continue;
         }
+
+        synchronized (lifecycle) {
+          if (!running) {
+            // Accepted while stop() ran; it will not see this socket
+            permits.release();
+            closeQuietly(socket);
+            break;
+          }
+          clients.add(socket);
+        }
+        connections.submit(() -> handleClient(socket, timers));
       }
+
+      // Unblock remaining client threads so closing the executor does not wait forever
+      closeClients();
+    } finally {
+      running = false;
+      Thread.interrupted(); // clear a pending stop() interrupt before returning
+      LOG.log(Level.INFO, "Server on port " + port + " stopped.");
+    }
+  }
+
+  /**
+   * Stops the server. The listening socket is closed, no new clients are accepted and
+   * all open client connections are closed. {@link #start()} returns once every
+   * client thread has completed. Called before the server listens, it keeps it from
+   * starting.
+   */
+  @Override
+  public void stop() {
+    synchronized (lifecycle) {
+      stopped = true;
+      running = false;
+    }
+    ServerSocket server = serverSocket;
+    if (server != null) {
+      try {
+        server.close();
+      } catch (IOException e) {
+        LOG.log(Level.FINE, "Error closing server socket: " + e.getMessage(), e);
+      }
+    }
+    Thread t = acceptThread;
+    if (t != null) {
+      t.interrupt();
+    }
+    closeClients();
+  }
+
+  /**
+   * Returns whether the server is currently accepting clients.
+   *
+   * @return true if running, false otherwise.
+   */
+  public boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * Returns the number of currently connected clients.
+   *
+   * @return The number of open client connections.
+   */
+  public int activeConnections() {
+    return clients.size();
+  }
+
+  /**
+   * Runs on a client's virtual thread: serves the socket until it closes,
+   * then releases its connection permit.
+   *
+   * @param socket The accepted client socket.
+   * @param timers The wheel for the connection's timeouts, or null if none are set.
+   */
+  private void handleClient(Socket socket, TimingWheel timers) {
+    handler.metrics().connectionOpened();
+    try (socket) {
+      LOG.log(Level.INFO, "Client connected: {0}", socket.getRemoteSocketAddress());
+      serve(socket, timers);
+      LOG.log(Level.INFO, "Client disconnected: {0}", socket.getRemoteSocketAddress());
+    } catch (SocketException e) {
+      // Closed by stop() or reset by the peer
+      LOG.log(Level.FINE, "Client socket closed: " + e.getMessage());
+    } catch (IOException e) {
+      LOG.log(Level.WARNING, "Client I/O error: " + e.getMessage(), e);
+    } finally {
+      handler.metrics().connectionClosed();
+      clients.remove(socket);
+      permits.release();
+    }
+  }
+
+  /**
+   * Closes every currently open client socket, unblocking their reader threads.
+   */
+  private void closeClients() {
+    for (Socket socket : clients) {
+      closeQuietly(socket);
+    }
+  }
+
+  private static void closeQuietly(Socket socket) {
+    try {
+      socket.close();
+    } catch (IOException e) {
+      LOG.log(Level.FINE, "Error closing client socket: " + e.getMessage(), e);
     }
   }
 
   /**
    * Handles communication with a connected client.
-   * Reads lines from the client, processes them using the ProtocolHandler,
+   * Reads requests from the client, processes them using the ProtocolHandler,
    * and sends back the response.
    * Exits when the client disconnects or an I/O error occurs.
    *
+   * <p>If the first line is {@link BinaryCodec#HANDSHAKE}, it is answered with
+   * {@code OK PROTO=BIN} and the connection uses binary frames from then on; any other first
+   * line is handled as a command and the connection stays text.
+   *
+   * <p>Events for a subscribed client are written by a second virtual thread, started when
+   * the client first subscribes, so a client that never sends SUB costs one thread. Both
+   * threads write under the same lock, and a command is handled while holding it, so the reply to a
+   * command is always written before the events that command caused.
+   *
+   * <p>Replies are flushed only once no further input is buffered, so a client that
+   * pipelines several commands gets all replies back in one write.
+   *
+   * <p>The watchdog closes the socket when a limit is exceeded, which ends a read or
+   * write blocked on it with a SocketException.
+   *
    * @param socket The connected client socket.
+   * @param timers The wheel for the connection's timeouts, or null if none are set.
    * @throws IOException if an I/O error occurs during communication.
    */
-  private void serve(Socket socket) throws IOException {
+  private void serve(Socket socket, TimingWheel timers) throws IOException {
+    ServerMetrics metrics = handler.metrics();
+    ReentrantLock writeLock = new ReentrantLock();
+    Semaphore eventsReady = new Semaphore(0);
+    Session session = handler.openSession(eventsReady::release);
+    Watchdog watchdog = new Watchdog(timers, limits, session, reason -> expire(socket, reason));
+    watchdog.start();
 
-    try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
-        OutputStream out = socket.getOutputStream()) {
+    try (InputStream in = new BufferedInputStream(
+            new MeteredInputStream(socket.getInputStream(), metrics, watchdog));
+        OutputStream out = new BufferedOutputStream(
+            new MeteredOutputStream(socket.getOutputStream(), metrics, watchdog))) {
 
-          String raw;
-          while ((raw = in.readLine()) != null) {
+          byte[] head = new byte[Limits.MAX_LINE_LENGTH + 2];
+          int headLength = readHead(in, head);
+          boolean binary = isHandshake(head, headLength);
+          if (binary) {
+            session.useFraming(Framing.BINARY);
+            out.write(Codec.okProto("BIN").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+          }
 
-            String line = raw.trim();
-            if (line.isEmpty()) {
-              continue;
+          EventPump events = new EventPump(socket, session, out, writeLock, eventsReady);
+          try {
+            if (binary) {
+              serveBinary(in, out, session, writeLock, events);
+            } else if (headLength > 0) {
+              serveText(ByteBuffer.wrap(head, 0, headLength), in, out, session, writeLock,
+                  events);
             }
+          } finally {
+            watchdog.stop();
+            session.close();
+            events.stop();
+          }
+        }
+  }
 
-            if (line.length() > Limits.MAX_LINE_LENGTH) {
-              out.write(Codec.errLineTooLong().getBytes(StandardCharsets.UTF_8));
-              out.flush();
-              continue;
-            }
+  /**
+   * Runs on the timer thread when a connection exceeds a limit.
+   */
+  private static void expire(Socket socket, String reason) {
+    LOG.log(Level.INFO, "Closing " + socket.getRemoteSocketAddress() + ": " + reason);
+    closeQuietly(socket);
+  }
 
-            final String reply;
-            try {
-              reply = handler.handleLine(line);
-            } catch (Exception e) {
-              LOG.log(Level.SEVERE, "Unexpected handler error: " + e.getMessage(), e);
-
-              // In case of unexpected error, send a generic server error response.
-              byte[] b = Codec.errServerError().getBytes(StandardCharsets.UTF_8);
-              out.write(b);
-              out.flush();
-              continue;
-            }
+  /**
+   * Reads the first line byte by byte, so no bytes after it are consumed before the
+   * framing is known. Stops early if the line does not fit the buffer.
+   *
+   * @return The number of bytes read, including the LF; 0 if the client sent nothing.
+   */
+  private static int readHead(InputStream in, byte[] head) throws IOException {
+    int n = 0;
+    int b;
+    while (n < head.length && (b = in.read()) >= 0) {
+      head[n++] = (byte) b;
+      if (b == '\n') break;
+    }
+    return n;
+  }
 
-            out.write(reply.getBytes(StandardCharsets.UTF_8));
-            out.flush();
+  private static boolean isHandshake(byte[] head, int length) {
+    if (length == 0 || head[length - 1] != '\n') return false;
+    return BinaryCodec.isHandshake(new String(head, 0, length, StandardCharsets.US_ASCII));
+  }
+
+  /**
+   * Serves a text connection, starting with the bytes already read to check for the
+   * handshake.
+   */
+  private void serveText(ByteBuffer head, InputStream in, OutputStream out, Session session,
+      ReentrantLock writeLock, EventPump events) throws IOException {
+    EncodedReplies replies = handler.replies();
+    ServerMetrics metrics = handler.metrics();
+    LineFramer framer = new LineFramer();
+    LineFramer.Sink lines = new LineFramer.Sink() {
+      @Override
+      public void line(ByteBuffer line) throws IOException {
+        writeLock.lock();
+        try {
+          EncodedLine reply;
+          try {
+            reply = handler.handle(session, line);
+          } catch (Exception e) {
+            LOG.log(Level.SEVERE, "Unexpected handler error: " + e.getMessage(), e);
+
+            // In case of unexpected error, send a generic server error response.
+            reply = replies.errServerError();
+            metrics.recordReply(reply);
+          }
+          reply.writeTo(out);
+          writeEvents(session, out);
+          events.startIfSubscribed();
+        } finally {
+          writeLock.unlock();
+        }
+      }
+
+      @Override
+      public void tooLong() throws IOException {
+        writeLock.lock();
+        try {
+          handler.lineTooLong(session).writeTo(out);
+        } finally {
+          writeLock.unlock();
+        }
+      }
+    };
+
+    framer.feed(head, lines);
+    flushIfDrained(in, out, writeLock);
+    byte[] buf = new byte[READ_BUFFER_SIZE];
+    ByteBuffer chunk = ByteBuffer.wrap(buf);
+    int n;
+    while ((n = in.read(buf)) >= 0) {
+      framer.feed(chunk.clear().limit(n), lines);
+      flushIfDrained(in, out, writeLock);
+    }
+  }
+
+  /**
+   * Flushes the replies once every received byte has been handled, so a batch of pipelined
+   * requests costs one write instead of one per reply.
+   */
+  private static void flushIfDrained(InputStream in, OutputStream out, ReentrantLock writeLock)
+      throws IOException {
+    if (in.available() > 0) return;
+    writeLock.lock();
+    try {
+      out.flush();
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Serves a binary connection. Frames are decoded here and run through the same
+   * handler dispatch as text lines; a frame that cannot be decoded is answered with
+   * BAD_COMMAND and the next one is read.
+   */
+  private void serveBinary(InputStream in, OutputStream out, Session session,
+      ReentrantLock writeLock, EventPump events) throws IOException {
+    EncodedReplies replies = handler.replies().in(Framing.BINARY);
+    ServerMetrics metrics = handler.metrics();
+    ParsedRequest req = new ParsedRequest();
+    int result;
+    while ((result = BinaryCodec.readRequest(in, req)) != BinaryCodec.END_OF_STREAM) {
+      writeLock.lock();
+      try {
+        EncodedLine reply;
+        if (result != Codec.PARSE_OK) {
+          reply = handler.rejected(session);
+        } else {
+          try {
+            reply = handler.handle(session, req.command(), req.arg());
+          } catch (Exception e) {
+            LOG.log(Level.SEVERE, "Unexpected handler error: " + e.getMessage(), e);
+            reply = replies.errServerError();
+            metrics.recordReply(reply);
           }
         }
+
+        reply.writeTo(out);
+        writeEvents(session, out);
+        events.startIfSubscribed();
+        if (in.available() == 0) {
+          out.flush();
+        }
+      } finally {
+        writeLock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Runs on a connection's event writer thread: waits until events are queued, plus the
+   * coalescing window if one is set, and writes them. Closes the socket if the client is evicted for not keeping up.
+   */
+  private static void pumpEvents(Socket socket, Session session, OutputStream out,
+      ReentrantLock writeLock, Semaphore eventsReady, long coalesceWindowNanos) {
+    try {
+      while (true) {
+        eventsReady.acquire();
+        if (coalesceWindowNanos > 0) {
+          // Let the rest of a burst collapse in the queue before writing
+          TimeUnit.NANOSECONDS.sleep(coalesceWindowNanos);
+        }
+        eventsReady.drainPermits();
+        if (session.isEvicted()) {
+          LOG.log(Level.INFO, "Evicting slow subscriber: {0}", socket.getRemoteSocketAddress());
+          socket.close();
+          return;
+        }
+        writeLock.lock();
+        try {
+          writeEvents(session, out);
+          out.flush();
+        } finally {
+          writeLock.unlock();
+        }
+      }
+    } catch (InterruptedException e) {
+      // Connection closed
+    } catch (IOException e) {
+      LOG.log(Level.FINE, "Event write failed: " + e.getMessage());
+      try {
+        socket.close();
+      } catch (IOException ignored) {
+        // Already closing
+      }
+    }
+  }
+
+  /**
+   * A connection's event writer thread. It is started by the connection's reading thread
+   * once the session has subscribed, and never before, and stopped by that thread when
+   * the connection ends.
+   */
+  private final class EventPump {
+    private final Socket socket;
+    private final Session session;
+    private final OutputStream out;
+    private final ReentrantLock writeLock;
+    private final Semaphore eventsReady;
+    private Thread thread;
+
+    private EventPump(Socket socket, Session session, OutputStream out, ReentrantLock writeLock,
+        Semaphore eventsReady) {
+      this.socket = socket;
+      this.session = session;
+      this.out = out;
+      this.writeLock = writeLock;
+      this.eventsReady = eventsReady;
+    }
+
+    /**
+     * Starts the thread after the first SUB. Events queued before it runs are kept as
+     * permits of eventsReady, so none are missed.
+     */
+    private void startIfSubscribed() {
+      if (thread != null || !session.isSubscribed()) return;
+      thread = Thread.ofVirtual()
+          .name("events-" + socket.getRemoteSocketAddress())
+          .start(() -> pumpEvents(socket, session, out, writeLock, eventsReady,
+              handler.registry().coalesceWindowNanos()));
+    }
+
+    private void stop() {
+      if (thread != null) thread.interrupt();
+    }
+  }
+
+  private static void writeEvents(Session session, OutputStream out) throws IOException {
+    EncodedLine event;
+    while ((event = session.pollEvent()) != null) {
+      event.writeTo(out);
+    }
+  }
+
+  /**
+   * Counts the bytes read from a client socket and tells the watchdog they arrived.
+   */
+  private static final class MeteredInputStream extends FilterInputStream {
+    private final ServerMetrics metrics;
+    private final Watchdog watchdog;
+
+    private MeteredInputStream(InputStream in, ServerMetrics metrics, Watchdog watchdog) {
+      super(in);
+      this.metrics = metrics;
+      this.watchdog = watchdog;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0) {
+        metrics.bytesIn(1);
+        watchdog.readActivity();
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0) {
+        metrics.bytesIn(n);
+        watchdog.readActivity();
+      }
+      return n;
+    }
+  }
+
+  /**
+   * Counts the bytes written to a client socket. The watchdog times every write, since a
+   * write only blocks when the client stopped reading.
+   */
+  private static final class MeteredOutputStream extends FilterOutputStream {
+    private final ServerMetrics metrics;
+    private final Watchdog watchdog;
+
+    private MeteredOutputStream(OutputStream out, ServerMetrics metrics, Watchdog watchdog) {
+      super(out);
+      this.metrics = metrics;
+      this.watchdog = watchdog;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      watchdog.writeStarted();
+      try {
+        out.write(b);
+      } finally {
+        watchdog.writeFinished();
+      }
+      metrics.bytesOut(1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      watchdog.writeStarted();
+      try {
+        out.write(b, off, len);
+      } finally {
+        watchdog.writeFinished();
+      }
+      metrics.bytesOut(len);
+    }
   }
 }
@@ -0,0 +1,191 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.transport;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hashed timing wheel: one thread runs the timeouts of every connection.
+ * Time is cut into ticks, and a timeout goes into the bucket of the tick it is due in,
+ * modulo the wheel size, with a count of the full turns left. Each tick the thread
+ * walks only that bucket, so scheduling and cancelling are O(1) and a tick costs the
+ * timeouts that hash to it rather than all of them.
+ *
+ * <p>New timeouts are handed to the thread through a lock-free queue and cancelled ones
+ * are dropped when their bucket comes up, so callers never wait for the thread. Timeouts
+ * fire up to one tick late, never early. Tasks run on the wheel thread and must be short:
+ * closing a socket is fine, blocking I/O is not.
+ */
+final class TimingWheel implements Closeable {
+  private static final Logger LOG = Logger.getLogger(TimingWheel.class.getName());
+
+  private final long tickNanos;
+  private final int mask;
+  private final List<List<Timeout>> buckets;
+  private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pending = new AtomicInteger();
+  private final long startNanos;
+  private final Thread thread;
+
+  private volatile boolean open = true;
+  private long tick; // wheel thread only
+
+  /**
+   * Creates a wheel and starts its thread.
+   *
+   * @param tickDuration The length of a tick.
+   * @param unit The unit of tickDuration.
+   * @param wheelSize Number of buckets; rounded up to a power of two.
+   * @param name The thread name.
+   * @throws IllegalArgumentException if tickDuration or wheelSize is less than 1.
+   */
+  TimingWheel(long tickDuration, TimeUnit unit, int wheelSize, String name) {
+    if (tickDuration < 1) throw new IllegalArgumentException("tickDuration must be at least 1");
+    if (wheelSize < 1) throw new IllegalArgumentException("wheelSize must be at least 1");
+    int size = Integer.highestOneBit(wheelSize);
+    if (size < wheelSize) size <<= 1;
+    this.tickNanos = unit.toNanos(tickDuration);
+    this.mask = size - 1;
+    this.buckets = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      buckets.add(new ArrayList<>());
+    }
+    this.startNanos = System.nanoTime();
+    this.thread = Thread.ofPlatform().name(name).daemon().start(this::run);
+  }
+
+  /**
+   * Schedules a task. Safe to call from any thread.
+   *
+   * @param task What to run when the timeout expires.
+   * @param delay How long from now.
+   * @param unit The unit of delay.
+   * @return A handle to cancel the timeout.
+   * @throws IllegalStateException if the wheel is closed.
+   */
+  Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+    if (!open) throw new IllegalStateException("timing wheel is closed");
+    Timeout t = new Timeout(task, System.nanoTime() + unit.toNanos(Math.max(0, delay)));
+    pending.incrementAndGet();
+    added.add(t);
+    return t;
+  }
+
+  /**
+   * Returns how many timeouts are scheduled and neither expired nor cancelled.
+   *
+   * @return The number of pending timeouts.
+   */
+  int pending() {
+    return pending.get();
+  }
+
+  private void run() {
+    while (open) {
+      long due = startNanos + (tick + 1) * tickNanos;
+      long wait;
+      while ((wait = due - System.nanoTime()) > 0 && open) {
+        LockSupport.parkNanos(this, wait);
+      }
+      if (!open) break;
+      transferAdded();
+      expire(buckets.get((int) (tick & mask)));
+      tick++;
+    }
+  }
+
+  /**
+   * Puts newly scheduled timeouts in their bucket. A timeout already due goes into the
+   * current tick's bucket so it fires now.
+   */
+  private void transferAdded() {
+    Timeout t;
+    while ((t = added.poll()) != null) {
+      if (t.isCancelled()) continue;
+      long dueTick = Math.max(tick, (t.deadlineNanos - startNanos + tickNanos - 1) / tickNanos);
+      t.rounds = (dueTick - tick) / buckets.size();
+      buckets.get((int) (dueTick & mask)).add(t);
+    }
+  }
+
+  private void expire(List<Timeout> bucket) {
+    int kept = 0;
+    for (int i = 0, n = bucket.size(); i < n; i++) {
+      Timeout t = bucket.get(i);
+      if (t.isCancelled()) continue;
+      if (t.rounds > 0) {
+        t.rounds--;
+        bucket.set(kept++, t);
+        continue;
+      }
+      if (t.state.compareAndSet(Timeout.WAITING, Timeout.EXPIRED)) {
+        pending.decrementAndGet();
+        try {
+          t.task.run();
+        } catch (RuntimeException e) {
+          LOG.log(Level.WARNING, "Timeout task failed: " + e.getMessage(), e);
+        }
+      }
+    }
+    bucket.subList(kept, bucket.size()).clear();
+  }
+
+  /**
+   * Stops the wheel thread. Pending timeouts never fire.
+   */
+  @Override
+  public void close() {
+    open = false;
+    LockSupport.unpark(thread);
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * A scheduled task.
+   */
+  final class Timeout {
+    private static final int WAITING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final Runnable task;
+    private final long deadlineNanos;
+    private final AtomicInteger state = new AtomicInteger(WAITING);
+    private long rounds; // wheel thread only
+
+    private Timeout(Runnable task, long deadlineNanos) {
+      this.task = task;
+      this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * Cancels the timeout. The wheel drops it when its bucket next comes up.
+     *
+     * @return false if it already expired or was cancelled.
+     */
+    boolean cancel() {
+      if (!state.compareAndSet(WAITING, CANCELLED)) return false;
+      pending.decrementAndGet();
+      return true;
+    }
+
+    boolean isCancelled() {
+      return state.get() == CANCELLED;
+    }
+
+    boolean isExpired() {
+      return state.get() == EXPIRED;
+    }
+  }
+}
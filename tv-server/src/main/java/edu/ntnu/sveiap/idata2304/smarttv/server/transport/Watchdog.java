@@ -0,0 +1,155 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.transport;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import edu.ntnu.sveiap.idata2304.smarttv.server.adapter.Session;
+
+/**
+ * Enforces the timeouts of {@link ConnectionLimits} for one connection.
+ * The transport reports every read, and for a write the socket holds up, its start, its
+ * progress and its completion. Each report only updates a timestamp. A single timeout per
+ * connection on the shared {@link TimingWheel} checks the timestamps when the earliest
+ * deadline could be due and re-arms itself for the next one, so traffic never reschedules
+ * a timer.
+ *
+ * <p>Without a wheel (all timeouts off) the watchdog does nothing.
+ */
+final class Watchdog {
+  private final TimingWheel wheel;
+  private final ConnectionLimits limits;
+  private final Session session;
+  private final Consumer<String> onExpired;
+
+  private volatile long lastReadNanos;
+  private volatile long writeStartNanos;
+  private volatile boolean writing;
+  private volatile boolean readPaused;
+  private volatile boolean stopped;
+  private volatile TimingWheel.Timeout timeout;
+
+  /**
+   * Creates a watchdog; call {@link #start()} once the connection is being served.
+   *
+   * @param wheel The wheel to run checks on, or null if no timeout is set.
+   * @param limits The limits to enforce.
+   * @param session The connection's session, for the time of its last PING.
+   * @param onExpired Called on the wheel thread with the reason when a limit is exceeded;
+   *     should close the connection without blocking.
+   */
+  Watchdog(TimingWheel wheel, ConnectionLimits limits, Session session,
+      Consumer<String> onExpired) {
+    this.wheel = wheel;
+    this.limits = limits;
+    this.session = session;
+    this.onExpired = onExpired;
+  }
+
+  /**
+   * Starts checking. The connection counts as active from now.
+   */
+  void start() {
+    if (wheel == null) return;
+    lastReadNanos = System.nanoTime();
+    check();
+  }
+
+  /**
+   * Records that bytes arrived from the client.
+   */
+  void readActivity() {
+    lastReadNanos = System.nanoTime();
+  }
+
+  /**
+   * Records that the transport stopped or resumed reading from the connection because of
+   * its reply backlog. The idle timeout does not run while paused and starts over when
+   * reading resumes.
+   *
+   * @param paused true when reading stops, false when it resumes.
+   */
+  void readPaused(boolean paused) {
+    if (!paused) lastReadNanos = System.nanoTime();
+    readPaused = paused;
+  }
+
+  /**
+   * Records that replies are waiting for the socket to take them.
+   */
+  void writeStarted() {
+    writeStartNanos = System.nanoTime();
+    writing = true;
+  }
+
+  /**
+   * Records that the socket took some of the waiting replies but not all. The write
+   * timeout counts from the last progress, so a client that reads slowly but steadily is
+   * kept.
+   */
+  void writeProgress() {
+    writeStartNanos = System.nanoTime();
+  }
+
+  /**
+   * Records that the socket took everything that was waiting.
+   */
+  void writeFinished() {
+    writing = false;
+  }
+
+  /**
+   * Stops checking, when the connection closes.
+   */
+  void stop() {
+    stopped = true;
+    TimingWheel.Timeout t = timeout;
+    if (t != null) t.cancel();
+  }
+
+  private void check() {
+    if (stopped) return;
+    long now = System.nanoTime();
+    long next = Long.MAX_VALUE;
+
+    long idle = limits.readIdleTimeout().toNanos();
+    if (idle > 0) {
+      // Not reading is the transport's doing while paused; the write timeout applies then
+      long left = readPaused ? idle : lastReadNanos + idle - now;
+      if (left <= 0) {
+        expire("nothing received for " + limits.readIdleTimeout().toMillis() + " ms");
+        return;
+      }
+      next = Math.min(next, left);
+    }
+
+    long ping = limits.pingInterval().toNanos();
+    if (ping > 0) {
+      long left = session.lastPingNanos() + ping - now;
+      if (left <= 0) {
+        expire("no PING for " + limits.pingInterval().toMillis() + " ms");
+        return;
+      }
+      next = Math.min(next, left);
+    }
+
+    long write = limits.writeTimeout().toNanos();
+    if (write > 0) {
+      long left = write;
+      if (writing) {
+        left = writeStartNanos + write - now;
+        if (left <= 0) {
+          expire("replies not read for " + limits.writeTimeout().toMillis() + " ms");
+          return;
+        }
+      }
+      next = Math.min(next, left);
+    }
+
+    timeout = wheel.schedule(this::check, next, TimeUnit.NANOSECONDS);
+  }
+
+  private void expire(String reason) {
+    stopped = true;
+    onExpired.accept(reason);
+  }
+}
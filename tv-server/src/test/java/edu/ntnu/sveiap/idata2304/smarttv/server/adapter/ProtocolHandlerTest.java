@@ -1,10 +1,31 @@
 package edu.ntnu.sveiap.idata2304.smarttv.server.adapter;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
 
 import org.junit.jupiter.api.Test;
 
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.AtomicSmartTv;
 import edu.ntnu.sveiap.idata2304.smarttv.common.logic.SmartTv;
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.TvFleet;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.BinaryCodec;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Command;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.EncodedLine;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Framing;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Limits;
+import edu.ntnu.sveiap.idata2304.smarttv.server.broadcast.Broadcaster;
+import edu.ntnu.sveiap.idata2304.smarttv.server.metrics.MetricsSnapshot;
+import edu.ntnu.sveiap.idata2304.smarttv.server.metrics.Outcome;
+import edu.ntnu.sveiap.idata2304.smarttv.server.ratelimit.CommandClass;
+import edu.ntnu.sveiap.idata2304.smarttv.server.ratelimit.Rate;
+import edu.ntnu.sveiap.idata2304.smarttv.server.ratelimit.RateLimiter;
 
 /**
  * Test class for ProtocolHandler.
@@ -149,5 +170,326 @@ class ProtocolHandlerTest {
     ProtocolHandler h = new ProtocolHandler(new SmartTv(3));
     assertEquals("ERR 400 BAD_COMMAND\r\n", h.handleLine("PING 1"));
   }
-  
+
+  /**
+   * The byte-level path answers with the shared pre-encoded reply arrays.
+   */
+  @Test
+  void byteLinesGetPreEncodedReplies() {
+    ProtocolHandler h = new ProtocolHandler(new SmartTv(5));
+    Session session = h.openSession();
+    byte[] line = "xx on  set 3 get".getBytes(StandardCharsets.US_ASCII);
+
+    assertSame(h.replies().ok(), h.handle(session, line, 2, 4));
+    assertSame(h.replies().okChannel(3), h.handle(session, line, 7, 5));
+    assertSame(h.replies().okChannel(3), h.handle(session, line, 13, 3));
+    assertSame(h.replies().errBadCommand(), h.handle(session, line, 0, 4));
+    assertEquals("OK CH=3\r\n", text(h.handle(session, "GET")));
+  }
+
+  /**
+   * The lock-free TV gives the same replies as SmartTv.
+   */
+  @Test
+  void atomicTvGivesSameReplies() {
+    ProtocolHandler h = new ProtocolHandler(new AtomicSmartTv(2));
+    assertEquals("ERR 401 TV_OFF\r\n", h.handleLine("UP"));
+    assertEquals("OK\r\n", h.handleLine("ON"));
+    assertEquals("OK C=2\r\n", h.handleLine("CHANNELS"));
+    assertEquals("ERR 409 INVALID_STATE\r\n", h.handleLine("DOWN"));
+    assertEquals("OK CH=2\r\n", h.handleLine("UP"));
+    assertEquals("ERR 404 OUT_OF_RANGE\r\n", h.handleLine("SET 3"));
+    assertEquals("OK CH=1\r\n", h.handleLine("SET 1"));
+    assertEquals("OK ON\r\n", h.handleLine("STATUS"));
+  }
+
+  /**
+   * Subscribed sessions receive events for changes made by any session.
+   */
+  @Test
+  void subscribedSessionReceivesEvents() {
+    ProtocolHandler h = new ProtocolHandler(new SmartTv(5));
+    Session watcher = h.openSession();
+    Session remote = h.openSession();
+
+    assertEquals("OK\r\n", text(h.handle(watcher, "SUB")));
+    h.handle(remote, "ON");
+    h.handle(remote, "SET 4");
+    h.handle(remote, "SET 9"); // out of range, no event
+    h.handle(remote, "ON"); // already on, no event
+
+    assertEquals("EVT POWER ON\r\n", text(watcher.pollEvent()));
+    assertEquals("EVT CHANNEL 4\r\n", text(watcher.pollEvent()));
+    assertNull(watcher.pollEvent());
+    assertNull(remote.pollEvent()); // not subscribed
+
+    assertEquals("OK\r\n", text(h.handle(watcher, "UNSUB")));
+    h.handle(remote, "UP");
+    assertNull(watcher.pollEvent());
+  }
+
+  /**
+   * STATS reports the commands handled so far, in any TV state.
+   */
+  @Test
+  void statsReportsCommandCounts() {
+    ProtocolHandler h = new ProtocolHandler(new SmartTv(5));
+    h.handleLine("STATUS");
+    h.handleLine("ON");
+    h.handleLine("GET");
+    h.handleLine("GET");
+
+    String reply = h.handleLine("STATS");
+    assertTrue(reply.matches("OK UP=\\d+ CONN=0 RPS=\\d+ P50=\\d+ P99=\\d+ "
+        + "CMDS=ON:1,STATUS:1,GET:2\r\n"), reply);
+    assertTrue(h.handleLine("STATS").contains("STATS:1"));
+  }
+
+  /**
+   * USE routes a session's commands to another TV of the fleet; TVs are independent.
+   */
+  @Test
+  void useSwitchesBetweenFleetTvs() {
+    ProtocolHandler h = new ProtocolHandler(
+        new FleetTvRegistry(new TvFleet(1000, 5), new Broadcaster()));
+    Session a = h.openSession();
+    Session b = h.openSession();
+
+    assertEquals("OK TV=7\r\n", text(h.handle(a, "USE 7")));
+    h.handle(a, "ON");
+    h.handle(a, "SET 3");
+    assertEquals("OK OFF\r\n", text(h.handle(b, "STATUS")));
+    h.handle(b, "USE 7");
+    assertEquals("OK CH=3\r\n", text(h.handle(b, "GET")));
+
+    assertEquals("ERR 404 OUT_OF_RANGE\r\n",
+        text(h.handle(a, "USE 1000")));
+    assertEquals("ERR 404 OUT_OF_RANGE\r\n",
+        text(h.handle(a, "USE -1")));
+    assertEquals(7, a.tvId());
+  }
+
+  /**
+   * A subscription follows the session to the TV it switches to.
+   */
+  @Test
+  void subscriptionMovesWithUse() {
+    ProtocolHandler h = new ProtocolHandler(
+        new FleetTvRegistry(new TvFleet(10, 5), new Broadcaster()));
+    Session watcher = h.openSession();
+    Session remote = h.openSession();
+
+    h.handle(watcher, "SUB");
+    h.handle(watcher, "USE 2");
+    h.handle(remote, "ON"); // TV 0, no longer watched
+    h.handle(remote, "USE 2");
+    h.handle(remote, "ON");
+
+    assertEquals("EVT POWER ON\r\n", text(watcher.pollEvent()));
+    assertNull(watcher.pollEvent());
+    assertEquals(1, h.metrics().snapshot().subscribers());
+  }
+
+  /**
+   * USE through handleLine only applies to that line; other calls still control TV 0.
+   */
+  @Test
+  void handleLineDoesNotShareUse() {
+    TvFleet fleet = new TvFleet(10, 5);
+    ProtocolHandler h = new ProtocolHandler(new FleetTvRegistry(fleet, new Broadcaster()));
+    assertEquals("OK TV=3\r\n", h.handleLine("USE 3"));
+    assertEquals("OK\r\n", h.handleLine("ON"));
+    assertTrue(fleet.tv(0).isOn());
+    assertFalse(fleet.tv(3).isOn());
+  }
+
+  /**
+   * MULTI and SUB through handleLine end with the call: other callers still get their
+   * replies at once and no subscriber is left behind.
+   */
+  @Test
+  void handleLineCallersDoNotShareBatchesOrSubscriptions() throws Exception {
+    ProtocolHandler h = new ProtocolHandler(new SmartTv(5));
+    assertEquals("OK\r\n", h.handleLine("MULTI"));
+    assertEquals("OK\r\n", h.handleLine("SUB"));
+
+    String[] other = new String[1];
+    Thread t = new Thread(() -> other[0] = h.handleLine("ON"));
+    t.start();
+    t.join();
+    assertEquals("OK\r\n", other[0]);
+    assertEquals("OK CH=1\r\n", h.handleLine("GET"));
+    assertEquals("ERR 409 INVALID_STATE\r\n", h.handleLine("EXEC"));
+    assertEquals(0, h.metrics().snapshot().subscribers());
+  }
+
+  /**
+   * A single-TV server only knows TV 0.
+   */
+  @Test
+  void singleTvOnlyAcceptsUseZero() {
+    ProtocolHandler h = new ProtocolHandler(new SmartTv(5));
+    assertEquals("OK TV=0\r\n", h.handleLine("USE 0"));
+    assertEquals("ERR 404 OUT_OF_RANGE\r\n", h.handleLine("USE 1"));
+    assertEquals("ERR 400 BAD_COMMAND\r\n", h.handleLine("USE"));
+  }
+
+  /**
+   * A binary session runs the same commands and gets the binary form of the same replies
+   * and events; errors count the same in the metrics.
+   */
+  @Test
+  void binarySessionGetsBinaryReplies() {
+    ProtocolHandler h = new ProtocolHandler(new SmartTv(10));
+    Session session = h.openSession();
+    session.useFraming(Framing.BINARY);
+
+    assertArrayEquals(BinaryCodec.errTvOff(), h.handle(session, Command.GET, 0).toByteArray());
+    h.handle(session, Command.SUB, 0);
+    assertArrayEquals(BinaryCodec.ok(), h.handle(session, Command.ON, 0).toByteArray());
+    assertArrayEquals(BinaryCodec.okChannel(7), h.handle(session, Command.SET, 7).toByteArray());
+    assertArrayEquals(BinaryCodec.errOutOfRange(),
+        h.handle(session, Command.SET, 11).toByteArray());
+    assertArrayEquals(BinaryCodec.errBadCommand(), h.rejected(session).toByteArray());
+    assertArrayEquals(BinaryCodec.evtPowerOn(), session.pollEvent().toByteArray());
+    assertArrayEquals(BinaryCodec.evtChannel(7), session.pollEvent().toByteArray());
+
+    Map<Outcome, Long> outcomes = h.metrics().snapshot().outcomes();
+    assertEquals(3, outcomes.get(Outcome.OK));
+    assertEquals(1, outcomes.get(Outcome.TV_OFF));
+    assertEquals(1, outcomes.get(Outcome.OUT_OF_RANGE));
+    assertEquals(1, outcomes.get(Outcome.BAD_COMMAND));
+  }
+
+  /**
+   * Commands over a connection's write rate get RATE_LIMITED and leave the TV alone, while
+   * reads and other connections are not affected.
+   */
+  @Test
+  void commandsOverTheRateAreRejected() {
+    SmartTv tv = new SmartTv(10);
+    tv.turnOn();
+    ProtocolHandler h = new ProtocolHandler(new SingleTvRegistry(tv, new Broadcaster()),
+        new RateLimiter(Map.of(CommandClass.WRITE, new Rate(1, 2)), Map.of()));
+    Session flooder = h.openSession();
+    Session other = h.openSession();
+
+    assertEquals("OK CH=2\r\n", text(h.handle(flooder, "UP")));
+    assertEquals("OK CH=3\r\n", text(h.handle(flooder, "UP")));
+    assertEquals("ERR 429 RATE_LIMITED\r\n", text(h.handle(flooder, "UP")));
+    assertEquals(3, tv.getChannel());
+    assertEquals("OK CH=3\r\n", text(h.handle(flooder, "GET")));
+    assertEquals("OK CH=4\r\n", text(h.handle(other, "UP")));
+
+    assertEquals(1, h.metrics().snapshot().outcomes().get(Outcome.RATE_LIMITED));
+  }
+
+  /**
+   * Lines after MULTI get no reply until EXEC, which sends all their replies in order
+   * followed by its own OK; subscribers hear only the net change.
+   */
+  @Test
+  void batchRepliesAreSentAtExec() {
+    SmartTv tv = new SmartTv(10);
+    ProtocolHandler h = new ProtocolHandler(tv);
+    Session session = h.openSession();
+    Session watcher = h.openSession();
+    h.handle(watcher, "SUB");
+
+    assertEquals("OK\r\n", text(h.handle(session, "MULTI")));
+    for (String line : new String[] {"ON", "SET 5", "UP", "SET 1", "SET 11", "GET"}) {
+      assertEquals("", text(h.handle(session, line)));
+    }
+    assertFalse(tv.isOn());
+    assertEquals("OK\r\nOK CH=5\r\nOK CH=6\r\nOK CH=1\r\nERR 404 OUT_OF_RANGE\r\n"
+        + "OK CH=1\r\nOK\r\n", text(h.handle(session, "EXEC")));
+    assertTrue(tv.isOn());
+    assertEquals(1, tv.getChannel());
+
+    assertEquals("EVT POWER ON\r\n", text(watcher.pollEvent()));
+    assertNull(watcher.pollEvent());
+    assertEquals("OK CH=1\r\n", text(h.handle(session, "GET")));
+  }
+
+  /**
+   * A batch is timed once, as EXEC; its commands are counted without latency samples, and
+   * a queued PING is noted when it arrives.
+   */
+  @Test
+  void batchIsTimedOnceAsExec() throws Exception {
+    ProtocolHandler h = new ProtocolHandler(new SmartTv(10));
+    Session session = h.openSession();
+    long opened = session.lastPingNanos();
+    h.handle(session, "MULTI");
+    h.handle(session, "ON");
+    Thread.sleep(2);
+    h.handle(session, "PING");
+    long pinged = session.lastPingNanos();
+    assertTrue(pinged > opened);
+    h.handle(session, "UP");
+    h.handle(session, "EXEC");
+    assertEquals(pinged, session.lastPingNanos());
+
+    MetricsSnapshot s = h.metrics().snapshot();
+    assertEquals(1, s.commands().get(Command.ON).count());
+    assertEquals(1, s.commands().get(Command.UP).count());
+    assertEquals(0, s.commands().get(Command.ON).latency().count());
+    assertEquals(1, s.commands().get(Command.EXEC).latency().count());
+  }
+
+  /**
+   * Commands that cannot be batched and lines that do not parse keep their place with an
+   * error; EXEC without MULTI and a batch over the limit are refused.
+   */
+  @Test
+  void batchRefusesWhatItCannotRun() {
+    SmartTv tv = new SmartTv(10);
+    ProtocolHandler h = new ProtocolHandler(tv);
+    Session session = h.openSession();
+    assertEquals("ERR 409 INVALID_STATE\r\n", text(h.handle(session, "EXEC")));
+
+    h.handle(session, "MULTI");
+    h.handle(session, "SUB");
+    h.handle(session, "BOGUS");
+    assertEquals("", text(h.lineTooLong(session)));
+    h.handle(session, "ON");
+    assertEquals("ERR 409 INVALID_STATE\r\nERR 400 BAD_COMMAND\r\n"
+        + "ERR 400 LINE_TOO_LONG\r\nOK\r\nOK\r\n", text(h.handle(session, "EXEC")));
+    assertTrue(tv.isOn());
+
+    h.handle(session, "MULTI");
+    for (int i = 0; i <= Limits.MAX_BATCH_COMMANDS; i++) {
+      h.handle(session, "OFF");
+    }
+    String reply = text(h.handle(session, "EXEC"));
+    assertEquals("ERR 409 INVALID_STATE\r\n".repeat(Limits.MAX_BATCH_COMMANDS + 2), reply);
+    assertTrue(tv.isOn());
+  }
+
+  /**
+   * EXEC of a batch over the limit reports its own failure last, and the next batch runs.
+   */
+  @Test
+  void overflowedExecEndsWithError() {
+    SmartTv tv = new SmartTv(10);
+    ProtocolHandler h = new ProtocolHandler(tv);
+    Session session = h.openSession();
+    h.handle(session, "MULTI");
+    for (int i = 0; i < Limits.MAX_BATCH_COMMANDS + 3; i++) {
+      h.handle(session, "ON");
+    }
+    String reply = text(h.handle(session, "EXEC"));
+    assertTrue(reply.endsWith("ERR 409 INVALID_STATE\r\n"), reply);
+    assertFalse(reply.contains("OK"), reply);
+    assertFalse(tv.isOn());
+
+    h.handle(session, "MULTI");
+    h.handle(session, "ON");
+    assertEquals("OK\r\nOK\r\n", text(h.handle(session, "EXEC")));
+    assertTrue(tv.isOn());
+  }
+
+  private static String text(EncodedLine reply) {
+    return new String(reply.toByteArray(), StandardCharsets.US_ASCII);
+  }
 }
@@ -0,0 +1,168 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.broadcast;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.AtomicSmartTv;
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.ChangeSequence;
+
+/**
+ * Test class for Subscriber and Broadcaster.
+ */
+class SubscriberTest {
+
+  /**
+   * Events are delivered in order and the wake-up only fires when the queue was empty.
+   */
+  @Test
+  void deliversInOrderAndSignalsOnFirstEvent() {
+    AtomicInteger signals = new AtomicInteger();
+    Broadcaster bus = new Broadcaster(8, OverflowPolicy.DROP_OLDEST);
+    Subscriber s = bus.subscribe(signals::incrementAndGet);
+
+    bus.powerChanged(true);
+    bus.channelChanged(4);
+    assertEquals(1, signals.get());
+    assertEquals(Events.POWER_ON, s.poll());
+    assertEquals(4, s.poll());
+    assertEquals(Events.NONE, s.poll());
+
+    bus.channelChanged(5);
+    assertEquals(2, signals.get());
+  }
+
+  /**
+   * DROP_OLDEST keeps the newest events.
+   */
+  @Test
+  void dropOldestKeepsNewest() {
+    Subscriber s = new Subscriber(2, OverflowPolicy.DROP_OLDEST, () -> { });
+    s.offer(1);
+    s.offer(2);
+    s.offer(3);
+    assertEquals(1, s.dropped());
+    assertEquals(2, s.poll());
+    assertEquals(3, s.poll());
+  }
+
+  /**
+   * COALESCE drops superseded channel events but keeps power events in order.
+   */
+  @Test
+  void coalesceKeepsLatestChannelAndPowerEvents() {
+    Subscriber s = new Subscriber(4, OverflowPolicy.COALESCE, () -> { });
+    s.offer(2);
+    s.offer(Events.POWER_OFF);
+    s.offer(Events.POWER_ON);
+    s.offer(3);
+    s.offer(4); // full: 2 and 3 are superseded, 4 is appended
+
+    assertEquals(Events.POWER_OFF, s.poll());
+    assertEquals(Events.POWER_ON, s.poll());
+    assertEquals(3, s.poll());
+    assertEquals(4, s.poll());
+    assertEquals(Events.NONE, s.poll());
+  }
+
+  /**
+   * DISCONNECT evicts the subscriber and wakes it so the connection can be closed.
+   */
+  @Test
+  void disconnectEvicts() {
+    AtomicInteger signals = new AtomicInteger();
+    Subscriber s = new Subscriber(1, OverflowPolicy.DISCONNECT, signals::incrementAndGet);
+    s.offer(1);
+    assertFalse(s.isEvicted());
+    s.offer(2);
+    assertTrue(s.isEvicted());
+    assertEquals(2, signals.get());
+    assertEquals(Events.NONE, s.poll());
+  }
+
+  /**
+   * Unsubscribed queues receive nothing more.
+   */
+  @Test
+  void unsubscribeStopsDelivery() {
+    Broadcaster bus = new Broadcaster();
+    Subscriber s = bus.subscribe(() -> { });
+    bus.unsubscribe(s);
+    bus.channelChanged(3);
+    assertEquals(0, bus.subscriberCount());
+    assertEquals(Events.NONE, s.poll());
+  }
+
+  /**
+   * Coalescing replaces a pending channel event but never moves one across a power event.
+   */
+  @Test
+  void coalescesTailChannelEventsOnly() {
+    Subscriber s = new Subscriber(8, OverflowPolicy.DROP_OLDEST, true, () -> { });
+    s.offer(2);
+    s.offer(3);
+    s.offer(Events.POWER_OFF);
+    s.offer(Events.POWER_ON);
+    s.offer(4);
+    s.offer(5);
+
+    assertEquals(3, s.poll());
+    assertEquals(Events.POWER_OFF, s.poll());
+    assertEquals(Events.POWER_ON, s.poll());
+    assertEquals(5, s.poll());
+    assertEquals(Events.NONE, s.poll());
+    assertEquals(2, s.coalesced());
+  }
+
+  /**
+   * An event numbered before the last one queued is dropped, also across the wrap.
+   */
+  @Test
+  void dropsStaleNumberedEvents() {
+    Subscriber s = new Subscriber(8, OverflowPolicy.DROP_OLDEST, () -> { });
+    s.offer(Events.POWER_ON, ChangeSequence.MODULUS - 2);
+    s.offer(3, ChangeSequence.MODULUS - 2);
+    s.offer(5, 0);
+    s.offer(4, ChangeSequence.MODULUS - 1);
+    s.offer(6, 1);
+
+    assertEquals(Events.POWER_ON, s.poll());
+    assertEquals(3, s.poll());
+    assertEquals(5, s.poll());
+    assertEquals(6, s.poll());
+    assertEquals(Events.NONE, s.poll());
+    assertEquals(1, s.coalesced());
+  }
+
+  /**
+   * With concurrent writers on a lock-free TV, the newest queued event is the final channel.
+   */
+  @Test
+  void newestEventMatchesLockFreeTv() throws Exception {
+    AtomicSmartTv tv = new AtomicSmartTv(8);
+    tv.turnOn();
+    Broadcaster bus = new Broadcaster();
+    tv.addListener(bus);
+    Subscriber s = bus.subscribe(() -> { });
+
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i++) {
+      int channel = i + 1;
+      threads[i] = new Thread(() -> {
+        for (int n = 0; n < 1_000; n++) {
+          tv.setChannel(channel);
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread t : threads) t.join();
+
+    int last = Events.NONE;
+    for (int e = s.poll(); e != Events.NONE; e = s.poll()) last = e;
+    assertEquals(Events.channel(tv.getChannel()), last);
+  }
+}
@@ -0,0 +1,58 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for LatencyHistogram.
+ */
+class LatencyHistogramTest {
+
+  /**
+   * Every value falls in a bucket whose upper bound is at most 25% above it.
+   */
+  @Test
+  void bucketsBoundValuesWithinAQuarter() {
+    long[] values = {0, 1, 3, 4, 5, 7, 8, 100, 1_000, 123_456, 1L << 30, (1L << 40) - 1};
+    for (long v : values) {
+      int bucket = LatencyHistogram.bucketOf(v);
+      long upper = LatencyHistogram.upperBound(bucket);
+      assertTrue(bucket >= 0 && bucket < LatencyHistogram.BUCKETS, "bucket of " + v);
+      assertTrue(upper >= v && upper <= v + v / 4 + 1, v + " -> " + upper);
+      if (bucket > 0) {
+        assertTrue(LatencyHistogram.upperBound(bucket - 1) < v, "lower edge of " + v);
+      }
+    }
+    assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    assertEquals(0, LatencyHistogram.bucketOf(-5));
+  }
+
+  /**
+   * Percentiles come from the recorded distribution across all stripes.
+   */
+  @Test
+  void percentilesAcrossThreads() throws Exception {
+    LatencyHistogram h = new LatencyHistogram(4);
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(() -> {
+        for (int i = 1; i <= 1_000; i++) {
+          h.record(i * 1_000L);
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+
+    LatencyHistogram.Snapshot s = h.snapshot();
+    assertEquals(4_000, s.count());
+    assertTrue(s.percentile(50) >= 500_000 && s.percentile(50) <= 625_000);
+    assertTrue(s.percentile(99) >= 990_000 && s.percentile(99) <= 1_250_000);
+    assertTrue(s.max() >= 1_000_000);
+    assertEquals(0, new LatencyHistogram(1).snapshot().percentile(99));
+  }
+}
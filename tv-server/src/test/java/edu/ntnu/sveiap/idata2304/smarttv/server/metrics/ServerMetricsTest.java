@@ -0,0 +1,72 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.SmartTv;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Command;
+import edu.ntnu.sveiap.idata2304.smarttv.server.adapter.ProtocolHandler;
+import edu.ntnu.sveiap.idata2304.smarttv.server.adapter.Session;
+
+/**
+ * Test class for ServerMetrics, fed through a ProtocolHandler.
+ */
+class ServerMetricsTest {
+
+  /**
+   * Commands, outcomes and subscriber queues are reported.
+   */
+  @Test
+  void recordsCommandsOutcomesAndQueues() {
+    ProtocolHandler h = new ProtocolHandler(new SmartTv(3));
+    Session watcher = h.openSession();
+    h.handle(watcher, "SUB");
+    h.handleLine("GET");     // TV_OFF
+    h.handleLine("ON");
+    h.handleLine("SET 2");
+    h.handleLine("SET 9");   // OUT_OF_RANGE
+    h.handleLine("BOGUS");   // BAD_COMMAND, not a command
+
+    MetricsSnapshot s = h.metrics().snapshot();
+    assertEquals(1, s.commands().get(Command.GET).count());
+    assertEquals(2, s.commands().get(Command.SET).count());
+    assertFalse(s.commands().containsKey(Command.UP));
+    assertEquals(3, s.outcomes().get(Outcome.OK));
+    assertEquals(1, s.outcomes().get(Outcome.TV_OFF));
+    assertEquals(1, s.outcomes().get(Outcome.OUT_OF_RANGE));
+    assertEquals(1, s.outcomes().get(Outcome.BAD_COMMAND));
+    assertEquals(6, s.requests());
+
+    // POWER ON and CHANNEL 2 are waiting for the subscriber
+    assertEquals(1, s.subscribers());
+    assertEquals(2, s.queuedEvents());
+    assertEquals(2, s.maxQueueDepth());
+
+    String dump = h.metrics().dump();
+    assertTrue(dump.contains("TV_OFF=1"), dump);
+    assertTrue(dump.contains("SET"), dump);
+  }
+
+  /**
+   * Transport counters add up.
+   */
+  @Test
+  void countsConnectionsAndBytes() {
+    ServerMetrics m = new ProtocolHandler(new SmartTv(3)).metrics();
+    m.connectionOpened();
+    m.connectionOpened();
+    m.connectionClosed();
+    m.bytesIn(10);
+    m.bytesOut(7);
+    m.bytesOut(5);
+
+    MetricsSnapshot s = m.snapshot();
+    assertEquals(1, s.activeConnections());
+    assertEquals(2, s.totalConnections());
+    assertEquals(10, s.bytesIn());
+    assertEquals(12, s.bytesOut());
+  }
+}
@@ -0,0 +1,63 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.persist;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.TvFleet;
+
+/**
+ * Test class for MappedStateFile.
+ */
+class MappedStateFileTest {
+
+  @TempDir
+  Path dir;
+
+  /**
+   * A new file starts with every TV off; reopening it serves the saved state directly.
+   */
+  @Test
+  void reopenServesSavedState() throws Exception {
+    Path file = dir.resolve("tvs.state");
+    try (MappedStateFile state = MappedStateFile.open(file, 1000, 10)) {
+      TvFleet fleet = state.fleet();
+      assertEquals(1000, fleet.size());
+      assertFalse(fleet.tv(999).isOn());
+      fleet.tv(999).turnOn();
+      fleet.tv(999).setChannel(9);
+      fleet.tv(5).turnOn();
+      fleet.tv(5).setChannel(3);
+      fleet.tv(5).turnOff();
+    }
+    assertEquals(16 + 1000 * TvFleet.STATE_BYTES, Files.size(file));
+
+    try (MappedStateFile state = MappedStateFile.open(file, 1000, 10)) {
+      TvFleet fleet = state.fleet();
+      assertTrue(fleet.tv(999).isOn());
+      assertEquals(9, fleet.tv(999).getChannel());
+      assertFalse(fleet.tv(5).isOn());
+      assertEquals(3, fleet.tv(5).getLastChannel());
+      assertFalse(fleet.tv(0).isOn());
+    }
+  }
+
+  /**
+   * A file made for another fleet is refused instead of being misread.
+   */
+  @Test
+  void rejectsOtherFleet() throws Exception {
+    Path file = dir.resolve("tvs.state");
+    MappedStateFile.open(file, 100, 10).close();
+    assertThrows(IOException.class, () -> MappedStateFile.open(file, 200, 10));
+    assertThrows(IOException.class, () -> MappedStateFile.open(file, 100, 20));
+  }
+}
@@ -0,0 +1,115 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.persist;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.Fleet;
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.SmartTv;
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.TvControl;
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.TvFleet;
+
+/**
+ * Test class for StateStore.
+ */
+class StateStoreTest {
+  private static final long NO_SNAPSHOT = 3600;
+
+  @TempDir
+  Path dir;
+
+  /**
+   * Power state and last channel come back after a restart, also for TVs left off.
+   */
+  @Test
+  void stateSurvivesRestart() throws Exception {
+    TvFleet fleet = new TvFleet(100, 10);
+    StateStore store = StateStore.open(dir, fleet, 1, NO_SNAPSHOT);
+    fleet.tv(3).turnOn();
+    fleet.tv(3).setChannel(7);
+    fleet.tv(99).turnOn();
+    fleet.tv(99).setChannel(4);
+    fleet.tv(99).turnOff();
+    store.close();
+
+    TvFleet restarted = new TvFleet(100, 10);
+    StateStore.open(dir, restarted, 1, NO_SNAPSHOT).close();
+    assertTrue(restarted.tv(3).isOn());
+    assertEquals(7, restarted.tv(3).getChannel());
+    assertFalse(restarted.tv(99).isOn());
+    assertEquals(4, restarted.tv(99).getLastChannel());
+    assertFalse(restarted.tv(0).isOn());
+  }
+
+  /**
+   * Changes within one sync interval share one commit, and a TV changed many times is
+   * written once.
+   */
+  @Test
+  void changesAreGroupCommitted() throws Exception {
+    TvFleet fleet = new TvFleet(10, 10);
+    StateStore store = StateStore.open(dir, fleet, 60_000, NO_SNAPSHOT);
+    TvControl tv = fleet.tv(1);
+    tv.turnOn();
+    for (int i = 0; i < 1000; i++) {
+      tv.setChannel(1 + i % 10);
+      fleet.tv(2).turnOn();
+    }
+    store.close(); // commits what is pending
+
+    assertEquals(1, store.commits());
+    assertEquals(2, store.records());
+    TvFleet restarted = new TvFleet(10, 10);
+    StateStore.open(dir, restarted, 1, NO_SNAPSHOT).close();
+    assertEquals(10, restarted.tv(1).getChannel());
+  }
+
+  /**
+   * Recovery applies the snapshot, then the log written after it.
+   */
+  @Test
+  void recoversSnapshotPlusLogTail() throws Exception {
+    TvFleet fleet = new TvFleet(10, 10);
+    try (StateStore store = StateStore.open(dir, fleet, 1, NO_SNAPSHOT)) {
+      fleet.tv(1).turnOn();
+      fleet.tv(1).setChannel(5);
+      store.snapshot();
+      fleet.tv(1).setChannel(6);
+      fleet.tv(2).turnOn();
+      assertEquals(1, store.snapshots());
+    }
+    assertTrue(Files.exists(dir.resolve("snapshot.bin")));
+
+    TvFleet restarted = new TvFleet(10, 10);
+    StateStore.open(dir, restarted, 1, NO_SNAPSHOT).close();
+    assertEquals(6, restarted.tv(1).getChannel());
+    assertTrue(restarted.tv(2).isOn());
+  }
+
+  /**
+   * A frame cut short by a crash is dropped and cut off; the frames before it count.
+   */
+  @Test
+  void ignoresTornLogTail() throws Exception {
+    SmartTv tv = new SmartTv(10);
+    StateStore store = StateStore.open(dir, Fleet.of(tv), 1, NO_SNAPSHOT);
+    tv.turnOn();
+    tv.setChannel(8);
+    store.close();
+    Path log = dir.resolve("wal.log");
+    long intact = Files.size(log);
+    Files.write(log, new byte[] {0, 0, 0, 16, 1, 2, 3}, StandardOpenOption.APPEND);
+
+    SmartTv restarted = new SmartTv(10);
+    StateStore.open(dir, Fleet.of(restarted), 1, NO_SNAPSHOT).close();
+    assertEquals(8, restarted.getChannel());
+    assertEquals(intact, Files.size(log));
+  }
+}
@@ -0,0 +1,106 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.ratelimit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Command;
+
+/**
+ * Test class for TokenBucket and RateLimiter.
+ */
+class RateLimiterTest {
+
+  /**
+   * A full bucket allows a burst, then refills at the rate.
+   */
+  @Test
+  void bucketAllowsBurstThenRefills() {
+    TokenBucket bucket = new TokenBucket(new Rate(10, 3)); // a token every 100 ms
+    long t0 = System.nanoTime();
+    assertTrue(bucket.tryAcquire(t0));
+    assertTrue(bucket.tryAcquire(t0));
+    assertTrue(bucket.tryAcquire(t0));
+    assertFalse(bucket.tryAcquire(t0));
+    assertFalse(bucket.tryAcquire(t0 + 99_000_000L));
+    assertTrue(bucket.tryAcquire(t0 + 100_000_000L));
+    assertFalse(bucket.tryAcquire(t0 + 100_000_000L));
+    // A long pause refills only up to the burst
+    long later = t0 + 10_000_000_000L;
+    for (int i = 0; i < 3; i++) assertTrue(bucket.tryAcquire(later));
+    assertFalse(bucket.tryAcquire(later));
+  }
+
+  /**
+   * Threads racing for one bucket never get more tokens than it holds.
+   */
+  @Test
+  void bucketIsExactUnderContention() throws Exception {
+    TokenBucket bucket = new TokenBucket(new Rate(1, 1_000));
+    long t0 = System.nanoTime();
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Integer>> granted = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        granted.add(pool.submit(() -> {
+          int n = 0;
+          for (int i = 0; i < 1_000; i++) {
+            if (bucket.tryAcquire(t0)) n++;
+          }
+          return n;
+        }));
+      }
+      int total = 0;
+      for (Future<Integer> f : granted) total += f.get();
+      assertEquals(1_000, total);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Each connection has its own buckets; the global bucket caps them together; classes
+   * without a rate are not limited.
+   */
+  @Test
+  void limitsPerConnectionAndGlobally() {
+    RateLimiter limiter = new RateLimiter(
+        Map.of(CommandClass.WRITE, new Rate(1, 2)),
+        Map.of(CommandClass.WRITE, new Rate(1, 3)));
+    RateLimiter.Quota a = limiter.newQuota();
+    RateLimiter.Quota b = limiter.newQuota();
+
+    assertTrue(limiter.tryAcquire(a, Command.SET));
+    assertTrue(limiter.tryAcquire(a, Command.UP));
+    assertFalse(limiter.tryAcquire(a, Command.DOWN)); // a's own bucket is empty
+    assertTrue(limiter.tryAcquire(b, Command.ON));
+    assertFalse(limiter.tryAcquire(b, Command.OFF)); // the global bucket is empty
+    for (int i = 0; i < 100; i++) {
+      assertTrue(limiter.tryAcquire(a, Command.GET));
+      assertTrue(limiter.tryAcquire(b, Command.PING));
+    }
+  }
+
+  /**
+   * Rates parse from the command-line form.
+   */
+  @Test
+  void parsesRates() {
+    assertEquals(new Rate(50, 50), Rate.parse("50"));
+    assertEquals(new Rate(50, 5), Rate.parse("50:5"));
+    assertThrows(IllegalArgumentException.class, () -> Rate.parse("fast"));
+    assertThrows(IllegalArgumentException.class, () -> Rate.parse("0"));
+    assertEquals(CommandClass.READ, CommandClass.of(Command.STATUS));
+    assertEquals(CommandClass.WRITE, CommandClass.of(Command.SET));
+  }
+}
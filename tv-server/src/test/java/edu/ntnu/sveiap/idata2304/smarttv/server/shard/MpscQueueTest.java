@@ -0,0 +1,63 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.shard;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for MpscQueue.
+ */
+class MpscQueueTest {
+
+  /**
+   * FIFO order, bounded capacity and slot reuse after wrapping.
+   */
+  @Test
+  void boundedFifo() {
+    MpscQueue<Integer> q = new MpscQueue<>(3);
+    assertEquals(4, q.capacity());
+    assertNull(q.poll());
+    for (int i = 0; i < 4; i++) assertTrue(q.offer(i));
+    assertFalse(q.offer(4));
+    assertEquals(0, q.poll());
+    assertTrue(q.offer(4));
+    for (int i = 1; i <= 4; i++) assertEquals(i, q.poll());
+    assertNull(q.poll());
+  }
+
+  /**
+   * Elements from concurrent producers all arrive once, in order per producer.
+   */
+  @Test
+  void manyProducersOneConsumer() throws Exception {
+    int producers = 4;
+    int perProducer = 50_000;
+    MpscQueue<Integer> q = new MpscQueue<>(64);
+    Thread[] threads = new Thread[producers];
+    for (int p = 0; p < producers; p++) {
+      int id = p;
+      threads[p] = new Thread(() -> {
+        for (int i = 0; i < perProducer; i++) {
+          while (!q.offer(id * perProducer + i)) Thread.onSpinWait();
+        }
+      });
+      threads[p].start();
+    }
+
+    int[] next = new int[producers];
+    int received = 0;
+    while (received < producers * perProducer) {
+      Integer e = q.poll();
+      if (e == null) continue;
+      int producer = e / perProducer;
+      assertEquals(next[producer], e % perProducer);
+      next[producer]++;
+      received++;
+    }
+    for (Thread t : threads) t.join();
+    assertNull(q.poll());
+  }
+}
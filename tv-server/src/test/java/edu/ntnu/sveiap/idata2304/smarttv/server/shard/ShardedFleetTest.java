@@ -0,0 +1,166 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.shard;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.TvControl;
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.TvListener;
+
+/**
+ * Test class for ShardedFleet.
+ */
+class ShardedFleetTest {
+
+  /**
+   * Every TV follows the same rules as SmartTv, with the same exception messages.
+   */
+  @Test
+  void tvBehavesLikeSmartTv() {
+    try (ShardedFleet fleet = new ShardedFleet(10, 5, 3)) {
+      TvControl tv = fleet.tv(7);
+      assertFalse(tv.isOn());
+      IllegalStateException off = assertThrows(IllegalStateException.class, () -> tv.setChannel(2));
+      assertEquals("TV_OFF", off.getMessage());
+
+      tv.turnOn();
+      assertTrue(tv.isOn());
+      assertEquals(1, tv.getChannel());
+      assertEquals(5, tv.setChannel(5));
+      IllegalStateException max = assertThrows(IllegalStateException.class, tv::channelUp);
+      assertEquals("INVALID_STATE", max.getMessage());
+      assertEquals(4, tv.channelDown());
+      tv.turnOff();
+      tv.turnOn();
+      assertEquals(4, tv.getChannel());
+      assertThrows(IllegalArgumentException.class, () -> tv.setChannel(6));
+      assertFalse(fleet.tv(8).isOn());
+      assertThrows(IllegalArgumentException.class, () -> fleet.tv(10));
+    }
+  }
+
+  /**
+   * Concurrent UPs on one TV from many threads are applied one at a time by its shard.
+   */
+  @Test
+  void concurrentUpsAreSerialized() throws Exception {
+    int channels = 10_000;
+    try (ShardedFleet fleet = new ShardedFleet(4, channels, 2)) {
+      TvControl tv = fleet.tv(1);
+      tv.turnOn();
+      AtomicInteger successes = new AtomicInteger();
+      Thread[] threads = new Thread[8];
+      for (int i = 0; i < threads.length; i++) {
+        threads[i] = Thread.ofVirtual().start(() -> {
+          while (true) {
+            try {
+              tv.channelUp();
+            } catch (IllegalStateException atMax) {
+              return;
+            }
+            successes.incrementAndGet();
+          }
+        });
+      }
+      for (Thread t : threads) t.join();
+
+      assertEquals(channels - 1, successes.get());
+      assertEquals(channels, tv.getChannel());
+      assertFalse(fleet.tv(0).isOn());
+    }
+  }
+
+  /**
+   * Listeners run on the shard after the change and see every change in order.
+   */
+  @Test
+  void listenersSeeChanges() {
+    try (ShardedFleet fleet = new ShardedFleet(2, 5, 2)) {
+      List<String> seen = new CopyOnWriteArrayList<>();
+      fleet.tv(1).addListener(new TvListener() {
+        @Override
+        public void powerChanged(boolean on) {
+          seen.add("power " + on + " " + Thread.currentThread().getName());
+        }
+
+        @Override
+        public void channelChanged(int channel) {
+          seen.add("channel " + channel);
+        }
+      });
+      fleet.tv(0).turnOn();
+      fleet.tv(1).turnOn();
+      fleet.tv(1).channelUp();
+      assertEquals(List.of("power true shard-1", "channel 2"), seen);
+    }
+  }
+
+  /**
+   * Changes fail once the shards are stopped; reads still work.
+   */
+  @Test
+  void closedFleetRejectsChanges() {
+    ShardedFleet fleet = new ShardedFleet(1, 5, 1);
+    TvControl tv = fleet.tv(0);
+    fleet.close();
+    IllegalStateException e = assertThrows(IllegalStateException.class, tv::turnOn);
+    assertEquals("SHUTDOWN", e.getMessage());
+    assertFalse(tv.isOn());
+  }
+
+  /**
+   * A caller parked behind a busy shard is released when the fleet closes under it.
+   */
+  @Test
+  void closeReleasesParkedCaller() throws Exception {
+    ShardedFleet fleet = new ShardedFleet(1, 5, 1);
+    CountDownLatch inListener = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    fleet.tv(0).addListener(new TvListener() {
+      @Override
+      public void powerChanged(boolean on) {
+        inListener.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+
+      @Override
+      public void channelChanged(int channel) {
+      }
+    });
+    Thread first = Thread.ofPlatform().start(() -> fleet.tv(0).turnOn());
+    assertTrue(inListener.await(2, TimeUnit.SECONDS));
+
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    Thread second = Thread.ofPlatform().start(() -> {
+      try {
+        fleet.tv(0).setChannel(3);
+      } catch (RuntimeException e) {
+        failure.set(e);
+      }
+    });
+    Thread.sleep(50); // let it park behind the listener
+
+    Thread closer = Thread.ofPlatform().start(fleet::close);
+    Thread.sleep(50);
+    release.countDown();
+    closer.join(2000);
+    first.join(2000);
+    second.join(2000);
+    assertFalse(second.isAlive());
+    assertEquals("SHUTDOWN", failure.get().getMessage());
+  }
+}
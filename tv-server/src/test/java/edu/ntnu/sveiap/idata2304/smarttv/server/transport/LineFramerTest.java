@@ -0,0 +1,113 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.transport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Limits;
+
+/**
+ * Test class for LineFramer.
+ */
+class LineFramerTest {
+
+  /** Records lines as text and too long lines as "!". */
+  private final List<String> lines = new ArrayList<>();
+  private final LineFramer.Sink sink = new LineFramer.Sink() {
+    @Override
+    public void line(ByteBuffer line) {
+      byte[] bytes = new byte[line.remaining()];
+      line.get(line.position(), bytes);
+      lines.add(new String(bytes, StandardCharsets.US_ASCII));
+    }
+
+    @Override
+    public void tooLong() {
+      lines.add("!");
+    }
+  };
+
+  private void feed(LineFramer framer, String text) throws Exception {
+    ByteBuffer src = ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+    framer.feed(src, sink);
+    assertFalse(src.hasRemaining());
+  }
+
+  /**
+   * Lines in one chunk are handed out in order, CRLF and bare LF alike, and blank lines are
+   * skipped.
+   */
+  @Test
+  void splitsLinesInOneChunk() throws Exception {
+    LineFramer framer = new LineFramer();
+    feed(framer, "ON\r\nSET 3\n\r\n  \r\nSTATUS\r\n");
+    assertEquals(List.of("ON", "SET 3", "STATUS"), lines);
+    assertFalse(framer.hasPartialLine());
+  }
+
+  /**
+   * A line split across chunks, even between CR and LF, is put back together.
+   */
+  @Test
+  void joinsLineSplitAcrossChunks() throws Exception {
+    LineFramer framer = new LineFramer();
+    feed(framer, "ST");
+    assertTrue(framer.hasPartialLine());
+    feed(framer, "ATUS\r");
+    feed(framer, "\nGET");
+    feed(framer, "\r\n");
+    assertEquals(List.of("STATUS", "GET"), lines);
+  }
+
+  /**
+   * Lines from a direct buffer are handed out as views of it.
+   */
+  @Test
+  void readsDirectBuffers() throws Exception {
+    LineFramer framer = new LineFramer();
+    byte[] bytes = "PING\r\nUP\r\n".getBytes(StandardCharsets.US_ASCII);
+    ByteBuffer src = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+    framer.feed(src, sink);
+    assertEquals(List.of("PING", "UP"), lines);
+  }
+
+  /**
+   * A line over the limit is reported once its LF arrives, however long it gets, and the
+   * next line is framed normally.
+   */
+  @Test
+  void rejectsTooLongLineAndResynchronizes() throws Exception {
+    LineFramer framer = new LineFramer();
+    feed(framer, "X".repeat(Limits.MAX_LINE_LENGTH + 1) + "\r\nOFF\r\n");
+    assertEquals(List.of("!", "OFF"), lines);
+
+    lines.clear();
+    String chunk = "Y".repeat(64 * 1024);
+    for (int i = 0; i < 100; i++) {
+      feed(framer, chunk);
+    }
+    assertTrue(framer.hasPartialLine());
+    assertTrue(lines.isEmpty());
+    feed(framer, "\r\nON\r\n");
+    assertEquals(List.of("!", "ON"), lines);
+  }
+
+  /**
+   * A line of exactly the limit is accepted, also when its CR is carried over.
+   */
+  @Test
+  void acceptsLineOfMaximumLength() throws Exception {
+    LineFramer framer = new LineFramer();
+    String max = "Z".repeat(Limits.MAX_LINE_LENGTH);
+    feed(framer, max + "\r");
+    feed(framer, "\n");
+    assertEquals(List.of(max), lines);
+  }
+}
@@ -0,0 +1,353 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.transport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.SmartTv;
+import edu.ntnu.sveiap.idata2304.smarttv.common.protocol.Limits;
+import edu.ntnu.sveiap.idata2304.smarttv.server.adapter.ProtocolHandler;
+import edu.ntnu.sveiap.idata2304.smarttv.server.broadcast.Broadcaster;
+import edu.ntnu.sveiap.idata2304.smarttv.server.broadcast.OverflowPolicy;
+
+class NioTcpServerTest {
+
+  /**
+   * Pick an available ephemeral TCP port.
+   */
+  private static int pickFreePort() throws IOException {
+    try (ServerSocket s = new ServerSocket(0)) {
+      return s.getLocalPort();
+    }
+  }
+
+  /**
+   * Start the server with two event loops in a background daemon thread.
+   */
+  private static NioTcpServer startServer(int port) {
+    return startServer(port, new ProtocolHandler(new SmartTv(10)));
+  }
+
+  private static NioTcpServer startServer(int port, ProtocolHandler handler) {
+    return startServer(port, handler, ConnectionLimits.defaults());
+  }
+
+  private static NioTcpServer startServer(int port, ProtocolHandler handler,
+      ConnectionLimits limits) {
+    NioTcpServer server = new NioTcpServer(port, handler, 2, limits);
+    Thread t = new Thread(() -> {
+      try {
+        server.start();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }, "NioTcpServerTest-ServerThread");
+    t.setDaemon(true);
+    t.start();
+    return server;
+  }
+
+  /**
+   * Connect with small retry window so the test doesn't flake on slow CI.
+   */
+  private static Socket connectWithRetry(int port) throws Exception {
+    long deadline = System.currentTimeMillis() + 3_000;
+    Exception last = null;
+    while (System.currentTimeMillis() < deadline) {
+      try {
+        Socket s = new Socket("127.0.0.1", port);
+        s.setSoTimeout(2_000);
+        return s;
+      } catch (Exception e) {
+        last = e;
+        Thread.sleep(50);
+      }
+    }
+    throw last != null ? last : new IOException("connect retry timed out");
+  }
+
+  private static void write(OutputStream out, String text) throws IOException {
+    out.write(text.getBytes(StandardCharsets.UTF_8));
+    out.flush();
+  }
+
+  /**
+   * Blank lines are ignored and STATUS is answered.
+   */
+  @Test
+  void blankLineIsIgnored_thenStatusIsOkOff() throws Exception {
+    int port = pickFreePort();
+    startServer(port);
+
+    try (Socket s = connectWithRetry(port);
+        BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8))) {
+      write(s.getOutputStream(), "       \r\nSTATUS\r\n");
+      assertEquals("OK OFF", in.readLine());
+    }
+  }
+
+  /**
+   * A line split over several TCP writes is reassembled.
+   */
+  @Test
+  void lineSplitAcrossReadsIsReassembled() throws Exception {
+    int port = pickFreePort();
+    startServer(port);
+
+    try (Socket s = connectWithRetry(port);
+        BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8))) {
+      OutputStream out = s.getOutputStream();
+      write(out, "ST");
+      Thread.sleep(50);
+      write(out, "ATUS\r");
+      Thread.sleep(50);
+      write(out, "\n");
+      assertEquals("OK OFF", in.readLine());
+    }
+  }
+
+  /**
+   * Several lines in one write get their replies in order.
+   */
+  @Test
+  void pipelinedLinesAreAnsweredInOrder() throws Exception {
+    int port = pickFreePort();
+    startServer(port);
+
+    try (Socket s = connectWithRetry(port);
+        BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8))) {
+      write(s.getOutputStream(), "ON\r\nSET 4\r\nGET\r\nOFF\r\nSTATUS\r\n");
+      assertEquals("OK", in.readLine());
+      assertEquals("OK CH=4", in.readLine());
+      assertEquals("OK CH=4", in.readLine());
+      assertEquals("OK", in.readLine());
+      assertEquals("OK OFF", in.readLine());
+    }
+  }
+
+  /**
+   * Replies that pile up while the client is not reading are all delivered, in order,
+   * once it reads again.
+   */
+  @Test
+  void backedUpRepliesArriveInOrder() throws Exception {
+    int port = pickFreePort();
+    // About 1.8 MB of replies back up here, more than the default outbound cap
+    startServer(port, new ProtocolHandler(new SmartTv(10)), ConnectionLimits.none());
+
+    int count = 200_000;
+    try (Socket s = connectWithRetry(port);
+        BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8))) {
+      StringBuilder requests = new StringBuilder("ON\r\n");
+      for (int i = 0; i < count; i++) {
+        requests.append("SET ").append(i % 10 + 1).append("\r\n");
+      }
+      Thread writer = new Thread(() -> {
+        try {
+          write(s.getOutputStream(), requests.toString());
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+      });
+      writer.start();
+      // Let the server's socket buffer fill up before reading anything
+      Thread.sleep(300);
+
+      assertEquals("OK", in.readLine());
+      for (int i = 0; i < count; i++) {
+        assertEquals("OK CH=" + (i % 10 + 1), in.readLine());
+      }
+      writer.join();
+    }
+  }
+
+  /**
+   * Too long lines are rejected, also when they arrive in pieces, and the
+   * connection stays usable.
+   */
+  @Test
+  void tooLongLineReturns400_LineTooLong() throws Exception {
+    int port = pickFreePort();
+    startServer(port);
+
+    try (Socket s = connectWithRetry(port);
+        BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8))) {
+      OutputStream out = s.getOutputStream();
+      write(out, "X".repeat(Limits.MAX_LINE_LENGTH + 1) + "\r\n");
+      assertEquals("ERR 400 LINE_TOO_LONG", in.readLine());
+
+      write(out, "X".repeat(Limits.MAX_LINE_LENGTH));
+      Thread.sleep(50);
+      write(out, "X".repeat(Limits.MAX_LINE_LENGTH) + "\r\n");
+      assertEquals("ERR 400 LINE_TOO_LONG", in.readLine());
+
+      write(out, "STATUS\r\n");
+      assertEquals("OK OFF", in.readLine());
+    }
+  }
+
+  /**
+   * Clients on different event loops share the same TV.
+   */
+  @Test
+  void clientsShareState() throws Exception {
+    int port = pickFreePort();
+    startServer(port);
+
+    try (Socket a = connectWithRetry(port);
+        Socket b = connectWithRetry(port);
+        BufferedReader inA = new BufferedReader(new InputStreamReader(a.getInputStream(), StandardCharsets.UTF_8));
+        BufferedReader inB = new BufferedReader(new InputStreamReader(b.getInputStream(), StandardCharsets.UTF_8))) {
+      write(a.getOutputStream(), "ON\r\n");
+      assertEquals("OK", inA.readLine());
+      write(b.getOutputStream(), "STATUS\r\n");
+      assertEquals("OK ON", inB.readLine());
+    }
+  }
+
+  /**
+   * stop() closes the clients and start() returns.
+   */
+  @Test
+  void stopClosesClients() throws Exception {
+    int port = pickFreePort();
+    NioTcpServer server = startServer(port);
+
+    try (Socket s = connectWithRetry(port);
+        BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8))) {
+      write(s.getOutputStream(), "PING\r\n");
+      assertEquals("OK", in.readLine());
+
+      server.stop();
+      assertEquals(null, in.readLine());
+      assertFalse(server.isRunning());
+    }
+  }
+
+  /**
+   * A subscribed client receives events for its own and other clients' changes,
+   * after the reply to its own command.
+   */
+  @Test
+  void subscriberReceivesEvents() throws Exception {
+    int port = pickFreePort();
+    startServer(port);
+
+    try (Socket watcher = connectWithRetry(port);
+        Socket remote = connectWithRetry(port);
+        BufferedReader wIn = new BufferedReader(new InputStreamReader(watcher.getInputStream(), StandardCharsets.UTF_8));
+        BufferedReader rIn = new BufferedReader(new InputStreamReader(remote.getInputStream(), StandardCharsets.UTF_8))) {
+      write(watcher.getOutputStream(), "SUB\r\n");
+      assertEquals("OK", wIn.readLine());
+
+      write(remote.getOutputStream(), "ON\r\n");
+      assertEquals("OK", rIn.readLine());
+      assertEquals("EVT POWER ON", wIn.readLine());
+
+      write(watcher.getOutputStream(), "SET 5\r\n");
+      assertEquals("OK CH=5", wIn.readLine());
+      assertEquals("EVT CHANNEL 5", wIn.readLine());
+
+      write(remote.getOutputStream(), "UP\r\n");
+      assertEquals("OK CH=6", rIn.readLine());
+      assertEquals("EVT CHANNEL 6", wIn.readLine());
+    }
+  }
+
+  /**
+   * Within the coalescing window a burst of channel changes reaches subscribers as one event.
+   */
+  @Test
+  void coalescesChannelBurstWithinWindow() throws Exception {
+    int port = pickFreePort();
+    startServer(port, new ProtocolHandler(new SmartTv(10),
+        new Broadcaster(64, OverflowPolicy.DROP_OLDEST, true, 300)));
+
+    try (Socket watcher = connectWithRetry(port);
+        Socket remote = connectWithRetry(port);
+        BufferedReader wIn = new BufferedReader(new InputStreamReader(watcher.getInputStream(), StandardCharsets.UTF_8));
+        BufferedReader rIn = new BufferedReader(new InputStreamReader(remote.getInputStream(), StandardCharsets.UTF_8))) {
+      write(remote.getOutputStream(), "ON\r\n");
+      assertEquals("OK", rIn.readLine());
+      write(watcher.getOutputStream(), "SUB\r\n");
+      assertEquals("OK", wIn.readLine());
+
+      write(remote.getOutputStream(), "UP\r\nUP\r\nUP\r\nUP\r\nOFF\r\n");
+      for (String expected : new String[] {"OK CH=2", "OK CH=3", "OK CH=4", "OK CH=5", "OK"}) {
+        assertEquals(expected, rIn.readLine());
+      }
+
+      assertEquals("EVT CHANNEL 5", wIn.readLine());
+      assertEquals("EVT POWER OFF", wIn.readLine());
+    }
+  }
+
+  /**
+   * A client that pipelines far more than it reads is slowed down instead of dropped: the
+   * server stops reading from it before its queued replies reach the cap, and every reply
+   * arrives once it reads.
+   */
+  @Test
+  void slowsDownClientThatSendsFasterThanItReads() throws Exception {
+    int port = pickFreePort();
+    startServer(port, new ProtocolHandler(new SmartTv(10)),
+        new ConnectionLimits(Duration.ZERO, Duration.ZERO, Duration.ZERO, 64 * 1024));
+
+    int batches = 300;
+    int perBatch = 10_000;
+    try (Socket s = connectWithRetry(port);
+        BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8))) {
+      byte[] batch = "PING\r\n".repeat(perBatch).getBytes(StandardCharsets.UTF_8);
+      // 18 MB of requests and 12 MB of replies, far more than socket buffers hold
+      Thread writer = new Thread(() -> {
+        try {
+          OutputStream out = s.getOutputStream();
+          for (int i = 0; i < batches; i++) {
+            out.write(batch);
+          }
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+      });
+      writer.start();
+      Thread.sleep(500);
+
+      for (int i = 0; i < batches * perBatch; i++) {
+        assertEquals("OK", in.readLine());
+      }
+      writer.join();
+    }
+  }
+
+  /**
+   * A client that stops reading is dropped after the write timeout.
+   */
+  @Test
+  void dropsClientAfterWriteTimeout() throws Exception {
+    int port = pickFreePort();
+    startServer(port, new ProtocolHandler(new SmartTv(10)),
+        new ConnectionLimits(Duration.ZERO, Duration.ofMillis(300), Duration.ZERO, 0));
+
+    try (Socket s = connectWithRetry(port)) {
+      byte[] batch = "PING\r\n".repeat(10_000).getBytes(StandardCharsets.UTF_8);
+      OutputStream out = s.getOutputStream();
+      assertThrows(IOException.class, () -> {
+        for (int i = 0; i < 1_100; i++) {
+          out.write(batch);
+          Thread.sleep(5);
+        }
+      });
+    }
+  }
+}
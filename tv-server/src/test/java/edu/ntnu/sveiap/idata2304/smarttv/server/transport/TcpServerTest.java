@@ -1,15 +1,19 @@
 package edu.ntnu.sveiap.idata2304.smarttv.server.transport;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 
 import org.junit.jupiter.api.Test;
 
@@ -32,9 +36,13 @@ class TcpServerTest {
    * Start the server in a background deamon thread.
    */
   private static Thread startServer(int port) {
+    return startServer(port, ConnectionLimits.defaults());
+  }
+
+  private static Thread startServer(int port, ConnectionLimits limits) {
     SmartTv tv = new SmartTv(10);
     ProtocolHandler handler = new ProtocolHandler(tv);
-    TcpServer server = new TcpServer(port, handler);
+    TcpServer server = new TcpServer(port, handler, TcpServer.DEFAULT_MAX_CONNECTIONS, limits);
 
     Thread t = new Thread(() -> {
       try {
@@ -113,5 +121,189 @@ class TcpServerTest {
         assertEquals("OK OFF", ok);
     }
   }
-  
+
+  /**
+   * Megabytes without a line break are dropped as they arrive instead of being buffered,
+   * and answered with one LINE_TOO_LONG once the line ends.
+   */
+  @Test
+  void endlessLineIsDroppedWhileReading() throws Exception {
+    int port = pickFreePort();
+    startServer(port);
+
+    try (Socket s = connectWithRetry(port);
+        BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8))) {
+      OutputStream out = s.getOutputStream();
+      byte[] chunk = "X".repeat(64 * 1024).getBytes(StandardCharsets.UTF_8);
+      for (int i = 0; i < 64; i++) {
+        out.write(chunk);
+      }
+      out.write("\r\nSTATUS\r\n".getBytes(StandardCharsets.UTF_8));
+      out.flush();
+
+      assertEquals("ERR 400 LINE_TOO_LONG", in.readLine());
+      assertEquals("OK OFF", in.readLine());
+    }
+  }
+
+  /**
+   * A second client is served while the first one is still connected and idle.
+   */
+  @Test
+  void servesSeveralClientsAtTheSameTime() throws Exception {
+    int port = pickFreePort();
+    startServer(port);
+
+    try (Socket idle = connectWithRetry(port);
+        Socket active = connectWithRetry(port);
+        BufferedWriter idleOut = new BufferedWriter(new OutputStreamWriter(idle.getOutputStream(), StandardCharsets.UTF_8));
+        BufferedReader idleIn = new BufferedReader(new InputStreamReader(idle.getInputStream(), StandardCharsets.UTF_8));
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(active.getOutputStream(), StandardCharsets.UTF_8));
+        BufferedReader in = new BufferedReader(new InputStreamReader(active.getInputStream(), StandardCharsets.UTF_8))) {
+
+        // The first client stays connected without sending anything
+        out.write("ON\r\n"); out.flush();
+        assertEquals("OK", in.readLine());
+
+        // Both clients share the same TV
+        idleOut.write("STATUS\r\n"); idleOut.flush();
+        assertEquals("OK ON", idleIn.readLine());
+    }
+  }
+
+  /**
+   * stop() closes the listener and open clients, and start() returns.
+   */
+  @Test
+  void stopClosesClientsAndReturnsFromStart() throws Exception {
+    int port = pickFreePort();
+    TcpServer server = new TcpServer(port, new ProtocolHandler(new SmartTv(10)), 4);
+    Thread t = new Thread(() -> {
+      try {
+        server.start();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }, "TcpServerTest-StopThread");
+    t.setDaemon(true);
+    t.start();
+
+    try (Socket s = connectWithRetry(port);
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8));
+        BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8))) {
+      // Make sure the client has been accepted before stopping
+      out.write("STATUS\r\n"); out.flush();
+      assertEquals("OK OFF", in.readLine());
+
+      server.stop();
+      t.join(3_000);
+      assertFalse(t.isAlive());
+      assertFalse(server.isRunning());
+      // Server side closed the connection
+      assertEquals(null, in.readLine());
+    }
+  }
+
+  /**
+   * A stop() that comes before the server listens is not lost: start() returns without
+   * ever accepting a client.
+   */
+  @Test
+  void stopBeforeStartKeepsServerDown() throws Exception {
+    int port = pickFreePort();
+    TcpServer server = new TcpServer(port, new ProtocolHandler(new SmartTv(10)), 4);
+    server.stop();
+    Thread t = new Thread(() -> {
+      try {
+        server.start();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }, "TcpServerTest-EarlyStopThread");
+    t.setDaemon(true);
+    t.start();
+
+    t.join(3_000);
+    assertFalse(t.isAlive());
+    assertFalse(server.isRunning());
+    assertThrows(IOException.class, () -> new Socket("127.0.0.1", port).close());
+  }
+
+  /**
+   * A subscribed client receives events for its own and other clients' changes,
+   * after the reply to its own command.
+   */
+  @Test
+  void subscriberReceivesEvents() throws Exception {
+    int port = pickFreePort();
+    startServer(port);
+
+    try (Socket watcher = connectWithRetry(port);
+        Socket remote = connectWithRetry(port);
+        BufferedWriter wOut = new BufferedWriter(new OutputStreamWriter(watcher.getOutputStream(), StandardCharsets.UTF_8));
+        BufferedReader wIn = new BufferedReader(new InputStreamReader(watcher.getInputStream(), StandardCharsets.UTF_8));
+        BufferedWriter rOut = new BufferedWriter(new OutputStreamWriter(remote.getOutputStream(), StandardCharsets.UTF_8));
+        BufferedReader rIn = new BufferedReader(new InputStreamReader(remote.getInputStream(), StandardCharsets.UTF_8))) {
+
+        wOut.write("SUB\r\n"); wOut.flush();
+        assertEquals("OK", wIn.readLine());
+
+        rOut.write("ON\r\n"); rOut.flush();
+        assertEquals("OK", rIn.readLine());
+        assertEquals("EVT POWER ON", wIn.readLine());
+
+        wOut.write("SET 5\r\n"); wOut.flush();
+        assertEquals("OK CH=5", wIn.readLine());
+        assertEquals("EVT CHANNEL 5", wIn.readLine());
+
+        rOut.write("UP\r\n"); rOut.flush();
+        assertEquals("OK CH=6", rIn.readLine());
+        assertEquals("EVT CHANNEL 6", wIn.readLine());
+    }
+  }
+
+  /**
+   * A client that sends nothing for the idle timeout is closed; one that keeps sending is not.
+   */
+  @Test
+  void closesIdleClient() throws Exception {
+    int port = pickFreePort();
+    startServer(port, new ConnectionLimits(Duration.ofMillis(300), Duration.ZERO, Duration.ZERO, 0));
+
+    try (Socket idle = connectWithRetry(port);
+        Socket active = connectWithRetry(port);
+        BufferedReader idleIn = new BufferedReader(new InputStreamReader(idle.getInputStream(), StandardCharsets.UTF_8));
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(active.getOutputStream(), StandardCharsets.UTF_8));
+        BufferedReader in = new BufferedReader(new InputStreamReader(active.getInputStream(), StandardCharsets.UTF_8))) {
+      for (int i = 0; i < 8; i++) {
+        out.write("STATUS\r\n"); out.flush();
+        assertEquals("OK OFF", in.readLine());
+        Thread.sleep(100);
+      }
+      // Closed by the server well before the 2 s read timeout
+      assertEquals(null, idleIn.readLine());
+    }
+  }
+
+  /**
+   * With a ping interval, other commands do not keep a connection open.
+   */
+  @Test
+  void closesClientThatStopsPinging() throws Exception {
+    int port = pickFreePort();
+    startServer(port, new ConnectionLimits(Duration.ZERO, Duration.ZERO, Duration.ofMillis(300), 0));
+
+    try (Socket s = connectWithRetry(port);
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8));
+        BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8))) {
+      for (int i = 0; i < 4; i++) {
+        out.write("PING\r\n"); out.flush();
+        assertEquals("OK", in.readLine());
+        Thread.sleep(150);
+      }
+      out.write("STATUS\r\n"); out.flush();
+      assertEquals("OK OFF", in.readLine());
+      assertEquals(null, in.readLine());
+    }
+  }
 }
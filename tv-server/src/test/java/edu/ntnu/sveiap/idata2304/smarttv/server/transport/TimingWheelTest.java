@@ -0,0 +1,105 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.transport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for TimingWheel.
+ */
+class TimingWheelTest {
+
+  /**
+   * A timeout never fires before its delay, and fires within about a tick after it.
+   */
+  @Test
+  void firesAfterDelay() throws Exception {
+    try (TimingWheel wheel = new TimingWheel(10, TimeUnit.MILLISECONDS, 8, "test-wheel")) {
+      CountDownLatch fired = new CountDownLatch(1);
+      AtomicLong firedAt = new AtomicLong();
+      long start = System.nanoTime();
+      TimingWheel.Timeout t = wheel.schedule(() -> {
+        firedAt.set(System.nanoTime());
+        fired.countDown();
+      }, 200, TimeUnit.MILLISECONDS);
+
+      assertTrue(fired.await(2, TimeUnit.SECONDS));
+      assertTrue(firedAt.get() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+      assertTrue(t.isExpired());
+      assertEquals(0, wheel.pending());
+    }
+  }
+
+  /**
+   * Delays longer than one turn of the wheel wait for the right turn.
+   */
+  @Test
+  void waitsFullTurnsForLongDelays() throws Exception {
+    // 4 buckets of 10 ms: 150 ms is three turns and a bit
+    try (TimingWheel wheel = new TimingWheel(10, TimeUnit.MILLISECONDS, 4, "test-wheel")) {
+      CountDownLatch fired = new CountDownLatch(2);
+      long start = System.nanoTime();
+      AtomicLong shortAt = new AtomicLong();
+      AtomicLong longAt = new AtomicLong();
+      wheel.schedule(() -> {
+        shortAt.set(System.nanoTime());
+        fired.countDown();
+      }, 20, TimeUnit.MILLISECONDS);
+      wheel.schedule(() -> {
+        longAt.set(System.nanoTime());
+        fired.countDown();
+      }, 150, TimeUnit.MILLISECONDS);
+
+      assertTrue(fired.await(2, TimeUnit.SECONDS));
+      assertTrue(shortAt.get() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+      assertTrue(longAt.get() - start >= TimeUnit.MILLISECONDS.toNanos(150));
+    }
+  }
+
+  /**
+   * Cancelled timeouts never run, and the rest of a busy wheel still fires.
+   */
+  @Test
+  void cancelledTimeoutsDoNotFire() throws Exception {
+    try (TimingWheel wheel = new TimingWheel(5, TimeUnit.MILLISECONDS, 16, "test-wheel")) {
+      int n = 10_000;
+      AtomicInteger runs = new AtomicInteger();
+      CountDownLatch kept = new CountDownLatch(n / 2);
+      TimingWheel.Timeout[] timeouts = new TimingWheel.Timeout[n];
+      for (int i = 0; i < n; i++) {
+        timeouts[i] = wheel.schedule(() -> {
+          runs.incrementAndGet();
+          kept.countDown();
+        }, 500 + i % 100, TimeUnit.MILLISECONDS);
+      }
+      for (int i = 0; i < n; i += 2) {
+        assertTrue(timeouts[i].cancel());
+      }
+      assertFalse(timeouts[0].cancel());
+
+      assertTrue(kept.await(5, TimeUnit.SECONDS));
+      Thread.sleep(100);
+      assertEquals(n / 2, runs.get());
+      assertEquals(0, wheel.pending());
+    }
+  }
+
+  /**
+   * A closed wheel refuses new timeouts.
+   */
+  @Test
+  void refusesScheduleAfterClose() {
+    TimingWheel wheel = new TimingWheel(10, TimeUnit.MILLISECONDS, 8, "test-wheel");
+    wheel.close();
+    assertThrows(IllegalStateException.class,
+        () -> wheel.schedule(() -> { }, 1, TimeUnit.MILLISECONDS));
+  }
+}
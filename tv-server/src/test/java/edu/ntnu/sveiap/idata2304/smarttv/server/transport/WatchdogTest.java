@@ -0,0 +1,52 @@
+package edu.ntnu.sveiap.idata2304.smarttv.server.transport;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ntnu.sveiap.idata2304.smarttv.common.logic.SmartTv;
+import edu.ntnu.sveiap.idata2304.smarttv.server.adapter.ProtocolHandler;
+
+/**
+ * Test class for Watchdog.
+ */
+class WatchdogTest {
+
+  /**
+   * A backlog that keeps draining is not timed out, however long it lasts; once the socket
+   * stops taking bytes the write timeout runs from the last progress.
+   */
+  @Test
+  void writeTimeoutCountsFromLastProgress() throws Exception {
+    ConnectionLimits limits =
+        new ConnectionLimits(Duration.ZERO, Duration.ofMillis(200), Duration.ZERO, 0);
+    try (TimingWheel wheel = new TimingWheel(10, TimeUnit.MILLISECONDS, 64, "test-wheel")) {
+      AtomicReference<String> reason = new AtomicReference<>();
+      CountDownLatch expired = new CountDownLatch(1);
+      Watchdog watchdog = new Watchdog(wheel, limits,
+          new ProtocolHandler(new SmartTv(10)).openSession(), r -> {
+            reason.set(r);
+            expired.countDown();
+          });
+      watchdog.start();
+
+      watchdog.writeStarted();
+      for (int i = 0; i < 12; i++) {
+        Thread.sleep(50);
+        watchdog.writeProgress();
+      }
+      assertNull(reason.get());
+
+      long stalled = System.nanoTime();
+      assertTrue(expired.await(2, TimeUnit.SECONDS));
+      assertTrue(System.nanoTime() - stalled >= TimeUnit.MILLISECONDS.toNanos(150));
+      assertTrue(reason.get().startsWith("replies not read"), reason.get());
+    }
+  }
+}